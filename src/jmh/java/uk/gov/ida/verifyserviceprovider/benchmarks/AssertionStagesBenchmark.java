@@ -0,0 +1,93 @@
+package uk.gov.ida.verifyserviceprovider.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import uk.gov.ida.saml.security.AssertionDecrypter;
+import uk.gov.ida.saml.security.validators.ValidatedResponse;
+import uk.gov.ida.verifyserviceprovider.dto.Attributes;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
+import uk.gov.ida.verifyserviceprovider.factories.saml.ResponseFactory;
+import uk.gov.ida.verifyserviceprovider.services.AssertionTranslator;
+import uk.gov.ida.verifyserviceprovider.services.AttributeTranslationService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static uk.gov.ida.verifyserviceprovider.benchmarks.TranslateResponseFixtures.REQUEST_ID;
+import static uk.gov.ida.verifyserviceprovider.benchmarks.TranslateResponseFixtures.SERVICE_ENTITY_ID;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_2;
+
+/**
+ * Measures the stages of /translate-response which only apply to responses that contain an assertion.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AssertionStagesBenchmark {
+
+    @Param({"SUCCESS_MATCH", "ACCOUNT_CREATION"})
+    public Scenario scenario;
+
+    private TranslateResponseFixtures fixtures;
+    private ResponseFactory responseFactory;
+    private AssertionDecrypter assertionDecrypter;
+    private AssertionTranslator assertionTranslator;
+
+    private ValidatedResponse validatedResponse;
+    private List<Assertion> assertions;
+    private AttributeStatement attributeStatement;
+
+    @Setup(Level.Trial)
+    public void setUpPipeline() throws Exception {
+        fixtures = new TranslateResponseFixtures();
+        responseFactory = fixtures.createResponseFactory();
+        assertionDecrypter = responseFactory.createAssertionDecrypter();
+        assertionTranslator = fixtures.createAssertionTranslator(responseFactory);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpResponse() throws Exception {
+        validatedResponse = fixtures.createResponseSignatureValidator().validate(
+            ResponseFactory.createStringToResponseTransformer().apply(fixtures.aBase64EncodedResponse(scenario)),
+            SPSSODescriptor.DEFAULT_ELEMENT_NAME
+        );
+        assertions = assertionDecrypter.decryptAssertions(validatedResponse);
+        List<AttributeStatement> attributeStatements = assertions.get(0).getAttributeStatements();
+        attributeStatement = attributeStatements.isEmpty() ? null : attributeStatements.get(0);
+    }
+
+    @Benchmark
+    public List<Assertion> assertionDecrypter() {
+        return assertionDecrypter.decryptAssertions(validatedResponse);
+    }
+
+    @Benchmark
+    public TranslatedResponseBody assertionTranslator() {
+        return assertionTranslator.translate(assertions, REQUEST_ID, LEVEL_2, SERVICE_ENTITY_ID);
+    }
+
+    /**
+     * Only meaningful for ACCOUNT_CREATION, as SUCCESS_MATCH assertions do not contain any attributes.
+     */
+    @Benchmark
+    public Attributes attributeTranslationService() {
+        return attributeStatement == null ? null : AttributeTranslationService.translateAttributes(attributeStatement);
+    }
+}
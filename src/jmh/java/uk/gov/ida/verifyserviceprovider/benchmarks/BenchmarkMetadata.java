@@ -0,0 +1,73 @@
+package uk.gov.ida.verifyserviceprovider.benchmarks;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.impl.DOMMetadataResolver;
+import org.opensaml.saml.metadata.resolver.impl.PredicateRoleDescriptorResolver;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.security.impl.MetadataCredentialResolver;
+import org.opensaml.xmlsec.config.DefaultSecurityConfigurationBootstrap;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import uk.gov.ida.saml.core.test.TestEntityIds;
+
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.HUB_TEST_PUBLIC_ENCRYPTION_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_MS_PUBLIC_SIGNING_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PUBLIC_SIGNING_CERT;
+import static uk.gov.ida.saml.core.test.builders.metadata.EntityDescriptorBuilder.anEntityDescriptor;
+import static uk.gov.ida.saml.core.test.builders.metadata.IdpSsoDescriptorBuilder.anIdpSsoDescriptor;
+import static uk.gov.ida.saml.core.test.builders.metadata.KeyDescriptorBuilder.aKeyDescriptor;
+import static uk.gov.ida.saml.core.test.builders.metadata.SPSSODescriptorBuilder.anSpServiceDescriptor;
+
+/**
+ * In-memory hub and MSA metadata, so that benchmarks exercise the same metadata lookups
+ * as a running service without any network access.
+ */
+public class BenchmarkMetadata {
+
+    public static final String HUB_ENTITY_ID = TestEntityIds.HUB_ENTITY_ID;
+    public static final String MSA_ENTITY_ID = TestEntityIds.TEST_RP_MS;
+
+    public static MetadataResolver hubMetadataResolver() throws MarshallingException, SignatureException, ComponentInitializationException {
+        return createMetadataResolver(anEntityDescriptor()
+            .withEntityId(HUB_ENTITY_ID)
+            .addSpServiceDescriptor(anSpServiceDescriptor()
+                .withoutDefaultSigningKey()
+                .addKeyDescriptor(aKeyDescriptor().withX509ForSigning(TEST_RP_PUBLIC_SIGNING_CERT).build())
+                .addKeyDescriptor(aKeyDescriptor().withX509ForEncryption(HUB_TEST_PUBLIC_ENCRYPTION_CERT).build())
+                .build())
+            .build());
+    }
+
+    public static MetadataResolver msaMetadataResolver() throws MarshallingException, SignatureException, ComponentInitializationException {
+        return createMetadataResolver(anEntityDescriptor()
+            .withEntityId(MSA_ENTITY_ID)
+            .withIdpSsoDescriptor(anIdpSsoDescriptor()
+                .withoutDefaultSigningKey()
+                .addKeyDescriptor(aKeyDescriptor().withX509ForSigning(TEST_RP_MS_PUBLIC_SIGNING_CERT).build())
+                .build())
+            .build());
+    }
+
+    public static MetadataCredentialResolver createMetadataCredentialResolver(MetadataResolver metadataResolver) throws ComponentInitializationException {
+        PredicateRoleDescriptorResolver roleDescriptorResolver = new PredicateRoleDescriptorResolver(metadataResolver);
+        roleDescriptorResolver.initialize();
+
+        MetadataCredentialResolver credentialResolver = new MetadataCredentialResolver();
+        credentialResolver.setRoleDescriptorResolver(roleDescriptorResolver);
+        credentialResolver.setKeyInfoCredentialResolver(DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver());
+        credentialResolver.initialize();
+        return credentialResolver;
+    }
+
+    private static MetadataResolver createMetadataResolver(EntityDescriptor entityDescriptor) throws MarshallingException, ComponentInitializationException {
+        DOMMetadataResolver metadataResolver = new DOMMetadataResolver(XMLObjectSupport.marshall(entityDescriptor));
+        metadataResolver.setId(entityDescriptor.getEntityID());
+        metadataResolver.setRequireValidMetadata(false);
+        metadataResolver.setParserPool(XMLObjectProviderRegistrySupport.getParserPool());
+        metadataResolver.initialize();
+        return metadataResolver;
+    }
+}
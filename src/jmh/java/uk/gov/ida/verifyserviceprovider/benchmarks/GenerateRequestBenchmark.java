@@ -0,0 +1,257 @@
+package uk.gov.ida.verifyserviceprovider.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.EncryptedAttribute;
+import org.opensaml.saml.saml2.core.Extensions;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.impl.AttributeBuilder;
+import org.opensaml.saml.saml2.core.impl.AuthnRequestBuilder;
+import org.opensaml.saml.saml2.core.impl.ExtensionsBuilder;
+import org.opensaml.saml.saml2.core.impl.IssuerBuilder;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.opensaml.security.crypto.KeySupport;
+import org.opensaml.xmlsec.algorithm.descriptors.DigestSHA256;
+import org.opensaml.xmlsec.algorithm.descriptors.SignatureRSASHA256;
+import org.opensaml.xmlsec.encryption.support.EncryptionException;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.Signer;
+import org.w3c.dom.Element;
+import uk.gov.ida.saml.core.extensions.versioning.Version;
+import uk.gov.ida.saml.core.extensions.versioning.VersionImpl;
+import uk.gov.ida.saml.core.extensions.versioning.application.ApplicationVersion;
+import uk.gov.ida.saml.core.extensions.versioning.application.ApplicationVersionImpl;
+import uk.gov.ida.saml.core.test.PrivateKeyStoreFactory;
+import uk.gov.ida.saml.core.test.TestEntityIds;
+import uk.gov.ida.saml.security.IdaKeyStore;
+import uk.gov.ida.saml.security.IdaKeyStoreCredentialRetriever;
+import uk.gov.ida.saml.security.MetadataBackedEncryptionCredentialResolver;
+import uk.gov.ida.saml.security.SignatureFactory;
+import uk.gov.ida.saml.serializers.XmlObjectToBase64EncodedStringTransformer;
+import uk.gov.ida.shared.utils.manifest.ManifestReader;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLog;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.RequestGenerationBody;
+import uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory;
+import uk.gov.ida.verifyserviceprovider.factories.saml.AuthnRequestFactory;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
+import uk.gov.ida.verifyserviceprovider.resources.GenerateAuthnRequestResource;
+import uk.gov.ida.verifyserviceprovider.saml.VerifyServiceProviderSamlBootstrap;
+import uk.gov.ida.verifyserviceprovider.services.EntityIdService;
+import uk.gov.ida.verifyserviceprovider.services.PregeneratedAuthnRequests;
+import uk.gov.ida.verifyserviceprovider.services.WorkerPool;
+
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonList;
+import static uk.gov.ida.verifyserviceprovider.benchmarks.BenchmarkMetadata.HUB_ENTITY_ID;
+
+/**
+ * Measures /generate-request end to end, along with each stage of building an AuthnRequest.
+ *
+ * Run with more than one thread (for example with the jmhThreadScaling task) to see how each stage scales.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(2)
+public class GenerateRequestBenchmark {
+
+    private static final URI SSO_LOCATION = URI.create("http://hub.example.com/SAML2/SSO");
+    private static final String SERVICE_ENTITY_ID = "http://verify-service-provider";
+
+    /**
+     * The components of a running service, which are shared between all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Service {
+        EncrypterFactory encrypterFactory;
+        AuthnRequestFactory authnRequestFactory;
+        GenerateAuthnRequestResource generateAuthnRequestResource;
+        KeyPair signingKeyPair;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            VerifyServiceProviderSamlBootstrap.bootstrap();
+            MetadataResolver hubMetadataResolver = BenchmarkMetadata.hubMetadataResolver();
+            MetadataBackedEncryptionCredentialResolver encryptionCredentialResolver = new MetadataBackedEncryptionCredentialResolver(
+                BenchmarkMetadata.createMetadataCredentialResolver(hubMetadataResolver),
+                SPSSODescriptor.DEFAULT_ELEMENT_NAME
+            );
+            encrypterFactory = new EncrypterFactory(encryptionCredentialResolver, HUB_ENTITY_ID, hubMetadataResolver, new MetricRegistry());
+
+            PrivateKey signingKey = new PrivateKeyStoreFactory().create(TestEntityIds.TEST_RP).getSigningPrivateKey();
+            signingKeyPair = new KeyPair(KeySupport.derivePublicKey(signingKey), signingKey);
+
+            authnRequestFactory = new AuthnRequestFactory(SSO_LOCATION, signingKeyPair, new FixedVersionManifestReader(), encrypterFactory);
+            generateAuthnRequestResource = new GenerateAuthnRequestResource(
+                authnRequestFactory,
+                SSO_LOCATION,
+                new EntityIdService(singletonList(SERVICE_ENTITY_ID)),
+                WorkerPool.requestThread(),
+                PregeneratedAuthnRequests.disabled(),
+                TenantRequestMetrics.none(),
+                AuditLog.disabled()
+            );
+        }
+    }
+
+    /**
+     * Partly built AuthnRequests for the stage benchmarks. These are mutated by
+     * the benchmarks, so each thread has its own.
+     */
+    @State(Scope.Thread)
+    public static class Stages {
+        AuthnRequest unmarshalledAuthnRequest;
+        AuthnRequest marshalledAuthnRequest;
+        AuthnRequest signedAuthnRequest;
+        XmlObjectToBase64EncodedStringTransformer<XMLObject> toBase64Transformer;
+
+        @Setup(Level.Iteration)
+        public void setUp(Service service) throws Exception {
+            unmarshalledAuthnRequest = buildAuthnRequest(service);
+
+            marshalledAuthnRequest = buildAuthnRequest(service);
+            marshall(marshalledAuthnRequest);
+
+            signedAuthnRequest = buildAuthnRequest(service);
+            marshall(signedAuthnRequest);
+            Signer.signObject(signedAuthnRequest.getSignature());
+
+            toBase64Transformer = new XmlObjectToBase64EncodedStringTransformer<>();
+        }
+    }
+
+    @Benchmark
+    public Response generateAuthnRequest(Service service) {
+        return service.generateAuthnRequestResource.generateAuthnRequest(new RequestGenerationBody(LevelOfAssurance.LEVEL_2, null));
+    }
+
+    @Benchmark
+    public AuthnRequest authnRequestFactory(Service service) {
+        return service.authnRequestFactory.build(LevelOfAssurance.LEVEL_2, SERVICE_ENTITY_ID);
+    }
+
+    /**
+     * Builds, encrypts, marshalls and signs every part of the request, as the factory did before it
+     * reused the encrypted Versions extension. Compare with authnRequestFactory.
+     */
+    @Benchmark
+    public AuthnRequest authnRequestWithoutTemplate(Service service) throws EncryptionException, MarshallingException, SignatureException {
+        AuthnRequest authnRequest = buildAuthnRequest(service);
+        marshall(authnRequest);
+        Signer.signObject(authnRequest.getSignature());
+        return authnRequest;
+    }
+
+    @Benchmark
+    public AuthnRequest buildAuthnRequestObject(Service service) {
+        AuthnRequest authnRequest = buildUnsignedAuthnRequest();
+        authnRequest.setSignature(createSignature(service.signingKeyPair));
+        return authnRequest;
+    }
+
+    @Benchmark
+    public EncryptedAttribute encryptVersionsExtension(Service service) throws EncryptionException {
+        return service.encrypterFactory.encrypt(createVersionsAttribute());
+    }
+
+    @Benchmark
+    public Element marshallAuthnRequest(Stages stages) throws MarshallingException {
+        stages.unmarshalledAuthnRequest.releaseChildrenDOM(true);
+        stages.unmarshalledAuthnRequest.releaseDOM();
+        return marshall(stages.unmarshalledAuthnRequest);
+    }
+
+    @Benchmark
+    public Signature signAuthnRequest(Stages stages) throws SignatureException {
+        Signer.signObject(stages.marshalledAuthnRequest.getSignature());
+        return stages.marshalledAuthnRequest.getSignature();
+    }
+
+    @Benchmark
+    public String xmlObjectToBase64EncodedStringTransformer(Stages stages) {
+        return stages.toBase64Transformer.apply(stages.signedAuthnRequest);
+    }
+
+    private static AuthnRequest buildAuthnRequest(Service service) throws EncryptionException {
+        AuthnRequest authnRequest = buildUnsignedAuthnRequest();
+        Extensions extensions = new ExtensionsBuilder().buildObject();
+        extensions.getUnknownXMLObjects().add(service.encrypterFactory.encrypt(createVersionsAttribute()));
+        authnRequest.setExtensions(extensions);
+        authnRequest.setSignature(createSignature(service.signingKeyPair));
+        return authnRequest;
+    }
+
+    private static AuthnRequest buildUnsignedAuthnRequest() {
+        AuthnRequest authnRequest = new AuthnRequestBuilder().buildObject();
+        authnRequest.setID(String.format("_%s", UUID.randomUUID()));
+        authnRequest.setIssueInstant(DateTime.now());
+        authnRequest.setForceAuthn(false);
+        authnRequest.setDestination(SSO_LOCATION.toString());
+
+        Issuer issuer = new IssuerBuilder().buildObject();
+        issuer.setValue(SERVICE_ENTITY_ID);
+        authnRequest.setIssuer(issuer);
+        return authnRequest;
+    }
+
+    private static Attribute createVersionsAttribute() {
+        ApplicationVersion applicationVersion = new ApplicationVersionImpl();
+        applicationVersion.setValue("benchmark");
+        Version version = new VersionImpl() {{
+            setApplicationVersion(applicationVersion);
+        }};
+
+        Attribute versionsAttribute = new AttributeBuilder().buildObject();
+        versionsAttribute.setName("Versions");
+        versionsAttribute.getAttributeValues().add(version);
+        return versionsAttribute;
+    }
+
+    private static Signature createSignature(KeyPair signingKeyPair) {
+        IdaKeyStore keyStore = new IdaKeyStore(signingKeyPair, Collections.emptyList());
+        IdaKeyStoreCredentialRetriever keyStoreCredentialRetriever = new IdaKeyStoreCredentialRetriever(keyStore);
+        return new SignatureFactory(keyStoreCredentialRetriever, new SignatureRSASHA256(), new DigestSHA256()).createSignature();
+    }
+
+    private static Element marshall(AuthnRequest authnRequest) throws MarshallingException {
+        return XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(authnRequest).marshall(authnRequest);
+    }
+
+    /**
+     * Reading the version from the jar manifest fails when running from compiled classes,
+     * which would log an error on every request.
+     */
+    private static class FixedVersionManifestReader extends ManifestReader {
+        @Override
+        public String getAttributeValueFor(Class clazz, String attributeName) {
+            return "benchmark";
+        }
+    }
+}
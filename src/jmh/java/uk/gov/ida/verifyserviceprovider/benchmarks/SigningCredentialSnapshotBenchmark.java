@@ -0,0 +1,85 @@
+package uk.gov.ida.verifyserviceprovider.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.opensaml.xmlsec.config.DefaultSecurityConfigurationBootstrap;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import uk.gov.ida.saml.metadata.factories.MetadataSignatureTrustEngineFactory;
+import uk.gov.ida.saml.security.MetadataBackedSignatureValidator;
+import uk.gov.ida.saml.security.SamlMessageSignatureValidator;
+import uk.gov.ida.saml.security.validators.ValidatedResponse;
+import uk.gov.ida.saml.security.validators.signature.SamlResponseSignatureValidator;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshotResolver;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshotTrustEngine;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonList;
+import static uk.gov.ida.verifyserviceprovider.benchmarks.BenchmarkMetadata.HUB_ENTITY_ID;
+
+/**
+ * Compares validating the hub's signature on a Response by resolving credentials from metadata
+ * each time with validating it against a snapshot of the signing credentials.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SigningCredentialSnapshotBenchmark {
+
+    private SamlResponseSignatureValidator metadataResponseSignatureValidator;
+    private SamlResponseSignatureValidator snapshotResponseSignatureValidator;
+    private Response response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        TranslateResponseFixtures fixtures = new TranslateResponseFixtures();
+        MetadataResolver hubMetadataResolver = BenchmarkMetadata.hubMetadataResolver();
+
+        metadataResponseSignatureValidator = createResponseSignatureValidator(
+            new MetadataSignatureTrustEngineFactory().createSignatureTrustEngine(hubMetadataResolver)
+        );
+        snapshotResponseSignatureValidator = createResponseSignatureValidator(new SigningCredentialSnapshotTrustEngine(
+            new SigningCredentialSnapshotResolver(
+                hubMetadataResolver,
+                singletonList(HUB_ENTITY_ID),
+                DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver(),
+                BenchmarkMetadata.createMetadataCredentialResolver(hubMetadataResolver)
+            )
+        ));
+
+        // Signature validation doesn't look at any instants, so one response lasts the whole trial
+        response = fixtures.aSignedResponse(Scenario.NO_MATCH);
+    }
+
+    @Benchmark
+    public ValidatedResponse metadataTrustEngine() {
+        return metadataResponseSignatureValidator.validate(response, SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+    }
+
+    @Benchmark
+    public ValidatedResponse signingCredentialSnapshotTrustEngine() {
+        return snapshotResponseSignatureValidator.validate(response, SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+    }
+
+    private static SamlResponseSignatureValidator createResponseSignatureValidator(ExplicitKeySignatureTrustEngine trustEngine) {
+        return new SamlResponseSignatureValidator(new SamlMessageSignatureValidator(
+            MetadataBackedSignatureValidator.withoutCertificateChainValidation(trustEngine)
+        ));
+    }
+}
@@ -0,0 +1,90 @@
+package uk.gov.ida.verifyserviceprovider.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import uk.gov.ida.saml.deserializers.StringToOpenSamlObjectTransformer;
+import uk.gov.ida.saml.security.validators.ValidatedResponse;
+import uk.gov.ida.saml.security.validators.signature.SamlResponseSignatureValidator;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
+import uk.gov.ida.verifyserviceprovider.factories.saml.ResponseFactory;
+import uk.gov.ida.verifyserviceprovider.saml.PooledStringToResponseTransformer;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+
+import java.util.concurrent.TimeUnit;
+
+import static uk.gov.ida.verifyserviceprovider.benchmarks.TranslateResponseFixtures.REQUEST_ID;
+import static uk.gov.ida.verifyserviceprovider.benchmarks.TranslateResponseFixtures.SERVICE_ENTITY_ID;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_2;
+
+/**
+ * Measures /translate-response end to end, along with the stages that apply to every response
+ * whatever its status: unmarshalling the base64 encoded string and validating the hub's signature.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(2)
+@State(Scope.Benchmark)
+public class TranslateResponseBenchmark {
+
+    @Param({"SUCCESS_MATCH", "ACCOUNT_CREATION", "NO_MATCH"})
+    public Scenario scenario;
+
+    private TranslateResponseFixtures fixtures;
+    private ResponseService responseService;
+    private StringToOpenSamlObjectTransformer<Response> stringToResponseTransformer;
+    private PooledStringToResponseTransformer pooledStringToResponseTransformer;
+    private SamlResponseSignatureValidator responseSignatureValidator;
+
+    private String samlResponse;
+    private Response response;
+
+    @Setup(Level.Trial)
+    public void setUpPipeline() throws Exception {
+        fixtures = new TranslateResponseFixtures();
+        responseService = fixtures.createResponseService();
+        stringToResponseTransformer = ResponseFactory.createStringToResponseTransformer();
+        pooledStringToResponseTransformer = fixtures.createResponseFactory().createPooledStringToResponseTransformer();
+        responseSignatureValidator = fixtures.createResponseSignatureValidator();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpResponse() throws Exception {
+        samlResponse = fixtures.aBase64EncodedResponse(scenario);
+        response = stringToResponseTransformer.apply(samlResponse);
+    }
+
+    @Benchmark
+    public TranslatedResponseBody convertTranslatedResponseBody() {
+        return responseService.convertTranslatedResponseBody(samlResponse, REQUEST_ID, LEVEL_2, SERVICE_ENTITY_ID);
+    }
+
+    @Benchmark
+    public Response stringToOpenSamlObjectTransformer() {
+        return stringToResponseTransformer.apply(samlResponse);
+    }
+
+    @Benchmark
+    public Response pooledStringToResponseTransformer() {
+        return pooledStringToResponseTransformer.apply(samlResponse);
+    }
+
+    @Benchmark
+    public ValidatedResponse responseSignatureValidator() {
+        return responseSignatureValidator.validate(response, SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+    }
+}
@@ -0,0 +1,200 @@
+package uk.gov.ida.verifyserviceprovider.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.core.StatusCode;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.crypto.KeySupport;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import uk.gov.ida.saml.core.domain.SamlStatusCode;
+import uk.gov.ida.saml.core.test.PrivateKeyStoreFactory;
+import uk.gov.ida.saml.core.test.TestCredentialFactory;
+import uk.gov.ida.saml.core.test.TestEntityIds;
+import uk.gov.ida.saml.core.test.builders.AssertionBuilder;
+import uk.gov.ida.saml.core.test.builders.IssuerBuilder;
+import uk.gov.ida.saml.core.test.builders.ResponseBuilder;
+import uk.gov.ida.saml.metadata.factories.MetadataSignatureTrustEngineFactory;
+import uk.gov.ida.saml.security.MetadataBackedSignatureValidator;
+import uk.gov.ida.saml.security.SamlMessageSignatureValidator;
+import uk.gov.ida.saml.security.validators.signature.SamlResponseSignatureValidator;
+import uk.gov.ida.saml.serializers.XmlObjectToBase64EncodedStringTransformer;
+import uk.gov.ida.verifyserviceprovider.configuration.SamlPoolConfiguration;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+import uk.gov.ida.verifyserviceprovider.factories.saml.ResponseFactory;
+import uk.gov.ida.verifyserviceprovider.saml.VerifyServiceProviderSamlBootstrap;
+import uk.gov.ida.verifyserviceprovider.services.AssertionTranslator;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+import uk.gov.ida.verifyserviceprovider.utils.DateTimeComparator;
+
+import java.security.KeyException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.List;
+
+import static common.uk.gov.ida.verifyserviceprovider.utils.SamlResponseHelper.createAccountCreationAttributeStatement;
+import static java.util.Collections.singletonList;
+import static uk.gov.ida.saml.core.extensions.IdaAuthnContext.LEVEL_2_AUTHN_CTX;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_MS_PRIVATE_SIGNING_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_MS_PUBLIC_SIGNING_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PRIVATE_ENCRYPTION_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PRIVATE_SIGNING_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PUBLIC_ENCRYPTION_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PUBLIC_SIGNING_CERT;
+import static uk.gov.ida.saml.core.test.builders.AssertionBuilder.anAssertion;
+import static uk.gov.ida.saml.core.test.builders.AudienceRestrictionBuilder.anAudienceRestriction;
+import static uk.gov.ida.saml.core.test.builders.AuthnContextBuilder.anAuthnContext;
+import static uk.gov.ida.saml.core.test.builders.AuthnContextClassRefBuilder.anAuthnContextClassRef;
+import static uk.gov.ida.saml.core.test.builders.AuthnStatementBuilder.anAuthnStatement;
+import static uk.gov.ida.saml.core.test.builders.ConditionsBuilder.aConditions;
+import static uk.gov.ida.saml.core.test.builders.ResponseBuilder.aResponse;
+import static uk.gov.ida.saml.core.test.builders.SignatureBuilder.aSignature;
+import static uk.gov.ida.saml.core.test.builders.StatusBuilder.aStatus;
+import static uk.gov.ida.saml.core.test.builders.StatusCodeBuilder.aStatusCode;
+import static uk.gov.ida.saml.core.test.builders.SubjectBuilder.aSubject;
+import static uk.gov.ida.saml.core.test.builders.SubjectConfirmationBuilder.aSubjectConfirmation;
+import static uk.gov.ida.saml.core.test.builders.SubjectConfirmationDataBuilder.aSubjectConfirmationData;
+import static uk.gov.ida.verifyserviceprovider.benchmarks.BenchmarkMetadata.HUB_ENTITY_ID;
+import static uk.gov.ida.verifyserviceprovider.benchmarks.BenchmarkMetadata.MSA_ENTITY_ID;
+
+/**
+ * Builds the keys, metadata and SAML Responses used by the translate-response benchmarks.
+ */
+public class TranslateResponseFixtures {
+
+    public static final String SERVICE_ENTITY_ID = "http://verify-service-provider";
+    public static final String REQUEST_ID = "_some-request-id";
+    public static final int ADDRESS_HISTORY_SIZE = 5;
+
+    private final XmlObjectToBase64EncodedStringTransformer<XMLObject> toBase64Transformer = new XmlObjectToBase64EncodedStringTransformer<>();
+    private final DateTimeComparator dateTimeComparator = new DateTimeComparator(Duration.standardSeconds(5));
+    private final Credential hubSigningCredential;
+    private final Credential msaSigningCredential;
+    private final Credential encryptingCredential;
+    private final ExplicitKeySignatureTrustEngine hubSignatureTrustEngine;
+    private final ExplicitKeySignatureTrustEngine msaSignatureTrustEngine;
+
+    public TranslateResponseFixtures() throws Exception {
+        VerifyServiceProviderSamlBootstrap.bootstrap();
+        hubSigningCredential = new TestCredentialFactory(TEST_RP_PUBLIC_SIGNING_CERT, TEST_RP_PRIVATE_SIGNING_KEY).getSigningCredential();
+        msaSigningCredential = new TestCredentialFactory(TEST_RP_MS_PUBLIC_SIGNING_CERT, TEST_RP_MS_PRIVATE_SIGNING_KEY).getSigningCredential();
+        encryptingCredential = new TestCredentialFactory(TEST_RP_PUBLIC_ENCRYPTION_CERT, TEST_RP_PRIVATE_ENCRYPTION_KEY).getEncryptingCredential();
+
+        MetadataSignatureTrustEngineFactory trustEngineFactory = new MetadataSignatureTrustEngineFactory();
+        hubSignatureTrustEngine = trustEngineFactory.createSignatureTrustEngine(BenchmarkMetadata.hubMetadataResolver());
+        msaSignatureTrustEngine = trustEngineFactory.createSignatureTrustEngine(BenchmarkMetadata.msaMetadataResolver());
+    }
+
+    public ResponseFactory createResponseFactory() throws KeyException {
+        return new ResponseFactory(createDecryptionKeyPairs(), new MetricRegistry(), new SamlPoolConfiguration(null, null));
+    }
+
+    public ResponseService createResponseService() throws KeyException {
+        ResponseFactory responseFactory = createResponseFactory();
+        return responseFactory.createResponseService(
+            hubSignatureTrustEngine,
+            HUB_ENTITY_ID,
+            createAssertionTranslator(responseFactory),
+            dateTimeComparator,
+            // Each benchmark translates the same response many times, so replays must be allowed
+            (id, expiry) -> true
+        );
+    }
+
+    public AssertionTranslator createAssertionTranslator(ResponseFactory responseFactory) {
+        return responseFactory.createAssertionTranslator(msaSignatureTrustEngine, dateTimeComparator);
+    }
+
+    public SamlResponseSignatureValidator createResponseSignatureValidator() {
+        return new SamlResponseSignatureValidator(new SamlMessageSignatureValidator(
+            MetadataBackedSignatureValidator.withoutCertificateChainValidation(hubSignatureTrustEngine)
+        ));
+    }
+
+    /**
+     * Responses contain instants which are only valid for a few minutes, so benchmarks
+     * should build a fresh response at least once per iteration.
+     */
+    public String aBase64EncodedResponse(Scenario scenario) throws MarshallingException, SignatureException {
+        return toBase64Transformer.apply(aSignedResponse(scenario));
+    }
+
+    public Response aSignedResponse(Scenario scenario) throws MarshallingException, SignatureException {
+        ResponseBuilder responseBuilder = aResponse()
+            .withInResponseTo(REQUEST_ID)
+            .withIssuer(anIssuer(HUB_ENTITY_ID))
+            .withNoDefaultAssertion()
+            .withSigningCredential(hubSigningCredential);
+
+        switch (scenario) {
+            case SUCCESS_MATCH:
+                return responseBuilder
+                    .withStatus(aStatus().withStatusCode(aStatusCode().withValue(StatusCode.SUCCESS).build()).build())
+                    .addEncryptedAssertion(anMsaAssertion().buildWithEncrypterCredential(encryptingCredential))
+                    .build();
+            case ACCOUNT_CREATION:
+                return responseBuilder
+                    .withStatus(aStatus().withStatusCode(aStatusCode().withValue(StatusCode.SUCCESS).build()).build())
+                    .addEncryptedAssertion(anMsaAssertion()
+                        .addAttributeStatement(createAccountCreationAttributeStatement(ADDRESS_HISTORY_SIZE))
+                        .buildWithEncrypterCredential(encryptingCredential))
+                    .build();
+            case NO_MATCH:
+                return responseBuilder
+                    .withStatus(aStatus().withStatusCode(aStatusCode()
+                        .withValue(StatusCode.RESPONDER)
+                        .withSubStatusCode(aStatusCode().withValue(SamlStatusCode.NO_MATCH).build())
+                        .build()).build())
+                    .build();
+            default:
+                throw new IllegalArgumentException("No benchmark response for scenario " + scenario);
+        }
+    }
+
+    private AssertionBuilder anMsaAssertion() {
+        return anAssertion()
+            .withIssuer(anIssuer(MSA_ENTITY_ID))
+            .withSubject(aSubject()
+                .withSubjectConfirmation(aSubjectConfirmation()
+                    .withSubjectConfirmationData(aSubjectConfirmationData()
+                        .withNotOnOrAfter(DateTime.now().plusMinutes(15))
+                        .withInResponseTo(REQUEST_ID)
+                        .build())
+                    .build())
+                .withPersistentId("some-pid")
+                .build())
+            .withConditions(aConditions()
+                .withoutDefaultAudienceRestriction()
+                .addAudienceRestriction(anAudienceRestriction()
+                    .withAudienceId(SERVICE_ENTITY_ID)
+                    .build())
+                .build())
+            .addAuthnStatement(anAuthnStatement()
+                .withAuthnContext(anAuthnContext()
+                    .withAuthnContextClassRef(anAuthnContextClassRef()
+                        .withAuthnContextClasRefValue(LEVEL_2_AUTHN_CTX)
+                        .build())
+                    .build())
+                .build())
+            .withSignature(aSignature()
+                .withSigningCredential(msaSigningCredential)
+                .build());
+    }
+
+    private static Issuer anIssuer(String entityId) {
+        Issuer issuer = IssuerBuilder.anIssuer().build();
+        issuer.setValue(entityId);
+        return issuer;
+    }
+
+    private static List<KeyPair> createDecryptionKeyPairs() throws KeyException {
+        // Note: the private key and the encrypting credential need to be from the same keypair
+        PrivateKey privateKey = new PrivateKeyStoreFactory().create(TestEntityIds.TEST_RP).getEncryptionPrivateKeys().get(0);
+        return singletonList(new KeyPair(KeySupport.derivePublicKey(privateKey), privateKey));
+    }
+}
@@ -2,26 +2,47 @@ package uk.gov.ida.verifyserviceprovider;
 
 import com.fasterxml.jackson.databind.util.ISO8601DateFormat;
 import io.dropwizard.Application;
+import io.dropwizard.client.JerseyClientBuilder;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
-import uk.gov.ida.saml.core.IdaSamlBootstrap;
 import uk.gov.ida.saml.metadata.bundle.MetadataResolverBundle;
+import uk.gov.ida.verifyserviceprovider.audit.DumpAuditLogCommand;
 import uk.gov.ida.verifyserviceprovider.configuration.VerifyServiceProviderConfiguration;
 import uk.gov.ida.verifyserviceprovider.exceptions.InvalidEntityIdExceptionMapper;
 import uk.gov.ida.verifyserviceprovider.exceptions.JerseyViolationExceptionMapper;
 import uk.gov.ida.verifyserviceprovider.exceptions.JsonProcessingExceptionMapper;
 import uk.gov.ida.verifyserviceprovider.factories.VerifyServiceProviderFactory;
+import uk.gov.ida.verifyserviceprovider.healthcheck.MetadataHealthCheck;
+import uk.gov.ida.verifyserviceprovider.healthcheck.WarmUpHealthCheck;
 import uk.gov.ida.verifyserviceprovider.listeners.VerifyServiceProviderServerListener;
+import uk.gov.ida.verifyserviceprovider.metrics.AsyncAppenderMetrics;
+import uk.gov.ida.verifyserviceprovider.metrics.PrometheusServlet;
+import uk.gov.ida.verifyserviceprovider.resources.GenerateAuthnRequestResource;
+import uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponseBodyReader;
+import uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponseResource;
+import uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponsesResource;
+import uk.gov.ida.verifyserviceprovider.services.WorkerPool;
+import uk.gov.ida.verifyserviceprovider.startup.OpenSamlBootstrapBundle;
+import uk.gov.ida.verifyserviceprovider.startup.StartupPlan;
+import uk.gov.ida.verifyserviceprovider.startup.StartupReport;
+import uk.gov.ida.verifyserviceprovider.startup.StartupReportServlet;
+import uk.gov.ida.verifyserviceprovider.startup.StartupTask;
 import uk.gov.ida.verifyserviceprovider.utils.ConfigurationFileFinder;
+import uk.gov.ida.verifyserviceprovider.warmup.WarmUp;
 
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class VerifyServiceProviderApplication extends Application<VerifyServiceProviderConfiguration> {
 
     private MetadataResolverBundle<VerifyServiceProviderConfiguration> hubMetadataBundle;
     private MetadataResolverBundle<VerifyServiceProviderConfiguration> msaMetadataBundle;
+    private final StartupReport startupReport = new StartupReport();
+    private final StartupPlan startupPlan = new StartupPlan(startupReport);
 
     @SuppressWarnings("WeakerAccess") // Needed for DropwizardAppRules
     public VerifyServiceProviderApplication() {
@@ -46,10 +67,13 @@ public class VerifyServiceProviderApplication extends Application<VerifyServiceP
                 new EnvironmentVariableSubstitutor(false)
             )
         );
-        IdaSamlBootstrap.bootstrap();
+        // OpenSAML is bootstrapped while the configuration is read, and must be ready before the metadata bundles run
+        bootstrap.addBundle(new OpenSamlBootstrapBundle(startupPlan));
         bootstrap.getObjectMapper().setDateFormat(ISO8601DateFormat.getInstance());
         bootstrap.addBundle(hubMetadataBundle);
         bootstrap.addBundle(msaMetadataBundle);
+        bootstrap.addCommand(new DumpAuditLogCommand());
+        startupReport.endPhase("initialize");
     }
 
     @Override
@@ -59,18 +83,79 @@ public class VerifyServiceProviderApplication extends Application<VerifyServiceP
 
     @Override
     public void run(VerifyServiceProviderConfiguration configuration, Environment environment) throws Exception {
-        VerifyServiceProviderFactory factory = new VerifyServiceProviderFactory(configuration, hubMetadataBundle, msaMetadataBundle);
+        startupReport.endPhase("metadataBundles");
+        VerifyServiceProviderFactory factory = new VerifyServiceProviderFactory(configuration, hubMetadataBundle, msaMetadataBundle, environment.metrics(), startupPlan);
+        startupReport.endPhase("factory");
 
         environment.jersey().register(new JerseyViolationExceptionMapper());
         environment.jersey().register(new JsonProcessingExceptionMapper());
         environment.jersey().register(new InvalidEntityIdExceptionMapper());
+        environment.jersey().register(new TranslateSamlResponseBodyReader(
+            environment.getObjectMapper(),
+            configuration.getSamlPool().getInitialSize(),
+            configuration.getSamlPool().getMaxIdle()
+        ));
         environment.jersey().register(factory.getVersionNumberResource());
-        environment.jersey().register(factory.getGenerateAuthnRequestResource());
-        environment.jersey().register(factory.getTranslateSamlResponseResource());
+        WorkerPool workerPool = WorkerPool.create(configuration.getWorkerPool(), factory.getTenantAdmission(), environment.metrics());
+        environment.lifecycle().manage(workerPool);
+        ExecutorService batchExecutorService = createBatchExecutorService(environment);
 
-        environment.healthChecks().register("hubMetadata", factory.getHubMetadataHealthCheck());
-        environment.healthChecks().register("msaMetadata", factory.getMsaMetadataHealthCheck());
+        // The request and response pipelines don't share anything, so they're built at the same time
+        StartupTask<GenerateAuthnRequestResource> generateAuthnRequestResource = startupPlan.task(
+            "generateAuthnRequestResource",
+            () -> factory.getGenerateAuthnRequestResource(workerPool)
+        );
+        StartupTask<TranslateSamlResponseResource> translateSamlResponseResource = startupPlan.task(
+            "translateSamlResponseResource",
+            () -> factory.getTranslateSamlResponseResource(workerPool)
+        );
+        StartupTask<TranslateSamlResponsesResource> translateSamlResponsesResource = startupPlan.task(
+            "translateSamlResponsesResource",
+            () -> factory.getTranslateSamlResponsesResource(batchExecutorService, environment.getValidator()),
+            translateSamlResponseResource
+        );
+        environment.jersey().register(generateAuthnRequestResource.get());
+        environment.jersey().register(translateSamlResponseResource.get());
+        environment.jersey().register(translateSamlResponsesResource.get());
+
+        environment.lifecycle().manage(factory.getPregeneratedAuthnRequests());
+        environment.lifecycle().manage(factory.getAuditLog());
+        if (configuration.getMetadataSnapshots().isEnabled()) {
+            factory.getMetadataSnapshotters(metadataConfiguration -> new JerseyClientBuilder(environment)
+                    .using(metadataConfiguration.getJerseyClientConfiguration())
+                    .build(metadataConfiguration.getJerseyClientName() + "-snapshots"))
+                .forEach(environment.lifecycle()::manage);
+        }
+
+        environment.lifecycle().manage(factory.getHubMetadataMonitor());
+        environment.lifecycle().manage(factory.getMsaMetadataMonitor());
+        environment.healthChecks().register("hubMetadata", new MetadataHealthCheck(factory.getHubMetadataMonitor()));
+        environment.healthChecks().register("msaMetadata", new MetadataHealthCheck(factory.getMsaMetadataMonitor()));
+        if (configuration.getWarmUp().isEnabled()) {
+            // Generating the warm-up keys isn't needed to serve requests, so startup doesn't wait for it
+            StartupTask<WarmUp.Pipelines> warmUpPipelines = startupPlan.defer("warmUpPipelines", factory::createWarmUpPipelines);
+            WarmUp warmUp = new WarmUp(configuration.getWarmUp(), warmUpPipelines::get);
+            environment.lifecycle().manage(warmUp);
+            environment.healthChecks().register("warmUp", new WarmUpHealthCheck(warmUp));
+        }
+
+        AsyncAppenderMetrics.register(environment.metrics());
+        environment.admin().addServlet("prometheus", new PrometheusServlet(environment.metrics())).addMapping("/prometheus");
+        environment.admin().addServlet("startup", new StartupReportServlet(startupReport, environment.getObjectMapper())).addMapping("/startup");
+
+        environment.lifecycle().addServerLifecycleListener(new VerifyServiceProviderServerListener(environment, startupReport));
+        startupReport.endPhase("run");
+    }
 
-        environment.lifecycle().addServerLifecycleListener(new VerifyServiceProviderServerListener(environment));
+    private ExecutorService createBatchExecutorService(Environment environment) {
+        // Translation is CPU bound, so there's no benefit in running more threads than cores.
+        // When the queue is full the batch is rejected with a 503, rather than translated on the Jetty request thread.
+        int threads = Runtime.getRuntime().availableProcessors();
+        return environment.lifecycle().executorService("translate-responses-%d")
+            .minThreads(threads)
+            .maxThreads(threads)
+            .workQueue(new LinkedBlockingQueue<>(threads * TranslateSamlResponsesResource.MAX_BATCH_SIZE))
+            .rejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy())
+            .build();
     }
 }
@@ -0,0 +1,46 @@
+package uk.gov.ida.verifyserviceprovider.audit;
+
+import io.dropwizard.lifecycle.Managed;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+
+/**
+ * Keeps a record of every response translated and AuthnRequest generated.
+ */
+public interface AuditLog extends Managed {
+
+    /**
+     * @param scenario the scenario of the translated response, or null if it couldn't be translated
+     * @param pid the PID of the translated response, or null
+     * @param startNanos the {@link System#nanoTime()} when the translation started
+     */
+    void translation(String entityId, String requestId, LevelOfAssurance levelOfAssurance, Scenario scenario, String pid, long startNanos);
+
+    /**
+     * @param startNanos the {@link System#nanoTime()} when generating the request started
+     */
+    void generatedRequest(String entityId, String requestId, LevelOfAssurance levelOfAssurance, long startNanos);
+
+    /**
+     * Keeps no records.
+     */
+    static AuditLog disabled() {
+        return new AuditLog() {
+            @Override
+            public void translation(String entityId, String requestId, LevelOfAssurance levelOfAssurance, Scenario scenario, String pid, long startNanos) {
+            }
+
+            @Override
+            public void generatedRequest(String entityId, String requestId, LevelOfAssurance levelOfAssurance, long startNanos) {
+            }
+
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+        };
+    }
+}
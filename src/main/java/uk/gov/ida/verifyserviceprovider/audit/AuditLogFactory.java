@@ -0,0 +1,31 @@
+package uk.gov.ida.verifyserviceprovider.audit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import uk.gov.ida.verifyserviceprovider.configuration.AuditLogConfiguration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+public class AuditLogFactory {
+
+    private AuditLogFactory() {
+    }
+
+    public static AuditLog create(AuditLogConfiguration configuration, MetricRegistry metricRegistry) throws IOException {
+        if (!configuration.isEnabled()) {
+            return AuditLog.disabled();
+        }
+        MappedFileAuditLog auditLog = new MappedFileAuditLog(
+            Paths.get(configuration.getDirectory()),
+            configuration.getSegmentSize().toBytes(),
+            configuration.getMaxSegments(),
+            configuration.getFlushInterval(),
+            configuration.getPidDigestKey().getBytes(StandardCharsets.UTF_8)
+        );
+        metricRegistry.register(MetricRegistry.name(AuditLog.class, "records"), (Gauge<Long>) auditLog::getRecordCount);
+        metricRegistry.register(MetricRegistry.name(AuditLog.class, "dropped"), (Gauge<Long>) auditLog::getDroppedCount);
+        return auditLog;
+    }
+}
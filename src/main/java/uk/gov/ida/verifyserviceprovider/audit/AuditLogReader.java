@@ -0,0 +1,52 @@
+package uk.gov.ida.verifyserviceprovider.audit;
+
+import uk.gov.ida.verifyserviceprovider.utils.MappedBuffers;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads back the records written by a {@link MappedFileAuditLog}, oldest segment first. Within a segment,
+ * records are in the order they were claimed, which may differ slightly from the order of their times.
+ */
+public class AuditLogReader {
+
+    private AuditLogReader() {
+    }
+
+    public static void read(Path directory, Consumer<AuditRecord> consumer) throws IOException {
+        for (Path segment : MappedFileAuditLog.listSegments(directory)) {
+            readSegment(segment, consumer);
+        }
+    }
+
+    private static void readSegment(Path segment, Consumer<AuditRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, READ)) {
+            long size = channel.size();
+            if (size < AuditRecord.SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is not an audit log segment", segment));
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                buffer.order(MappedFileAuditLog.BYTE_ORDER);
+                if (buffer.getLong(0) != MappedFileAuditLog.MAGIC || buffer.getInt(8) != AuditRecord.SIZE) {
+                    throw new IOException(String.format("%s is not an audit log segment", segment));
+                }
+                for (int offset = AuditRecord.SIZE; offset + AuditRecord.SIZE <= size; offset += AuditRecord.SIZE) {
+                    AuditRecord record = AuditRecord.read(buffer, offset);
+                    if (record != null) {
+                        consumer.accept(record);
+                    }
+                }
+            } finally {
+                // Records are copied out of the buffer, so nothing refers to it once the segment has been read
+                MappedBuffers.unmap(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package uk.gov.ida.verifyserviceprovider.audit;
+
+import com.google.common.io.BaseEncoding;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One entry in the audit log, and the fixed layout it's written in.
+ *
+ * Each record takes {@link #SIZE} bytes, in the buffer's byte order:
+ * <pre>
+ *   0  long     time, in milliseconds since the epoch
+ *   8  long     latency, in nanoseconds
+ *  16  byte     type
+ *  17  byte     level of assurance, as its ordinal plus one, or zero if there isn't one
+ *  18  byte     scenario, as its ordinal plus one, {@link #ERROR} if translation failed or zero if there isn't one
+ *  19  byte     length of the request ID
+ *  20  byte     length of the entity ID
+ *  23  byte     one once the rest of the record has been written
+ *  24  32 bytes the HMAC-SHA256 of the PID, keyed with the audit log's PID digest key, or zeros if there isn't one
+ *  56  64 bytes the request ID
+ * 120 136 bytes the entity ID
+ * </pre>
+ * IDs longer than their field are truncated, and characters outside ASCII are written as {@code ?}.
+ */
+public class AuditRecord {
+
+    public static final int SIZE = 256;
+
+    public enum Type {
+        TRANSLATION,
+        GENERATED_REQUEST
+    }
+
+    private static final int LATENCY = 8;
+    private static final int TYPE = 16;
+    private static final int LEVEL_OF_ASSURANCE = 17;
+    private static final int SCENARIO = 18;
+    private static final int REQUEST_ID_LENGTH = 19;
+    private static final int ENTITY_ID_LENGTH = 20;
+    private static final int COMMITTED = 23;
+    private static final int PID_DIGEST = 24;
+    static final int PID_DIGEST_LENGTH = 32;
+    private static final int REQUEST_ID = 56;
+    private static final int REQUEST_ID_MAX_LENGTH = 64;
+    private static final int ENTITY_ID = 120;
+    private static final int ENTITY_ID_MAX_LENGTH = 136;
+    private static final byte ERROR = 127;
+
+    private final DateTime time;
+    private final long latencyNanos;
+    private final Type type;
+    private final String entityId;
+    private final String requestId;
+    private final LevelOfAssurance levelOfAssurance;
+    private final Scenario scenario;
+    private final boolean error;
+    private final String pidDigest;
+
+    private AuditRecord(DateTime time, long latencyNanos, Type type, String entityId, String requestId, LevelOfAssurance levelOfAssurance, Scenario scenario, boolean error, String pidDigest) {
+        this.time = time;
+        this.latencyNanos = latencyNanos;
+        this.type = type;
+        this.entityId = entityId;
+        this.requestId = requestId;
+        this.levelOfAssurance = levelOfAssurance;
+        this.scenario = scenario;
+        this.error = error;
+        this.pidDigest = pidDigest;
+    }
+
+    /**
+     * Writes a record at the offset, without changing the buffer's position. The record is marked as committed last,
+     * so one which is only partly written when the process stops isn't read back.
+     *
+     * @param scenario the scenario of a translated response, or null if it couldn't be translated or for a generated request
+     * @param pidDigest the {@link #PID_DIGEST_LENGTH} byte digest of the PID of a translated response, or null
+     */
+    static void write(ByteBuffer buffer, int offset, long timeMillis, long latencyNanos, Type type, String entityId, String requestId, LevelOfAssurance levelOfAssurance, Scenario scenario, byte[] pidDigest) {
+        buffer.putLong(offset, timeMillis);
+        buffer.putLong(offset + LATENCY, latencyNanos);
+        buffer.put(offset + TYPE, (byte) type.ordinal());
+        buffer.put(offset + LEVEL_OF_ASSURANCE, levelOfAssurance == null ? 0 : (byte) (levelOfAssurance.ordinal() + 1));
+        buffer.put(offset + SCENARIO, scenario != null ? (byte) (scenario.ordinal() + 1) : type == Type.TRANSLATION ? ERROR : 0);
+        buffer.put(offset + REQUEST_ID_LENGTH, (byte) putAscii(buffer, offset + REQUEST_ID, requestId, REQUEST_ID_MAX_LENGTH));
+        buffer.put(offset + ENTITY_ID_LENGTH, (byte) putAscii(buffer, offset + ENTITY_ID, entityId, ENTITY_ID_MAX_LENGTH));
+        if (pidDigest != null) {
+            for (int i = 0; i < PID_DIGEST_LENGTH; i++) {
+                buffer.put(offset + PID_DIGEST + i, pidDigest[i]);
+            }
+        }
+        buffer.put(offset + COMMITTED, (byte) 1);
+    }
+
+    /**
+     * @return the record at the offset, or null if nothing has been committed there
+     */
+    static AuditRecord read(ByteBuffer buffer, int offset) {
+        if (buffer.get(offset + COMMITTED) != 1) {
+            return null;
+        }
+        byte levelOfAssurance = buffer.get(offset + LEVEL_OF_ASSURANCE);
+        byte scenario = buffer.get(offset + SCENARIO);
+        byte[] pidDigest = new byte[PID_DIGEST_LENGTH];
+        for (int i = 0; i < PID_DIGEST_LENGTH; i++) {
+            pidDigest[i] = buffer.get(offset + PID_DIGEST + i);
+        }
+        return new AuditRecord(
+            new DateTime(buffer.getLong(offset), DateTimeZone.UTC),
+            buffer.getLong(offset + LATENCY),
+            Type.values()[buffer.get(offset + TYPE)],
+            getAscii(buffer, offset + ENTITY_ID, buffer.get(offset + ENTITY_ID_LENGTH) & 0xff),
+            getAscii(buffer, offset + REQUEST_ID, buffer.get(offset + REQUEST_ID_LENGTH) & 0xff),
+            levelOfAssurance == 0 ? null : LevelOfAssurance.values()[levelOfAssurance - 1],
+            scenario == 0 || scenario == ERROR ? null : Scenario.values()[scenario - 1],
+            scenario == ERROR,
+            Arrays.equals(pidDigest, new byte[PID_DIGEST_LENGTH]) ? null : BaseEncoding.base16().lowerCase().encode(pidDigest)
+        );
+    }
+
+    private static int putAscii(ByteBuffer buffer, int offset, String value, int maxLength) {
+        if (value == null) {
+            return 0;
+        }
+        int length = Math.min(value.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            buffer.put(offset + i, c < 0x80 ? (byte) c : (byte) '?');
+        }
+        return length;
+    }
+
+    private static String getAscii(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    public DateTime getTime() {
+        return time;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public LevelOfAssurance getLevelOfAssurance() {
+        return levelOfAssurance;
+    }
+
+    /**
+     * The scenario of a translated response, or null if it couldn't be translated or this is a generated request.
+     */
+    public Scenario getScenario() {
+        return scenario;
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    /**
+     * The HMAC-SHA256 of the PID in hex, or null if there wasn't one. The same PID only has the same digest
+     * in audit logs written with the same PID digest key.
+     */
+    public String getPidDigest() {
+        return pidDigest;
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\t",
+            time.toString(),
+            type.name(),
+            entityId,
+            requestId,
+            levelOfAssurance == null ? "-" : levelOfAssurance.name(),
+            error ? "ERROR" : scenario == null ? "-" : scenario.name(),
+            String.format("%.3fms", latencyNanos / 1_000_000.0),
+            pidDigest == null ? "-" : pidDigest
+        );
+    }
+}
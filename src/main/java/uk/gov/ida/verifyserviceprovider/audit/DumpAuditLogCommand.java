@@ -0,0 +1,70 @@
+package uk.gov.ida.verifyserviceprovider.audit;
+
+import io.dropwizard.cli.Command;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.joda.time.DateTime;
+
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.function.Predicate;
+
+/**
+ * Prints the records in an audit log directory, one per line, optionally only those for an entity ID,
+ * a request ID or since a time.
+ */
+public class DumpAuditLogCommand extends Command {
+
+    private final PrintStream out;
+
+    public DumpAuditLogCommand() {
+        this(System.out);
+    }
+
+    public DumpAuditLogCommand(PrintStream out) {
+        super("dump-audit-log", "Prints the records in an audit log directory, one per line");
+        this.out = out;
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        subparser.addArgument("directory")
+            .help("the audit log's directory");
+        subparser.addArgument("--entity-id")
+            .dest("entityId")
+            .help("only print records for this service entity ID");
+        subparser.addArgument("--request-id")
+            .dest("requestId")
+            .help("only print records for this request ID");
+        subparser.addArgument("--since")
+            .dest("since")
+            .help("only print records from this ISO-8601 time onwards");
+    }
+
+    @Override
+    public void run(Bootstrap<?> bootstrap, Namespace namespace) throws Exception {
+        Predicate<AuditRecord> filter = record -> true;
+        String entityId = namespace.getString("entityId");
+        if (entityId != null) {
+            filter = filter.and(record -> entityId.equals(record.getEntityId()));
+        }
+        String requestId = namespace.getString("requestId");
+        if (requestId != null) {
+            filter = filter.and(record -> requestId.equals(record.getRequestId()));
+        }
+        String since = namespace.getString("since");
+        if (since != null) {
+            DateTime sinceTime = DateTime.parse(since);
+            filter = filter.and(record -> !record.getTime().isBefore(sinceTime));
+        }
+
+        Predicate<AuditRecord> recordFilter = filter;
+        AuditLogReader.read(Paths.get(namespace.getString("directory")), record -> {
+            if (recordFilter.test(record)) {
+                out.println(record);
+            }
+        });
+        out.flush();
+    }
+}
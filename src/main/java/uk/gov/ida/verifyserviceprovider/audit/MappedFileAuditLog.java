@@ -0,0 +1,300 @@
+package uk.gov.ida.verifyserviceprovider.audit;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.ida.verifyserviceprovider.audit.AuditRecord.Type;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+import uk.gov.ida.verifyserviceprovider.utils.MappedBuffers;
+import uk.gov.ida.verifyserviceprovider.utils.RateLimitedLogger;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An audit log written to memory-mapped segment files, so that recording a request is a few writes to memory
+ * rather than a write to a file.
+ *
+ * A segment is a fixed size file of {@link AuditRecord}s, after a header taking the place of the first record.
+ * Writers claim the next record in the current segment with an atomic increment and fill it in without a lock.
+ * The writer which claims the first record past the end of a segment swaps in the next one, which a background
+ * thread has usually created already. The same thread forces segments to disk every flush interval, unmaps full
+ * segments once the last writer has finished with them, and deletes the oldest once there are more than the maximum
+ * number. The current segment is unmapped when the log is stopped, and records written after that are dropped.
+ *
+ * PIDs are recorded as their HMAC-SHA256 with a secret key, so a PID can't be found by hashing guesses at it
+ * without the key.
+ */
+public class MappedFileAuditLog implements AuditLog {
+
+    static final long MAGIC = 0x5653504175647432L; // "VSPAudt2"
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedFileAuditLog.class);
+    private static final RateLimitedLogger DROPPED_LOG = RateLimitedLogger.warningsFor(LOG);
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final Duration flushInterval;
+    private final HashFunction pidDigest;
+    private final AtomicLong nextSequence;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final Object rotationLock = new Object();
+    // Full segments, which are forced to disk once more and unmapped after the writers have moved on
+    private final Queue<Segment> retired = new ConcurrentLinkedQueue<>();
+    private volatile Segment current;
+    private Segment spare;
+    private boolean stopped;
+    private ScheduledExecutorService flusher;
+
+    public MappedFileAuditLog(Path directory, long segmentSize, int maxSegments, Duration flushInterval, byte[] pidDigestKey) throws IOException {
+        if (segmentSize > Integer.MAX_VALUE || segmentSize < 2 * AuditRecord.SIZE) {
+            throw new IllegalArgumentException(String.format("An audit log segment must be between %d and %d bytes", 2 * AuditRecord.SIZE, Integer.MAX_VALUE));
+        }
+        this.directory = directory;
+        this.recordsPerSegment = (int) (segmentSize / AuditRecord.SIZE);
+        this.maxSegments = maxSegments;
+        this.flushInterval = flushInterval;
+        this.pidDigest = Hashing.hmacSha256(pidDigestKey);
+
+        Files.createDirectories(directory);
+        // A new segment is started on every restart, so there's never a partly written one to find the end of
+        List<Path> segments = listSegments(directory);
+        this.nextSequence = new AtomicLong(segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1)) + 1);
+        this.current = openSegment();
+    }
+
+    @Override
+    public void translation(String entityId, String requestId, LevelOfAssurance levelOfAssurance, Scenario scenario, String pid, long startNanos) {
+        append(Type.TRANSLATION, entityId, requestId, levelOfAssurance, scenario, pid, startNanos);
+    }
+
+    @Override
+    public void generatedRequest(String entityId, String requestId, LevelOfAssurance levelOfAssurance, long startNanos) {
+        append(Type.GENERATED_REQUEST, entityId, requestId, levelOfAssurance, null, null, startNanos);
+    }
+
+    @Override
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("audit-log-flusher").setDaemon(true).build());
+        flusher.execute(this::flush);
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval.getMillis(), flushInterval.getMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        boolean flusherStopped = true;
+        if (flusher != null) {
+            flusher.shutdown();
+            flusherStopped = flusher.awaitTermination(flushInterval.getMillis() + 5000, TimeUnit.MILLISECONDS);
+        }
+        Segment last;
+        Segment unusedSpare;
+        synchronized (rotationLock) {
+            stopped = true;
+            last = current;
+            unusedSpare = spare;
+            spare = null;
+        }
+        // Writers which come after this find the segment full, and drop their records as there's no next one
+        last.nextRecord.set(recordsPerSegment);
+        retired.add(last);
+        if (unusedSpare != null) {
+            MappedBuffers.unmap(unusedSpare.buffer);
+            Files.deleteIfExists(unusedSpare.file);
+        }
+        if (!flusherStopped) {
+            // It may still be forcing the segments, so they're left to be unmapped when they're garbage collected
+            LOG.warn("The audit log flusher didn't stop in time, so the audit log segments weren't unmapped");
+            return;
+        }
+        closeRetiredSegments();
+        // There's no spare segment to make room for now
+        deleteOldSegments(maxSegments - 1);
+    }
+
+    public long getRecordCount() {
+        return records.sum();
+    }
+
+    /**
+     * The number of records which couldn't be written because a new segment couldn't be created,
+     * or because the log had been stopped.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void append(Type type, String entityId, String requestId, LevelOfAssurance levelOfAssurance, Scenario scenario, String pid, long startNanos) {
+        long latencyNanos = System.nanoTime() - startNanos;
+        byte[] digest = pid == null ? null : pidDigest.hashString(pid, StandardCharsets.UTF_8).asBytes();
+        Segment segment = current;
+        while (true) {
+            // Counted before claiming a record, so a segment isn't unmapped while a record claimed in it is written
+            segment.writers.incrementAndGet();
+            try {
+                int record = segment.nextRecord.getAndIncrement();
+                if (record < recordsPerSegment) {
+                    AuditRecord.write(segment.buffer, record * AuditRecord.SIZE, DateTimeUtils.currentTimeMillis(), latencyNanos, type, entityId, requestId, levelOfAssurance, scenario, digest);
+                    records.increment();
+                    return;
+                }
+            } finally {
+                segment.writers.decrementAndGet();
+            }
+            segment = nextSegment(segment);
+            if (segment == null) {
+                dropped.increment();
+                return;
+            }
+        }
+    }
+
+    private Segment nextSegment(Segment full) {
+        synchronized (rotationLock) {
+            if (stopped) {
+                return null;
+            }
+            if (current == full) {
+                try {
+                    Segment next = spare != null ? spare : openSegment();
+                    spare = null;
+                    retired.add(full);
+                    current = next;
+                } catch (IOException e) {
+                    DROPPED_LOG.warn("Failed to create an audit log segment, so the record was dropped", e);
+                    return null;
+                }
+            }
+            return current;
+        }
+    }
+
+    private void flush() {
+        try {
+            closeRetiredSegments();
+            current.buffer.force();
+
+            Segment expectedCurrent;
+            synchronized (rotationLock) {
+                expectedCurrent = spare == null ? current : null;
+            }
+            if (expectedCurrent != null) {
+                Segment newSpare = openSegment();
+                boolean installed;
+                synchronized (rotationLock) {
+                    // A writer which started a segment in the meantime has one newer than this, which must stay the newest
+                    installed = spare == null && current == expectedCurrent;
+                    if (installed) {
+                        spare = newSpare;
+                    }
+                }
+                if (!installed) {
+                    MappedBuffers.unmap(newSpare.buffer);
+                    Files.deleteIfExists(newSpare.file);
+                }
+            }
+            deleteOldSegments(maxSegments);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to flush the audit log", e);
+        }
+    }
+
+    /**
+     * Forces each full segment to disk, and unmaps it once no writer is still filling in a record in it.
+     * No writer can claim a record in a full segment, so once none is writing it is never written again.
+     */
+    private void closeRetiredSegments() {
+        List<Segment> stillWriting = new ArrayList<>();
+        Segment segment;
+        while ((segment = retired.poll()) != null) {
+            boolean finished = segment.writers.get() == 0;
+            segment.buffer.force();
+            if (finished) {
+                MappedBuffers.unmap(segment.buffer);
+            } else {
+                stillWriting.add(segment);
+            }
+        }
+        retired.addAll(stillWriting);
+    }
+
+    private void deleteOldSegments(int segmentsToKeep) throws IOException {
+        List<Path> segments = listSegments(directory);
+        // The current and spare segments are always the newest
+        for (int i = 0; i < segments.size() - segmentsToKeep; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    private Segment openSegment() throws IOException {
+        Path file = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, nextSequence.getAndIncrement(), SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, CREATE_NEW, READ, WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * AuditRecord.SIZE);
+            buffer.order(BYTE_ORDER);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, AuditRecord.SIZE);
+            return new Segment(file, buffer);
+        }
+    }
+
+    /**
+     * The segment files in a directory, oldest first.
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX) && file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static class Segment {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        // The header takes the place of the first record
+        private final AtomicInteger nextRecord = new AtomicInteger(1);
+        private final AtomicInteger writers = new AtomicInteger();
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
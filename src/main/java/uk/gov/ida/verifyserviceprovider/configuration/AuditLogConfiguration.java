@@ -0,0 +1,108 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Size;
+import io.dropwizard.util.SizeUnit;
+import io.dropwizard.validation.MaxSize;
+import io.dropwizard.validation.MinSize;
+import io.dropwizard.validation.ValidationMethod;
+import org.joda.time.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import static java.util.Optional.ofNullable;
+
+public class AuditLogConfiguration {
+
+    private static final Size DEFAULT_SEGMENT_SIZE = Size.megabytes(64);
+    private static final int DEFAULT_MAX_SEGMENTS = 16;
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.standardSeconds(1);
+    private static final int MIN_PID_DIGEST_KEY_LENGTH = 32;
+
+    private final boolean enabled;
+    private final String directory;
+    private final Size segmentSize;
+    private final int maxSegments;
+    private final Duration flushInterval;
+    private final String pidDigestKey;
+
+    @JsonCreator
+    public AuditLogConfiguration(
+        @JsonProperty("enabled") Boolean enabled,
+        @JsonProperty("directory") String directory,
+        @JsonProperty("segmentSize") Size segmentSize,
+        @JsonProperty("maxSegments") Integer maxSegments,
+        @JsonProperty("flushInterval") Duration flushInterval,
+        @JsonProperty("pidDigestKey") String pidDigestKey
+    ) {
+        this.enabled = ofNullable(enabled).orElse(false);
+        this.directory = directory;
+        this.segmentSize = ofNullable(segmentSize).orElse(DEFAULT_SEGMENT_SIZE);
+        this.maxSegments = ofNullable(maxSegments).orElse(DEFAULT_MAX_SEGMENTS);
+        this.flushInterval = ofNullable(flushInterval).orElse(DEFAULT_FLUSH_INTERVAL);
+        this.pidDigestKey = pidDigestKey;
+    }
+
+    /**
+     * Whether a record of each translated response and generated request is written to the audit log.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The directory the audit log's segment files are written to.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * The size of each segment file. A new segment is started when one is full.
+     */
+    @NotNull
+    @MinSize(value = 1, unit = SizeUnit.MEGABYTES)
+    @MaxSize(value = 1, unit = SizeUnit.GIGABYTES)
+    public Size getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * The most segment files kept. Once there are more, the oldest is deleted.
+     */
+    @Min(2)
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    /**
+     * How often records are forced to disk.
+     */
+    @NotNull
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * The secret key of the HMAC which PIDs are recorded as, so that they can be matched up with each other
+     * but not with PIDs from elsewhere.
+     */
+    public String getPidDigestKey() {
+        return pidDigestKey;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "directory must be set when the audit log is enabled")
+    public boolean isDirectorySetWhenRequired() {
+        return !enabled || directory != null;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "pidDigestKey must be at least 32 characters when the audit log is enabled")
+    public boolean isPidDigestKeySetWhenRequired() {
+        return !enabled || (pidDigestKey != null && pidDigestKey.length() >= MIN_PID_DIGEST_KEY_LENGTH);
+    }
+}
@@ -27,6 +27,7 @@ public class HubMetadataConfiguration extends MetadataConfiguration {
 
     private HubEnvironment environment;
     private final TrustStoreConfiguration trustStoreConfiguration;
+    private volatile KeyStore trustStore;
 
     @JsonCreator
     public HubMetadataConfiguration(
@@ -57,10 +58,18 @@ public class HubMetadataConfiguration extends MetadataConfiguration {
         return ofNullable(super.getExpectedEntityId()).orElseGet(() -> generateExpectedEntityId(environment));
     }
 
+    /**
+     * The trust store is loaded the first time it's needed, and the same one is returned after that.
+     */
     @Override
     public KeyStore getTrustStore() {
-        return validateTruststore(ofNullable(trustStoreConfiguration)
-                .orElseGet(() -> new DefaultHubTrustStoreConfiguration(environment)).getTrustStore());
+        KeyStore loaded = trustStore;
+        if (loaded == null) {
+            loaded = validateTruststore(ofNullable(trustStoreConfiguration)
+                    .orElseGet(() -> new DefaultHubTrustStoreConfiguration(environment)).getTrustStore());
+            trustStore = loaded;
+        }
+        return loaded;
     }
 
     private static String generateExpectedEntityId(HubEnvironment hubEnvironment) {
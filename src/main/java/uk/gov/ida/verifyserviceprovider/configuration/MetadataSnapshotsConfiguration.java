@@ -0,0 +1,54 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.validation.ValidationMethod;
+import org.joda.time.Duration;
+
+import javax.validation.constraints.NotNull;
+
+import static java.util.Optional.ofNullable;
+
+public class MetadataSnapshotsConfiguration {
+
+    private static final Duration DEFAULT_INTERVAL = Duration.standardMinutes(10);
+
+    private final String directory;
+    private final Duration interval;
+
+    @JsonCreator
+    public MetadataSnapshotsConfiguration(
+        @JsonProperty("directory") String directory,
+        @JsonProperty("interval") Duration interval
+    ) {
+        this.directory = directory;
+        this.interval = ofNullable(interval).orElse(DEFAULT_INTERVAL);
+    }
+
+    /**
+     * The directory the last verified hub and MSA metadata are kept in, or null to not keep them.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * How often the metadata is fetched, verified and saved.
+     */
+    @NotNull
+    public Duration getInterval() {
+        return interval;
+    }
+
+    @JsonIgnore
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "interval must be at least 1 second")
+    public boolean isIntervalAtLeastASecond() {
+        return interval != null && interval.getStandardSeconds() >= 1;
+    }
+}
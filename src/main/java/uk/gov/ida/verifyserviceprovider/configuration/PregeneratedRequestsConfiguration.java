@@ -0,0 +1,74 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.validation.ValidationMethod;
+import org.joda.time.Duration;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import static java.util.Optional.ofNullable;
+
+public class PregeneratedRequestsConfiguration {
+
+    private static final int DEFAULT_QUEUE_SIZE = 20;
+    private static final Duration DEFAULT_MAX_AGE = Duration.standardMinutes(1);
+    // The hub rejects an AuthnRequest issued more than five minutes ago, and the user still has to get there
+    private static final Duration LONGEST_MAX_AGE = Duration.standardMinutes(4);
+
+    private final boolean enabled;
+    private final int queueSize;
+    private final Duration maxAge;
+    private final int threads;
+
+    @JsonCreator
+    public PregeneratedRequestsConfiguration(
+        @JsonProperty("enabled") Boolean enabled,
+        @JsonProperty("queueSize") Integer queueSize,
+        @JsonProperty("maxAge") Duration maxAge,
+        @JsonProperty("threads") Integer threads
+    ) {
+        this.enabled = ofNullable(enabled).orElse(false);
+        this.queueSize = ofNullable(queueSize).orElse(DEFAULT_QUEUE_SIZE);
+        this.maxAge = ofNullable(maxAge).orElse(DEFAULT_MAX_AGE);
+        this.threads = ofNullable(threads).orElse(1);
+    }
+
+    /**
+     * Whether AuthnRequests are generated and signed ahead of time on background threads.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The number of requests kept ready for each service entity ID and level of assurance.
+     */
+    @Min(1)
+    @Max(1000)
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * How long a request is kept before it's discarded and generated again.
+     */
+    @NotNull
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    @Min(1)
+    public int getThreads() {
+        return threads;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "maxAge must be between 1 second and 4 minutes")
+    public boolean isMaxAgeWithinHubTolerance() {
+        return maxAge != null && maxAge.getStandardSeconds() >= 1 && !maxAge.isLongerThan(LONGEST_MAX_AGE);
+    }
+}
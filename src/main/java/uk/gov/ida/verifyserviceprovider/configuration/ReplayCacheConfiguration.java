@@ -0,0 +1,76 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import static java.util.Optional.ofNullable;
+
+public class ReplayCacheConfiguration {
+
+    private static final int DEFAULT_MAX_ENTRIES = 100000;
+    // Each ID held on the heap takes a couple of hundred bytes, so this is a few hundred megabytes
+    private static final int MAX_IN_MEMORY_ENTRIES = 2000000;
+
+    public enum Type {
+        IN_MEMORY,
+        MAPPED_FILE
+    }
+
+    private final Type type;
+    private final int maxEntries;
+    private final String file;
+
+    @JsonCreator
+    public ReplayCacheConfiguration(
+        @JsonProperty("type") Type type,
+        @JsonProperty("maxEntries") Integer maxEntries,
+        @JsonProperty("file") String file
+    ) {
+        this.type = ofNullable(type).orElse(Type.IN_MEMORY);
+        this.maxEntries = ofNullable(maxEntries).orElse(DEFAULT_MAX_ENTRIES);
+        this.file = file;
+    }
+
+    /**
+     * Whether Response and Assertion IDs are remembered on the heap or in a memory-mapped file.
+     */
+    @NotNull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * The most IDs remembered at once. Once full, an IN_MEMORY cache forgets the oldest ID added to the
+     * part of the cache the new ID belongs in, and a MAPPED_FILE cache the one closest to expiry.
+     */
+    @Min(1)
+    @Max(80000000)
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * The path of the file used by the MAPPED_FILE cache.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "file must be set when type is MAPPED_FILE")
+    public boolean isFileSetWhenRequired() {
+        return type != Type.MAPPED_FILE || file != null;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "maxEntries must be no more than 2000000 when type is IN_MEMORY")
+    public boolean isMaxEntriesWithinHeapLimit() {
+        return type != Type.IN_MEMORY || maxEntries <= MAX_IN_MEMORY_ENTRIES;
+    }
+}
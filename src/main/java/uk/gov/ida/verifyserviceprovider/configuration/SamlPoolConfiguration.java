@@ -0,0 +1,43 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Sizes the pools of SAML parsers and assertion decrypters used to translate responses.
+ * The pools never make a request wait, so there is no limit on the number of parsers in use at once.
+ */
+public class SamlPoolConfiguration {
+
+    private final int initialSize;
+    private final int maxIdle;
+
+    @JsonCreator
+    public SamlPoolConfiguration(
+        @JsonProperty("initialSize") Integer initialSize,
+        @JsonProperty("maxIdle") Integer maxIdle
+    ) {
+        this.initialSize = ofNullable(initialSize).orElse(Runtime.getRuntime().availableProcessors());
+        this.maxIdle = ofNullable(maxIdle).orElse(Math.max(this.initialSize, 2 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * The number of parsers and decrypters created at startup.
+     */
+    @Min(0)
+    public int getInitialSize() {
+        return initialSize;
+    }
+
+    /**
+     * The most parsers and decrypters kept once a burst of requests has passed.
+     */
+    @Min(1)
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+}
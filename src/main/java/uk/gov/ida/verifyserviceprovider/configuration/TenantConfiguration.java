@@ -0,0 +1,63 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.NotNull;
+import java.security.PrivateKey;
+
+/**
+ * A service entity ID listed in the tenants file, with any keys it uses in place of the top-level ones.
+ */
+public class TenantConfiguration {
+
+    private final String entityId;
+    private final PrivateKey samlSigningKey;
+    private final PrivateKey samlPrimaryEncryptionKey;
+    private final PrivateKey samlSecondaryEncryptionKey;
+
+    @JsonCreator
+    public TenantConfiguration(
+        @JsonProperty("entityId") String entityId,
+        @JsonProperty("samlSigningKey") @JsonDeserialize(using = PrivateKeyDeserializer.class) PrivateKey samlSigningKey,
+        @JsonProperty("samlPrimaryEncryptionKey") @JsonDeserialize(using = PrivateKeyDeserializer.class) PrivateKey samlPrimaryEncryptionKey,
+        @JsonProperty("samlSecondaryEncryptionKey") @JsonDeserialize(using = PrivateKeyDeserializer.class) PrivateKey samlSecondaryEncryptionKey
+    ) {
+        this.entityId = entityId;
+        this.samlSigningKey = samlSigningKey;
+        this.samlPrimaryEncryptionKey = samlPrimaryEncryptionKey;
+        this.samlSecondaryEncryptionKey = samlSecondaryEncryptionKey;
+    }
+
+    @NotNull
+    public String getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * Defaults to the top-level samlSigningKey.
+     */
+    public PrivateKey getSamlSigningKey() {
+        return samlSigningKey;
+    }
+
+    /**
+     * Defaults to the top-level samlPrimaryEncryptionKey and samlSecondaryEncryptionKey.
+     */
+    public PrivateKey getSamlPrimaryEncryptionKey() {
+        return samlPrimaryEncryptionKey;
+    }
+
+    public PrivateKey getSamlSecondaryEncryptionKey() {
+        return samlSecondaryEncryptionKey;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "samlSecondaryEncryptionKey can only be set with a samlPrimaryEncryptionKey")
+    public boolean isSecondaryEncryptionKeyWithPrimary() {
+        return samlSecondaryEncryptionKey == null || samlPrimaryEncryptionKey != null;
+    }
+}
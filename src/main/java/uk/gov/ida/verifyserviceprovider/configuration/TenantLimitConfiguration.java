@@ -0,0 +1,54 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * The request quota and worker pool share for one service entity ID.
+ */
+public class TenantLimitConfiguration {
+
+    private final Double requestsPerSecond;
+    private final Integer burst;
+    private final int weight;
+
+    @JsonCreator
+    public TenantLimitConfiguration(
+        @JsonProperty("requestsPerSecond") Double requestsPerSecond,
+        @JsonProperty("burst") Integer burst,
+        @JsonProperty("weight") Integer weight
+    ) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.weight = ofNullable(weight).orElse(1);
+    }
+
+    /**
+     * The sustained rate of requests accepted, or null if there is no limit.
+     */
+    @DecimalMin("0.001")
+    public Double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    /**
+     * The number of requests which can be accepted at once after a quiet period. Defaults to one second's worth.
+     */
+    @Min(1)
+    public int getBurst() {
+        return ofNullable(burst).orElseGet(() -> requestsPerSecond == null ? 1 : (int) Math.max(1, Math.ceil(requestsPerSecond)));
+    }
+
+    /**
+     * The share of the worker pool given to this entity ID when requests are waiting, relative to the others.
+     */
+    @Min(1)
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,49 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.Map;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Limits the requests accepted for each service entity ID, so that a burst of traffic for one
+ * service doesn't slow down the others.
+ */
+public class TenantLimitsConfiguration {
+
+    private final TenantLimitConfiguration defaultLimit;
+    private final Map<String, TenantLimitConfiguration> serviceEntityIds;
+
+    @JsonCreator
+    public TenantLimitsConfiguration(
+        @JsonProperty("default") TenantLimitConfiguration defaultLimit,
+        @JsonProperty("serviceEntityIds") Map<String, TenantLimitConfiguration> serviceEntityIds
+    ) {
+        this.defaultLimit = ofNullable(defaultLimit).orElseGet(() -> new TenantLimitConfiguration(null, null, null));
+        this.serviceEntityIds = ofNullable(serviceEntityIds).orElse(Collections.emptyMap());
+    }
+
+    /**
+     * The limit for entity IDs which aren't listed. Defaults to no limit and a weight of 1.
+     */
+    @NotNull
+    @Valid
+    public TenantLimitConfiguration getDefault() {
+        return defaultLimit;
+    }
+
+    @NotNull
+    @Valid
+    public Map<String, TenantLimitConfiguration> getServiceEntityIds() {
+        return serviceEntityIds;
+    }
+
+    public TenantLimitConfiguration getLimitFor(String entityId) {
+        return serviceEntityIds.getOrDefault(entityId, defaultLimit);
+    }
+}
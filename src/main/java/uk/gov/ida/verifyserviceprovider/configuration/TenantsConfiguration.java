@@ -0,0 +1,59 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.configuration.ConfigurationException;
+import io.dropwizard.configuration.YamlConfigurationFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * The contents of the tenants file, which lists service entity IDs separately from the main configuration
+ * so that a large number of them, and their keys, can be managed on their own.
+ */
+public class TenantsConfiguration {
+
+    private final List<TenantConfiguration> tenants;
+
+    @JsonCreator
+    public TenantsConfiguration(@JsonProperty("tenants") List<TenantConfiguration> tenants) {
+        this.tenants = ofNullable(tenants).orElse(Collections.emptyList());
+    }
+
+    /**
+     * Reads and validates a tenants file, failing with the same messages as the main configuration.
+     */
+    public static TenantsConfiguration load(File tenantsFile) throws IOException, ConfigurationException {
+        return new YamlConfigurationFactory<>(
+            TenantsConfiguration.class,
+            Validators.newValidator(),
+            Jackson.newObjectMapper(),
+            "tenants."
+        ).build(tenantsFile);
+    }
+
+    @NotNull
+    @Valid
+    public List<TenantConfiguration> getTenants() {
+        return tenants;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "each entityId may only be listed once")
+    public boolean isEachEntityIdListedOnce() {
+        return tenants.stream().map(TenantConfiguration::getEntityId).filter(Objects::nonNull).distinct().count()
+            == tenants.stream().map(TenantConfiguration::getEntityId).filter(Objects::nonNull).count();
+    }
+}
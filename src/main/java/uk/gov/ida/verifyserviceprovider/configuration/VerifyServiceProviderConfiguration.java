@@ -8,6 +8,7 @@ import org.joda.time.Duration;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
+import java.io.File;
 import java.net.URI;
 import java.security.PrivateKey;
 import java.util.List;
@@ -54,6 +55,49 @@ public class VerifyServiceProviderConfiguration extends Configuration {
     @Valid
     private Duration clockSkew;
 
+    @JsonProperty
+    @NotNull
+    @Valid
+    private WorkerPoolConfiguration workerPool = new WorkerPoolConfiguration(null, null, null, null);
+
+    @JsonProperty
+    @NotNull
+    @Valid
+    private SamlPoolConfiguration samlPool = new SamlPoolConfiguration(null, null);
+
+    @JsonProperty
+    @NotNull
+    @Valid
+    private ReplayCacheConfiguration replayCache = new ReplayCacheConfiguration(null, null, null);
+
+    @JsonProperty
+    @NotNull
+    @Valid
+    private PregeneratedRequestsConfiguration pregeneratedRequests = new PregeneratedRequestsConfiguration(null, null, null, null);
+
+    @JsonProperty
+    @NotNull
+    @Valid
+    private TenantLimitsConfiguration tenantLimits = new TenantLimitsConfiguration(null, null);
+
+    @JsonProperty
+    @NotNull
+    @Valid
+    private AuditLogConfiguration auditLog = new AuditLogConfiguration(null, null, null, null, null, null);
+
+    @JsonProperty
+    @NotNull
+    @Valid
+    private MetadataSnapshotsConfiguration metadataSnapshots = new MetadataSnapshotsConfiguration(null, null);
+
+    @JsonProperty
+    @NotNull
+    @Valid
+    private WarmUpConfiguration warmUp = new WarmUpConfiguration(null, null, null, null);
+
+    @JsonProperty
+    private File tenantsFile;
+
     public List<String> getServiceEntityIds() {
         return serviceEntityIds;
     }
@@ -85,4 +129,43 @@ public class VerifyServiceProviderConfiguration extends Configuration {
     public Duration getClockSkew() {
         return clockSkew;
     }
+
+    public WorkerPoolConfiguration getWorkerPool() {
+        return workerPool;
+    }
+
+    public SamlPoolConfiguration getSamlPool() {
+        return samlPool;
+    }
+
+    public ReplayCacheConfiguration getReplayCache() {
+        return replayCache;
+    }
+
+    public PregeneratedRequestsConfiguration getPregeneratedRequests() {
+        return pregeneratedRequests;
+    }
+
+    public TenantLimitsConfiguration getTenantLimits() {
+        return tenantLimits;
+    }
+
+    public AuditLogConfiguration getAuditLog() {
+        return auditLog;
+    }
+
+    public MetadataSnapshotsConfiguration getMetadataSnapshots() {
+        return metadataSnapshots;
+    }
+
+    public WarmUpConfiguration getWarmUp() {
+        return warmUp;
+    }
+
+    /**
+     * An optional YAML file listing more service entity IDs, each of which can have its own keys.
+     */
+    public File getTenantsFile() {
+        return tenantsFile;
+    }
 }
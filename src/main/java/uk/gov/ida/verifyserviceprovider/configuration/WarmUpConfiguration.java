@@ -0,0 +1,77 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.validation.ValidationMethod;
+import org.joda.time.Duration;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import static java.util.Optional.ofNullable;
+
+public class WarmUpConfiguration {
+
+    private static final int DEFAULT_MAX_ITERATIONS = 10_000;
+    private static final Duration DEFAULT_MAX_DURATION = Duration.standardMinutes(2);
+    private static final int DEFAULT_TOLERANCE_PERCENT = 10;
+
+    private final boolean enabled;
+    private final int maxIterations;
+    private final Duration maxDuration;
+    private final int tolerancePercent;
+
+    @JsonCreator
+    public WarmUpConfiguration(
+        @JsonProperty("enabled") Boolean enabled,
+        @JsonProperty("maxIterations") Integer maxIterations,
+        @JsonProperty("maxDuration") Duration maxDuration,
+        @JsonProperty("tolerancePercent") Integer tolerancePercent
+    ) {
+        this.enabled = ofNullable(enabled).orElse(false);
+        this.maxIterations = ofNullable(maxIterations).orElse(DEFAULT_MAX_ITERATIONS);
+        this.maxDuration = ofNullable(maxDuration).orElse(DEFAULT_MAX_DURATION);
+        this.tolerancePercent = ofNullable(tolerancePercent).orElse(DEFAULT_TOLERANCE_PERCENT);
+    }
+
+    /**
+     * Whether synthetic requests and responses are run through the SAML pipelines at startup,
+     * with the readiness health check failing until they're done.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The most requests and responses generated and translated before warm-up ends.
+     */
+    @Min(1)
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * The longest warm-up can take.
+     */
+    @NotNull
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * How close, as a percentage, the mean latency of consecutive batches must be for it to have settled.
+     */
+    @Min(1)
+    @Max(100)
+    public int getTolerancePercent() {
+        return tolerancePercent;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "maxDuration must be at least 1 second")
+    public boolean isMaxDurationAtLeastASecond() {
+        return maxDuration != null && maxDuration.getStandardSeconds() >= 1;
+    }
+}
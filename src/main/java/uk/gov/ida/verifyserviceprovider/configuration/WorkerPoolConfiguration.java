@@ -0,0 +1,54 @@
+package uk.gov.ida.verifyserviceprovider.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.joda.time.Duration;
+
+import javax.validation.constraints.Min;
+
+import static java.util.Optional.ofNullable;
+
+public class WorkerPoolConfiguration {
+
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.standardSeconds(1);
+
+    private final boolean async;
+    private final int threads;
+    private final int queueSize;
+    private final Duration retryAfter;
+
+    @JsonCreator
+    public WorkerPoolConfiguration(
+        @JsonProperty("async") Boolean async,
+        @JsonProperty("threads") Integer threads,
+        @JsonProperty("queueSize") Integer queueSize,
+        @JsonProperty("retryAfter") Duration retryAfter
+    ) {
+        this.async = ofNullable(async).orElse(false);
+        this.threads = ofNullable(threads).orElse(Runtime.getRuntime().availableProcessors());
+        this.queueSize = ofNullable(queueSize).orElse(DEFAULT_QUEUE_SIZE);
+        this.retryAfter = ofNullable(retryAfter).orElse(DEFAULT_RETRY_AFTER);
+    }
+
+    /**
+     * Whether requests are translated and generated on the worker pool rather than on the Jetty request thread.
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    @Min(1)
+    public int getThreads() {
+        return threads;
+    }
+
+    @Min(1)
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
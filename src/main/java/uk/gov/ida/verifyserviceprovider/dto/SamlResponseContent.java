@@ -0,0 +1,110 @@
+package uk.gov.ida.verifyserviceprovider.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import uk.gov.ida.verifyserviceprovider.saml.DecodedSamlResponseBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The samlResponse of a translate request. This is either the base64 encoded string from
+ * the request body, or the response already decoded into a buffer by
+ * {@link uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponseBodyReader}.
+ *
+ * A decoded response's buffer is borrowed from a pool, and is given back by {@link #release()}.
+ * It can't be read afterwards, as the buffer may by then hold another request's response.
+ */
+public class SamlResponseContent {
+
+    private final String base64EncodedSamlResponse;
+    private final boolean notBase64;
+    private DecodedSamlResponseBuffer decodedSamlResponse;
+    private boolean released;
+
+    private SamlResponseContent(String base64EncodedSamlResponse, DecodedSamlResponseBuffer decodedSamlResponse, boolean notBase64) {
+        this.base64EncodedSamlResponse = base64EncodedSamlResponse;
+        this.decodedSamlResponse = decodedSamlResponse;
+        this.notBase64 = notBase64;
+    }
+
+    @JsonCreator
+    public static SamlResponseContent fromBase64(String base64EncodedSamlResponse) {
+        return new SamlResponseContent(base64EncodedSamlResponse, null, false);
+    }
+
+    public static SamlResponseContent fromDecoded(DecodedSamlResponseBuffer decodedSamlResponse) {
+        return new SamlResponseContent(null, decodedSamlResponse, false);
+    }
+
+    /**
+     * A samlResponse which couldn't be decoded as it was read, so isn't kept.
+     */
+    public static SamlResponseContent notBase64() {
+        return new SamlResponseContent(null, null, true);
+    }
+
+    public boolean isNotBase64() {
+        return notBase64;
+    }
+
+    public synchronized Optional<DecodedSamlResponseBuffer> getDecoded() {
+        checkNotReleased();
+        return Optional.ofNullable(decodedSamlResponse);
+    }
+
+    @JsonValue
+    public synchronized String getBase64Encoded() {
+        checkNotReleased();
+        if (decodedSamlResponse == null) {
+            return base64EncodedSamlResponse;
+        }
+        try {
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            decodedSamlResponse.writeTo(decoded);
+            return Base64.getEncoder().encodeToString(decoded.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gives a decoded response's buffer back to its pool. This can be called more than once.
+     */
+    public synchronized void release() {
+        if (decodedSamlResponse != null) {
+            decodedSamlResponse.release();
+            decodedSamlResponse = null;
+            released = true;
+        }
+    }
+
+    private void checkNotReleased() {
+        if (released) {
+            throw new IllegalStateException("The decoded samlResponse has been released");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SamlResponseContent that = (SamlResponseContent) o;
+        return Objects.equals(base64EncodedSamlResponse, that.base64EncodedSamlResponse) &&
+            notBase64 == that.notBase64 &&
+            decodedSamlResponse == that.decodedSamlResponse;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(base64EncodedSamlResponse, notBase64, decodedSamlResponse);
+    }
+}
@@ -6,14 +6,14 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import javax.validation.constraints.NotNull;
 
 public class TranslateSamlResponseBody {
-    private final String samlResponse;
+    private final SamlResponseContent samlResponse;
     private final String requestId;
     private final LevelOfAssurance levelOfAssurance;
     private final String entityId;
 
     @JsonCreator
     public TranslateSamlResponseBody(
-        @JsonProperty(value = "samlResponse") String samlResponse,
+        @JsonProperty(value = "samlResponse") SamlResponseContent samlResponse,
         @JsonProperty(value = "requestId") String requestId,
         @JsonProperty(value = "levelOfAssurance") LevelOfAssurance levelOfAssurance,
         @JsonProperty(value = "entityId") String entityId
@@ -25,7 +25,7 @@ public class TranslateSamlResponseBody {
     }
 
     @NotNull
-    public String getSamlResponse() {
+    public SamlResponseContent getSamlResponse() {
         return samlResponse;
     }
 
@@ -12,7 +12,7 @@ public class InvalidEntityIdExceptionMapper implements ExceptionMapper<InvalidEn
 
     @Override
     public Response toResponse(InvalidEntityIdException exception) {
-        LOG.warn(String.format("Request invalid for this service provider. %s", exception.getMessage()));
+        LOG.warn("Request invalid for this service provider. {}", exception.getMessage());
 
         return Response
             .status(HttpStatus.SC_BAD_REQUEST)
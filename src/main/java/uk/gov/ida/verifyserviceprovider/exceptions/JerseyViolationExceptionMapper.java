@@ -19,7 +19,7 @@ public class JerseyViolationExceptionMapper implements ExceptionMapper<JerseyVio
             .stream().map(violation -> ConstraintMessage.getMessage(violation, exception.getInvocable()))
             .collect(Collectors.joining(", "));
 
-        LOG.warn(String.format("Request body was not valid: %s", errors));
+        LOG.warn("Request body was not valid: {}", errors);
 
         return Response
             .status(HttpStatus.SC_UNPROCESSABLE_ENTITY)
@@ -13,7 +13,7 @@ public class JsonProcessingExceptionMapper implements ExceptionMapper<JsonProces
 
     @Override
     public Response toResponse(JsonProcessingException exception) {
-        LOG.warn(String.format("Unable to parse json in request body. %s", exception.getOriginalMessage()));
+        LOG.warn("Unable to parse json in request body. {}", exception.getOriginalMessage());
 
         return Response
             .status(HttpStatus.SC_UNPROCESSABLE_ENTITY)
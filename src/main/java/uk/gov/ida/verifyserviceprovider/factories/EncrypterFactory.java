@@ -1,21 +1,143 @@
 package uk.gov.ida.verifyserviceprovider.factories;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.joda.time.DateTime;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.EncryptedAttribute;
 import org.opensaml.saml.saml2.encryption.Encrypter;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.encryption.support.EncryptionException;
 import uk.gov.ida.saml.security.EncryptionCredentialResolver;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataSupport;
+import uk.gov.ida.verifyserviceprovider.utils.ObjectPool;
 
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Creates Encrypters for the hub's encryption credential.
+ *
+ * The credential is resolved from metadata once, along with a pool of Encrypters set up for it,
+ * and both are replaced the first time they're used after the hub metadata has been updated or has
+ * expired. Nothing is cached if the hub metadata resolver can't say when it was last updated, or the
+ * hub's metadata can't be read to find when it expires. The credential is then resolved each time
+ * it's needed, and a new Encrypter created for each encryption.
+ */
 public class EncrypterFactory extends uk.gov.ida.saml.security.EncrypterFactory {
 
     private final EncryptionCredentialResolver encryptionCredentialResolver;
     private final String hubEntityId;
+    private final MetadataResolver hubMetadataResolver;
+    private final Counter cacheHits;
+    private final Counter cacheInvalidations;
+    private final AtomicReference<CachedEncrypters> cachedEncrypters = new AtomicReference<>();
 
-    public EncrypterFactory(EncryptionCredentialResolver encryptionCredentialResolver, String hubEntityId) {
+    public EncrypterFactory(
+        EncryptionCredentialResolver encryptionCredentialResolver,
+        String hubEntityId,
+        MetadataResolver hubMetadataResolver,
+        MetricRegistry metricRegistry
+    ) {
         this.encryptionCredentialResolver = encryptionCredentialResolver;
         this.hubEntityId = hubEntityId;
+        this.hubMetadataResolver = hubMetadataResolver;
+        this.cacheHits = metricRegistry.counter(MetricRegistry.name(EncrypterFactory.class, "cacheHits"));
+        this.cacheInvalidations = metricRegistry.counter(MetricRegistry.name(EncrypterFactory.class, "cacheInvalidations"));
     }
 
     public Encrypter createEncrypter() {
+        return super.createEncrypter(getEncryptingCredential());
+    }
+
+    /**
+     * The hub's current encryption credential. A different instance is returned once the
+     * credential has been resolved again after a metadata update.
+     */
+    public Credential getEncryptingCredential() {
+        CachedEncrypters cached = getCachedEncrypters();
+        return cached != null ? cached.credential : encryptionCredentialResolver.getEncryptingCredential(hubEntityId);
+    }
+
+    public EncryptedAttribute encrypt(Attribute attribute) throws EncryptionException {
+        CachedEncrypters cached = getCachedEncrypters();
+        if (cached == null) {
+            return super.createEncrypter(encryptionCredentialResolver.getEncryptingCredential(hubEntityId)).encrypt(attribute);
+        }
+
+        ObjectPool<Encrypter> encrypters = cached.encrypters;
+        Encrypter encrypter = encrypters.borrow();
+        try {
+            return encrypter.encrypt(attribute);
+        } finally {
+            encrypters.release(encrypter);
+        }
+    }
+
+    /**
+     * The cached credential and Encrypters, or null if they can't be cached.
+     */
+    private CachedEncrypters getCachedEncrypters() {
+        DateTime metadataLastUpdate = MetadataSupport.getLastUpdate(hubMetadataResolver);
+        if (metadataLastUpdate == null) {
+            return null;
+        }
+
+        CachedEncrypters current = cachedEncrypters.get();
+        if (current != null && current.isUpToDate(metadataLastUpdate)) {
+            cacheHits.inc();
+            return current;
+        }
+
+        EntityDescriptor hubEntityDescriptor = resolveHubEntityDescriptor();
+        if (hubEntityDescriptor == null) {
+            return null;
+        }
+
         Credential credential = encryptionCredentialResolver.getEncryptingCredential(hubEntityId);
-        return super.createEncrypter(credential);
+        CachedEncrypters updated = new CachedEncrypters(
+            metadataLastUpdate,
+            MetadataSupport.getValidUntil(hubEntityDescriptor),
+            credential,
+            new ObjectPool<>(() -> super.createEncrypter(credential), 1, 2 * Runtime.getRuntime().availableProcessors())
+        );
+        if (cachedEncrypters.compareAndSet(current, updated) && current != null) {
+            cacheInvalidations.inc();
+        }
+        return updated;
+    }
+
+    /**
+     * The hub's metadata, or null if it can't be read.
+     */
+    private EntityDescriptor resolveHubEntityDescriptor() {
+        try {
+            return hubMetadataResolver.resolveSingle(new CriteriaSet(new EntityIdCriterion(hubEntityId)));
+        } catch (ResolverException e) {
+            return null;
+        }
+    }
+
+    private static class CachedEncrypters {
+        private final DateTime metadataLastUpdate;
+        private final DateTime validUntil;
+        private final Credential credential;
+        private final ObjectPool<Encrypter> encrypters;
+
+        private CachedEncrypters(DateTime metadataLastUpdate, DateTime validUntil, Credential credential, ObjectPool<Encrypter> encrypters) {
+            this.metadataLastUpdate = metadataLastUpdate;
+            this.validUntil = validUntil;
+            this.credential = credential;
+            this.encrypters = encrypters;
+        }
+
+        private boolean isUpToDate(DateTime currentMetadataLastUpdate) {
+            return metadataLastUpdate.equals(currentMetadataLastUpdate)
+                && (validUntil == null || validUntil.isAfterNow());
+        }
     }
 }
@@ -1,132 +1,382 @@
 package uk.gov.ida.verifyserviceprovider.factories;
 
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.configuration.ConfigurationException;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.impl.PredicateRoleDescriptorResolver;
 import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
 import org.opensaml.saml.security.impl.MetadataCredentialResolver;
-import org.opensaml.security.crypto.KeySupport;
+import org.opensaml.xmlsec.config.DefaultSecurityConfigurationBootstrap;
 import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import uk.gov.ida.saml.metadata.MetadataConfiguration;
 import uk.gov.ida.saml.metadata.bundle.MetadataResolverBundle;
 import uk.gov.ida.saml.security.MetadataBackedEncryptionCredentialResolver;
 import uk.gov.ida.shared.utils.manifest.ManifestReader;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLog;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLogFactory;
+import uk.gov.ida.verifyserviceprovider.configuration.MetadataSnapshotsConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantsConfiguration;
 import uk.gov.ida.verifyserviceprovider.configuration.VerifyServiceProviderConfiguration;
 import uk.gov.ida.verifyserviceprovider.factories.saml.AuthnRequestFactory;
 import uk.gov.ida.verifyserviceprovider.factories.saml.ResponseFactory;
-import uk.gov.ida.verifyserviceprovider.healthcheck.MetadataHealthCheck;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataMonitor;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataSnapshot;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataSnapshotter;
+import uk.gov.ida.verifyserviceprovider.metadata.SnapshotBackedMetadataResolver;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
+import uk.gov.ida.verifyserviceprovider.replay.InMemoryReplayCache;
+import uk.gov.ida.verifyserviceprovider.replay.ReplayCache;
+import uk.gov.ida.verifyserviceprovider.replay.ReplayCacheFactory;
 import uk.gov.ida.verifyserviceprovider.resources.GenerateAuthnRequestResource;
 import uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponseResource;
+import uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponsesResource;
 import uk.gov.ida.verifyserviceprovider.resources.VersionNumberResource;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshotResolver;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshotTrustEngine;
 import uk.gov.ida.verifyserviceprovider.services.EntityIdService;
+import uk.gov.ida.verifyserviceprovider.services.PregeneratedAuthnRequests;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+import uk.gov.ida.verifyserviceprovider.services.TenantAdmission;
+import uk.gov.ida.verifyserviceprovider.services.TenantRegistry;
+import uk.gov.ida.verifyserviceprovider.services.WorkerPool;
+import uk.gov.ida.verifyserviceprovider.startup.StartupPlan;
+import uk.gov.ida.verifyserviceprovider.startup.StartupTask;
 import uk.gov.ida.verifyserviceprovider.utils.DateTimeComparator;
+import uk.gov.ida.verifyserviceprovider.warmup.SyntheticFederation;
+import uk.gov.ida.verifyserviceprovider.warmup.WarmUp;
 
-import java.security.KeyException;
+import javax.validation.Validator;
+import javax.ws.rs.client.Client;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.KeyPair;
-import java.security.PrivateKey;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
-import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 
 public class VerifyServiceProviderFactory {
 
+    private static final int WARM_UP_REPLAY_CACHE_SIZE = 10_000;
+
     private final VerifyServiceProviderConfiguration configuration;
     private final ResponseFactory responseFactory;
 
     private final DateTimeComparator dateTimeComparator;
     private final EntityIdService entityIdService;
-    private final MetadataResolverBundle verifyMetadataBundler;
-    private final MetadataResolverBundle msaMetadataBundle;
+    private final MetadataSnapshot hubMetadataSnapshot;
+    private final MetadataSnapshot msaMetadataSnapshot;
+    private final MetadataResolver hubMetadataResolver;
+    private final MetadataResolver msaMetadataResolver;
+    private final MetadataCredentialResolver hubMetadataCredentialResolver;
+    private final MetadataCredentialResolver msaMetadataCredentialResolver;
+    private final MetadataMonitor hubMetadataMonitor;
+    private final MetadataMonitor msaMetadataMonitor;
     private final ManifestReader manifestReader;
+    private final ReplayCache replayCache;
+    private final MetricRegistry metricRegistry;
+    private final TenantRegistry tenantRegistry;
+    private final TenantAdmission tenantAdmission;
+    private final TenantRequestMetrics tenantRequestMetrics;
+    private final AuditLog auditLog;
+    private ResponseService responseService;
+    private AuthnRequestFactory authnRequestFactory;
+    private PregeneratedAuthnRequests pregeneratedAuthnRequests;
 
+    /**
+     * The keys, metadata snapshots, replay cache and audit log are set up at the same time as each other
+     * by the startup plan.
+     */
     public VerifyServiceProviderFactory(
             VerifyServiceProviderConfiguration configuration,
             MetadataResolverBundle verifyMetadataBundler,
-            MetadataResolverBundle msaMetadataBundle) throws KeyException {
+            MetadataResolverBundle msaMetadataBundle,
+            MetricRegistry metricRegistry,
+            StartupPlan startupPlan) throws Exception {
         this.configuration = configuration;
-        this.responseFactory = new ResponseFactory(getDecryptionKeyPairs(configuration.getSamlPrimaryEncryptionKey(), configuration.getSamlSecondaryEncryptionKey()));
+        StartupTask<TenantRegistry> tenantRegistryTask = startupPlan.task("tenantRegistry", () -> TenantRegistry.create(
+            configuration.getServiceEntityIds(),
+            TenantRegistry.createKeyPair(configuration.getSamlSigningKey()),
+            TenantRegistry.createDecryptionKeyPairs(configuration.getSamlPrimaryEncryptionKey(), configuration.getSamlSecondaryEncryptionKey()),
+            loadTenants(configuration.getTenantsFile())
+        ));
+        StartupTask<ReplayCache> replayCacheTask = startupPlan.task("replayCache", () -> ReplayCacheFactory.create(configuration.getReplayCache(), metricRegistry));
+        StartupTask<AuditLog> auditLogTask = startupPlan.task("auditLog", () -> AuditLogFactory.create(configuration.getAuditLog(), metricRegistry));
+
+        MetadataSnapshotsConfiguration metadataSnapshots = configuration.getMetadataSnapshots();
+        if (metadataSnapshots.isEnabled()) {
+            Path snapshotDirectory = Paths.get(metadataSnapshots.getDirectory());
+            String hubEntityId = configuration.getVerifyHubMetadata().getExpectedEntityId();
+            String msaEntityId = configuration.getMsaMetadata().getExpectedEntityId();
+            // MSA metadata isn't signed
+            this.hubMetadataSnapshot = MetadataSnapshot.create(snapshotDirectory, "hub-metadata", hubEntityId, configuration.getVerifyHubMetadata().getTrustStore());
+            this.msaMetadataSnapshot = MetadataSnapshot.create(snapshotDirectory, "msa-metadata", msaEntityId, null);
+            StartupTask<Optional<MetadataResolver>> hubSnapshotTask = startupPlan.task("hubMetadataSnapshot", hubMetadataSnapshot::load);
+            StartupTask<Optional<MetadataResolver>> msaSnapshotTask = startupPlan.task("msaMetadataSnapshot", msaMetadataSnapshot::load);
+            this.hubMetadataResolver = new SnapshotBackedMetadataResolver(verifyMetadataBundler.getMetadataResolver(), hubSnapshotTask.get().orElse(null), hubEntityId);
+            this.msaMetadataResolver = new SnapshotBackedMetadataResolver(msaMetadataBundle.getMetadataResolver(), msaSnapshotTask.get().orElse(null), msaEntityId);
+            this.hubMetadataCredentialResolver = createMetadataCredentialResolver(hubMetadataResolver);
+            this.msaMetadataCredentialResolver = createMetadataCredentialResolver(msaMetadataResolver);
+        } else {
+            this.hubMetadataSnapshot = null;
+            this.msaMetadataSnapshot = null;
+            this.hubMetadataResolver = verifyMetadataBundler.getMetadataResolver();
+            this.msaMetadataResolver = msaMetadataBundle.getMetadataResolver();
+            this.hubMetadataCredentialResolver = verifyMetadataBundler.getMetadataCredentialResolver();
+            this.msaMetadataCredentialResolver = msaMetadataBundle.getMetadataCredentialResolver();
+        }
         this.dateTimeComparator = new DateTimeComparator(configuration.getClockSkew());
-        this.entityIdService = new EntityIdService(configuration.getServiceEntityIds());
-        this.verifyMetadataBundler = verifyMetadataBundler;
-        this.msaMetadataBundle = msaMetadataBundle;
         this.manifestReader = new ManifestReader();
+        this.metricRegistry = metricRegistry;
+
+        this.tenantRegistry = tenantRegistryTask.get();
+        this.responseFactory = new ResponseFactory(
+            tenantRegistry.getDefaultDecryptionKeyPairs(),
+            tenantRegistry.getDecryptionKeyPairs(),
+            metricRegistry,
+            configuration.getSamlPool()
+        );
+        this.entityIdService = new EntityIdService(tenantRegistry.getEntityIds());
+        this.tenantAdmission = TenantAdmission.create(configuration.getTenantLimits(), tenantRegistry.getEntityIds(), metricRegistry);
+        this.tenantRequestMetrics = TenantRequestMetrics.create(tenantRegistry.getEntityIds(), metricRegistry);
+        this.replayCache = replayCacheTask.get();
+        this.auditLog = auditLogTask.get();
+        this.hubMetadataMonitor = new MetadataMonitor("hubMetadata", hubMetadataResolver, configuration.getVerifyHubMetadata().getExpectedEntityId(), metricRegistry);
+        this.msaMetadataMonitor = new MetadataMonitor("msaMetadata", msaMetadataResolver, configuration.getMsaMetadata().getExpectedEntityId(), metricRegistry);
     }
 
-    private List<KeyPair> getDecryptionKeyPairs(PrivateKey primary, PrivateKey secondary) throws KeyException {
-        if (secondary == null) {
-            return singletonList(createKeyPair(primary));
-        } else {
-            return asList(createKeyPair(primary), createKeyPair(secondary));
+    private static MetadataCredentialResolver createMetadataCredentialResolver(MetadataResolver metadataResolver) throws ComponentInitializationException {
+        PredicateRoleDescriptorResolver roleDescriptorResolver = new PredicateRoleDescriptorResolver(metadataResolver);
+        roleDescriptorResolver.setRequireValidMetadata(true);
+        roleDescriptorResolver.initialize();
+
+        MetadataCredentialResolver metadataCredentialResolver = new MetadataCredentialResolver();
+        metadataCredentialResolver.setRoleDescriptorResolver(roleDescriptorResolver);
+        metadataCredentialResolver.setKeyInfoCredentialResolver(DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver());
+        metadataCredentialResolver.initialize();
+        return metadataCredentialResolver;
+    }
+
+    private static List<TenantConfiguration> loadTenants(File tenantsFile) throws IOException, ConfigurationException {
+        if (tenantsFile == null) {
+            return Collections.emptyList();
         }
+        return TenantsConfiguration.load(tenantsFile).getTenants();
     }
 
-    private KeyPair createKeyPair(PrivateKey key) throws KeyException {
-        return new KeyPair(KeySupport.derivePublicKey(key), key);
+    public MetadataMonitor getHubMetadataMonitor() {
+        return hubMetadataMonitor;
     }
 
-    public MetadataHealthCheck getHubMetadataHealthCheck() {
-        return new MetadataHealthCheck(
-                getHubMetadataResolver(),
-            configuration.getVerifyHubMetadata().getExpectedEntityId()
-        );
+    public MetadataMonitor getMsaMetadataMonitor() {
+        return msaMetadataMonitor;
     }
 
-    public MetadataHealthCheck getMsaMetadataHealthCheck() {
-        return new MetadataHealthCheck(
-            getMsaMetadataResolver(),
-            configuration.getMsaMetadata().getExpectedEntityId()
+    public GenerateAuthnRequestResource getGenerateAuthnRequestResource(WorkerPool workerPool) throws Exception {
+        return new GenerateAuthnRequestResource(
+            getAuthnRequestFactory(),
+            configuration.getHubSsoLocation(),
+            entityIdService,
+            workerPool,
+            getPregeneratedAuthnRequests(),
+            tenantRequestMetrics,
+            auditLog
         );
     }
 
-    public GenerateAuthnRequestResource getGenerateAuthnRequestResource() throws Exception {
-        MetadataCredentialResolver metadataCredentialResolver = getHubMetadataCredentialResolver();
-        MetadataBackedEncryptionCredentialResolver encryptionCredentialResolver = new MetadataBackedEncryptionCredentialResolver(metadataCredentialResolver, SPSSODescriptor.DEFAULT_ELEMENT_NAME);
-        EncrypterFactory encrypterFactory = new EncrypterFactory(encryptionCredentialResolver, configuration.getVerifyHubMetadata().getExpectedEntityId());
+    public PregeneratedAuthnRequests getPregeneratedAuthnRequests() {
+        if (pregeneratedAuthnRequests == null) {
+            pregeneratedAuthnRequests = PregeneratedAuthnRequests.create(
+                configuration.getPregeneratedRequests(),
+                getAuthnRequestFactory(),
+                configuration.getHubSsoLocation(),
+                tenantRegistry.getEntityIds(),
+                metricRegistry
+            );
+        }
+        return pregeneratedAuthnRequests;
+    }
 
-        PrivateKey signingKey = configuration.getSamlSigningKey();
+    private AuthnRequestFactory getAuthnRequestFactory() {
+        if (authnRequestFactory == null) {
+            authnRequestFactory = createAuthnRequestFactory(
+                getHubMetadataResolver(),
+                getHubMetadataCredentialResolver(),
+                configuration.getVerifyHubMetadata().getExpectedEntityId(),
+                tenantRegistry.getDefaultSigningKeyPair(),
+                tenantRegistry.getSigningKeyPairs(),
+                metricRegistry
+            );
+        }
+        return authnRequestFactory;
+    }
 
-        AuthnRequestFactory authnRequestFactory = new AuthnRequestFactory(
-                configuration.getHubSsoLocation(),
-                createKeyPair(signingKey),
-                manifestReader, encrypterFactory
+    private AuthnRequestFactory createAuthnRequestFactory(
+        MetadataResolver hubMetadataResolver,
+        MetadataCredentialResolver hubMetadataCredentialResolver,
+        String hubEntityId,
+        KeyPair defaultSigningKeyPair,
+        Map<String, KeyPair> tenantSigningKeyPairs,
+        MetricRegistry metricRegistry
+    ) {
+        MetadataBackedEncryptionCredentialResolver encryptionCredentialResolver = new MetadataBackedEncryptionCredentialResolver(hubMetadataCredentialResolver, SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+        EncrypterFactory encrypterFactory = new EncrypterFactory(
+            encryptionCredentialResolver,
+            hubEntityId,
+            hubMetadataResolver,
+            metricRegistry
         );
 
-        return new GenerateAuthnRequestResource(
-            authnRequestFactory,
-            configuration.getHubSsoLocation(),
-            entityIdService
+        return new AuthnRequestFactory(
+                configuration.getHubSsoLocation(),
+                defaultSigningKeyPair,
+                tenantSigningKeyPairs,
+                manifestReader, encrypterFactory
         );
     }
 
-    public TranslateSamlResponseResource getTranslateSamlResponseResource() {
-        return new TranslateSamlResponseResource(
-            responseFactory.createResponseService(
-                getHubSignatureTrustEngine(),
-                responseFactory.createAssertionTranslator(getMsaSignatureTrustEngine(), dateTimeComparator),
+    /**
+     * Pipelines to generate requests and translate responses to them, set up like the real ones but
+     * only trusting the keys of a {@link SyntheticFederation}. Their metrics go to a registry of their
+     * own, so warm-up isn't counted in the published metrics.
+     */
+    public WarmUp.Pipelines createWarmUpPipelines() throws NoSuchAlgorithmException, ComponentInitializationException {
+        SyntheticFederation federation = SyntheticFederation.create();
+        MetricRegistry warmUpMetricRegistry = new MetricRegistry();
+        MetadataResolver metadataResolver = federation.getMetadataResolver();
+        MetadataCredentialResolver metadataCredentialResolver = createMetadataCredentialResolver(metadataResolver);
+
+        ResponseFactory warmUpResponseFactory = new ResponseFactory(
+            singletonList(federation.getServiceEncryptionKeyPair()),
+            warmUpMetricRegistry,
+            configuration.getSamlPool()
+        );
+        ResponseService warmUpResponseService = warmUpResponseFactory.createResponseService(
+            createSigningCredentialSnapshotTrustEngine(metadataResolver, metadataCredentialResolver, SyntheticFederation.HUB_ENTITY_ID),
+            SyntheticFederation.HUB_ENTITY_ID,
+            warmUpResponseFactory.createAssertionTranslator(
+                createSigningCredentialSnapshotTrustEngine(metadataResolver, metadataCredentialResolver, SyntheticFederation.MSA_ENTITY_ID),
                 dateTimeComparator
             ),
-            entityIdService
+            dateTimeComparator,
+            new InMemoryReplayCache(WARM_UP_REPLAY_CACHE_SIZE)
+        );
+        AuthnRequestFactory warmUpAuthnRequestFactory = createAuthnRequestFactory(
+            metadataResolver,
+            metadataCredentialResolver,
+            SyntheticFederation.HUB_ENTITY_ID,
+            federation.getServiceSigningKeyPair(),
+            Collections.emptyMap(),
+            warmUpMetricRegistry
+        );
+
+        return new WarmUp.Pipelines(warmUpAuthnRequestFactory, warmUpResponseService, federation);
+    }
+
+    public TranslateSamlResponseResource getTranslateSamlResponseResource(WorkerPool workerPool) {
+        return new TranslateSamlResponseResource(getResponseService(), entityIdService, workerPool, tenantRequestMetrics, auditLog);
+    }
+
+    public TranslateSamlResponsesResource getTranslateSamlResponsesResource(ExecutorService executorService, Validator validator) {
+        return new TranslateSamlResponsesResource(
+            getResponseService(),
+            entityIdService,
+            executorService,
+            configuration.getWorkerPool().getRetryAfter(),
+            validator,
+            tenantAdmission,
+            tenantRequestMetrics,
+            auditLog
         );
     }
 
+    /**
+     * Keep the hub and MSA metadata snapshots up to date, if they're enabled. Each is fetched with a client
+     * created from the same configuration as the one which refreshes that metadata.
+     */
+    public List<MetadataSnapshotter> getMetadataSnapshotters(Function<MetadataConfiguration, Client> clientFactory) {
+        if (hubMetadataSnapshot == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(
+            createMetadataSnapshotter(hubMetadataSnapshot, configuration.getVerifyHubMetadata(), clientFactory),
+            createMetadataSnapshotter(msaMetadataSnapshot, configuration.getMsaMetadata(), clientFactory)
+        );
+    }
+
+    private MetadataSnapshotter createMetadataSnapshotter(
+        MetadataSnapshot snapshot,
+        MetadataConfiguration metadataConfiguration,
+        Function<MetadataConfiguration, Client> clientFactory
+    ) {
+        return new MetadataSnapshotter(
+            snapshot,
+            clientFactory.apply(metadataConfiguration),
+            metadataConfiguration::getUri,
+            configuration.getMetadataSnapshots().getInterval()
+        );
+    }
+
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    public TenantAdmission getTenantAdmission() {
+        return tenantAdmission;
+    }
+
     public VersionNumberResource getVersionNumberResource() {
         return new VersionNumberResource(manifestReader);
     }
 
+    private ResponseService getResponseService() {
+        if (responseService == null) {
+            responseService = responseFactory.createResponseService(
+                getHubSignatureTrustEngine(),
+                configuration.getVerifyHubMetadata().getExpectedEntityId(),
+                responseFactory.createAssertionTranslator(getMsaSignatureTrustEngine(), dateTimeComparator),
+                dateTimeComparator,
+                replayCache
+            );
+        }
+        return responseService;
+    }
+
     private MetadataResolver getHubMetadataResolver() {
-        return verifyMetadataBundler.getMetadataResolver();
+        return hubMetadataResolver;
     }
     private ExplicitKeySignatureTrustEngine getHubSignatureTrustEngine() {
-        return verifyMetadataBundler.getSignatureTrustEngine();
+        return createSigningCredentialSnapshotTrustEngine(hubMetadataResolver, hubMetadataCredentialResolver, configuration.getVerifyHubMetadata().getExpectedEntityId());
     }
 
     private MetadataCredentialResolver getHubMetadataCredentialResolver() {
-        return verifyMetadataBundler.getMetadataCredentialResolver();
+        return hubMetadataCredentialResolver;
     }
 
-    private MetadataResolver getMsaMetadataResolver() {
-        return msaMetadataBundle.getMetadataResolver();
+    private ExplicitKeySignatureTrustEngine getMsaSignatureTrustEngine() {
+        return createSigningCredentialSnapshotTrustEngine(msaMetadataResolver, msaMetadataCredentialResolver, configuration.getMsaMetadata().getExpectedEntityId());
     }
 
-    private ExplicitKeySignatureTrustEngine getMsaSignatureTrustEngine() {
-        return msaMetadataBundle.getSignatureTrustEngine();
+    private ExplicitKeySignatureTrustEngine createSigningCredentialSnapshotTrustEngine(
+        MetadataResolver metadataResolver,
+        MetadataCredentialResolver metadataCredentialResolver,
+        String entityId
+    ) {
+        return new SigningCredentialSnapshotTrustEngine(new SigningCredentialSnapshotResolver(
+            metadataResolver,
+            singletonList(entityId),
+            DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver(),
+            metadataCredentialResolver
+        ));
     }
 }
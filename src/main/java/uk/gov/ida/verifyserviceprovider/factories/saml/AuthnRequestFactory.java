@@ -1,8 +1,11 @@
 package uk.gov.ida.verifyserviceprovider.factories.saml;
 
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
 import org.joda.time.DateTime;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.saml.common.SAMLRuntimeException;
 import org.opensaml.saml.saml2.core.Attribute;
 import org.opensaml.saml.saml2.core.AuthnRequest;
@@ -13,14 +16,16 @@ import org.opensaml.saml.saml2.core.impl.AttributeBuilder;
 import org.opensaml.saml.saml2.core.impl.AuthnRequestBuilder;
 import org.opensaml.saml.saml2.core.impl.ExtensionsBuilder;
 import org.opensaml.saml.saml2.core.impl.IssuerBuilder;
+import org.opensaml.security.credential.Credential;
 import org.opensaml.xmlsec.algorithm.descriptors.DigestSHA256;
 import org.opensaml.xmlsec.algorithm.descriptors.SignatureRSASHA256;
 import org.opensaml.xmlsec.encryption.support.EncryptionException;
-import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.support.SignatureException;
 import org.opensaml.xmlsec.signature.support.Signer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import uk.gov.ida.saml.core.extensions.versioning.Version;
 import uk.gov.ida.saml.core.extensions.versioning.VersionImpl;
 import uk.gov.ida.saml.core.extensions.versioning.application.ApplicationVersion;
@@ -36,43 +41,78 @@ import uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class AuthnRequestFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(AuthnRequestFactory.class);
 
+    private static final AuthnRequestBuilder authnRequestBuilder = new AuthnRequestBuilder();
+    private static final IssuerBuilder issuerBuilder = new IssuerBuilder();
+    private static final ExtensionsBuilder extensionsBuilder = new ExtensionsBuilder();
+
     private final URI destination;
     private final ManifestReader manifestReader;
     private final EncrypterFactory encrypterFactory;
-    private KeyPair signingKeyPair;
+    private final SignatureFactory defaultSignatureFactory;
+    private final Map<String, SignatureFactory> tenantSignatureFactories;
+    private final AtomicReference<EncryptedVersionsTemplate> encryptedVersionsTemplate = new AtomicReference<>();
 
     public AuthnRequestFactory(
             URI destination,
             KeyPair signingKeyPair,
             ManifestReader manifestReader,
             EncrypterFactory encrypterFactory
+    ) {
+        this(destination, signingKeyPair, Collections.emptyMap(), manifestReader, encrypterFactory);
+    }
+
+    /**
+     * A SignatureFactory is made up front for each distinct signing key, so building a request only
+     * has to look up the one for its entity ID. Entity IDs without their own key are signed with the default.
+     */
+    public AuthnRequestFactory(
+            URI destination,
+            KeyPair defaultSigningKeyPair,
+            Map<String, KeyPair> tenantSigningKeyPairs,
+            ManifestReader manifestReader,
+            EncrypterFactory encrypterFactory
     ) {
         this.destination = destination;
         this.manifestReader = manifestReader;
         this.encrypterFactory = encrypterFactory;
-        this.signingKeyPair = signingKeyPair;
+        this.defaultSignatureFactory = createSignatureFactory(defaultSigningKeyPair);
+
+        Map<PrivateKey, SignatureFactory> signatureFactoriesByKey = new HashMap<>();
+        signatureFactoriesByKey.put(defaultSigningKeyPair.getPrivate(), defaultSignatureFactory);
+        Map<String, SignatureFactory> tenantSignatureFactories = new HashMap<>();
+        tenantSigningKeyPairs.forEach((entityId, keyPair) -> tenantSignatureFactories.put(
+            entityId,
+            signatureFactoriesByKey.computeIfAbsent(keyPair.getPrivate(), key -> createSignatureFactory(keyPair))
+        ));
+        this.tenantSignatureFactories = tenantSignatureFactories;
     }
 
     public AuthnRequest build(LevelOfAssurance levelOfAssurance, String serviceEntityId) {
-        AuthnRequest authnRequest = new AuthnRequestBuilder().buildObject();
+        AuthnRequest authnRequest = authnRequestBuilder.buildObject();
         authnRequest.setID(String.format("_%s", UUID.randomUUID()));
         authnRequest.setIssueInstant(DateTime.now());
         authnRequest.setForceAuthn(false);
         authnRequest.setDestination(destination.toString());
         authnRequest.setExtensions(createExtensions());
 
-        Issuer issuer = new IssuerBuilder().buildObject();
+        Issuer issuer = issuerBuilder.buildObject();
         issuer.setValue(serviceEntityId);
         authnRequest.setIssuer(issuer);
 
-        authnRequest.setSignature(createSignature());
+        authnRequest.setSignature(tenantSignatureFactories.getOrDefault(serviceEntityId, defaultSignatureFactory).createSignature());
 
         try {
             XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(authnRequest).marshall(authnRequest);
@@ -85,17 +125,37 @@ public class AuthnRequestFactory {
     }
 
     private Extensions createExtensions() {
-        Extensions extensions = new ExtensionsBuilder().buildObject();
+        Extensions extensions = extensionsBuilder.buildObject();
+        extensions.getUnknownXMLObjects().add(getEncryptedVersionsTemplate().newEncryptedAttribute());
+        return extensions;
+    }
+
+    /**
+     * The Versions attribute is the same for every request, so it's encrypted once and copied into
+     * each request. It's encrypted again when the hub's encryption certificate changes.
+     */
+    private EncryptedVersionsTemplate getEncryptedVersionsTemplate() {
+        Credential credential = encrypterFactory.getEncryptingCredential();
+        EncryptedVersionsTemplate current = encryptedVersionsTemplate.get();
+        if (current != null && current.isFor(credential)) {
+            return current;
+        }
+
+        EncryptedVersionsTemplate updated = new EncryptedVersionsTemplate(credential, encrypt(createVersionsAttribute()));
+        encryptedVersionsTemplate.compareAndSet(current, updated);
+        return updated;
+    }
+
+    private Attribute createVersionsAttribute() {
         Attribute versionsAttribute = new AttributeBuilder().buildObject();
         versionsAttribute.setName("Versions");
         versionsAttribute.getAttributeValues().add(createApplicationVersion());
-        extensions.getUnknownXMLObjects().add(encrypt(versionsAttribute));
-        return extensions;
+        return versionsAttribute;
     }
 
     private EncryptedAttribute encrypt(Attribute attribute) {
         try {
-            return encrypterFactory.createEncrypter().encrypt(attribute);
+            return encrypterFactory.encrypt(attribute);
         } catch (EncryptionException e) {
             throw new RuntimeException(e);
         }
@@ -118,12 +178,46 @@ public class AuthnRequestFactory {
         return version;
     }
 
-    private Signature createSignature() {
+    private static SignatureFactory createSignatureFactory(KeyPair signingKeyPair) {
         IdaKeyStore keyStore = new IdaKeyStore(signingKeyPair, Collections.emptyList());
         IdaKeyStoreCredentialRetriever keyStoreCredentialRetriever = new IdaKeyStoreCredentialRetriever(keyStore);
         SignatureRSASHA256 signatureAlgorithm = new SignatureRSASHA256();
         DigestSHA256 digestAlgorithm = new DigestSHA256();
-        SignatureFactory signatureFactory = new SignatureFactory(keyStoreCredentialRetriever, signatureAlgorithm, digestAlgorithm);
-        return signatureFactory.createSignature();
+        return new SignatureFactory(keyStoreCredentialRetriever, signatureAlgorithm, digestAlgorithm);
+    }
+
+    private static class EncryptedVersionsTemplate {
+        private final PublicKey hubEncryptionKey;
+        private final Element encryptedAttribute;
+
+        EncryptedVersionsTemplate(Credential credential, EncryptedAttribute encryptedAttribute) {
+            this.hubEncryptionKey = credential.getPublicKey();
+            try {
+                this.encryptedAttribute = XMLObjectSupport.marshall(encryptedAttribute);
+            } catch (MarshallingException e) {
+                throw new SAMLRuntimeException("Unable to marshall the encrypted Versions attribute", e);
+            }
+        }
+
+        boolean isFor(Credential credential) {
+            return Objects.equals(hubEncryptionKey, credential.getPublicKey());
+        }
+
+        EncryptedAttribute newEncryptedAttribute() {
+            try {
+                // Each copy gets its own Document, so unmarshalling it (which registers its IDs with the Document)
+                // and adopting it into the AuthnRequest never touch the template's Document
+                Document document = XMLObjectProviderRegistrySupport.getParserPool().newDocument();
+                Element copy;
+                // Reading a DOM isn't guaranteed to be thread safe, so copies are made one at a time
+                synchronized (encryptedAttribute) {
+                    copy = (Element) document.importNode(encryptedAttribute, true);
+                }
+                document.appendChild(copy);
+                return (EncryptedAttribute) XMLObjectSupport.getUnmarshaller(copy).unmarshall(copy);
+            } catch (XMLParserException | UnmarshallingException e) {
+                throw new SAMLRuntimeException("Unable to copy the encrypted Versions attribute", e);
+            }
+        }
     }
 }
@@ -1,7 +1,15 @@
 package uk.gov.ida.verifyserviceprovider.factories.saml;
 
+import com.codahale.metrics.MetricRegistry;
 import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.encryption.Decrypter;
+import org.opensaml.saml.saml2.encryption.EncryptedElementTypeEncryptedKeyResolver;
 import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.encryption.support.ChainingEncryptedKeyResolver;
+import org.opensaml.xmlsec.encryption.support.EncryptedKeyResolver;
+import org.opensaml.xmlsec.encryption.support.InlineEncryptedKeyResolver;
+import org.opensaml.xmlsec.encryption.support.SimpleRetrievalMethodEncryptedKeyResolver;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
 import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
 import uk.gov.ida.saml.deserializers.OpenSamlXMLObjectUnmarshaller;
 import uk.gov.ida.saml.deserializers.StringToOpenSamlObjectTransformer;
@@ -9,7 +17,6 @@ import uk.gov.ida.saml.deserializers.parser.SamlObjectParser;
 import uk.gov.ida.saml.deserializers.validators.Base64StringDecoder;
 import uk.gov.ida.saml.deserializers.validators.NotNullSamlStringValidator;
 import uk.gov.ida.saml.security.AssertionDecrypter;
-import uk.gov.ida.saml.security.DecrypterFactory;
 import uk.gov.ida.saml.security.IdaKeyStore;
 import uk.gov.ida.saml.security.IdaKeyStoreCredentialRetriever;
 import uk.gov.ida.saml.security.MetadataBackedSignatureValidator;
@@ -17,19 +24,36 @@ import uk.gov.ida.saml.security.SamlAssertionsSignatureValidator;
 import uk.gov.ida.saml.security.SamlMessageSignatureValidator;
 import uk.gov.ida.saml.security.validators.encryptedelementtype.EncryptionAlgorithmValidator;
 import uk.gov.ida.saml.security.validators.signature.SamlResponseSignatureValidator;
+import uk.gov.ida.verifyserviceprovider.configuration.SamlPoolConfiguration;
+import uk.gov.ida.verifyserviceprovider.metrics.TranslateResponseMetrics;
+import uk.gov.ida.verifyserviceprovider.replay.ReplayCache;
+import uk.gov.ida.verifyserviceprovider.saml.DigestIndexedCredentialResolver;
+import uk.gov.ida.verifyserviceprovider.saml.PooledAssertionDecrypter;
+import uk.gov.ida.verifyserviceprovider.saml.PooledStringToResponseTransformer;
+import uk.gov.ida.verifyserviceprovider.saml.SamlResponseParser;
 import uk.gov.ida.verifyserviceprovider.services.AssertionTranslator;
 import uk.gov.ida.verifyserviceprovider.services.ResponseService;
 import uk.gov.ida.verifyserviceprovider.utils.DateTimeComparator;
+import uk.gov.ida.verifyserviceprovider.utils.ObjectPool;
 import uk.gov.ida.verifyserviceprovider.validators.AssertionValidator;
 import uk.gov.ida.verifyserviceprovider.validators.AudienceRestrictionValidator;
 import uk.gov.ida.verifyserviceprovider.validators.ConditionsValidator;
 import uk.gov.ida.verifyserviceprovider.validators.InstantValidator;
+import uk.gov.ida.verifyserviceprovider.validators.ResponsePreValidator;
 import uk.gov.ida.verifyserviceprovider.validators.ResponseSizeValidator;
 import uk.gov.ida.verifyserviceprovider.validators.SubjectValidator;
 import uk.gov.ida.verifyserviceprovider.validators.TimeRestrictionValidator;
 
 import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
 
 public class ResponseFactory {
 
@@ -39,12 +63,37 @@ public class ResponseFactory {
     private static final SamlObjectParser samlObjectParser = new SamlObjectParser();
     private static final OpenSamlXMLObjectUnmarshaller<Response> responseOpenSamlXMLObjectUnmarshaller = new OpenSamlXMLObjectUnmarshaller<>(samlObjectParser);
     private static final EncryptionAlgorithmValidator encryptionAlgorithmValidator = new EncryptionAlgorithmValidator();
-    private static final DecrypterFactory decrypterFactory = new DecrypterFactory();
+    private static final EncryptedKeyResolver encryptedKeyResolver = new ChainingEncryptedKeyResolver(asList(
+        new InlineEncryptedKeyResolver(),
+        new EncryptedElementTypeEncryptedKeyResolver(),
+        new SimpleRetrievalMethodEncryptedKeyResolver()
+    ));
 
     private List<KeyPair> encryptionKeyPairs;
+    private final Map<String, List<KeyPair>> tenantEncryptionKeyPairs;
+    private final MetricRegistry metricRegistry;
+    private final TranslateResponseMetrics metrics;
+    private final SamlPoolConfiguration samlPoolConfiguration;
+
+    public ResponseFactory(List<KeyPair> encryptionKeyPairs, MetricRegistry metricRegistry, SamlPoolConfiguration samlPoolConfiguration) {
+        this(encryptionKeyPairs, Collections.emptyMap(), metricRegistry, samlPoolConfiguration);
+    }
 
-    public ResponseFactory(List<KeyPair> encryptionKeyPairs) {
+    /**
+     * Responses for an entity ID in tenantEncryptionKeyPairs are decrypted with its keys, and all others
+     * with encryptionKeyPairs.
+     */
+    public ResponseFactory(
+        List<KeyPair> encryptionKeyPairs,
+        Map<String, List<KeyPair>> tenantEncryptionKeyPairs,
+        MetricRegistry metricRegistry,
+        SamlPoolConfiguration samlPoolConfiguration
+    ) {
         this.encryptionKeyPairs = encryptionKeyPairs;
+        this.tenantEncryptionKeyPairs = tenantEncryptionKeyPairs;
+        this.metricRegistry = metricRegistry;
+        this.metrics = new TranslateResponseMetrics(metricRegistry);
+        this.samlPoolConfiguration = samlPoolConfiguration;
     }
 
     public static StringToOpenSamlObjectTransformer<Response> createStringToResponseTransformer() {
@@ -56,28 +105,81 @@ public class ResponseFactory {
         );
     }
 
-    public AssertionDecrypter createAssertionDecrypter() {
-        List<Credential> decryptingCredentials = new IdaKeyStoreCredentialRetriever(createEncryptionKeyStore()).getDecryptingCredentials();
-        return new AssertionDecrypter(
-            encryptionAlgorithmValidator,
-            decrypterFactory.createDecrypter(decryptingCredentials)
+    public PooledStringToResponseTransformer createPooledStringToResponseTransformer() {
+        return new PooledStringToResponseTransformer(
+            notNullSamlStringValidator,
+            base64StringDecoder,
+            responseSizeValidator,
+            createPool(SamlResponseParser::new)
         );
     }
 
+    public PooledAssertionDecrypter createPooledAssertionDecrypter() {
+        return createPooledAssertionDecrypter(encryptionKeyPairs);
+    }
+
+    private PooledAssertionDecrypter createPooledAssertionDecrypter(List<KeyPair> keyPairs) {
+        // The resolver is read-only, so one is shared by every decrypter in the pool
+        KeyInfoCredentialResolver credentialResolver = createDecryptionCredentialResolver(keyPairs);
+        return new PooledAssertionDecrypter(createPool(() -> createAssertionDecrypter(credentialResolver)));
+    }
+
+    /**
+     * One pool is made for each distinct set of keys, and shared by every entity ID which uses them.
+     */
+    private Map<String, PooledAssertionDecrypter> createTenantAssertionDecrypters(PooledAssertionDecrypter defaultAssertionDecrypter) {
+        Map<List<PrivateKey>, PooledAssertionDecrypter> assertionDecryptersByKeys = new HashMap<>();
+        assertionDecryptersByKeys.put(privateKeys(encryptionKeyPairs), defaultAssertionDecrypter);
+        Map<String, PooledAssertionDecrypter> tenantAssertionDecrypters = new HashMap<>();
+        tenantEncryptionKeyPairs.forEach((entityId, keyPairs) -> tenantAssertionDecrypters.put(
+            entityId,
+            assertionDecryptersByKeys.computeIfAbsent(privateKeys(keyPairs), keys -> createPooledAssertionDecrypter(keyPairs))
+        ));
+        return tenantAssertionDecrypters;
+    }
+
+    private static List<PrivateKey> privateKeys(List<KeyPair> keyPairs) {
+        return keyPairs.stream().map(KeyPair::getPrivate).collect(Collectors.toList());
+    }
+
+    public AssertionDecrypter createAssertionDecrypter() {
+        return createAssertionDecrypter(createDecryptionCredentialResolver(encryptionKeyPairs));
+    }
+
+    /**
+     * Made the same way as by DecrypterFactory, except that the key used to decrypt each EncryptedKey is
+     * picked from the KeyInfo in it rather than by trying each one.
+     */
+    private AssertionDecrypter createAssertionDecrypter(KeyInfoCredentialResolver credentialResolver) {
+        Decrypter decrypter = new Decrypter(null, credentialResolver, encryptedKeyResolver);
+        decrypter.setRootInNewDocument(true);
+        return new AssertionDecrypter(encryptionAlgorithmValidator, decrypter);
+    }
+
+    private KeyInfoCredentialResolver createDecryptionCredentialResolver(List<KeyPair> keyPairs) {
+        List<Credential> decryptingCredentials = new IdaKeyStoreCredentialRetriever(new IdaKeyStore(null, keyPairs)).getDecryptingCredentials();
+        return new DigestIndexedCredentialResolver(decryptingCredentials, metricRegistry);
+    }
+
     public ResponseService createResponseService(
         ExplicitKeySignatureTrustEngine hubSignatureTrustEngine,
+        String hubEntityId,
         AssertionTranslator assertionTranslator,
-        DateTimeComparator dateTimeComparator
+        DateTimeComparator dateTimeComparator,
+        ReplayCache replayCache
     ) {
-        AssertionDecrypter assertionDecrypter = createAssertionDecrypter();
         MetadataBackedSignatureValidator metadataBackedSignatureValidator = createMetadataBackedSignatureValidator(hubSignatureTrustEngine);
+        PooledAssertionDecrypter assertionDecrypter = createPooledAssertionDecrypter();
 
         return new ResponseService(
-            createStringToResponseTransformer(),
+            createPooledStringToResponseTransformer(),
             assertionDecrypter,
+            createTenantAssertionDecrypters(assertionDecrypter),
             assertionTranslator,
             new SamlResponseSignatureValidator(new SamlMessageSignatureValidator(metadataBackedSignatureValidator)),
-            new InstantValidator(dateTimeComparator)
+            new ResponsePreValidator(hubEntityId, new InstantValidator(dateTimeComparator), metricRegistry),
+            replayCache,
+            metrics
         );
     }
 
@@ -98,7 +200,8 @@ public class ResponseFactory {
 
         return new AssertionTranslator(
             assertionsSignatureValidator,
-            assertionValidator
+            assertionValidator,
+            metrics
         );
     }
 
@@ -106,7 +209,7 @@ public class ResponseFactory {
         return MetadataBackedSignatureValidator.withoutCertificateChainValidation(explicitKeySignatureTrustEngine);
     }
 
-    private IdaKeyStore createEncryptionKeyStore() {
-        return new IdaKeyStore(null, encryptionKeyPairs);
+    private <T> ObjectPool<T> createPool(Supplier<T> factory) {
+        return new ObjectPool<>(factory, samlPoolConfiguration.getInitialSize(), samlPoolConfiguration.getMaxIdle());
     }
 }
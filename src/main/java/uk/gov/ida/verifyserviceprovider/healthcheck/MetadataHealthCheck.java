@@ -1,43 +1,32 @@
 package uk.gov.ida.verifyserviceprovider.healthcheck;
 
 import com.codahale.metrics.health.HealthCheck;
-import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
-import org.opensaml.core.criterion.EntityIdCriterion;
-import org.opensaml.saml.metadata.resolver.MetadataResolver;
-import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataMonitor;
 
 import static com.codahale.metrics.health.HealthCheck.Result.healthy;
 import static com.codahale.metrics.health.HealthCheck.Result.unhealthy;
 
+/**
+ * Reports the status kept by a {@link MetadataMonitor}, so a health probe doesn't resolve the metadata.
+ */
 public class MetadataHealthCheck extends HealthCheck {
 
-    private MetadataResolver metadataResolver;
-    private String expectedEntityId;
+    private final MetadataMonitor metadataMonitor;
 
-    public MetadataHealthCheck(
-        MetadataResolver metadataProvider,
-        String expectedEntityId
-    ) {
-        this.metadataResolver = metadataProvider;
-        this.expectedEntityId = expectedEntityId;
+    public MetadataHealthCheck(MetadataMonitor metadataMonitor) {
+        this.metadataMonitor = metadataMonitor;
     }
 
     @Override
-    protected Result check() throws Exception {
-        try {
-            CriteriaSet criteria = new CriteriaSet(new EntityIdCriterion(expectedEntityId));
-            EntityDescriptor entityDescriptor = metadataResolver.resolveSingle(criteria);
-            if (entityDescriptor != null) {
-                return healthy();
-            }
-            return unhealthy(getMessage("No exception was thrown"));
-        } catch (Exception e) {
-            return unhealthy(getMessage(e.getMessage()));
+    protected Result check() {
+        MetadataMonitor.Status status = metadataMonitor.getStatus();
+        if (status.isHealthy()) {
+            return healthy();
         }
+        return unhealthy(getMessage(status.getMessage()));
     }
 
     private String getMessage(String message) {
-        return "Could not load metadata for entity " + this.expectedEntityId + ". " + message + ". See the logs for more details.";
+        return "Could not load metadata for entity " + metadataMonitor.getExpectedEntityId() + ". " + message + ". See the logs for more details.";
     }
 }
-
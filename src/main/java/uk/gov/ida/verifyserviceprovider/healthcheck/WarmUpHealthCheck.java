@@ -0,0 +1,28 @@
+package uk.gov.ida.verifyserviceprovider.healthcheck;
+
+import com.codahale.metrics.health.HealthCheck;
+import uk.gov.ida.verifyserviceprovider.warmup.WarmUp;
+
+import static com.codahale.metrics.health.HealthCheck.Result.healthy;
+import static com.codahale.metrics.health.HealthCheck.Result.unhealthy;
+
+/**
+ * Reports the Verify Service Provider as not ready until warm-up has finished, so that a load balancer
+ * doesn't send it traffic while it would still be slow.
+ */
+public class WarmUpHealthCheck extends HealthCheck {
+
+    private final WarmUp warmUp;
+
+    public WarmUpHealthCheck(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    @Override
+    protected Result check() {
+        if (!warmUp.isFinished()) {
+            return unhealthy("Warming up. " + warmUp.getIterations() + " synthetic requests have been handled so far.");
+        }
+        return healthy("Warm-up finished (" + warmUp.getState() + ") after " + warmUp.getIterations() + " synthetic requests.");
+    }
+}
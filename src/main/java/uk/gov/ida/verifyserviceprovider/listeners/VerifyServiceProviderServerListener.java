@@ -5,7 +5,9 @@ import io.dropwizard.setup.Environment;
 import org.eclipse.jetty.server.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.ida.verifyserviceprovider.startup.StartupReport;
 import uk.gov.ida.verifyserviceprovider.utils.HealthCheckTableFormatter;
+import uk.gov.ida.verifyserviceprovider.utils.StartupReportTableFormatter;
 import uk.gov.ida.verifyserviceprovider.utils.UsefulApplicationUrlsTableFormatter;
 
 public class VerifyServiceProviderServerListener implements ServerLifecycleListener {
@@ -13,14 +15,18 @@ public class VerifyServiceProviderServerListener implements ServerLifecycleListe
     private static final Logger LOGGER = LoggerFactory.getLogger(VerifyServiceProviderServerListener.class);
 
     private final Environment environment;
+    private final StartupReport startupReport;
 
-    public VerifyServiceProviderServerListener(Environment environment) {
+    public VerifyServiceProviderServerListener(Environment environment, StartupReport startupReport) {
         this.environment = environment;
+        this.startupReport = startupReport;
     }
 
     @Override
     public void serverStarted(Server server) {
+        startupReport.serverStarted();
         LOGGER.info(UsefulApplicationUrlsTableFormatter.format(environment, server));
         LOGGER.info(HealthCheckTableFormatter.format(environment.healthChecks()));
+        LOGGER.info(StartupReportTableFormatter.format(startupReport));
     }
-}
\ No newline at end of file
+}
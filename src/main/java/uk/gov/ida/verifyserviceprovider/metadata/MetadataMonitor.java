@@ -0,0 +1,248 @@
+package uk.gov.ida.verifyserviceprovider.metadata;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.RefreshableMetadataResolver;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the status of an entity's metadata, so that health checks and metrics can read it without
+ * resolving the metadata each time.
+ *
+ * The status is worked out when the monitor starts, and again on a background thread whenever the
+ * metadata resolver has refreshed or the metadata's validUntil has passed, which is looked for every ten
+ * seconds. While the metadata can't be loaded, or its resolver can't say when it last refreshed, it's
+ * checked every ten seconds.
+ *
+ * Its gauges, in {@code MetadataMonitor.<name>}, report the seconds since the metadata was last loaded,
+ * the seconds until it's no longer valid, and the number of signing and encryption certificates with the
+ * seconds until the first of each expires, so that an alert can be raised before anything expires.
+ */
+public class MetadataMonitor implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetadataMonitor.class);
+    private static final Duration CHECK_INTERVAL = Duration.standardSeconds(10);
+
+    private final String name;
+    private final MetadataResolver metadataResolver;
+    private final RefreshableMetadataResolver refreshableMetadataResolver;
+    private final String expectedEntityId;
+    private final CriteriaSet expectedEntityCriteria;
+    private volatile Status status;
+    private volatile DateTime lastRefresh;
+    private ScheduledExecutorService executor;
+
+    public MetadataMonitor(String name, MetadataResolver metadataResolver, String expectedEntityId, MetricRegistry metricRegistry) {
+        this.name = name;
+        this.metadataResolver = metadataResolver;
+        this.refreshableMetadataResolver = refreshableMetadataResolver(metadataResolver);
+        this.expectedEntityId = expectedEntityId;
+        this.expectedEntityCriteria = new CriteriaSet(new EntityIdCriterion(expectedEntityId));
+        this.status = Status.unhealthy("It hasn't been checked yet");
+
+        metricRegistry.register(metricName("secondsSinceLastUpdate"), (Gauge<Long>) () -> secondsSince(lastUpdate()));
+        metricRegistry.register(metricName("secondsUntilValidUntil"), (Gauge<Long>) () -> secondsUntil(status.validUntil));
+        metricRegistry.register(metricName("signingCertificates"), (Gauge<Integer>) () -> status.signingCertificates.count);
+        metricRegistry.register(metricName("secondsUntilSigningCertificateExpiry"), (Gauge<Long>) () -> secondsUntil(status.signingCertificates.earliestExpiry));
+        metricRegistry.register(metricName("encryptionCertificates"), (Gauge<Integer>) () -> status.encryptionCertificates.count);
+        metricRegistry.register(metricName("secondsUntilEncryptionCertificateExpiry"), (Gauge<Long>) () -> secondsUntil(status.encryptionCertificates.earliestExpiry));
+    }
+
+    @Override
+    public void start() {
+        check();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("metadata-monitor-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::checkIfChanged, CHECK_INTERVAL.getMillis(), CHECK_INTERVAL.getMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getExpectedEntityId() {
+        return expectedEntityId;
+    }
+
+    private void checkIfChanged() {
+        DateTime currentLastRefresh = refreshableMetadataResolver == null ? null : refreshableMetadataResolver.getLastRefresh();
+        boolean refreshed = refreshableMetadataResolver == null || currentLastRefresh == null || !currentLastRefresh.equals(lastRefresh);
+        boolean expired = status.validUntil != null && !status.validUntil.isAfterNow();
+        if (refreshed || expired || !status.isHealthy()) {
+            check();
+        }
+    }
+
+    /**
+     * Works out the status from the metadata now.
+     */
+    public synchronized void check() {
+        if (refreshableMetadataResolver != null) {
+            lastRefresh = refreshableMetadataResolver.getLastRefresh();
+        }
+        Status previous = status;
+        try {
+            EntityDescriptor entityDescriptor = metadataResolver.resolveSingle(expectedEntityCriteria);
+            status = entityDescriptor == null ? Status.unhealthy("No exception was thrown") : Status.of(entityDescriptor);
+        } catch (Exception e) {
+            status = Status.unhealthy(e.getMessage());
+        }
+        if (previous.isHealthy() && !status.isHealthy()) {
+            LOG.warn("Metadata for {} can no longer be loaded: {}", expectedEntityId, status.getMessage());
+        } else if (!previous.isHealthy() && status.isHealthy()) {
+            LOG.info("Metadata for {} has been loaded", expectedEntityId);
+        }
+    }
+
+    private DateTime lastUpdate() {
+        return refreshableMetadataResolver == null ? null : refreshableMetadataResolver.getLastUpdate();
+    }
+
+    private String metricName(String metric) {
+        return MetricRegistry.name(MetadataMonitor.class, name, metric);
+    }
+
+    private static Long secondsSince(DateTime time) {
+        return time == null ? null : TimeUnit.MILLISECONDS.toSeconds(DateTimeUtils.currentTimeMillis() - time.getMillis());
+    }
+
+    private static Long secondsUntil(DateTime time) {
+        return time == null ? null : TimeUnit.MILLISECONDS.toSeconds(time.getMillis() - DateTimeUtils.currentTimeMillis());
+    }
+
+    /**
+     * The resolver whose refreshes change the metadata, looking past a snapshot to the metadata fetched over HTTP.
+     */
+    private static RefreshableMetadataResolver refreshableMetadataResolver(MetadataResolver metadataResolver) {
+        if (metadataResolver instanceof SnapshotBackedMetadataResolver) {
+            return refreshableMetadataResolver(((SnapshotBackedMetadataResolver) metadataResolver).getLiveMetadataResolver());
+        }
+        return metadataResolver instanceof RefreshableMetadataResolver ? (RefreshableMetadataResolver) metadataResolver : null;
+    }
+
+    public static class Status {
+        private final boolean healthy;
+        private final String message;
+        private final DateTime validUntil;
+        private final Certificates signingCertificates;
+        private final Certificates encryptionCertificates;
+
+        private Status(boolean healthy, String message, DateTime validUntil, Certificates signingCertificates, Certificates encryptionCertificates) {
+            this.healthy = healthy;
+            this.message = message;
+            this.validUntil = validUntil;
+            this.signingCertificates = signingCertificates;
+            this.encryptionCertificates = encryptionCertificates;
+        }
+
+        private static Status unhealthy(String message) {
+            return new Status(false, message, null, Certificates.NONE, Certificates.NONE);
+        }
+
+        private static Status of(EntityDescriptor entityDescriptor) {
+            Certificates signingCertificates = Certificates.NONE;
+            Certificates encryptionCertificates = Certificates.NONE;
+            for (RoleDescriptor roleDescriptor : entityDescriptor.getRoleDescriptors()) {
+                for (KeyDescriptor keyDescriptor : roleDescriptor.getKeyDescriptors()) {
+                    for (X509Certificate certificate : certificates(keyDescriptor)) {
+                        DateTime expiry = new DateTime(certificate.getNotAfter());
+                        UsageType use = keyDescriptor.getUse();
+                        if (use != UsageType.ENCRYPTION) {
+                            signingCertificates = signingCertificates.add(expiry);
+                        }
+                        if (use != UsageType.SIGNING) {
+                            encryptionCertificates = encryptionCertificates.add(expiry);
+                        }
+                    }
+                }
+            }
+            return new Status(true, null, MetadataSupport.getValidUntil(entityDescriptor), signingCertificates, encryptionCertificates);
+        }
+
+        private static Iterable<X509Certificate> certificates(KeyDescriptor keyDescriptor) {
+            if (keyDescriptor.getKeyInfo() == null) {
+                return Collections.emptyList();
+            }
+            try {
+                return KeyInfoSupport.getCertificates(keyDescriptor.getKeyInfo());
+            } catch (CertificateException e) {
+                LOG.warn("Unable to read a certificate from metadata: {}", e.getMessage());
+                return Collections.emptyList();
+            }
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         * Why the metadata couldn't be loaded, or null if it could.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        public DateTime getValidUntil() {
+            return validUntil;
+        }
+
+        public int getSigningCertificateCount() {
+            return signingCertificates.count;
+        }
+
+        public DateTime getEarliestSigningCertificateExpiry() {
+            return signingCertificates.earliestExpiry;
+        }
+
+        public int getEncryptionCertificateCount() {
+            return encryptionCertificates.count;
+        }
+
+        public DateTime getEarliestEncryptionCertificateExpiry() {
+            return encryptionCertificates.earliestExpiry;
+        }
+    }
+
+    private static class Certificates {
+        private static final Certificates NONE = new Certificates(0, null);
+
+        private final int count;
+        private final DateTime earliestExpiry;
+
+        private Certificates(int count, DateTime earliestExpiry) {
+            this.count = count;
+            this.earliestExpiry = earliestExpiry;
+        }
+
+        private Certificates add(DateTime expiry) {
+            return new Certificates(count + 1, earliestExpiry == null || expiry.isBefore(earliestExpiry) ? expiry : earliestExpiry);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package uk.gov.ida.verifyserviceprovider.metadata;
+
+import com.google.common.hash.Hashing;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.opensaml.core.config.ConfigurationService;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistry;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.filter.impl.SignatureValidationFilter;
+import org.opensaml.saml.metadata.resolver.impl.DOMMetadataResolver;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.impl.StaticCredentialResolver;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.opensaml.security.x509.impl.BasicPKIXValidationInformation;
+import org.opensaml.security.x509.impl.StaticPKIXValidationInformationResolver;
+import org.opensaml.xmlsec.config.DefaultSecurityConfigurationBootstrap;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xmlsec.signature.support.SignatureTrustEngine;
+import org.opensaml.xmlsec.signature.support.impl.ChainingSignatureTrustEngine;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import org.opensaml.xmlsec.signature.support.impl.PKIXSignatureTrustEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The last metadata document for an entity which was fetched and verified, kept on disk so that it can be used
+ * at startup before fresh metadata has been fetched.
+ *
+ * A document is only saved once it has been verified, and is verified again when it's loaded: its signature must
+ * be trusted by the trust store, if there is one, and it must describe the expected entity and not have expired.
+ * Alongside the document is a properties file recording when it was saved, its SHA-256 digest and whether its
+ * signature was checked.
+ */
+public class MetadataSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetadataSnapshot.class);
+    private static final int MAX_CERTIFICATE_PATH_DEPTH = 5;
+
+    private final String name;
+    private final Path documentFile;
+    private final Path stateFile;
+    private final String expectedEntityId;
+    private final SignatureTrustEngine signatureTrustEngine;
+
+    private MetadataSnapshot(Path directory, String name, String expectedEntityId, SignatureTrustEngine signatureTrustEngine) {
+        this.name = name;
+        this.documentFile = directory.resolve(name + ".xml");
+        this.stateFile = directory.resolve(name + ".properties");
+        this.expectedEntityId = expectedEntityId;
+        this.signatureTrustEngine = signatureTrustEngine;
+    }
+
+    /**
+     * @param trustStore the trust store the metadata's signature must be trusted by, or null if it isn't signed
+     */
+    public static MetadataSnapshot create(Path directory, String name, String expectedEntityId, KeyStore trustStore) throws KeyStoreException {
+        return new MetadataSnapshot(directory, name, expectedEntityId, trustStore == null ? null : createSignatureTrustEngine(trustStore));
+    }
+
+    /**
+     * @return a resolver for the saved document, or empty if there isn't one or it's no longer valid
+     */
+    public Optional<MetadataResolver> load() {
+        if (!Files.exists(documentFile)) {
+            LOG.info("There is no {} snapshot in {}", name, documentFile.getParent());
+            return Optional.empty();
+        }
+        try {
+            MetadataResolver metadataResolver = verify(Files.readAllBytes(documentFile));
+            LOG.info("Loaded the {} snapshot saved at {}", name, readState().getProperty("savedAt", "an unknown time"));
+            return Optional.of(metadataResolver);
+        } catch (IOException | InvalidMetadataException e) {
+            LOG.warn("Ignoring the {} snapshot in {} as it isn't valid: {}", name, documentFile.getParent(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Verifies the document and, if it's valid, replaces the saved one with it.
+     */
+    public void save(byte[] document) throws IOException, InvalidMetadataException {
+        verify(document);
+
+        Properties state = new Properties();
+        state.setProperty("entityId", expectedEntityId);
+        state.setProperty("savedAt", new DateTime(DateTimeUtils.currentTimeMillis(), DateTimeZone.UTC).toString());
+        state.setProperty("sha256", Hashing.sha256().hashBytes(document).toString());
+        state.setProperty("signatureVerified", Boolean.toString(signatureTrustEngine != null));
+
+        Files.createDirectories(documentFile.getParent());
+        replace(documentFile, temporaryFile -> Files.write(temporaryFile, document));
+        replace(stateFile, temporaryFile -> {
+            try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+                state.store(out, "The state of " + documentFile.getFileName());
+            }
+        });
+    }
+
+    MetadataResolver verify(byte[] document) throws InvalidMetadataException {
+        try {
+            Document parsed = getParserPool().parse(new ByteArrayInputStream(document));
+            DOMMetadataResolver metadataResolver = new DOMMetadataResolver(parsed.getDocumentElement());
+            metadataResolver.setId(name + "-snapshot");
+            metadataResolver.setRequireValidMetadata(true);
+            metadataResolver.setFailFastInitialization(true);
+            if (signatureTrustEngine != null) {
+                metadataResolver.setMetadataFilter(new SignatureValidationFilter(signatureTrustEngine));
+            }
+            metadataResolver.initialize();
+            if (metadataResolver.resolveSingle(new CriteriaSet(new EntityIdCriterion(expectedEntityId))) == null) {
+                throw new InvalidMetadataException("it doesn't describe " + expectedEntityId + " or has expired");
+            }
+            return metadataResolver;
+        } catch (XMLParserException | ComponentInitializationException | ResolverException e) {
+            throw new InvalidMetadataException(e.getMessage());
+        }
+    }
+
+    private Properties readState() {
+        Properties state = new Properties();
+        if (Files.exists(stateFile)) {
+            try {
+                state.load(new ByteArrayInputStream(Files.readAllBytes(stateFile)));
+            } catch (IOException e) {
+                // The state is only informational, as the document is always verified again
+            }
+        }
+        return state;
+    }
+
+    private static void replace(Path file, FileWriter writer) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        writer.write(temporaryFile);
+        Files.move(temporaryFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    private static ParserPool getParserPool() {
+        return ConfigurationService.get(XMLObjectProviderRegistry.class).getParserPool();
+    }
+
+    /**
+     * Trusts a signature made with a certificate in the trust store, or one which chains to a certificate in it.
+     */
+    private static SignatureTrustEngine createSignatureTrustEngine(KeyStore trustStore) throws KeyStoreException {
+        List<X509Certificate> certificates = new ArrayList<>();
+        for (String alias : Collections.list(trustStore.aliases())) {
+            Certificate certificate = trustStore.getCertificate(alias);
+            if (certificate instanceof X509Certificate) {
+                certificates.add((X509Certificate) certificate);
+            }
+        }
+        KeyInfoCredentialResolver keyInfoCredentialResolver = DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver();
+        List<Credential> credentials = certificates.stream().map(BasicX509Credential::new).collect(toList());
+        return new ChainingSignatureTrustEngine(asList(
+            new ExplicitKeySignatureTrustEngine(new StaticCredentialResolver(credentials), keyInfoCredentialResolver),
+            new PKIXSignatureTrustEngine(
+                new StaticPKIXValidationInformationResolver(
+                    Collections.singletonList(new BasicPKIXValidationInformation(certificates, null, MAX_CERTIFICATE_PATH_DEPTH)),
+                    Collections.emptySet()
+                ),
+                keyInfoCredentialResolver
+            )
+        ));
+    }
+
+    @FunctionalInterface
+    private interface FileWriter {
+        void write(Path file) throws IOException;
+    }
+
+    public static class InvalidMetadataException extends Exception {
+        InvalidMetadataException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package uk.gov.ida.verifyserviceprovider.metadata;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.client.Client;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fetches metadata on a background thread every interval, and saves it to its {@link MetadataSnapshot} if it's valid.
+ */
+public class MetadataSnapshotter implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetadataSnapshotter.class);
+
+    private final MetadataSnapshot snapshot;
+    private final Client client;
+    private final Supplier<URI> metadataUri;
+    private final Duration interval;
+    private ScheduledExecutorService executor;
+
+    public MetadataSnapshotter(MetadataSnapshot snapshot, Client client, Supplier<URI> metadataUri, Duration interval) {
+        this.snapshot = snapshot;
+        this.client = client;
+        this.metadataUri = metadataUri;
+        this.interval = interval;
+    }
+
+    @Override
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("metadata-snapshotter-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::takeSnapshot, 0, interval.getMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    void takeSnapshot() {
+        URI uri = metadataUri.get();
+        try {
+            snapshot.save(client.target(uri).request().get(byte[].class));
+            LOG.debug("Saved a snapshot of the metadata from {}", uri);
+        } catch (IOException | MetadataSnapshot.InvalidMetadataException | RuntimeException e) {
+            LOG.warn("Failed to save a snapshot of the metadata from {}: {}", uri, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package uk.gov.ida.verifyserviceprovider.metadata;
+
+import org.joda.time.DateTime;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.RefreshableMetadataResolver;
+import org.opensaml.saml.saml2.common.TimeBoundSAMLObject;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+
+/**
+ * Helpers for working out what can be cached from metadata, and for how long.
+ */
+public class MetadataSupport {
+
+    private MetadataSupport() {
+    }
+
+    /**
+     * When the metadata was last updated, so that anything read from it can be cached until it changes, or null if
+     * the resolver can't say. Nothing should be cached while it's null, as there'd be no telling when it's out of date.
+     *
+     * A {@link SnapshotBackedMetadataResolver} reports a last update of its own while its snapshot is in use, which
+     * changes once the fetched metadata has been loaded.
+     */
+    public static DateTime getLastUpdate(MetadataResolver metadataResolver) {
+        if (metadataResolver instanceof RefreshableMetadataResolver) {
+            return ((RefreshableMetadataResolver) metadataResolver).getLastUpdate();
+        }
+        return null;
+    }
+
+    /**
+     * The earliest validUntil of the entity and the EntitiesDescriptors around it, or null if none of them has one.
+     */
+    public static DateTime getValidUntil(EntityDescriptor entityDescriptor) {
+        DateTime validUntil = null;
+        for (XMLObject xmlObject = entityDescriptor; xmlObject != null; xmlObject = xmlObject.getParent()) {
+            if (xmlObject instanceof TimeBoundSAMLObject) {
+                DateTime objectValidUntil = ((TimeBoundSAMLObject) xmlObject).getValidUntil();
+                if (objectValidUntil != null && (validUntil == null || objectValidUntil.isBefore(validUntil))) {
+                    validUntil = objectValidUntil;
+                }
+            }
+        }
+        return validUntil;
+    }
+}
@@ -0,0 +1,122 @@
+package uk.gov.ida.verifyserviceprovider.metadata;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.RefreshableMetadataResolver;
+import org.opensaml.saml.metadata.resolver.filter.MetadataFilter;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves from a {@link MetadataSnapshot} until the metadata fetched over HTTP describes the expected entity,
+ * and from the fetched metadata from then on. Before then, each lookup first checks whether it's arrived.
+ *
+ * The filter and validity settings are those of the fetched metadata's resolver. While the snapshot is in use,
+ * {@link #getLastUpdate()} is {@link #SNAPSHOT_LAST_UPDATE}, so that anything cached from the snapshot is rebuilt
+ * once the fetched metadata has been loaded; from then on it's the fetched metadata's resolver's.
+ */
+public class SnapshotBackedMetadataResolver implements RefreshableMetadataResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotBackedMetadataResolver.class);
+
+    public static final DateTime SNAPSHOT_LAST_UPDATE = new DateTime(0, DateTimeZone.UTC);
+
+    private final MetadataResolver liveMetadataResolver;
+    private final MetadataResolver snapshotMetadataResolver;
+    private final CriteriaSet expectedEntityCriteria;
+    private volatile boolean liveMetadataLoaded;
+
+    /**
+     * @param snapshotMetadataResolver a resolver for the snapshot, or null if there isn't a valid one
+     */
+    public SnapshotBackedMetadataResolver(MetadataResolver liveMetadataResolver, MetadataResolver snapshotMetadataResolver, String expectedEntityId) {
+        this.liveMetadataResolver = liveMetadataResolver;
+        this.snapshotMetadataResolver = snapshotMetadataResolver;
+        this.expectedEntityCriteria = new CriteriaSet(new EntityIdCriterion(expectedEntityId));
+        this.liveMetadataLoaded = snapshotMetadataResolver == null;
+    }
+
+    @Override
+    public Iterable<EntityDescriptor> resolve(CriteriaSet criteria) throws ResolverException {
+        return currentMetadataResolver().resolve(criteria);
+    }
+
+    @Override
+    public EntityDescriptor resolveSingle(CriteriaSet criteria) throws ResolverException {
+        return currentMetadataResolver().resolveSingle(criteria);
+    }
+
+    @Override
+    public void refresh() throws ResolverException {
+        if (liveMetadataResolver instanceof RefreshableMetadataResolver) {
+            ((RefreshableMetadataResolver) liveMetadataResolver).refresh();
+        }
+    }
+
+    @Override
+    public DateTime getLastUpdate() {
+        if (currentMetadataResolver() != liveMetadataResolver) {
+            return SNAPSHOT_LAST_UPDATE;
+        }
+        return MetadataSupport.getLastUpdate(liveMetadataResolver);
+    }
+
+    @Override
+    public DateTime getLastRefresh() {
+        return liveMetadataResolver instanceof RefreshableMetadataResolver ? ((RefreshableMetadataResolver) liveMetadataResolver).getLastRefresh() : null;
+    }
+
+    public boolean isLiveMetadataLoaded() {
+        return liveMetadataLoaded;
+    }
+
+    public MetadataResolver getLiveMetadataResolver() {
+        return liveMetadataResolver;
+    }
+
+    private MetadataResolver currentMetadataResolver() {
+        if (liveMetadataLoaded) {
+            return liveMetadataResolver;
+        }
+        try {
+            if (liveMetadataResolver.resolveSingle(expectedEntityCriteria) != null) {
+                LOG.info("Fetched metadata has been loaded for {}, so its snapshot is no longer used", liveMetadataResolver.getId());
+                liveMetadataLoaded = true;
+                return liveMetadataResolver;
+            }
+        } catch (ResolverException e) {
+            // Keep using the snapshot until the fetched metadata can be read
+        }
+        return snapshotMetadataResolver;
+    }
+
+    @Override
+    public boolean isRequireValidMetadata() {
+        return liveMetadataResolver.isRequireValidMetadata();
+    }
+
+    @Override
+    public void setRequireValidMetadata(boolean requireValidMetadata) {
+        liveMetadataResolver.setRequireValidMetadata(requireValidMetadata);
+    }
+
+    @Override
+    public MetadataFilter getMetadataFilter() {
+        return liveMetadataResolver.getMetadataFilter();
+    }
+
+    @Override
+    public void setMetadataFilter(MetadataFilter metadataFilter) {
+        liveMetadataResolver.setMetadataFilter(metadataFilter);
+    }
+
+    @Override
+    public String getId() {
+        return liveMetadataResolver.getId();
+    }
+}
@@ -0,0 +1,39 @@
+package uk.gov.ida.verifyserviceprovider.metrics;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+
+/**
+ * Publishes how full the queue of each asynchronous log appender is, as
+ * {@code AsyncAppenderMetrics.<appenderName>.queued} and {@code remainingCapacity}.
+ *
+ * Dropwizard puts each appender behind a bounded queue, which a single thread writes to the console or file.
+ * Once it has fewer than {@code discardingThreshold} places left, INFO and lower events are dropped, and once
+ * it's full logging either blocks or, with {@code neverBlock}, drops every event.
+ */
+public class AsyncAppenderMetrics {
+
+    private AsyncAppenderMetrics() {
+    }
+
+    public static void register(MetricRegistry metricRegistry) {
+        Logger rootLogger = ((LoggerContext) LoggerFactory.getILoggerFactory()).getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        for (Iterator<Appender<ILoggingEvent>> appenders = rootLogger.iteratorForAppenders(); appenders.hasNext(); ) {
+            Appender<ILoggingEvent> appender = appenders.next();
+            if (appender instanceof AsyncAppenderBase) {
+                AsyncAppenderBase<ILoggingEvent> asyncAppender = (AsyncAppenderBase<ILoggingEvent>) appender;
+                String name = MetricRegistry.name(AsyncAppenderMetrics.class, asyncAppender.getName());
+                metricRegistry.register(MetricRegistry.name(name, "queued"), (Gauge<Integer>) asyncAppender::getNumberOfElementsInQueue);
+                metricRegistry.register(MetricRegistry.name(name, "remainingCapacity"), (Gauge<Integer>) asyncAppender::getRemainingCapacity);
+            }
+        }
+    }
+}
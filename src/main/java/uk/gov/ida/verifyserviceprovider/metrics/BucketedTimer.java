@@ -0,0 +1,96 @@
+package uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A Timer which also counts each duration into a fixed bucket and keeps their sum, so that it can be
+ * published as a Prometheus histogram without taking a snapshot of its reservoir.
+ *
+ * The buckets suit the milliseconds to seconds taken to handle a SAML message.
+ */
+public class BucketedTimer extends Timer {
+
+    private static final double[] BUCKET_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+
+    static {
+        for (int bucket = 0; bucket < BUCKET_SECONDS.length; bucket++) {
+            BUCKET_NANOS[bucket] = (long) (BUCKET_SECONDS[bucket] * 1_000_000_000L);
+        }
+    }
+
+    // The last bucket counts durations longer than the largest bound
+    private final LongAdder[] bucketCounts = new LongAdder[BUCKET_SECONDS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public BucketedTimer(Reservoir reservoir) {
+        super(reservoir);
+        for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+            bucketCounts[bucket] = new LongAdder();
+        }
+    }
+
+    /**
+     * With the same one minute sliding window used by the other timers.
+     */
+    public static BucketedTimer withSlidingWindow() {
+        return new BucketedTimer(new SlidingTimeWindowArrayReservoir(1, MINUTES));
+    }
+
+    @Override
+    public void update(long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(duration);
+        super.update(nanos, NANOSECONDS);
+        if (nanos < 0) {
+            return;
+        }
+        sumNanos.add(nanos);
+        int bucket = 0;
+        while (bucket < BUCKET_NANOS.length && nanos > BUCKET_NANOS[bucket]) {
+            bucket++;
+        }
+        bucketCounts[bucket].increment();
+    }
+
+    @Override
+    public <T> T time(Callable<T> event) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return event.call();
+        } finally {
+            update(System.nanoTime() - start, NANOSECONDS);
+        }
+    }
+
+    public static int getBucketCount() {
+        return BUCKET_SECONDS.length;
+    }
+
+    /**
+     * The upper bound of a bucket, in seconds.
+     */
+    public static double getBucketBound(int bucket) {
+        return BUCKET_SECONDS[bucket];
+    }
+
+    /**
+     * The number of durations in a bucket, not including those in smaller buckets. The bucket after
+     * the last bound counts the durations longer than it.
+     */
+    public long getCountInBucket(int bucket) {
+        return bucketCounts[bucket].sum();
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+}
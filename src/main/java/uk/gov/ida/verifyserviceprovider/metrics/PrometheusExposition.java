@@ -0,0 +1,352 @@
+package uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Writes the metrics in a MetricRegistry in the Prometheus text exposition format.
+ *
+ * Metric names which contain a value, such as an entity ID or a scenario, are split into a family name and
+ * labels by {@link #LABEL_RULES}. Other names are flattened. A {@link BucketedTimer} is written as a histogram
+ * and any other Timer or Histogram as a summary, with durations in seconds. A summary's {@code _sum} is only
+ * approximate, as those metrics don't keep a total: it's the mean of the reservoir's snapshot times the count.
+ *
+ * Mapping names to families and labels is done once, and again only when metrics are added or removed, so a
+ * scrape only reads each metric's values. A BucketedTimer is read without taking a snapshot of its reservoir.
+ */
+public class PrometheusExposition {
+
+    private static final String VSP = "uk\\.gov\\.ida\\.verifyserviceprovider\\.";
+
+    static final List<LabelRule> LABEL_RULES = asList(
+        new LabelRule(VSP + "metrics\\.TenantRequestMetrics\\.(.+)\\.translations\\.(LEVEL_\\d)\\.([A-Z_]+)", "vsp_translations", "entity_id", "level_of_assurance", "scenario"),
+        new LabelRule(VSP + "metrics\\.TenantRequestMetrics\\.(.+)\\.translations\\.([A-Z_]+)", "vsp_translation_seconds", "entity_id", "scenario"),
+        new LabelRule(VSP + "metrics\\.TenantRequestMetrics\\.(.+)\\.generatedRequests\\.(LEVEL_\\d)", "vsp_generated_requests", "entity_id", "level_of_assurance"),
+        new LabelRule(VSP + "metrics\\.TenantRequestMetrics\\.(.+)\\.generatedRequests", "vsp_generated_request_seconds", "entity_id"),
+        new LabelRule(VSP + "services\\.ResponseService\\.(\\w+)\\.failures\\.(\\w+)", "vsp_response_stage_failures", "stage", "exception"),
+        new LabelRule(VSP + "services\\.ResponseService\\.(\\w+)", "vsp_response_stage_seconds", "stage"),
+        new LabelRule(VSP + "validators\\.ResponsePreValidator\\.rejected\\.(\\w+)", "vsp_response_pre_validation_rejections", "check"),
+        new LabelRule(VSP + "services\\.TenantAdmission\\.(.+)\\.rejected", "vsp_tenant_admission_rejections", "entity_id"),
+        new LabelRule(VSP + "services\\.WorkerPool\\.tenants\\.(.+)\\.waitTime", "vsp_worker_pool_tenant_wait_seconds", "entity_id"),
+        new LabelRule(VSP + "saml\\.DigestIndexedCredentialResolver\\.selected\\.(\\w+)", "vsp_decryption_key_selections", "key_digest"),
+        new LabelRule(VSP + "metrics\\.AsyncAppenderMetrics\\.(.+)\\.queued", "vsp_log_queue_events", "appender"),
+        new LabelRule(VSP + "metrics\\.AsyncAppenderMetrics\\.(.+)\\.remainingCapacity", "vsp_log_queue_remaining_capacity", "appender"),
+        new LabelRule(VSP + "metadata\\.MetadataMonitor\\.(\\w+)\\.secondsSinceLastUpdate", "vsp_metadata_seconds_since_last_update", "metadata"),
+        new LabelRule(VSP + "metadata\\.MetadataMonitor\\.(\\w+)\\.secondsUntilValidUntil", "vsp_metadata_seconds_until_valid_until", "metadata"),
+        new LabelRule(VSP + "metadata\\.MetadataMonitor\\.(\\w+)\\.signingCertificates", "vsp_metadata_signing_certificates", "metadata"),
+        new LabelRule(VSP + "metadata\\.MetadataMonitor\\.(\\w+)\\.secondsUntilSigningCertificateExpiry", "vsp_metadata_seconds_until_signing_certificate_expiry", "metadata"),
+        new LabelRule(VSP + "metadata\\.MetadataMonitor\\.(\\w+)\\.encryptionCertificates", "vsp_metadata_encryption_certificates", "metadata"),
+        new LabelRule(VSP + "metadata\\.MetadataMonitor\\.(\\w+)\\.secondsUntilEncryptionCertificateExpiry", "vsp_metadata_seconds_until_encryption_certificate_expiry", "metadata"),
+        new LabelRule("io\\.dropwizard\\.jetty\\.MutableServletContextHandler\\.([1-5]xx)-responses", "jetty_responses", "status"),
+        new LabelRule("jvm\\.gc\\.(.+)\\.count", "jvm_gc_collections", "collector"),
+        new LabelRule("jvm\\.gc\\.(.+)\\.time", "jvm_gc_collection_time_ms", "collector"),
+        new LabelRule("jvm\\.memory\\.pools\\.(.+)\\.usage", "jvm_memory_pool_usage", "pool"),
+        new LabelRule("jvm\\.threads\\.(new|runnable|blocked|waiting|timed_waiting|terminated)\\.count", "jvm_threads", "state")
+    );
+
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.98, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.75", "0.95", "0.98", "0.99", "0.999"};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private static final String[] BUCKET_LABELS = new String[BucketedTimer.getBucketCount()];
+
+    static {
+        for (int bucket = 0; bucket < BUCKET_LABELS.length; bucket++) {
+            BUCKET_LABELS[bucket] = "le=\"" + BucketedTimer.getBucketBound(bucket) + "\"";
+        }
+    }
+
+    private final MetricRegistry metricRegistry;
+    private volatile boolean stale = true;
+    private List<Family> families = new ArrayList<>();
+
+    public PrometheusExposition(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        metricRegistry.addListener(new StaleOnChange());
+    }
+
+    public synchronized void write(Appendable out) throws IOException {
+        if (stale) {
+            stale = false;
+            families = buildFamilies(metricRegistry.getMetrics());
+        }
+        for (Family family : families) {
+            family.write(out);
+        }
+    }
+
+    private static List<Family> buildFamilies(Map<String, Metric> metrics) {
+        Map<String, Family> families = new TreeMap<>();
+        metrics.forEach((name, metric) -> {
+            Type type = Type.of(metric);
+            if (type == null) {
+                return;
+            }
+            Sample sample = null;
+            String familyName = null;
+            for (LabelRule rule : LABEL_RULES) {
+                Matcher matcher = rule.pattern.matcher(name);
+                if (matcher.matches()) {
+                    familyName = rule.familyName;
+                    sample = new Sample(metric, rule.labels(matcher));
+                    break;
+                }
+            }
+            if (familyName == null || (families.containsKey(familyName) && families.get(familyName).type != type)) {
+                familyName = sanitize(name);
+                sample = new Sample(metric, "");
+            }
+            if (type.isTimer() && !familyName.endsWith("_seconds")) {
+                familyName = familyName + "_seconds";
+            }
+            Family family = families.computeIfAbsent(familyName, key -> new Family(key, type));
+            if (family.type == type) {
+                family.samples.add(sample);
+            }
+        });
+        return new ArrayList<>(families.values());
+    }
+
+    static String sanitize(String name) {
+        String sanitized = name.replaceAll("[^a-zA-Z0-9_:]", "_");
+        return Character.isDigit(sanitized.charAt(0)) ? "_" + sanitized : sanitized;
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    static class LabelRule {
+        private final Pattern pattern;
+        private final String familyName;
+        private final List<String> labelNames;
+
+        LabelRule(String pattern, String familyName, String... labelNames) {
+            this.pattern = Pattern.compile(pattern);
+            this.familyName = familyName;
+            this.labelNames = asList(labelNames);
+        }
+
+        private String labels(Matcher matcher) {
+            StringBuilder labels = new StringBuilder();
+            for (int label = 0; label < labelNames.size(); label++) {
+                if (label > 0) {
+                    labels.append(',');
+                }
+                labels.append(labelNames.get(label)).append("=\"").append(escapeLabelValue(matcher.group(label + 1))).append('"');
+            }
+            return labels.toString();
+        }
+    }
+
+    private enum Type {
+        GAUGE("gauge"),
+        COUNTER("counter"),
+        SUMMARY("summary"),
+        TIMER_SUMMARY("summary"),
+        TIMER_HISTOGRAM("histogram");
+
+        private final String exposedType;
+
+        Type(String exposedType) {
+            this.exposedType = exposedType;
+        }
+
+        private boolean isTimer() {
+            return this == TIMER_SUMMARY || this == TIMER_HISTOGRAM;
+        }
+
+        private static Type of(Metric metric) {
+            if (metric instanceof BucketedTimer) {
+                return TIMER_HISTOGRAM;
+            } else if (metric instanceof Timer) {
+                return TIMER_SUMMARY;
+            } else if (metric instanceof Histogram) {
+                return SUMMARY;
+            } else if (metric instanceof Meter) {
+                return COUNTER;
+            } else if (metric instanceof Counter || metric instanceof Gauge) {
+                // A Dropwizard Counter can be decremented, so isn't a Prometheus counter
+                return GAUGE;
+            }
+            return null;
+        }
+    }
+
+    private static class Sample {
+        private final Metric metric;
+        private final String labels;
+
+        private Sample(Metric metric, String labels) {
+            this.metric = metric;
+            this.labels = labels;
+        }
+    }
+
+    private static class Family {
+        private final String name;
+        private final Type type;
+        private final List<Sample> samples = new ArrayList<>();
+
+        private Family(String name, Type type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        private void write(Appendable out) throws IOException {
+            out.append("# TYPE ").append(name).append(type == Type.COUNTER ? "_total " : " ").append(type.exposedType).append('\n');
+            for (Sample sample : samples) {
+                switch (type) {
+                    case GAUGE:
+                        writeGauge(out, sample);
+                        break;
+                    case COUNTER:
+                        writeLine(out, "_total", sample.labels, null, ((Meter) sample.metric).getCount());
+                        break;
+                    case SUMMARY:
+                        writeSummary(out, sample, ((Histogram) sample.metric).getSnapshot(), ((Histogram) sample.metric).getCount(), 1);
+                        break;
+                    case TIMER_SUMMARY:
+                        writeSummary(out, sample, ((Timer) sample.metric).getSnapshot(), ((Timer) sample.metric).getCount(), NANOS_PER_SECOND);
+                        break;
+                    case TIMER_HISTOGRAM:
+                        writeHistogram(out, sample, (BucketedTimer) sample.metric);
+                        break;
+                }
+            }
+        }
+
+        private void writeGauge(Appendable out, Sample sample) throws IOException {
+            if (sample.metric instanceof Counter) {
+                writeLine(out, "", sample.labels, null, ((Counter) sample.metric).getCount());
+                return;
+            }
+            Object value = ((Gauge<?>) sample.metric).getValue();
+            if (value instanceof Number) {
+                writeLine(out, "", sample.labels, null, ((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                writeLine(out, "", sample.labels, null, (Boolean) value ? 1 : 0);
+            }
+        }
+
+        private void writeSummary(Appendable out, Sample sample, Snapshot snapshot, long count, double scale) throws IOException {
+            for (int quantile = 0; quantile < QUANTILES.length; quantile++) {
+                writeLine(out, "", sample.labels, "quantile=\"" + QUANTILE_LABELS[quantile] + "\"", snapshot.getValue(QUANTILES[quantile]) / scale);
+            }
+            // Estimated from the snapshot, which may only cover recent updates, so rates of _sum / _count are approximate
+            writeLine(out, "_sum", sample.labels, null, snapshot.getMean() * count / scale);
+            writeLine(out, "_count", sample.labels, null, count);
+        }
+
+        private void writeHistogram(Appendable out, Sample sample, BucketedTimer timer) throws IOException {
+            long cumulativeCount = 0;
+            for (int bucket = 0; bucket < BucketedTimer.getBucketCount(); bucket++) {
+                cumulativeCount += timer.getCountInBucket(bucket);
+                writeLine(out, "_bucket", sample.labels, BUCKET_LABELS[bucket], cumulativeCount);
+            }
+            cumulativeCount += timer.getCountInBucket(BucketedTimer.getBucketCount());
+            writeLine(out, "_bucket", sample.labels, "le=\"+Inf\"", cumulativeCount);
+            writeLine(out, "_sum", sample.labels, null, timer.getSumNanos() / NANOS_PER_SECOND);
+            // The count is taken from the buckets, so that it matches the +Inf bucket
+            writeLine(out, "_count", sample.labels, null, cumulativeCount);
+        }
+
+        private void writeLine(Appendable out, String suffix, String labels, String extraLabel, double value) throws IOException {
+            writeName(out, suffix, labels, extraLabel);
+            if (Double.isNaN(value)) {
+                out.append("NaN");
+            } else if (Double.isInfinite(value)) {
+                out.append(value > 0 ? "+Inf" : "-Inf");
+            } else {
+                out.append(Double.toString(value));
+            }
+            out.append('\n');
+        }
+
+        private void writeLine(Appendable out, String suffix, String labels, String extraLabel, long value) throws IOException {
+            writeName(out, suffix, labels, extraLabel);
+            out.append(Long.toString(value)).append('\n');
+        }
+
+        private void writeName(Appendable out, String suffix, String labels, String extraLabel) throws IOException {
+            out.append(name).append(suffix);
+            if (!labels.isEmpty() || extraLabel != null) {
+                out.append('{').append(labels);
+                if (extraLabel != null) {
+                    out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+                }
+                out.append('}');
+            }
+            out.append(' ');
+        }
+    }
+
+    private class StaleOnChange implements MetricRegistryListener {
+        @Override
+        public void onGaugeAdded(String name, Gauge<?> gauge) {
+            stale = true;
+        }
+
+        @Override
+        public void onGaugeRemoved(String name) {
+            stale = true;
+        }
+
+        @Override
+        public void onCounterAdded(String name, Counter counter) {
+            stale = true;
+        }
+
+        @Override
+        public void onCounterRemoved(String name) {
+            stale = true;
+        }
+
+        @Override
+        public void onHistogramAdded(String name, Histogram histogram) {
+            stale = true;
+        }
+
+        @Override
+        public void onHistogramRemoved(String name) {
+            stale = true;
+        }
+
+        @Override
+        public void onMeterAdded(String name, Meter meter) {
+            stale = true;
+        }
+
+        @Override
+        public void onMeterRemoved(String name) {
+            stale = true;
+        }
+
+        @Override
+        public void onTimerAdded(String name, Timer timer) {
+            stale = true;
+        }
+
+        @Override
+        public void onTimerRemoved(String name) {
+            stale = true;
+        }
+    }
+}
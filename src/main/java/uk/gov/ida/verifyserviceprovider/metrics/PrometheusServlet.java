@@ -0,0 +1,33 @@
+package uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Serves the metrics in the Prometheus text exposition format, for a Prometheus server to scrape.
+ */
+public class PrometheusServlet extends HttpServlet {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PrometheusExposition exposition;
+
+    public PrometheusServlet(MetricRegistry metricRegistry) {
+        this.exposition = new PrometheusExposition(metricRegistry);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+        try (Writer writer = response.getWriter()) {
+            exposition.write(writer);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Times one stage of a request and counts the ways it fails.
+ *
+ * The timer is a {@link BucketedTimer} backed by a {@link SlidingTimeWindowArrayReservoir}, which
+ * records into pre-allocated arrays rather than allocating a node per update, so it is cheap enough
+ * to leave on for every request. Failures are counted in {@code <name>.failures.<exception>}.
+ *
+ * Stages can be timed by passing them to {@link #time}, or, where a lambda per call isn't wanted,
+ * like a {@link Timer.Context}:
+ * <pre>
+ * long start = stageTimer.start();
+ * try {
+ *     ...
+ *     stageTimer.stop(start);
+ * } catch (RuntimeException e) {
+ *     throw stageTimer.failed(start, e);
+ * }
+ * </pre>
+ */
+public class StageTimer {
+
+    private final MetricRegistry metricRegistry;
+    private final String name;
+    private final Timer timer;
+    private final ConcurrentMap<Class<? extends Throwable>, Counter> failureCounters = new ConcurrentHashMap<>();
+
+    public StageTimer(MetricRegistry metricRegistry, String name) {
+        this.metricRegistry = metricRegistry;
+        this.name = name;
+        this.timer = metricRegistry.timer(name, BucketedTimer::withSlidingWindow);
+    }
+
+    public <T> T time(Supplier<T> stage) {
+        long start = start();
+        try {
+            T result = stage.get();
+            stop(start);
+            return result;
+        } catch (RuntimeException e) {
+            throw failed(start, e);
+        }
+    }
+
+    public void time(Runnable stage) {
+        long start = start();
+        try {
+            stage.run();
+            stop(start);
+        } catch (RuntimeException e) {
+            throw failed(start, e);
+        }
+    }
+
+    /**
+     * @return the time the stage started, to be passed to {@link #stop} or {@link #failed}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(long start) {
+        timer.update(System.nanoTime() - start, NANOSECONDS);
+    }
+
+    /**
+     * Records the time taken by a stage which failed, and counts the failure.
+     *
+     * @return the exception, for the caller to rethrow
+     */
+    public RuntimeException failed(long start, RuntimeException e) {
+        stop(start);
+        failureCounters
+            .computeIfAbsent(e.getClass(), exceptionClass -> metricRegistry.counter(MetricRegistry.name(name, "failures", exceptionClass.getSimpleName())))
+            .inc();
+        return e;
+    }
+}
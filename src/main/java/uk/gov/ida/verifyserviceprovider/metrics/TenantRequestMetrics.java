@@ -0,0 +1,133 @@
+package uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Counts and times the responses translated and the AuthnRequests generated for each service entity ID,
+ * so that match rates and latencies can be read for each service from the admin port.
+ *
+ * Translations are counted in {@code TenantRequestMetrics.<entityId>.translations.<levelOfAssurance>.<scenario>}
+ * and timed in {@code TenantRequestMetrics.<entityId>.translations.<scenario>}, where a translation which failed
+ * has the scenario {@code ERROR}. A translation is counted at the level of assurance the user achieved, or the
+ * requested one if the response couldn't be translated. Generated requests are counted in
+ * {@code TenantRequestMetrics.<entityId>.generatedRequests.<levelOfAssurance>} and timed in
+ * {@code TenantRequestMetrics.<entityId>.generatedRequests}.
+ *
+ * Every metric is created up front, so recording one is a map lookup, an array index and an update of
+ * a Counter, which is striped, and a {@link BucketedTimer}, which records into pre-allocated arrays.
+ * Entity IDs which weren't configured are recorded under {@code other}.
+ */
+public class TenantRequestMetrics {
+
+    private static final String ERROR = "ERROR";
+
+    private final Map<String, EntityIdMetrics> entityIdMetrics;
+    private final EntityIdMetrics otherMetrics;
+
+    private TenantRequestMetrics(Map<String, EntityIdMetrics> entityIdMetrics, EntityIdMetrics otherMetrics) {
+        this.entityIdMetrics = entityIdMetrics;
+        this.otherMetrics = otherMetrics;
+    }
+
+    public static TenantRequestMetrics create(List<String> serviceEntityIds, MetricRegistry metricRegistry) {
+        Map<String, EntityIdMetrics> entityIdMetrics = new HashMap<>();
+        for (String entityId : serviceEntityIds) {
+            entityIdMetrics.put(entityId, new EntityIdMetrics(metricRegistry, entityId));
+        }
+        return new TenantRequestMetrics(Collections.unmodifiableMap(entityIdMetrics), new EntityIdMetrics(metricRegistry, "other"));
+    }
+
+    /**
+     * Records into a registry which isn't published.
+     */
+    public static TenantRequestMetrics none() {
+        return create(Collections.emptyList(), new MetricRegistry());
+    }
+
+    /**
+     * @param scenario the scenario of the translated response, or null if it couldn't be translated
+     * @param startNanos the {@link System#nanoTime()} when the translation started
+     */
+    public void translation(String entityId, LevelOfAssurance levelOfAssurance, Scenario scenario, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        EntityIdMetrics metrics = metricsFor(entityId);
+        int outcome = scenario == null ? metrics.translationTimes.length - 1 : scenario.ordinal();
+        metrics.translations[levelOfAssurance.ordinal()][outcome].inc();
+        metrics.translationTimes[outcome].update(elapsed, NANOSECONDS);
+    }
+
+    /**
+     * @param startNanos the {@link System#nanoTime()} when generating the request started
+     */
+    public void generatedRequest(String entityId, LevelOfAssurance levelOfAssurance, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        EntityIdMetrics metrics = metricsFor(entityId);
+        metrics.generatedRequests[levelOfAssurance.ordinal()].inc();
+        metrics.generatedRequestTimes.update(elapsed, NANOSECONDS);
+    }
+
+    private EntityIdMetrics metricsFor(String entityId) {
+        EntityIdMetrics metrics = entityId == null ? null : entityIdMetrics.get(entityId);
+        return metrics == null ? otherMetrics : metrics;
+    }
+
+    private static class EntityIdMetrics {
+        // Indexed by level of assurance and then scenario, with errors after the last scenario
+        private final Counter[][] translations;
+        private final Timer[] translationTimes;
+        private final Counter[] generatedRequests;
+        private final Timer generatedRequestTimes;
+
+        private EntityIdMetrics(MetricRegistry metricRegistry, String entityId) {
+            String[] outcomes = outcomes();
+            LevelOfAssurance[] levelsOfAssurance = LevelOfAssurance.values();
+
+            this.translations = new Counter[levelsOfAssurance.length][outcomes.length];
+            this.translationTimes = new Timer[outcomes.length];
+            this.generatedRequests = new Counter[levelsOfAssurance.length];
+            for (LevelOfAssurance levelOfAssurance : levelsOfAssurance) {
+                for (int outcome = 0; outcome < outcomes.length; outcome++) {
+                    translations[levelOfAssurance.ordinal()][outcome] = metricRegistry.counter(
+                        name(entityId, "translations", levelOfAssurance.name(), outcomes[outcome])
+                    );
+                }
+                generatedRequests[levelOfAssurance.ordinal()] = metricRegistry.counter(
+                    name(entityId, "generatedRequests", levelOfAssurance.name())
+                );
+            }
+            for (int outcome = 0; outcome < outcomes.length; outcome++) {
+                translationTimes[outcome] = timer(metricRegistry, name(entityId, "translations", outcomes[outcome]));
+            }
+            this.generatedRequestTimes = timer(metricRegistry, name(entityId, "generatedRequests"));
+        }
+
+        private static String[] outcomes() {
+            Scenario[] scenarios = Scenario.values();
+            String[] outcomes = new String[scenarios.length + 1];
+            for (Scenario scenario : scenarios) {
+                outcomes[scenario.ordinal()] = scenario.name();
+            }
+            outcomes[scenarios.length] = ERROR;
+            return outcomes;
+        }
+
+        private static String name(String entityId, String... names) {
+            return MetricRegistry.name(MetricRegistry.name(TenantRequestMetrics.class, entityId), names);
+        }
+
+        private static Timer timer(MetricRegistry metricRegistry, String name) {
+            return metricRegistry.timer(name, BucketedTimer::withSlidingWindow);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+
+/**
+ * Timers for each stage of translating a SAML Response, so that a slow translation
+ * can be attributed to XML parsing, crypto or validation.
+ */
+public class TranslateResponseMetrics {
+
+    private final StageTimer unmarshal;
+    private final StageTimer responseSignatureValidation;
+    private final StageTimer responseValidation;
+    private final StageTimer replayCheck;
+    private final StageTimer assertionDecryption;
+    private final StageTimer assertionValidation;
+    private final StageTimer assertionSignatureValidation;
+    private final StageTimer attributeTranslation;
+
+    public TranslateResponseMetrics(MetricRegistry metricRegistry) {
+        this.unmarshal = stage(metricRegistry, "unmarshal");
+        this.responseSignatureValidation = stage(metricRegistry, "responseSignatureValidation");
+        this.responseValidation = stage(metricRegistry, "responseValidation");
+        this.replayCheck = stage(metricRegistry, "replayCheck");
+        this.assertionDecryption = stage(metricRegistry, "assertionDecryption");
+        this.assertionValidation = stage(metricRegistry, "assertionValidation");
+        this.assertionSignatureValidation = stage(metricRegistry, "assertionSignatureValidation");
+        this.attributeTranslation = stage(metricRegistry, "attributeTranslation");
+    }
+
+    private static StageTimer stage(MetricRegistry metricRegistry, String stageName) {
+        return new StageTimer(metricRegistry, MetricRegistry.name(ResponseService.class, stageName));
+    }
+
+    /**
+     * Base64 decoding, size validation and unmarshalling of the SAML Response.
+     */
+    public StageTimer unmarshal() {
+        return unmarshal;
+    }
+
+    public StageTimer responseSignatureValidation() {
+        return responseSignatureValidation;
+    }
+
+    /**
+     * The checks made on the Response before its signature is validated. Rejections are
+     * counted for each check by {@link uk.gov.ida.verifyserviceprovider.validators.ResponsePreValidator}.
+     */
+    public StageTimer responseValidation() {
+        return responseValidation;
+    }
+
+    /**
+     * Looking up and recording the Response and Assertion IDs in the replay cache.
+     */
+    public StageTimer replayCheck() {
+        return replayCheck;
+    }
+
+    public StageTimer assertionDecryption() {
+        return assertionDecryption;
+    }
+
+    public StageTimer assertionValidation() {
+        return assertionValidation;
+    }
+
+    public StageTimer assertionSignatureValidation() {
+        return assertionSignatureValidation;
+    }
+
+    public StageTimer attributeTranslation() {
+        return attributeTranslation;
+    }
+}
@@ -0,0 +1,99 @@
+package uk.gov.ida.verifyserviceprovider.replay;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A replay cache held on the heap.
+ *
+ * IDs are split across independently locked stripes so that concurrent requests rarely wait
+ * for each other. Each stripe keeps its IDs in the order they were added, which is close to the
+ * order in which they expire, so expired IDs are removed from the front of the stripe as new
+ * ones are added. When a stripe is full the oldest ID is evicted to keep memory bounded.
+ */
+public class InMemoryReplayCache implements ReplayCache {
+
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder evictions = new LongAdder();
+
+    public InMemoryReplayCache(int maxEntries) {
+        int maxEntriesPerStripe = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxEntriesPerStripe);
+        }
+    }
+
+    @Override
+    public boolean putIfAbsent(String id, DateTime expiry) {
+        return stripeFor(id).putIfAbsent(id, expiry.getMillis(), DateTimeUtils.currentTimeMillis());
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * The number of IDs removed before they expired because the cache was full.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Stripe stripeFor(String id) {
+        int hash = id.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private class Stripe {
+        private final Map<String, Long> expiries = new LinkedHashMap<>();
+        private final int maxEntries;
+
+        Stripe(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        synchronized boolean putIfAbsent(String id, long expiresAt, long now) {
+            removeExpired(now);
+
+            Long existingExpiry = expiries.get(id);
+            if (existingExpiry != null) {
+                if (existingExpiry > now) {
+                    return false;
+                }
+                // Re-add the ID so that it moves to the back of the stripe
+                expiries.remove(id);
+            }
+
+            if (expiries.size() >= maxEntries) {
+                Iterator<Long> oldest = expiries.values().iterator();
+                oldest.next();
+                oldest.remove();
+                evictions.increment();
+            }
+            expiries.put(id, expiresAt);
+            return true;
+        }
+
+        synchronized int size() {
+            return expiries.size();
+        }
+
+        private void removeExpired(long now) {
+            Iterator<Long> iterator = expiries.values().iterator();
+            while (iterator.hasNext() && iterator.next() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+}
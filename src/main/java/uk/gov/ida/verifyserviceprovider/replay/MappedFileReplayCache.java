@@ -0,0 +1,143 @@
+package uk.gov.ida.verifyserviceprovider.replay;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A replay cache held in a memory-mapped file, so that a large window of IDs takes no heap
+ * and survives a restart.
+ *
+ * The file is a fixed size hash table. Each slot holds a 128 bit hash of an ID and the time it
+ * expires, and a slot which has expired can be reused. The table is split into independently
+ * locked segments, and an ID is only ever stored within a few slots of where its hash points.
+ * When all of those slots hold unexpired IDs, the one closest to expiry is evicted.
+ */
+public class MappedFileReplayCache implements ReplayCache {
+
+    private static final long MAGIC = 0x5653505265706c31L; // "VSPRepl1"
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 24;
+    private static final int SEGMENTS = 64;
+    private static final int MAX_PROBES = 16;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final ByteBuffer table;
+    private final Object[] segmentLocks = new Object[SEGMENTS];
+    private final int slotsPerSegment;
+    private final LongAdder evictions = new LongAdder();
+
+    public MappedFileReplayCache(Path file, int maxEntries) throws IOException {
+        this.slotsPerSegment = Math.max(MAX_PROBES, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        long fileSize = HEADER_SIZE + (long) slotsPerSegment * SEGMENTS * SLOT_SIZE;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("A replay cache file can hold at most %d entries", (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE));
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segmentLocks[i] = new Object();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+            boolean reusable = channel.size() == fileSize;
+            if (!reusable) {
+                // A table of a different size can't be read, so start again with an empty one
+                channel.truncate(0);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.nativeOrder());
+            if (!reusable || buffer.getLong(0) != MAGIC || buffer.getInt(8) != slotsPerSegment) {
+                clear(buffer, fileSize);
+                buffer.putLong(0, MAGIC);
+                buffer.putInt(8, slotsPerSegment);
+            }
+            this.table = buffer;
+        }
+    }
+
+    @Override
+    public boolean putIfAbsent(String id, DateTime expiry) {
+        long[] hash = hash(id);
+        long now = DateTimeUtils.currentTimeMillis();
+        int segment = (int) ((hash[0] >>> 32) & (SEGMENTS - 1));
+        int home = (int) Long.remainderUnsigned(hash[1], slotsPerSegment);
+
+        synchronized (segmentLocks[segment]) {
+            int freeSlot = -1;
+            int soonestExpiringSlot = -1;
+            long soonestExpiry = Long.MAX_VALUE;
+
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = offsetOf(segment, (home + probe) % slotsPerSegment);
+                long slotExpiry = table.getLong(slot + 16);
+                if (slotExpiry == 0) {
+                    // Slots are never emptied, so no ID with this hash has been stored further on
+                    if (freeSlot == -1) {
+                        freeSlot = slot;
+                    }
+                    break;
+                }
+                boolean sameId = table.getLong(slot) == hash[0] && table.getLong(slot + 8) == hash[1];
+                if (slotExpiry <= now) {
+                    if (freeSlot == -1) {
+                        freeSlot = slot;
+                    }
+                } else if (sameId) {
+                    return false;
+                } else if (slotExpiry < soonestExpiry) {
+                    soonestExpiry = slotExpiry;
+                    soonestExpiringSlot = slot;
+                }
+            }
+
+            if (freeSlot == -1) {
+                freeSlot = soonestExpiringSlot;
+                evictions.increment();
+            }
+            table.putLong(freeSlot, hash[0]);
+            table.putLong(freeSlot + 8, hash[1]);
+            // An expiry of zero marks an empty slot
+            table.putLong(freeSlot + 16, Math.max(1, expiry.getMillis()));
+            return true;
+        }
+    }
+
+    /**
+     * The number of IDs removed before they expired because their part of the table was full.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int getCapacity() {
+        return slotsPerSegment * SEGMENTS;
+    }
+
+    private int offsetOf(int segment, int slotInSegment) {
+        return HEADER_SIZE + (segment * slotsPerSegment + slotInSegment) * SLOT_SIZE;
+    }
+
+    private static long[] hash(String id) {
+        ByteBuffer hash = ByteBuffer.wrap(HASH_FUNCTION.hashString(id, StandardCharsets.UTF_8).asBytes());
+        return new long[]{hash.getLong(), hash.getLong()};
+    }
+
+    private static void clear(ByteBuffer buffer, long size) {
+        for (int i = 0; i + 8 <= size; i += 8) {
+            buffer.putLong(i, 0);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package uk.gov.ida.verifyserviceprovider.replay;
+
+import org.joda.time.DateTime;
+
+/**
+ * Remembers the IDs of Responses and Assertions which have been translated, so that a
+ * replayed message can be rejected.
+ */
+@FunctionalInterface
+public interface ReplayCache {
+
+    /**
+     * Records the ID until it expires.
+     *
+     * @return false if the ID has already been recorded and has not yet expired
+     */
+    boolean putIfAbsent(String id, DateTime expiry);
+}
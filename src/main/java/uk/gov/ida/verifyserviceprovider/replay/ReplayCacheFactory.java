@@ -0,0 +1,29 @@
+package uk.gov.ida.verifyserviceprovider.replay;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import uk.gov.ida.verifyserviceprovider.configuration.ReplayCacheConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+public class ReplayCacheFactory {
+
+    private ReplayCacheFactory() {
+    }
+
+    public static ReplayCache create(ReplayCacheConfiguration configuration, MetricRegistry metricRegistry) throws IOException {
+        switch (configuration.getType()) {
+            case MAPPED_FILE:
+                MappedFileReplayCache mappedFileReplayCache = new MappedFileReplayCache(Paths.get(configuration.getFile()), configuration.getMaxEntries());
+                metricRegistry.register(MetricRegistry.name(ReplayCache.class, "evictions"), (Gauge<Long>) mappedFileReplayCache::getEvictionCount);
+                return mappedFileReplayCache;
+            case IN_MEMORY:
+            default:
+                InMemoryReplayCache inMemoryReplayCache = new InMemoryReplayCache(configuration.getMaxEntries());
+                metricRegistry.register(MetricRegistry.name(ReplayCache.class, "size"), (Gauge<Integer>) inMemoryReplayCache::size);
+                metricRegistry.register(MetricRegistry.name(ReplayCache.class, "evictions"), (Gauge<Long>) inMemoryReplayCache::getEvictionCount);
+                return inMemoryReplayCache;
+        }
+    }
+}
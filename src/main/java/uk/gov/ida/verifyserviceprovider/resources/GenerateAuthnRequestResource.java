@@ -3,10 +3,15 @@ package uk.gov.ida.verifyserviceprovider.resources;
 import org.opensaml.saml.saml2.core.AuthnRequest;
 import org.slf4j.LoggerFactory;
 import uk.gov.ida.saml.serializers.XmlObjectToBase64EncodedStringTransformer;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLog;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
 import uk.gov.ida.verifyserviceprovider.dto.RequestGenerationBody;
 import uk.gov.ida.verifyserviceprovider.dto.RequestResponseBody;
 import uk.gov.ida.verifyserviceprovider.factories.saml.AuthnRequestFactory;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
 import uk.gov.ida.verifyserviceprovider.services.EntityIdService;
+import uk.gov.ida.verifyserviceprovider.services.PregeneratedAuthnRequests;
+import uk.gov.ida.verifyserviceprovider.services.WorkerPool;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -14,6 +19,8 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.net.URI;
@@ -26,26 +33,59 @@ public class GenerateAuthnRequestResource {
     private final URI ssoLocation;
     private final AuthnRequestFactory authnRequestFactory;
     private final EntityIdService entityIdService;
+    private final WorkerPool workerPool;
+    private final PregeneratedAuthnRequests pregeneratedAuthnRequests;
+    private final TenantRequestMetrics tenantRequestMetrics;
+    private final AuditLog auditLog;
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(GenerateAuthnRequestResource.class);
 
-    public GenerateAuthnRequestResource(AuthnRequestFactory authnRequestFactory, URI ssoLocation, EntityIdService entityIdService) {
+    public GenerateAuthnRequestResource(
+        AuthnRequestFactory authnRequestFactory,
+        URI ssoLocation,
+        EntityIdService entityIdService,
+        WorkerPool workerPool,
+        PregeneratedAuthnRequests pregeneratedAuthnRequests,
+        TenantRequestMetrics tenantRequestMetrics,
+        AuditLog auditLog
+    ) {
         this.authnRequestFactory = authnRequestFactory;
         this.ssoLocation = ssoLocation;
         this.entityIdService = entityIdService;
+        this.workerPool = workerPool;
+        this.pregeneratedAuthnRequests = pregeneratedAuthnRequests;
+        this.tenantRequestMetrics = tenantRequestMetrics;
+        this.auditLog = auditLog;
     }
 
     @POST
-    public Response generateAuthnRequest(@NotNull @Valid RequestGenerationBody requestGenerationBody) {
+    public void generateAuthnRequest(@NotNull @Valid RequestGenerationBody requestGenerationBody, @Suspended AsyncResponse asyncResponse) {
         String entityId = entityIdService.getEntityId(requestGenerationBody);
-        AuthnRequest authnRequest = this.authnRequestFactory.build(requestGenerationBody.getLevelOfAssurance(), entityId);
-        XmlObjectToBase64EncodedStringTransformer xmlToBase64Transformer = new XmlObjectToBase64EncodedStringTransformer();
-        String samlRequest = xmlToBase64Transformer.apply(authnRequest);
+        workerPool.execute(asyncResponse, entityId, () -> generateAuthnRequest(requestGenerationBody, entityId));
+    }
+
+    public Response generateAuthnRequest(RequestGenerationBody requestGenerationBody) {
+        return generateAuthnRequest(requestGenerationBody, entityIdService.getEntityId(requestGenerationBody));
+    }
 
-        RequestResponseBody requestResponseBody = new RequestResponseBody(samlRequest, authnRequest.getID(), ssoLocation);
+    private Response generateAuthnRequest(RequestGenerationBody requestGenerationBody, String entityId) {
+        long start = System.nanoTime();
+        LevelOfAssurance levelOfAssurance = requestGenerationBody.getLevelOfAssurance();
+        RequestResponseBody requestResponseBody = pregeneratedAuthnRequests.take(entityId)
+            .orElseGet(() -> generateRequestResponseBody(levelOfAssurance, entityId));
 
-        LOG.info(String.format("AuthnRequest generated for entityId: %s with requestId: %s", entityId, requestResponseBody.getRequestId()));
-        LOG.debug(String.format("AuthnRequest generated for entityId: %s with saml: %s", entityId, requestResponseBody.getSamlRequest()));
+        LOG.info("AuthnRequest generated for entityId: {} with requestId: {}", entityId, requestResponseBody.getRequestId());
+        LOG.debug("AuthnRequest generated for entityId: {} with saml: {}", entityId, requestResponseBody.getSamlRequest());
+        tenantRequestMetrics.generatedRequest(entityId, levelOfAssurance, start);
+        auditLog.generatedRequest(entityId, requestResponseBody.getRequestId(), levelOfAssurance, start);
 
         return Response.ok(requestResponseBody).build();
     }
+
+    private RequestResponseBody generateRequestResponseBody(LevelOfAssurance levelOfAssurance, String entityId) {
+        AuthnRequest authnRequest = this.authnRequestFactory.build(levelOfAssurance, entityId);
+        XmlObjectToBase64EncodedStringTransformer xmlToBase64Transformer = new XmlObjectToBase64EncodedStringTransformer();
+        String samlRequest = xmlToBase64Transformer.apply(authnRequest);
+
+        return new RequestResponseBody(samlRequest, authnRequest.getID(), ssoLocation);
+    }
 }
@@ -0,0 +1,132 @@
+package uk.gov.ida.verifyserviceprovider.resources;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import uk.gov.ida.verifyserviceprovider.dto.SamlResponseContent;
+import uk.gov.ida.verifyserviceprovider.dto.TranslateSamlResponseBody;
+import uk.gov.ida.verifyserviceprovider.saml.DecodedSamlResponseBuffer;
+import uk.gov.ida.verifyserviceprovider.saml.MimeBase64DecodingWriter;
+import uk.gov.ida.verifyserviceprovider.utils.ObjectPool;
+import uk.gov.ida.verifyserviceprovider.validators.ResponseSizeValidator;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads a TranslateSamlResponseBody without turning the samlResponse into Strings.
+ *
+ * The samlResponse text is handed straight from the JSON parser's own buffer to a
+ * {@link MimeBase64DecodingWriter}, which decodes it into a pooled {@link DecodedSamlResponseBuffer}
+ * that the XML parser then reads from. The decoder accepts what the JDK's MIME decoder did, so
+ * missing padding and characters outside the base64 alphabet are allowed. Nothing past the size limit
+ * is held in memory. Every other field is read by Jackson as usual. As the text isn't kept, a samlResponse
+ * which isn't valid base64 is only marked as such, and rejected when it's translated.
+ *
+ * If the body can't be read, the buffer is given back to the pool straight away.
+ */
+@Provider
+@Consumes(MediaType.APPLICATION_JSON)
+public class TranslateSamlResponseBodyReader implements MessageBodyReader<TranslateSamlResponseBody> {
+
+    private static final String SAML_RESPONSE = "samlResponse";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectPool<DecodedSamlResponseBuffer> buffers;
+
+    public TranslateSamlResponseBodyReader(ObjectMapper objectMapper, int initialBuffers, int maxIdleBuffers) {
+        this.objectMapper = objectMapper;
+        this.buffers = new ObjectPool<>(this::createBuffer, initialBuffers, maxIdleBuffers);
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == TranslateSamlResponseBody.class;
+    }
+
+    @Override
+    public TranslateSamlResponseBody readFrom(
+        Class<TranslateSamlResponseBody> type,
+        Type genericType,
+        Annotation[] annotations,
+        MediaType mediaType,
+        MultivaluedMap<String, String> httpHeaders,
+        InputStream entityStream
+    ) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(entityStream)) {
+            JsonToken firstToken = parser.nextToken();
+            if (firstToken == null) {
+                return null;
+            }
+            if (firstToken != JsonToken.START_OBJECT) {
+                return objectMapper.readValue(parser, TranslateSamlResponseBody.class);
+            }
+
+            SamlResponseContent samlResponse = null;
+            try {
+                ObjectNode otherFields = objectMapper.createObjectNode();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.getCurrentName();
+                    JsonToken valueToken = parser.nextToken();
+                    if (SAML_RESPONSE.equals(fieldName) && valueToken == JsonToken.VALUE_STRING) {
+                        release(samlResponse);
+                        samlResponse = readSamlResponse(parser);
+                    } else {
+                        otherFields.set(fieldName, objectMapper.readTree(parser));
+                    }
+                }
+
+                TranslateSamlResponseBody body = objectMapper.treeToValue(otherFields, TranslateSamlResponseBody.class);
+                return new TranslateSamlResponseBody(
+                    samlResponse != null ? samlResponse : body.getSamlResponse(),
+                    body.getRequestId(),
+                    body.getLevelOfAssurance(),
+                    body.getEntityId()
+                );
+            } catch (IOException | RuntimeException e) {
+                release(samlResponse);
+                throw e;
+            }
+        }
+    }
+
+    private SamlResponseContent readSamlResponse(JsonParser parser) throws IOException {
+        DecodedSamlResponseBuffer buffer = buffers.borrow();
+        try {
+            MimeBase64DecodingWriter decoder = new MimeBase64DecodingWriter(buffer.startWriting());
+            parser.getText(decoder);
+            decoder.finish();
+        } catch (IllegalArgumentException e) {
+            // For example, the padding is in the wrong place
+            buffer.release();
+            return SamlResponseContent.notBase64();
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+
+        if (buffer.isEmpty()) {
+            buffer.release();
+            return SamlResponseContent.fromBase64("");
+        }
+        return SamlResponseContent.fromDecoded(buffer);
+    }
+
+    private static void release(SamlResponseContent samlResponse) {
+        if (samlResponse != null) {
+            samlResponse.release();
+        }
+    }
+
+    private DecodedSamlResponseBuffer createBuffer() {
+        return new DecodedSamlResponseBuffer(buffers, ResponseSizeValidator.MAX_SAML_RESPONSE_LENGTH);
+    }
+}
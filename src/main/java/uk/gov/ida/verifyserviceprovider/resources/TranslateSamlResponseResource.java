@@ -3,11 +3,17 @@ package uk.gov.ida.verifyserviceprovider.resources;
 import io.dropwizard.jersey.errors.ErrorMessage;
 import org.slf4j.LoggerFactory;
 import uk.gov.ida.saml.core.validation.SamlTransformationErrorException;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLog;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
 import uk.gov.ida.verifyserviceprovider.dto.TranslateSamlResponseBody;
 import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
 import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
 import uk.gov.ida.verifyserviceprovider.services.EntityIdService;
 import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+import uk.gov.ida.verifyserviceprovider.services.WorkerPool;
+import uk.gov.ida.verifyserviceprovider.utils.RateLimitedLogger;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -15,9 +21,11 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.io.IOException;
 
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 
@@ -28,17 +36,39 @@ public class TranslateSamlResponseResource {
 
     private final ResponseService responseService;
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(TranslateSamlResponseResource.class);
+    private static final RateLimitedLogger INVALID_RESPONSE_LOG = RateLimitedLogger.warningsFor(LOG);
     private final EntityIdService entityIdService;
+    private final WorkerPool workerPool;
+    private final TenantRequestMetrics tenantRequestMetrics;
+    private final AuditLog auditLog;
 
-
-    public TranslateSamlResponseResource(ResponseService responseService, EntityIdService entityIdService) {
+    public TranslateSamlResponseResource(
+        ResponseService responseService,
+        EntityIdService entityIdService,
+        WorkerPool workerPool,
+        TenantRequestMetrics tenantRequestMetrics,
+        AuditLog auditLog
+    ) {
         this.responseService = responseService;
         this.entityIdService = entityIdService;
+        this.workerPool = workerPool;
+        this.tenantRequestMetrics = tenantRequestMetrics;
+        this.auditLog = auditLog;
     }
 
     @POST
-    public Response translateResponse(@NotNull @Valid TranslateSamlResponseBody translateSamlResponseBody) throws IOException {
+    public void translateResponse(@NotNull @Valid TranslateSamlResponseBody translateSamlResponseBody, @Suspended AsyncResponse asyncResponse) {
+        // However the request ends, including when it's rejected before it's translated
+        asyncResponse.register((CompletionCallback) throwable -> releaseSamlResponse(translateSamlResponseBody));
         String entityId = entityIdService.getEntityId(translateSamlResponseBody);
+        workerPool.execute(asyncResponse, entityId, () -> translateResponse(translateSamlResponseBody, entityId));
+    }
+
+    private Response translateResponse(TranslateSamlResponseBody translateSamlResponseBody, String entityId) {
+        long start = System.nanoTime();
+        LevelOfAssurance levelOfAssurance = translateSamlResponseBody.getLevelOfAssurance();
+        Scenario scenario = null;
+        String pid = null;
         try {
             TranslatedResponseBody translatedResponseBody = responseService.convertTranslatedResponseBody(
                 translateSamlResponseBody.getSamlResponse(),
@@ -47,18 +77,32 @@ public class TranslateSamlResponseResource {
                 entityId
             );
 
-            LOG.info(String.format("Translated response for entityId: %s, requestId: %s, got Scenario: %s",
+            LOG.info("Translated response for entityId: {}, requestId: {}, got Scenario: {}",
                     entityId,
                     translateSamlResponseBody.getRequestId(),
-                    translatedResponseBody.getScenario()));
+                    translatedResponseBody.getScenario());
 
+            scenario = translatedResponseBody.getScenario();
+            pid = translatedResponseBody.getPid();
+            if (translatedResponseBody.getLevelOfAssurance() != null) {
+                levelOfAssurance = translatedResponseBody.getLevelOfAssurance();
+            }
             return Response.ok(translatedResponseBody).build();
         } catch (SamlResponseValidationException | SamlTransformationErrorException e) {
-            LOG.warn(String.format("Error translating saml response for entityId: %s, requestId: %s, got Message: %s", entityId, translateSamlResponseBody.getRequestId(), e.getMessage()));
+            INVALID_RESPONSE_LOG.warn("Error translating saml response for entityId: {}, requestId: {}, got Message: {}", entityId, translateSamlResponseBody.getRequestId(), e.getMessage());
             return Response
                 .status(BAD_REQUEST)
                 .entity(new ErrorMessage(BAD_REQUEST.getStatusCode(), e.getMessage()))
                 .build();
+        } finally {
+            tenantRequestMetrics.translation(entityId, levelOfAssurance, scenario, start);
+            auditLog.translation(entityId, translateSamlResponseBody.getRequestId(), levelOfAssurance, scenario, pid, start);
+        }
+    }
+
+    private static void releaseSamlResponse(TranslateSamlResponseBody translateSamlResponseBody) {
+        if (translateSamlResponseBody.getSamlResponse() != null) {
+            translateSamlResponseBody.getSamlResponse().release();
         }
     }
 }
@@ -0,0 +1,169 @@
+package uk.gov.ida.verifyserviceprovider.resources;
+
+import io.dropwizard.jersey.errors.ErrorMessage;
+import org.apache.http.HttpStatus;
+import org.joda.time.Duration;
+import org.slf4j.LoggerFactory;
+import uk.gov.ida.saml.core.validation.SamlTransformationErrorException;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLog;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+import uk.gov.ida.verifyserviceprovider.dto.TranslateSamlResponseBody;
+import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
+import uk.gov.ida.verifyserviceprovider.exceptions.InvalidEntityIdException;
+import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
+import uk.gov.ida.verifyserviceprovider.services.EntityIdService;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+import uk.gov.ida.verifyserviceprovider.services.TenantAdmission;
+import uk.gov.ida.verifyserviceprovider.utils.RateLimitedLogger;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+
+/**
+ * Translates a batch of SAML Responses in parallel. The result for each item is either a
+ * {@link TranslatedResponseBody} or an {@link ErrorMessage}, in the same order as the request.
+ * A failure translating one item does not affect the others.
+ *
+ * When the executor's queue can't take every item of the batch, the whole batch is rejected with a 503
+ * and a Retry-After header, and the items which were already queued are cancelled.
+ */
+@Path("/translate-responses")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class TranslateSamlResponsesResource {
+
+    public static final int MAX_BATCH_SIZE = 100;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(TranslateSamlResponsesResource.class);
+    private static final RateLimitedLogger INVALID_RESPONSE_LOG = RateLimitedLogger.warningsFor(LOG);
+
+    private final ResponseService responseService;
+    private final EntityIdService entityIdService;
+    private final ExecutorService executorService;
+    private final long retryAfterSeconds;
+    private final Validator validator;
+    private final TenantAdmission tenantAdmission;
+    private final TenantRequestMetrics tenantRequestMetrics;
+    private final AuditLog auditLog;
+
+    public TranslateSamlResponsesResource(
+        ResponseService responseService,
+        EntityIdService entityIdService,
+        ExecutorService executorService,
+        Duration retryAfter,
+        Validator validator,
+        TenantAdmission tenantAdmission,
+        TenantRequestMetrics tenantRequestMetrics,
+        AuditLog auditLog
+    ) {
+        this.responseService = responseService;
+        this.entityIdService = entityIdService;
+        this.executorService = executorService;
+        this.retryAfterSeconds = Math.max(1, retryAfter.getStandardSeconds());
+        this.validator = validator;
+        this.tenantAdmission = tenantAdmission;
+        this.tenantRequestMetrics = tenantRequestMetrics;
+        this.auditLog = auditLog;
+    }
+
+    @POST
+    public Response translateResponses(@NotNull @Size(max = MAX_BATCH_SIZE) List<TranslateSamlResponseBody> translateSamlResponseBodies) {
+        List<CompletableFuture<Object>> results = new ArrayList<>(translateSamlResponseBodies.size());
+        try {
+            for (TranslateSamlResponseBody translateSamlResponseBody : translateSamlResponseBodies) {
+                results.add(CompletableFuture.supplyAsync(() -> translateResponse(translateSamlResponseBody), executorService));
+            }
+        } catch (RejectedExecutionException e) {
+            // Items which haven't started yet are skipped when their turn comes
+            results.forEach(result -> result.cancel(false));
+            LOG.warn("Rejected a batch of {} responses as the queue is full", translateSamlResponseBodies.size());
+            return Response
+                .status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(new ErrorMessage(SERVICE_UNAVAILABLE.getStatusCode(), "Too many requests are waiting to be processed. Please try again later."))
+                .build();
+        }
+
+        return Response.ok(results.stream().map(CompletableFuture::join).collect(toList())).build();
+    }
+
+    private Object translateResponse(TranslateSamlResponseBody translateSamlResponseBody) {
+        if (translateSamlResponseBody == null) {
+            return new ErrorMessage(HttpStatus.SC_UNPROCESSABLE_ENTITY, "Request body may not be null");
+        }
+
+        Set<ConstraintViolation<TranslateSamlResponseBody>> violations = validator.validate(translateSamlResponseBody);
+        if (!violations.isEmpty()) {
+            String errors = violations.stream()
+                .map(violation -> String.format("%s %s", violation.getPropertyPath(), violation.getMessage()))
+                .sorted()
+                .collect(joining(", "));
+            LOG.warn("Request body was not valid: {}", errors);
+            return new ErrorMessage(HttpStatus.SC_UNPROCESSABLE_ENTITY, errors);
+        }
+
+        long start = System.nanoTime();
+        String entityId = null;
+        LevelOfAssurance levelOfAssurance = translateSamlResponseBody.getLevelOfAssurance();
+        Scenario scenario = null;
+        String pid = null;
+        try {
+            entityId = entityIdService.getEntityId(translateSamlResponseBody);
+            if (!tenantAdmission.tryAdmit(entityId)) {
+                LOG.warn("Rejected response for entityId: {}, requestId: {} as it is over its quota", entityId, translateSamlResponseBody.getRequestId());
+                return new ErrorMessage(TOO_MANY_REQUESTS, "Too many requests have been made for this service. Please try again later.");
+            }
+            TranslatedResponseBody translatedResponseBody = responseService.convertTranslatedResponseBody(
+                translateSamlResponseBody.getSamlResponse(),
+                translateSamlResponseBody.getRequestId(),
+                translateSamlResponseBody.getLevelOfAssurance(),
+                entityId
+            );
+
+            LOG.info("Translated response for entityId: {}, requestId: {}, got Scenario: {}",
+                entityId,
+                translateSamlResponseBody.getRequestId(),
+                translatedResponseBody.getScenario());
+
+            scenario = translatedResponseBody.getScenario();
+            pid = translatedResponseBody.getPid();
+            if (translatedResponseBody.getLevelOfAssurance() != null) {
+                levelOfAssurance = translatedResponseBody.getLevelOfAssurance();
+            }
+            return translatedResponseBody;
+        } catch (SamlResponseValidationException | SamlTransformationErrorException | InvalidEntityIdException e) {
+            INVALID_RESPONSE_LOG.warn("Error translating saml response for entityId: {}, requestId: {}, got Message: {}", entityId, translateSamlResponseBody.getRequestId(), e.getMessage());
+            return new ErrorMessage(BAD_REQUEST.getStatusCode(), e.getMessage());
+        } catch (RuntimeException e) {
+            LOG.error("Unexpected error translating saml response for entityId: {}, requestId: {}", entityId, translateSamlResponseBody.getRequestId(), e);
+            return new ErrorMessage(INTERNAL_SERVER_ERROR.getStatusCode(), "Unexpected error translating the SAML response");
+        } finally {
+            tenantRequestMetrics.translation(entityId, levelOfAssurance, scenario, start);
+            auditLog.translation(entityId, translateSamlResponseBody.getRequestId(), levelOfAssurance, scenario, pid, start);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import uk.gov.ida.verifyserviceprovider.utils.ObjectPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A reusable buffer holding a base64 decoded SAML Response.
+ *
+ * Bytes past {@code maxLength} are thrown away as they're written, so an oversized response never takes
+ * up more memory than that. The buffer remembers that it was too long so the usual error can be returned
+ * once the rest of the request has been read.
+ */
+public class DecodedSamlResponseBuffer {
+
+    private final ObjectPool<DecodedSamlResponseBuffer> pool;
+    private final byte[] buffer;
+    private final OutputStream outputStream = new BufferOutputStream();
+    private int length;
+    private boolean tooLong;
+
+    public DecodedSamlResponseBuffer(ObjectPool<DecodedSamlResponseBuffer> pool, int maxLength) {
+        this.pool = pool;
+        this.buffer = new byte[maxLength];
+    }
+
+    /**
+     * Empties the buffer, and returns a stream to write the decoded response into.
+     */
+    public OutputStream startWriting() {
+        length = 0;
+        tooLong = false;
+        return outputStream;
+    }
+
+    public boolean isEmpty() {
+        return length == 0 && !tooLong;
+    }
+
+    public boolean isTooLong() {
+        return tooLong;
+    }
+
+    public InputStream openStream() {
+        return new ByteArrayInputStream(buffer, 0, length);
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, length);
+    }
+
+    /**
+     * Gives the buffer back to the pool it came from. It must not be used afterwards.
+     */
+    public void release() {
+        pool.release(this);
+    }
+
+    private class BufferOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            if (length < buffer.length) {
+                buffer[length++] = (byte) b;
+            } else {
+                tooLong = true;
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) {
+            int copied = Math.min(count, buffer.length - length);
+            System.arraycopy(bytes, offset, buffer, length, copied);
+            length += copied;
+            if (copied < count) {
+                tooLong = true;
+            }
+        }
+    }
+}
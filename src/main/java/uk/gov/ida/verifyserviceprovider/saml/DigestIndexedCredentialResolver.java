@@ -0,0 +1,128 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.hash.Hashing;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCriterion;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.DEREncodedKeyValue;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.KeyValue;
+
+import java.security.KeyException;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the credential to decrypt an EncryptedKey with from the KeyInfo the sender put in it, so that
+ * during a key rotation the right private key is used first time rather than trying each one in turn.
+ *
+ * Credentials are indexed by a SHA-256 digest of their public key. A certificate, KeyValue or DEREncodedKeyValue
+ * in the KeyInfo is matched on the digest of its public key. Only when there's no KeyInfo, or it doesn't match any
+ * credential, is every credential returned to be tried.
+ *
+ * The EncryptedKeys decrypted with each key are counted in {@code DigestIndexedCredentialResolver.selected.<digest>},
+ * where the digest is the first 16 hex characters of the SHA-256 digest of the DER encoded public key. The ones
+ * which had to be tried against every key are counted in {@code noHint} and {@code unmatchedHint}.
+ */
+public class DigestIndexedCredentialResolver implements KeyInfoCredentialResolver {
+
+    private final List<Credential> credentials;
+    private final Map<String, IndexedCredential> credentialsByDigest;
+    private final Meter noHint;
+    private final Meter unmatchedHint;
+
+    public DigestIndexedCredentialResolver(List<Credential> credentials, MetricRegistry metricRegistry) {
+        this.credentials = Collections.unmodifiableList(new ArrayList<>(credentials));
+        Map<String, IndexedCredential> credentialsByDigest = new HashMap<>();
+        for (Credential credential : credentials) {
+            String digest = digest(credential.getPublicKey());
+            credentialsByDigest.putIfAbsent(digest, new IndexedCredential(
+                credential,
+                metricRegistry.meter(MetricRegistry.name(DigestIndexedCredentialResolver.class, "selected", digest.substring(0, 16)))
+            ));
+        }
+        this.credentialsByDigest = credentialsByDigest;
+        this.noHint = metricRegistry.meter(MetricRegistry.name(DigestIndexedCredentialResolver.class, "noHint"));
+        this.unmatchedHint = metricRegistry.meter(MetricRegistry.name(DigestIndexedCredentialResolver.class, "unmatchedHint"));
+    }
+
+    @Override
+    public Iterable<Credential> resolve(CriteriaSet criteriaSet) {
+        KeyInfoCriterion keyInfoCriterion = criteriaSet == null ? null : criteriaSet.get(KeyInfoCriterion.class);
+        KeyInfo keyInfo = keyInfoCriterion == null ? null : keyInfoCriterion.getKeyInfo();
+        if (keyInfo == null) {
+            noHint.mark();
+            return credentials;
+        }
+
+        for (PublicKey publicKey : getPublicKeys(keyInfo)) {
+            IndexedCredential indexedCredential = credentialsByDigest.get(digest(publicKey));
+            if (indexedCredential != null) {
+                indexedCredential.selected.mark();
+                return Collections.singletonList(indexedCredential.credential);
+            }
+        }
+        unmatchedHint.mark();
+        return credentials;
+    }
+
+    @Override
+    public Credential resolveSingle(CriteriaSet criteriaSet) {
+        Iterable<Credential> resolved = resolve(criteriaSet);
+        return resolved.iterator().hasNext() ? resolved.iterator().next() : null;
+    }
+
+    /**
+     * A hint which can't be read is ignored, as the key can still be found by trying each one.
+     */
+    private static List<PublicKey> getPublicKeys(KeyInfo keyInfo) {
+        List<PublicKey> publicKeys = new ArrayList<>();
+        try {
+            for (X509Certificate certificate : KeyInfoSupport.getCertificates(keyInfo)) {
+                publicKeys.add(certificate.getPublicKey());
+            }
+        } catch (CertificateException e) {
+            // Fall through to the other hints
+        }
+        for (KeyValue keyValue : keyInfo.getKeyValues()) {
+            try {
+                publicKeys.add(KeyInfoSupport.getKey(keyValue));
+            } catch (KeyException e) {
+                // Fall through to the other hints
+            }
+        }
+        for (DEREncodedKeyValue derEncodedKeyValue : keyInfo.getDEREncodedKeyValues()) {
+            try {
+                publicKeys.add(KeyInfoSupport.getKey(derEncodedKeyValue));
+            } catch (KeyException e) {
+                // Fall through to the other hints
+            }
+        }
+        publicKeys.removeIf(publicKey -> publicKey == null);
+        return publicKeys;
+    }
+
+    private static String digest(PublicKey publicKey) {
+        return Hashing.sha256().hashBytes(publicKey.getEncoded()).toString();
+    }
+
+    private static class IndexedCredential {
+        private final Credential credential;
+        private final Meter selected;
+
+        private IndexedCredential(Credential credential, Meter selected) {
+            this.credential = credential;
+            this.selected = selected;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Decodes base64 text as it's written, and writes the decoded bytes to a stream.
+ *
+ * It accepts the same input as {@link java.util.Base64#getMimeDecoder()}, which SAML Responses were decoded
+ * with before: characters outside the base64 alphabet are skipped, and the padding at the end may be left out.
+ * Input which that decoder would reject throws an {@link IllegalArgumentException}, either as it's written or
+ * from {@link #finish()}.
+ */
+public class MimeBase64DecodingWriter extends Writer {
+
+    private static final int[] SEXTETS = new int[128];
+
+    static {
+        Arrays.fill(SEXTETS, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            SEXTETS[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private enum State {
+        DATA,
+        // After "xx=", where only a second '=' may come next
+        SECOND_PADDING,
+        // After the padding, where only characters outside the alphabet may come
+        ENDED
+    }
+
+    private final OutputStream outputStream;
+    private State state = State.DATA;
+    private int bits;
+    private int sextets;
+
+    public MimeBase64DecodingWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            write(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        switch (state) {
+            case DATA:
+                if (c == '=') {
+                    startPadding();
+                } else {
+                    int sextet = sextetOf(c);
+                    if (sextet >= 0) {
+                        addSextet(sextet);
+                    }
+                }
+                break;
+            case SECOND_PADDING:
+                if (c != '=') {
+                    throw new IllegalArgumentException("Input byte array has wrong 4-byte ending unit");
+                }
+                state = State.ENDED;
+                break;
+            case ENDED:
+                if (sextetOf(c) >= 0) {
+                    throw new IllegalArgumentException("Input byte array has incorrect ending byte");
+                }
+                break;
+        }
+    }
+
+    /**
+     * Writes the bytes of a final unit which wasn't padded. Call this once all the text has been written.
+     */
+    public void finish() throws IOException {
+        if (state == State.SECOND_PADDING) {
+            throw new IllegalArgumentException("Input byte array has wrong 4-byte ending unit");
+        }
+        if (state == State.DATA) {
+            writeFinalUnit();
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void addSextet(int sextet) throws IOException {
+        bits = (bits << 6) | sextet;
+        if (++sextets == 4) {
+            outputStream.write(bits >> 16);
+            outputStream.write(bits >> 8);
+            outputStream.write(bits);
+            bits = 0;
+            sextets = 0;
+        }
+    }
+
+    private void startPadding() throws IOException {
+        if (sextets == 0) {
+            throw new IllegalArgumentException("Input byte array has wrong 4-byte ending unit");
+        }
+        state = sextets == 2 ? State.SECOND_PADDING : State.ENDED;
+        writeFinalUnit();
+    }
+
+    private void writeFinalUnit() throws IOException {
+        switch (sextets) {
+            case 1:
+                throw new IllegalArgumentException("Last unit does not have enough valid bits");
+            case 2:
+                outputStream.write(bits >> 4);
+                break;
+            case 3:
+                outputStream.write(bits >> 10);
+                outputStream.write(bits >> 2);
+                break;
+            default:
+                break;
+        }
+        bits = 0;
+        sextets = 0;
+    }
+
+    private static int sextetOf(int c) {
+        // The JDK decoder reads the text as ISO-8859-1, so characters outside it are skipped like any other
+        return c < SEXTETS.length ? SEXTETS[c] : -1;
+    }
+}
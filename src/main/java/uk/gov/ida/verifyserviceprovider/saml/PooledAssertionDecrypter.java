@@ -0,0 +1,25 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import org.opensaml.saml.saml2.core.Assertion;
+import uk.gov.ida.saml.security.AssertionDecrypter;
+import uk.gov.ida.saml.security.validators.ValidatedResponse;
+import uk.gov.ida.verifyserviceprovider.utils.ObjectPool;
+
+import java.util.List;
+
+/**
+ * Decrypts assertions on pooled decrypters, each with its own Decrypter and key resolvers,
+ * so that concurrent requests don't share one Decrypter.
+ */
+public class PooledAssertionDecrypter {
+
+    private final ObjectPool<AssertionDecrypter> assertionDecrypters;
+
+    public PooledAssertionDecrypter(ObjectPool<AssertionDecrypter> assertionDecrypters) {
+        this.assertionDecrypters = assertionDecrypters;
+    }
+
+    public List<Assertion> decryptAssertions(ValidatedResponse validatedResponse) {
+        return assertionDecrypters.apply(assertionDecrypter -> assertionDecrypter.decryptAssertions(validatedResponse));
+    }
+}
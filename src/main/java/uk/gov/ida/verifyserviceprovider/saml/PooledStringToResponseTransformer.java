@@ -0,0 +1,71 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import org.opensaml.saml.saml2.core.Response;
+import uk.gov.ida.saml.deserializers.validators.Base64StringDecoder;
+import uk.gov.ida.saml.deserializers.validators.NotNullSamlStringValidator;
+import uk.gov.ida.saml.deserializers.validators.SizeValidator;
+import uk.gov.ida.verifyserviceprovider.dto.SamlResponseContent;
+import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.utils.ObjectPool;
+import uk.gov.ida.verifyserviceprovider.validators.ResponseSizeValidator;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Does the same validation as StringToOpenSamlObjectTransformer, but parses on
+ * pooled parsers rather than on one parser pool shared by every request thread.
+ */
+public class PooledStringToResponseTransformer implements Function<String, Response> {
+
+    public static final String NOT_BASE64_MESSAGE = "SAML Response is not valid base64.";
+
+    private final NotNullSamlStringValidator notNullSamlStringValidator;
+    private final Base64StringDecoder base64StringDecoder;
+    private final SizeValidator sizeValidator;
+    private final ObjectPool<SamlResponseParser> parsers;
+
+    public PooledStringToResponseTransformer(
+        NotNullSamlStringValidator notNullSamlStringValidator,
+        Base64StringDecoder base64StringDecoder,
+        SizeValidator sizeValidator,
+        ObjectPool<SamlResponseParser> parsers
+    ) {
+        this.notNullSamlStringValidator = notNullSamlStringValidator;
+        this.base64StringDecoder = base64StringDecoder;
+        this.sizeValidator = sizeValidator;
+        this.parsers = parsers;
+    }
+
+    @Override
+    public Response apply(String samlResponse) {
+        notNullSamlStringValidator.validate(samlResponse);
+        String decodedSamlResponse = base64StringDecoder.decode(samlResponse);
+        sizeValidator.validate(decodedSamlResponse);
+        return parsers.apply(parser -> parser.parse(decodedSamlResponse));
+    }
+
+    /**
+     * Parses a response which has already been decoded straight from the request body,
+     * and gives its buffer back once parsed. The size limit is the same as for a string.
+     */
+    public Response apply(SamlResponseContent samlResponseContent) {
+        if (samlResponseContent.isNotBase64()) {
+            throw new SamlResponseValidationException(NOT_BASE64_MESSAGE);
+        }
+        Optional<DecodedSamlResponseBuffer> decoded = samlResponseContent.getDecoded();
+        if (!decoded.isPresent()) {
+            return apply(samlResponseContent.getBase64Encoded());
+        }
+
+        DecodedSamlResponseBuffer decodedSamlResponse = decoded.get();
+        try {
+            if (decodedSamlResponse.isTooLong()) {
+                throw new SamlResponseValidationException(ResponseSizeValidator.TOO_LONG_MESSAGE);
+            }
+            return parsers.apply(parser -> parser.parse(decodedSamlResponse.openStream()));
+        } finally {
+            samlResponseContent.release();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.Unmarshaller;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.saml.saml2.core.Response;
+import org.slf4j.event.Level;
+import org.w3c.dom.Element;
+import uk.gov.ida.saml.core.validation.SamlTransformationErrorException;
+
+import java.io.InputStream;
+import java.io.StringReader;
+
+/**
+ * Parses and unmarshalls SAML Responses. Each parser has its own parser pool, holding
+ * a single DocumentBuilder, so a parser must only be used by one thread at a time.
+ *
+ * The parser pool's defaults disallow DOCTYPE declarations and external entities.
+ */
+public class SamlResponseParser {
+
+    private final BasicParserPool parserPool;
+    private final Unmarshaller unmarshaller;
+
+    public SamlResponseParser() {
+        parserPool = new BasicParserPool();
+        parserPool.setMaxPoolSize(1);
+        try {
+            parserPool.initialize();
+        } catch (ComponentInitializationException e) {
+            throw new IllegalStateException("Unable to initialise the SAML parser pool", e);
+        }
+        unmarshaller = XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(Response.DEFAULT_ELEMENT_NAME);
+    }
+
+    public Response parse(String decodedSamlResponse) {
+        try {
+            return unmarshall(parserPool.parse(new StringReader(decodedSamlResponse)).getDocumentElement());
+        } catch (XMLParserException e) {
+            throw new SamlTransformationErrorException(String.format("Unable to parse SAML Response: %s", e.getMessage()), e, Level.ERROR);
+        }
+    }
+
+    public Response parse(InputStream decodedSamlResponse) {
+        try {
+            return unmarshall(parserPool.parse(decodedSamlResponse).getDocumentElement());
+        } catch (XMLParserException e) {
+            throw new SamlTransformationErrorException(String.format("Unable to parse SAML Response: %s", e.getMessage()), e, Level.ERROR);
+        }
+    }
+
+    private Response unmarshall(Element element) {
+        try {
+            if (!Response.DEFAULT_ELEMENT_NAME.getLocalPart().equals(element.getLocalName()) ||
+                !Response.DEFAULT_ELEMENT_NAME.getNamespaceURI().equals(element.getNamespaceURI())) {
+                throw new SamlTransformationErrorException(String.format("Expected a SAML Response, but was %s", element.getLocalName()), Level.ERROR);
+            }
+            return (Response) unmarshaller.unmarshall(element);
+        } catch (UnmarshallingException e) {
+            throw new SamlTransformationErrorException(String.format("Unable to parse SAML Response: %s", e.getMessage()), e, Level.ERROR);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.joda.time.DateTime;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.security.x509.X509Credential;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCriterion;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataSupport;
+
+import javax.xml.namespace.QName;
+import java.security.cert.CertificateEncodingException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An immutable copy of the signing credentials published in metadata for a set of entities,
+ * indexed by entityId and role, and by the SHA-256 fingerprint of each credential's certificate.
+ *
+ * An entity has no credentials once the earliest validUntil of its EntityDescriptor and the EntitiesDescriptors
+ * around it has passed, as its metadata would no longer be valid, even if the metadata hasn't been refreshed since.
+ */
+public class SigningCredentialSnapshot {
+
+    private final DateTime metadataLastUpdate;
+    private final Map<String, Map<QName, RoleCredentials>> credentials;
+    private final Map<String, DateTime> validUntil;
+
+    private SigningCredentialSnapshot(
+        DateTime metadataLastUpdate,
+        Map<String, Map<QName, RoleCredentials>> credentials,
+        Map<String, DateTime> validUntil
+    ) {
+        this.metadataLastUpdate = metadataLastUpdate;
+        this.credentials = credentials;
+        this.validUntil = validUntil;
+    }
+
+    public static SigningCredentialSnapshot build(
+        MetadataResolver metadataResolver,
+        Collection<String> entityIds,
+        KeyInfoCredentialResolver keyInfoCredentialResolver,
+        DateTime metadataLastUpdate
+    ) throws ResolverException {
+        ImmutableMap.Builder<String, Map<QName, RoleCredentials>> credentials = ImmutableMap.builder();
+        ImmutableMap.Builder<String, DateTime> validUntil = ImmutableMap.builder();
+        for (String entityId : entityIds) {
+            EntityDescriptor entityDescriptor = metadataResolver.resolveSingle(new CriteriaSet(new EntityIdCriterion(entityId)));
+            if (entityDescriptor != null) {
+                credentials.put(entityId, getRoleCredentials(entityDescriptor, keyInfoCredentialResolver));
+                DateTime entityValidUntil = MetadataSupport.getValidUntil(entityDescriptor);
+                if (entityValidUntil != null) {
+                    validUntil.put(entityId, entityValidUntil);
+                }
+            }
+        }
+        return new SigningCredentialSnapshot(metadataLastUpdate, credentials.build(), validUntil.build());
+    }
+
+    public DateTime getMetadataLastUpdate() {
+        return metadataLastUpdate;
+    }
+
+    /**
+     * The signing credentials for the role, or empty if the entity wasn't in the metadata
+     * when the snapshot was taken. There are none once the entity's metadata has expired.
+     */
+    public Optional<RoleCredentials> getCredentials(String entityId, QName role) {
+        Map<QName, RoleCredentials> roles = credentials.get(entityId);
+        if (roles == null) {
+            return Optional.empty();
+        }
+        DateTime entityValidUntil = validUntil.get(entityId);
+        if (entityValidUntil != null && !entityValidUntil.isAfterNow()) {
+            return Optional.of(RoleCredentials.NONE);
+        }
+        return Optional.of(roles.getOrDefault(role, RoleCredentials.NONE));
+    }
+
+    public static String fingerprint(byte[] encodedCertificate) {
+        return Hashing.sha256().hashBytes(encodedCertificate).toString();
+    }
+
+    private static Map<QName, RoleCredentials> getRoleCredentials(
+        EntityDescriptor entityDescriptor,
+        KeyInfoCredentialResolver keyInfoCredentialResolver
+    ) throws ResolverException {
+        Map<QName, ImmutableList.Builder<Credential>> credentialsByRole = new LinkedHashMap<>();
+        for (RoleDescriptor roleDescriptor : entityDescriptor.getRoleDescriptors()) {
+            if (!roleDescriptor.isSupportedProtocol(SAMLConstants.SAML20P_NS)) {
+                continue;
+            }
+            ImmutableList.Builder<Credential> roleCredentials = credentialsByRole.computeIfAbsent(roleDescriptor.getElementQName(), role -> ImmutableList.builder());
+            for (KeyDescriptor keyDescriptor : roleDescriptor.getKeyDescriptors()) {
+                UsageType use = keyDescriptor.getUse();
+                if (keyDescriptor.getKeyInfo() != null && (use == null || use == UsageType.SIGNING || use == UsageType.UNSPECIFIED)) {
+                    roleCredentials.addAll(keyInfoCredentialResolver.resolve(new CriteriaSet(new KeyInfoCriterion(keyDescriptor.getKeyInfo()))));
+                }
+            }
+        }
+
+        ImmutableMap.Builder<QName, RoleCredentials> roleCredentials = ImmutableMap.builder();
+        for (Map.Entry<QName, ImmutableList.Builder<Credential>> entry : credentialsByRole.entrySet()) {
+            roleCredentials.put(entry.getKey(), new RoleCredentials(entry.getValue().build()));
+        }
+        return roleCredentials.build();
+    }
+
+    public static class RoleCredentials {
+
+        private static final RoleCredentials NONE = new RoleCredentials(ImmutableList.of());
+
+        private final List<Credential> credentials;
+        private final Map<String, Credential> credentialsByFingerprint;
+
+        private RoleCredentials(List<Credential> credentials) {
+            this.credentials = credentials;
+            Map<String, Credential> credentialsByFingerprint = new LinkedHashMap<>();
+            for (Credential credential : credentials) {
+                if (credential instanceof X509Credential) {
+                    try {
+                        credentialsByFingerprint.putIfAbsent(fingerprint(((X509Credential) credential).getEntityCertificate().getEncoded()), credential);
+                    } catch (CertificateEncodingException e) {
+                        // The credential can still be found by trying each one in turn
+                    }
+                }
+            }
+            this.credentialsByFingerprint = ImmutableMap.copyOf(credentialsByFingerprint);
+        }
+
+        public List<Credential> getCredentials() {
+            return credentials;
+        }
+
+        public Optional<Credential> getCredentialByFingerprint(String fingerprint) {
+            return Optional.ofNullable(credentialsByFingerprint.get(fingerprint));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import com.google.common.collect.ImmutableSet;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.joda.time.DateTime;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.criterion.EntityRoleCriterion;
+import org.opensaml.saml.criterion.ProtocolCriterion;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.CredentialResolver;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.security.criteria.KeyAlgorithmCriterion;
+import org.opensaml.security.criteria.UsageCriterion;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataSupport;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshot.RoleCredentials;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Resolves signing credentials from a {@link SigningCredentialSnapshot} rather than from metadata.
+ *
+ * The snapshot is rebuilt the first time it's used after the metadata has been updated, or for every lookup
+ * if the metadata resolver can't say when it was last updated. Lookups for
+ * an entity that isn't in the snapshot, or for anything other than signing credentials, go to the
+ * fallback resolver so that behaviour is unchanged.
+ */
+public class SigningCredentialSnapshotResolver implements CredentialResolver {
+
+    private final MetadataResolver metadataResolver;
+    private final Set<String> entityIds;
+    private final KeyInfoCredentialResolver keyInfoCredentialResolver;
+    private final CredentialResolver fallbackCredentialResolver;
+    private final AtomicReference<SigningCredentialSnapshot> snapshot = new AtomicReference<>();
+
+    public SigningCredentialSnapshotResolver(
+        MetadataResolver metadataResolver,
+        Collection<String> entityIds,
+        KeyInfoCredentialResolver keyInfoCredentialResolver,
+        CredentialResolver fallbackCredentialResolver
+    ) {
+        this.metadataResolver = metadataResolver;
+        this.entityIds = ImmutableSet.copyOf(entityIds);
+        this.keyInfoCredentialResolver = keyInfoCredentialResolver;
+        this.fallbackCredentialResolver = fallbackCredentialResolver;
+    }
+
+    @Override
+    public Iterable<Credential> resolve(CriteriaSet criteria) throws ResolverException {
+        Optional<RoleCredentials> roleCredentials = getRoleCredentials(criteria);
+        if (!roleCredentials.isPresent()) {
+            return fallbackCredentialResolver.resolve(criteria);
+        }
+
+        KeyAlgorithmCriterion keyAlgorithmCriterion = criteria.get(KeyAlgorithmCriterion.class);
+        if (keyAlgorithmCriterion == null) {
+            return roleCredentials.get().getCredentials();
+        }
+        return roleCredentials.get().getCredentials().stream()
+            .filter(credential -> credential.getPublicKey() != null)
+            .filter(credential -> keyAlgorithmCriterion.getKeyAlgorithm().equals(credential.getPublicKey().getAlgorithm()))
+            .collect(toList());
+    }
+
+    @Override
+    public Credential resolveSingle(CriteriaSet criteria) throws ResolverException {
+        Iterator<Credential> credentials = resolve(criteria).iterator();
+        return credentials.hasNext() ? credentials.next() : null;
+    }
+
+    /**
+     * The snapshot's credentials matching the criteria, or empty if the snapshot can't answer them.
+     */
+    public Optional<RoleCredentials> getRoleCredentials(CriteriaSet criteria) throws ResolverException {
+        EntityIdCriterion entityIdCriterion = criteria.get(EntityIdCriterion.class);
+        EntityRoleCriterion entityRoleCriterion = criteria.get(EntityRoleCriterion.class);
+        if (entityIdCriterion == null || entityRoleCriterion == null || !entityIds.contains(entityIdCriterion.getEntityId())) {
+            return Optional.empty();
+        }
+
+        UsageCriterion usageCriterion = criteria.get(UsageCriterion.class);
+        if (usageCriterion != null && usageCriterion.getUsage() != UsageType.SIGNING && usageCriterion.getUsage() != UsageType.UNSPECIFIED) {
+            return Optional.empty();
+        }
+
+        ProtocolCriterion protocolCriterion = criteria.get(ProtocolCriterion.class);
+        if (protocolCriterion != null && !SAMLConstants.SAML20P_NS.equals(protocolCriterion.getProtocol())) {
+            return Optional.empty();
+        }
+
+        return getSnapshot().getCredentials(entityIdCriterion.getEntityId(), entityRoleCriterion.getRole());
+    }
+
+    private SigningCredentialSnapshot getSnapshot() throws ResolverException {
+        DateTime metadataLastUpdate = MetadataSupport.getLastUpdate(metadataResolver);
+        if (metadataLastUpdate == null) {
+            return SigningCredentialSnapshot.build(metadataResolver, entityIds, keyInfoCredentialResolver, null);
+        }
+        SigningCredentialSnapshot current = snapshot.get();
+        if (current != null && metadataLastUpdate.equals(current.getMetadataLastUpdate())) {
+            return current;
+        }
+
+        // If another thread rebuilds the snapshot at the same time, either result is up to date
+        SigningCredentialSnapshot rebuilt = SigningCredentialSnapshot.build(metadataResolver, entityIds, keyInfoCredentialResolver, metadataLastUpdate);
+        snapshot.compareAndSet(current, rebuilt);
+        return rebuilt;
+    }
+}
@@ -0,0 +1,81 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.opensaml.security.SecurityException;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.config.DefaultSecurityConfigurationBootstrap;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.X509Certificate;
+import org.opensaml.xmlsec.signature.X509Data;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshot.RoleCredentials;
+
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * A signature trust engine backed by a {@link SigningCredentialSnapshotResolver}.
+ *
+ * When the signature's KeyInfo contains a certificate which is in the snapshot, the signature is
+ * checked against that trusted credential alone. Otherwise the usual explicit key checks are made,
+ * which try the KeyInfo and then each trusted credential in turn.
+ */
+public class SigningCredentialSnapshotTrustEngine extends ExplicitKeySignatureTrustEngine {
+
+    private final SigningCredentialSnapshotResolver credentialResolver;
+
+    public SigningCredentialSnapshotTrustEngine(SigningCredentialSnapshotResolver credentialResolver) {
+        super(credentialResolver, DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver());
+        this.credentialResolver = credentialResolver;
+    }
+
+    @Override
+    protected boolean doValidate(Signature signature, CriteriaSet trustBasisCriteria) throws SecurityException {
+        Optional<Credential> keyInfoCredential = getTrustedKeyInfoCredential(signature, trustBasisCriteria);
+        if (keyInfoCredential.isPresent() && verifySignature(signature, keyInfoCredential.get())) {
+            return true;
+        }
+        return super.doValidate(signature, trustBasisCriteria);
+    }
+
+    private Optional<Credential> getTrustedKeyInfoCredential(Signature signature, CriteriaSet trustBasisCriteria) throws SecurityException {
+        KeyInfo keyInfo = signature.getKeyInfo();
+        if (keyInfo == null || trustBasisCriteria == null) {
+            return Optional.empty();
+        }
+
+        Optional<RoleCredentials> roleCredentials;
+        try {
+            roleCredentials = credentialResolver.getRoleCredentials(trustBasisCriteria);
+        } catch (ResolverException e) {
+            throw new SecurityException("Error resolving trusted credentials", e);
+        }
+        if (!roleCredentials.isPresent()) {
+            return Optional.empty();
+        }
+
+        for (X509Data x509Data : keyInfo.getX509Datas()) {
+            for (X509Certificate certificate : x509Data.getX509Certificates()) {
+                Optional<Credential> credential = getFingerprint(certificate).flatMap(roleCredentials.get()::getCredentialByFingerprint);
+                if (credential.isPresent()) {
+                    return credential;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> getFingerprint(X509Certificate certificate) {
+        if (certificate.getValue() == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(SigningCredentialSnapshot.fingerprint(Base64.getMimeDecoder().decode(certificate.getValue())));
+        } catch (IllegalArgumentException e) {
+            // Leave the KeyInfo to the usual checks, which will report the problem
+            return Optional.empty();
+        }
+    }
+}
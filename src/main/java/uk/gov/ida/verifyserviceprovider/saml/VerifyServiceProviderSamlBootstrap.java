@@ -0,0 +1,224 @@
+package uk.gov.ida.verifyserviceprovider.saml;
+
+import com.google.common.collect.ImmutableList;
+import org.opensaml.core.config.ConfigurationService;
+import org.opensaml.core.config.InitializationException;
+import org.opensaml.core.config.InitializationService;
+import org.opensaml.core.config.Initializer;
+import org.opensaml.core.xml.config.AbstractXMLObjectProviderInitializer;
+import org.opensaml.core.xml.config.XMLConfigurationException;
+import org.opensaml.core.xml.config.XMLConfigurator;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistry;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.schema.XSString;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.core.AttributeValue;
+import org.opensaml.saml.saml2.core.Audience;
+import org.opensaml.saml.saml2.core.AudienceRestriction;
+import org.opensaml.saml.saml2.core.AuthnContext;
+import org.opensaml.saml.saml2.core.AuthnContextClassRef;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.AuthnStatement;
+import org.opensaml.saml.saml2.core.Conditions;
+import org.opensaml.saml.saml2.core.EncryptedAssertion;
+import org.opensaml.saml.saml2.core.EncryptedAttribute;
+import org.opensaml.saml.saml2.core.Extensions;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.NameID;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.core.Status;
+import org.opensaml.saml.saml2.core.StatusCode;
+import org.opensaml.saml.saml2.core.StatusMessage;
+import org.opensaml.saml.saml2.core.Subject;
+import org.opensaml.saml.saml2.core.SubjectConfirmation;
+import org.opensaml.saml.saml2.core.SubjectConfirmationData;
+import org.opensaml.saml.saml2.metadata.EntitiesDescriptor;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.opensaml.saml.saml2.metadata.SingleSignOnService;
+import org.opensaml.xmlsec.encryption.EncryptedData;
+import org.opensaml.xmlsec.encryption.EncryptedKey;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.X509Certificate;
+import org.opensaml.xmlsec.signature.X509Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Initialises OpenSAML with only the XMLObject providers the Verify Service Provider uses, rather than
+ * the full set {@link IdaSamlBootstrap} loads for SAML 1, ECP, metadata extensions, SOAP and XACML,
+ * which costs startup time, Metaspace and heap in every instance.
+ *
+ * The providers for SAML 2 core and metadata, XML signature and XML encryption are loaded from OpenSAML's
+ * own configuration files, and OpenSAML's other initializers (the parser pool, Santuario and the security
+ * defaults) are run as they would be by {@link InitializationService}. The IDA extensions are registered by
+ * {@link IdaSamlBootstrap} itself, with OpenSAML's initializers hidden from it so that it doesn't load
+ * everything else.
+ *
+ * If any of {@link #REQUIRED} can't be built, marshalled and unmarshalled afterwards, OpenSAML is
+ * initialised in full instead.
+ */
+public class VerifyServiceProviderSamlBootstrap {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VerifyServiceProviderSamlBootstrap.class);
+
+    private static final String INITIALIZER_SERVICES = "META-INF/services/" + Initializer.class.getName();
+
+    private static final List<String> PROVIDER_CONFIGURATIONS = ImmutableList.of(
+        "/default-config.xml",
+        "/schema-config.xml",
+        "/signature-config.xml",
+        "/encryption-config.xml",
+        "/saml2-assertion-config.xml",
+        "/saml2-protocol-config.xml",
+        "/saml2-metadata-config.xml"
+    );
+
+    /**
+     * The objects the Verify Service Provider builds, marshalls or unmarshalls from the SAML 2, XML signature
+     * and XML encryption schemas. Unknown elements in metadata are unmarshalled as xs:any.
+     */
+    public static final List<QName> REQUIRED = ImmutableList.of(
+        AuthnRequest.DEFAULT_ELEMENT_NAME,
+        Issuer.DEFAULT_ELEMENT_NAME,
+        Extensions.DEFAULT_ELEMENT_NAME,
+        Response.DEFAULT_ELEMENT_NAME,
+        Status.DEFAULT_ELEMENT_NAME,
+        StatusCode.DEFAULT_ELEMENT_NAME,
+        StatusMessage.DEFAULT_ELEMENT_NAME,
+        Assertion.DEFAULT_ELEMENT_NAME,
+        EncryptedAssertion.DEFAULT_ELEMENT_NAME,
+        Subject.DEFAULT_ELEMENT_NAME,
+        NameID.DEFAULT_ELEMENT_NAME,
+        SubjectConfirmation.DEFAULT_ELEMENT_NAME,
+        SubjectConfirmationData.DEFAULT_ELEMENT_NAME,
+        Conditions.DEFAULT_ELEMENT_NAME,
+        AudienceRestriction.DEFAULT_ELEMENT_NAME,
+        Audience.DEFAULT_ELEMENT_NAME,
+        AuthnStatement.DEFAULT_ELEMENT_NAME,
+        AuthnContext.DEFAULT_ELEMENT_NAME,
+        AuthnContextClassRef.DEFAULT_ELEMENT_NAME,
+        AttributeStatement.DEFAULT_ELEMENT_NAME,
+        Attribute.DEFAULT_ELEMENT_NAME,
+        AttributeValue.DEFAULT_ELEMENT_NAME,
+        EncryptedAttribute.DEFAULT_ELEMENT_NAME,
+        XSString.TYPE_NAME,
+        EntitiesDescriptor.DEFAULT_ELEMENT_NAME,
+        EntityDescriptor.DEFAULT_ELEMENT_NAME,
+        SPSSODescriptor.DEFAULT_ELEMENT_NAME,
+        IDPSSODescriptor.DEFAULT_ELEMENT_NAME,
+        KeyDescriptor.DEFAULT_ELEMENT_NAME,
+        SingleSignOnService.DEFAULT_ELEMENT_NAME,
+        Signature.DEFAULT_ELEMENT_NAME,
+        KeyInfo.DEFAULT_ELEMENT_NAME,
+        X509Data.DEFAULT_ELEMENT_NAME,
+        X509Certificate.DEFAULT_ELEMENT_NAME,
+        EncryptedData.DEFAULT_ELEMENT_NAME,
+        EncryptedKey.DEFAULT_ELEMENT_NAME
+    );
+
+    private static boolean bootstrapped = false;
+
+    public static synchronized void bootstrap() {
+        if (bootstrapped) {
+            return;
+        }
+        try {
+            initialize();
+            List<QName> unresolved = unresolved();
+            if (!unresolved.isEmpty()) {
+                LOG.warn("Initialising OpenSAML in full, as there were no providers for {}", unresolved);
+                initializeInFull();
+            }
+        } catch (InitializationException | XMLConfigurationException | RuntimeException e) {
+            LOG.warn("Initialising OpenSAML in full, as it couldn't be initialised with only the providers the Verify Service Provider uses", e);
+            initializeInFull();
+        }
+        bootstrapped = true;
+    }
+
+    /**
+     * The objects in {@link #REQUIRED} which can't be built, marshalled or unmarshalled.
+     */
+    public static List<QName> unresolved() {
+        if (ConfigurationService.get(XMLObjectProviderRegistry.class) == null) {
+            return REQUIRED;
+        }
+        return REQUIRED.stream()
+            .filter(name -> XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(name) == null
+                || XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(name) == null
+                || XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(name) == null)
+            .collect(toList());
+    }
+
+    private static void initialize() throws InitializationException, XMLConfigurationException {
+        XMLConfigurator configurator = new XMLConfigurator();
+        for (String configuration : PROVIDER_CONFIGURATIONS) {
+            try (InputStream input = XMLConfigurator.class.getResourceAsStream(configuration)) {
+                if (input == null) {
+                    throw new XMLConfigurationException("OpenSAML configuration " + configuration + " was not found");
+                }
+                configurator.load(input);
+            } catch (IOException e) {
+                throw new XMLConfigurationException("Unable to read OpenSAML configuration " + configuration, e);
+            }
+        }
+
+        for (Initializer initializer : ServiceLoader.load(Initializer.class)) {
+            if (!(initializer instanceof AbstractXMLObjectProviderInitializer)) {
+                initializer.init();
+            }
+        }
+
+        // InitializationService finds the initializers through the context class loader
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(new WithoutInitializersClassLoader(contextClassLoader));
+        try {
+            IdaSamlBootstrap.bootstrap();
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    private static void initializeInFull() {
+        try {
+            InitializationService.initialize();
+        } catch (InitializationException e) {
+            throw new IllegalStateException("Unable to initialise OpenSAML", e);
+        }
+        IdaSamlBootstrap.bootstrap();
+    }
+
+    private static class WithoutInitializersClassLoader extends ClassLoader {
+
+        private WithoutInitializersClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            if (INITIALIZER_SERVICES.equals(name)) {
+                return Collections.emptyEnumeration();
+            }
+            return super.getResources(name);
+        }
+    }
+}
@@ -7,9 +7,12 @@ import org.opensaml.saml.saml2.core.AuthnContextClassRef;
 import org.opensaml.saml.saml2.core.AuthnStatement;
 import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
 import uk.gov.ida.saml.security.SamlAssertionsSignatureValidator;
+import uk.gov.ida.verifyserviceprovider.dto.Attributes;
 import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
 import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
 import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.metrics.StageTimer;
+import uk.gov.ida.verifyserviceprovider.metrics.TranslateResponseMetrics;
 import uk.gov.ida.verifyserviceprovider.validators.AssertionValidator;
 import uk.gov.ida.verifyserviceprovider.validators.ConditionsValidator;
 import uk.gov.ida.verifyserviceprovider.validators.InstantValidator;
@@ -26,13 +29,16 @@ public class AssertionTranslator {
 
     private final SamlAssertionsSignatureValidator assertionsSignatureValidator;
     private final AssertionValidator assertionValidator;
+    private final TranslateResponseMetrics metrics;
 
     public AssertionTranslator(
         SamlAssertionsSignatureValidator assertionsSignatureValidator,
-        AssertionValidator assertionValidator
+        AssertionValidator assertionValidator,
+        TranslateResponseMetrics metrics
     ) {
         this.assertionsSignatureValidator = assertionsSignatureValidator;
         this.assertionValidator = assertionValidator;
+        this.metrics = metrics;
     }
 
     public TranslatedResponseBody translate(
@@ -44,8 +50,23 @@ public class AssertionTranslator {
         validateAssertions(assertions);
         Assertion assertion = assertions.get(0);
 
-        assertionValidator.validate(assertion, expectedInResponseTo, entityId);
-        assertionsSignatureValidator.validate(assertions, IDPSSODescriptor.DEFAULT_ELEMENT_NAME);
+        StageTimer assertionValidation = metrics.assertionValidation();
+        long start = assertionValidation.start();
+        try {
+            assertionValidator.validate(assertion, expectedInResponseTo, entityId);
+            assertionValidation.stop(start);
+        } catch (RuntimeException e) {
+            throw assertionValidation.failed(start, e);
+        }
+
+        StageTimer assertionSignatureValidation = metrics.assertionSignatureValidation();
+        start = assertionSignatureValidation.start();
+        try {
+            assertionsSignatureValidator.validate(assertions, IDPSSODescriptor.DEFAULT_ELEMENT_NAME);
+            assertionSignatureValidation.stop(start);
+        } catch (RuntimeException e) {
+            throw assertionSignatureValidation.failed(start, e);
+        }
 
         AuthnStatement authnStatement = assertion.getAuthnStatements().get(0);
 
@@ -56,12 +77,16 @@ public class AssertionTranslator {
         String nameID = assertion.getSubject().getNameID().getValue();
         List<AttributeStatement> attributeStatements = assertion.getAttributeStatements();
         if (isUserAccountCreation(attributeStatements)) {
-            return new TranslatedResponseBody(
-                ACCOUNT_CREATION,
-                nameID,
-                levelOfAssurance,
-                AttributeTranslationService.translateAttributes(attributeStatements.get(0))
-            );
+            StageTimer attributeTranslation = metrics.attributeTranslation();
+            start = attributeTranslation.start();
+            Attributes attributes;
+            try {
+                attributes = AttributeTranslationService.translateAttributes(attributeStatements.get(0));
+                attributeTranslation.stop(start);
+            } catch (RuntimeException e) {
+                throw attributeTranslation.failed(start, e);
+            }
+            return new TranslatedResponseBody(ACCOUNT_CREATION, nameID, levelOfAssurance, attributes);
 
         }
 
@@ -6,27 +6,30 @@ import uk.gov.ida.verifyserviceprovider.dto.RequestGenerationBody;
 import uk.gov.ida.verifyserviceprovider.dto.TranslateSamlResponseBody;
 import uk.gov.ida.verifyserviceprovider.exceptions.InvalidEntityIdException;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class EntityIdService {
-    private final List<String> configuredEntityIds;
+    // Hashed, as there can be hundreds of entity IDs once they're listed in a tenants file
+    private final Set<String> configuredEntityIds;
     private final String defaultEntityId;
     private static final Logger LOG = LoggerFactory.getLogger(EntityIdService.class);
 
     public EntityIdService(List<String> configuredEntityIds) {
-        this.configuredEntityIds = configuredEntityIds;
+        this.configuredEntityIds = new HashSet<>(configuredEntityIds);
         this.defaultEntityId = configuredEntityIds.size() == 1 ? configuredEntityIds.get(0) : null;
     }
 
     public String getEntityId(RequestGenerationBody requestGenerationBody) {
         String entityId = requestGenerationBody.getEntityId();
-        LOG.info(String.format("Received request to generate authn request with entityId %s", entityId != null ? entityId : "from config"));
+        LOG.info("Received request to generate authn request with entityId {}", entityId != null ? entityId : "from config");
         return getEntityId(entityId);
     }
 
     public String getEntityId(TranslateSamlResponseBody translateSamlResponseBody) {
         String entityId = translateSamlResponseBody.getEntityId();
-        LOG.info(String.format("Received request to translate a saml response with entityId %s", entityId != null ? entityId : "from config"));
+        LOG.info("Received request to translate a saml response with entityId {}", entityId != null ? entityId : "from config");
         return getEntityId(entityId);
     }
 
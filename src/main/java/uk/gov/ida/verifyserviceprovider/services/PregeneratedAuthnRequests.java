@@ -0,0 +1,258 @@
+package uk.gov.ida.verifyserviceprovider.services;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.ida.saml.serializers.XmlObjectToBase64EncodedStringTransformer;
+import uk.gov.ida.verifyserviceprovider.configuration.PregeneratedRequestsConfiguration;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.RequestResponseBody;
+import uk.gov.ida.verifyserviceprovider.factories.saml.AuthnRequestFactory;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Generates and signs AuthnRequests ahead of time on background threads, so that /generate-request
+ * doesn't have to wait for the RSA signature.
+ *
+ * A bounded queue of ready requests is kept for each service entity ID. An AuthnRequest doesn't say which
+ * level of assurance was asked for, so the same queue serves every level. Requests older than the configured
+ * maximum age are discarded, so the IssueInstant seen by the hub is always recent. When a queue is empty the
+ * caller should generate the request itself.
+ */
+public class PregeneratedAuthnRequests implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PregeneratedAuthnRequests.class);
+    // Ignored by AuthnRequestFactory, which builds the same request for every level of assurance
+    private static final LevelOfAssurance ANY_LEVEL_OF_ASSURANCE = LevelOfAssurance.LEVEL_2;
+
+    private final AuthnRequestFactory authnRequestFactory;
+    private final URI ssoLocation;
+    private final Map<String, ReadyQueue> readyQueues;
+    private final Duration maxAge;
+    private final int threads;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter staleDiscards;
+    private volatile ScheduledExecutorService executor;
+
+    private PregeneratedAuthnRequests(
+        AuthnRequestFactory authnRequestFactory,
+        URI ssoLocation,
+        Map<String, ReadyQueue> readyQueues,
+        Duration maxAge,
+        int threads,
+        Meter hits,
+        Meter misses,
+        Meter staleDiscards
+    ) {
+        this.authnRequestFactory = authnRequestFactory;
+        this.ssoLocation = ssoLocation;
+        this.readyQueues = readyQueues;
+        this.maxAge = maxAge;
+        this.threads = threads;
+        this.hits = hits;
+        this.misses = misses;
+        this.staleDiscards = staleDiscards;
+    }
+
+    public static PregeneratedAuthnRequests create(
+        PregeneratedRequestsConfiguration configuration,
+        AuthnRequestFactory authnRequestFactory,
+        URI ssoLocation,
+        List<String> serviceEntityIds,
+        MetricRegistry metricRegistry
+    ) {
+        if (!configuration.isEnabled()) {
+            return disabled();
+        }
+
+        Map<String, ReadyQueue> readyQueues = new HashMap<>();
+        for (String entityId : serviceEntityIds) {
+            readyQueues.put(entityId, new ReadyQueue(entityId, configuration.getQueueSize()));
+        }
+
+        Meter hits = metricRegistry.meter(MetricRegistry.name(PregeneratedAuthnRequests.class, "hits"));
+        Meter misses = metricRegistry.meter(MetricRegistry.name(PregeneratedAuthnRequests.class, "misses"));
+        metricRegistry.register(MetricRegistry.name(PregeneratedAuthnRequests.class, "ready"), (Gauge<Integer>) () ->
+            readyQueues.values().stream().mapToInt(readyQueue -> readyQueue.requests.size()).sum()
+        );
+        metricRegistry.register(MetricRegistry.name(PregeneratedAuthnRequests.class, "hitRate"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getOneMinuteRate(), hits.getOneMinuteRate() + misses.getOneMinuteRate());
+            }
+        });
+
+        return new PregeneratedAuthnRequests(
+            authnRequestFactory,
+            ssoLocation,
+            Collections.unmodifiableMap(readyQueues),
+            configuration.getMaxAge(),
+            configuration.getThreads(),
+            hits,
+            misses,
+            metricRegistry.meter(MetricRegistry.name(PregeneratedAuthnRequests.class, "staleDiscards"))
+        );
+    }
+
+    /**
+     * Never has a request ready, so every request is generated by the caller.
+     */
+    public static PregeneratedAuthnRequests disabled() {
+        return new PregeneratedAuthnRequests(null, null, Collections.emptyMap(), null, 0, null, null, null);
+    }
+
+    /**
+     * Takes a ready request for the entity ID, if there is one which isn't too old. It can be used for any
+     * level of assurance.
+     */
+    public Optional<RequestResponseBody> take(String entityId) {
+        ReadyQueue readyQueue = readyQueues.get(entityId);
+        if (readyQueue == null) {
+            return Optional.empty();
+        }
+
+        DateTime oldestAccepted = DateTime.now().minus(maxAge);
+        try {
+            PregeneratedRequest request;
+            while ((request = readyQueue.requests.poll()) != null) {
+                if (request.issueInstant.isAfter(oldestAccepted)) {
+                    hits.mark();
+                    return Optional.of(request.body);
+                }
+                staleDiscards.mark();
+            }
+            misses.mark();
+            return Optional.empty();
+        } finally {
+            scheduleRefill(readyQueue);
+        }
+    }
+
+    /**
+     * Discards stale requests and fills every queue, on the calling thread.
+     */
+    public void refill() {
+        readyQueues.values().forEach(this::refillIfIdle);
+    }
+
+    private void scheduleRefill(ReadyQueue readyQueue) {
+        ScheduledExecutorService executor = this.executor;
+        if (executor != null && !readyQueue.refilling.get()) {
+            try {
+                executor.execute(() -> refillIfIdle(readyQueue));
+            } catch (RejectedExecutionException e) {
+                // Shutting down, so there's no need to refill
+            }
+        }
+    }
+
+    private void refillIfIdle(ReadyQueue readyQueue) {
+        if (!readyQueue.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            discardStale(readyQueue);
+            while (readyQueue.requests.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                readyQueue.requests.offer(generate(readyQueue.entityId));
+            }
+        } catch (RuntimeException e) {
+            // Callers generate their own requests until the next refill succeeds
+            LOG.warn("Failed to pre-generate an AuthnRequest for entityId: {}", readyQueue.entityId, e);
+        } finally {
+            readyQueue.refilling.set(false);
+        }
+    }
+
+    private void discardStale(ReadyQueue readyQueue) {
+        DateTime oldestAccepted = DateTime.now().minus(maxAge);
+        PregeneratedRequest oldest;
+        while ((oldest = readyQueue.requests.peek()) != null && !oldest.issueInstant.isAfter(oldestAccepted)) {
+            if (readyQueue.requests.remove(oldest)) {
+                staleDiscards.mark();
+            }
+        }
+    }
+
+    private PregeneratedRequest generate(String entityId) {
+        AuthnRequest authnRequest = authnRequestFactory.build(ANY_LEVEL_OF_ASSURANCE, entityId);
+        String samlRequest = new XmlObjectToBase64EncodedStringTransformer<>().apply(authnRequest);
+        return new PregeneratedRequest(
+            new RequestResponseBody(samlRequest, authnRequest.getID(), ssoLocation),
+            authnRequest.getIssueInstant()
+        );
+    }
+
+    @Override
+    public void start() {
+        if (readyQueues.isEmpty()) {
+            return;
+        }
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+            threads,
+            new ThreadFactoryBuilder().setNameFormat("pregenerate-requests-%d").setDaemon(true).build()
+        );
+        // Checking several times per maxAge means requests are replaced before most of them go stale
+        long checkInterval = Math.max(100, maxAge.getMillis() / 4);
+        executor.scheduleWithFixedDelay(
+            () -> readyQueues.values().forEach(this::scheduleRefill),
+            0, checkInterval, MILLISECONDS
+        );
+        this.executor = executor;
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        ScheduledExecutorService executor = this.executor;
+        if (executor != null) {
+            this.executor = null;
+            executor.shutdownNow();
+            executor.awaitTermination(30, SECONDS);
+        }
+    }
+
+    private static class ReadyQueue {
+        private final String entityId;
+        private final BlockingQueue<PregeneratedRequest> requests;
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        private ReadyQueue(String entityId, int size) {
+            this.entityId = entityId;
+            this.requests = new ArrayBlockingQueue<>(size);
+        }
+    }
+
+    private static class PregeneratedRequest {
+        private final RequestResponseBody body;
+        private final DateTime issueInstant;
+
+        private PregeneratedRequest(RequestResponseBody body, DateTime issueInstant) {
+            this.body = body;
+            this.issueInstant = issueInstant;
+        }
+    }
+}
@@ -1,44 +1,64 @@
 package uk.gov.ida.verifyserviceprovider.services;
 
+import org.joda.time.DateTime;
 import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.Response;
 import org.opensaml.saml.saml2.core.StatusCode;
+import org.opensaml.saml.saml2.core.Subject;
+import org.opensaml.saml.saml2.core.SubjectConfirmation;
+import org.opensaml.saml.saml2.core.SubjectConfirmationData;
 import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
 import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
 import uk.gov.ida.saml.core.domain.SamlStatusCode;
-import uk.gov.ida.saml.deserializers.StringToOpenSamlObjectTransformer;
-import uk.gov.ida.saml.security.AssertionDecrypter;
 import uk.gov.ida.saml.security.validators.ValidatedResponse;
 import uk.gov.ida.saml.security.validators.signature.SamlResponseSignatureValidator;
 import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.SamlResponseContent;
 import uk.gov.ida.verifyserviceprovider.dto.Scenario;
 import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
 import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.metrics.StageTimer;
+import uk.gov.ida.verifyserviceprovider.metrics.TranslateResponseMetrics;
+import uk.gov.ida.verifyserviceprovider.replay.ReplayCache;
+import uk.gov.ida.verifyserviceprovider.saml.PooledAssertionDecrypter;
+import uk.gov.ida.verifyserviceprovider.saml.PooledStringToResponseTransformer;
 import uk.gov.ida.verifyserviceprovider.validators.InstantValidator;
+import uk.gov.ida.verifyserviceprovider.validators.ResponsePreValidator;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 public class ResponseService {
 
-    private final StringToOpenSamlObjectTransformer<Response> stringToOpenSamlObjectTransformer;
-    private final AssertionDecrypter assertionDecrypter;
+    private final PooledStringToResponseTransformer stringToOpenSamlObjectTransformer;
+    private final PooledAssertionDecrypter assertionDecrypter;
+    private final Map<String, PooledAssertionDecrypter> tenantAssertionDecrypters;
     private final AssertionTranslator assertionTranslator;
     private final SamlResponseSignatureValidator responseSignatureValidator;
-    private final InstantValidator instantValidator;
+    private final ResponsePreValidator responsePreValidator;
+    private final ReplayCache replayCache;
+    private final TranslateResponseMetrics metrics;
 
     public ResponseService(
-        StringToOpenSamlObjectTransformer<Response> stringToOpenSamlObjectTransformer,
-        AssertionDecrypter assertionDecrypter,
+        PooledStringToResponseTransformer stringToOpenSamlObjectTransformer,
+        PooledAssertionDecrypter assertionDecrypter,
+        Map<String, PooledAssertionDecrypter> tenantAssertionDecrypters,
         AssertionTranslator assertionTranslator,
         SamlResponseSignatureValidator responseSignatureValidator,
-        InstantValidator instantValidator
+        ResponsePreValidator responsePreValidator,
+        ReplayCache replayCache,
+        TranslateResponseMetrics metrics
     ) {
         this.stringToOpenSamlObjectTransformer = stringToOpenSamlObjectTransformer;
         this.assertionDecrypter = assertionDecrypter;
+        this.tenantAssertionDecrypters = tenantAssertionDecrypters;
         this.assertionTranslator = assertionTranslator;
         this.responseSignatureValidator = responseSignatureValidator;
-        this.instantValidator = instantValidator;
+        this.responsePreValidator = responsePreValidator;
+        this.replayCache = replayCache;
+        this.metrics = metrics;
     }
 
     public TranslatedResponseBody convertTranslatedResponseBody(
@@ -47,17 +67,56 @@ public class ResponseService {
         LevelOfAssurance expectedLevelOfAssurance,
         String entityId
     ) {
-        Response response = stringToOpenSamlObjectTransformer.apply(decodedSamlResponse);
+        return convertTranslatedResponseBody(SamlResponseContent.fromBase64(decodedSamlResponse), expectedInResponseTo, expectedLevelOfAssurance, entityId);
+    }
 
-        ValidatedResponse validatedResponse = responseSignatureValidator.validate(response, SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+    public TranslatedResponseBody convertTranslatedResponseBody(
+        SamlResponseContent samlResponse,
+        String expectedInResponseTo,
+        LevelOfAssurance expectedLevelOfAssurance,
+        String entityId
+    ) {
+        StageTimer unmarshal = metrics.unmarshal();
+        long start = unmarshal.start();
+        Response response;
+        try {
+            response = stringToOpenSamlObjectTransformer.apply(samlResponse);
+            unmarshal.stop(start);
+        } catch (RuntimeException e) {
+            throw unmarshal.failed(start, e);
+        }
 
-        if (!expectedInResponseTo.equals(validatedResponse.getInResponseTo())) {
-            throw new SamlResponseValidationException(
-                String.format("Expected InResponseTo to be %s, but was %s", expectedInResponseTo, response.getInResponseTo())
-            );
+        // Stale and mismatched responses are rejected before any RSA work. Everything checked here
+        // is covered by the signature, so a Response which passes is still rejected if it was altered.
+        StageTimer responseValidation = metrics.responseValidation();
+        start = responseValidation.start();
+        try {
+            responsePreValidator.validate(response, expectedInResponseTo);
+            responseValidation.stop(start);
+        } catch (RuntimeException e) {
+            throw responseValidation.failed(start, e);
         }
 
-        instantValidator.validate(validatedResponse.getIssueInstant(), "Response IssueInstant");
+        StageTimer responseSignatureValidation = metrics.responseSignatureValidation();
+        start = responseSignatureValidation.start();
+        ValidatedResponse validatedResponse;
+        try {
+            validatedResponse = responseSignatureValidator.validate(response, SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+            responseSignatureValidation.stop(start);
+        } catch (RuntimeException e) {
+            throw responseSignatureValidation.failed(start, e);
+        }
+
+        // Only IDs from signed responses are remembered, so a forged Response can't be used to block a real one.
+        // The IssueInstant has been validated, so the Response can't be accepted after this expiry
+        StageTimer replayCheck = metrics.replayCheck();
+        start = replayCheck.start();
+        try {
+            checkNotReplayed("Response", response.getID(), validatedResponse.getIssueInstant().plus(InstantValidator.MAXIMUM_INSTANT_AGE));
+            replayCheck.stop(start);
+        } catch (RuntimeException e) {
+            throw replayCheck.failed(start, e);
+        }
 
         StatusCode statusCode = validatedResponse.getStatus().getStatusCode();
 
@@ -65,13 +124,53 @@ public class ResponseService {
             case StatusCode.RESPONDER:
                 return translateNonSuccessResponse(statusCode);
             case StatusCode.SUCCESS:
-                List<Assertion> assertions = assertionDecrypter.decryptAssertions(validatedResponse);
+                StageTimer assertionDecryption = metrics.assertionDecryption();
+                start = assertionDecryption.start();
+                List<Assertion> assertions;
+                try {
+                    assertions = tenantAssertionDecrypters.getOrDefault(entityId, assertionDecrypter).decryptAssertions(validatedResponse);
+                    assertionDecryption.stop(start);
+                } catch (RuntimeException e) {
+                    throw assertionDecryption.failed(start, e);
+                }
+
+                // Assertion IDs are encrypted, so can only be checked once decrypted
+                start = replayCheck.start();
+                try {
+                    for (Assertion assertion : assertions) {
+                        checkNotReplayed("Assertion", assertion.getID(), getAssertionExpiry(assertion));
+                    }
+                    replayCheck.stop(start);
+                } catch (RuntimeException e) {
+                    throw replayCheck.failed(start, e);
+                }
                 return assertionTranslator.translate(assertions, expectedInResponseTo, expectedLevelOfAssurance, entityId);
             default:
                 throw new SamlResponseValidationException(String.format("Unknown SAML status: %s", statusCode.getValue()));
         }
     }
 
+    private void checkNotReplayed(String messageType, String id, DateTime expiry) {
+        if (id == null) {
+            throw new SamlResponseValidationException(String.format("%s ID is missing", messageType));
+        }
+        if (!replayCache.putIfAbsent(id, expiry)) {
+            throw new SamlResponseValidationException(String.format("%s %s has already been received", messageType, id));
+        }
+    }
+
+    private DateTime getAssertionExpiry(Assertion assertion) {
+        return Optional.ofNullable(assertion.getSubject())
+            .map(Subject::getSubjectConfirmations)
+            .flatMap(subjectConfirmations -> subjectConfirmations.stream()
+                .map(SubjectConfirmation::getSubjectConfirmationData)
+                .filter(Objects::nonNull)
+                .map(SubjectConfirmationData::getNotOnOrAfter)
+                .filter(Objects::nonNull)
+                .findFirst())
+            .orElseGet(() -> Optional.ofNullable(assertion.getIssueInstant()).orElseGet(DateTime::now).plus(InstantValidator.MAXIMUM_INSTANT_AGE));
+    }
+
     private TranslatedResponseBody translateNonSuccessResponse(StatusCode statusCode) {
         Optional.ofNullable(statusCode.getStatusCode())
             .orElseThrow(() -> new SamlResponseValidationException("Missing status code for non-Success response"));
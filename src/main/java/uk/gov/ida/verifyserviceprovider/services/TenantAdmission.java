@@ -0,0 +1,89 @@
+package uk.gov.ida.verifyserviceprovider.services;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantLimitConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantLimitsConfiguration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides whether to accept a request for a service entity ID, using a token bucket for each one,
+ * and gives the weight its requests have when waiting for the worker pool.
+ *
+ * Requests over quota are counted in {@code TenantAdmission.<entityId>.rejected}.
+ */
+public class TenantAdmission {
+
+    private static final Tenant UNLIMITED = new Tenant(null, 1, null);
+
+    private final Map<String, Tenant> tenants;
+
+    private TenantAdmission(Map<String, Tenant> tenants) {
+        this.tenants = tenants;
+    }
+
+    public static TenantAdmission create(TenantLimitsConfiguration configuration, List<String> serviceEntityIds, MetricRegistry metricRegistry) {
+        Map<String, Tenant> tenants = new HashMap<>();
+        for (String entityId : serviceEntityIds) {
+            TenantLimitConfiguration limit = configuration.getLimitFor(entityId);
+            tenants.put(entityId, new Tenant(
+                limit.getRequestsPerSecond() == null ? null : new TokenBucket(limit.getRequestsPerSecond(), limit.getBurst()),
+                limit.getWeight(),
+                metricRegistry.meter(MetricRegistry.name(TenantAdmission.class, entityId, "rejected"))
+            ));
+        }
+        return new TenantAdmission(Collections.unmodifiableMap(tenants));
+    }
+
+    /**
+     * Accepts every request, and gives them all the same weight.
+     */
+    public static TenantAdmission unlimited() {
+        return new TenantAdmission(Collections.emptyMap());
+    }
+
+    /**
+     * Takes a token for the entity ID if there is one. Requests for entity IDs which aren't configured
+     * are always admitted, as they'll be rejected later.
+     */
+    public boolean tryAdmit(String entityId) {
+        Tenant tenant = getTenant(entityId);
+        if (tenant.tokenBucket == null || tenant.tokenBucket.tryAcquire()) {
+            return true;
+        }
+        tenant.rejections.mark();
+        return false;
+    }
+
+    public int getWeight(String entityId) {
+        return getTenant(entityId).weight;
+    }
+
+    /**
+     * How long a client should wait before retrying a rejected request, in whole seconds.
+     */
+    public long getRetryAfterSeconds(String entityId) {
+        TokenBucket tokenBucket = getTenant(entityId).tokenBucket;
+        return tokenBucket == null ? 1 : tokenBucket.getRefillIntervalSeconds();
+    }
+
+    private Tenant getTenant(String entityId) {
+        return entityId == null ? UNLIMITED : tenants.getOrDefault(entityId, UNLIMITED);
+    }
+
+    private static class Tenant {
+        private final TokenBucket tokenBucket;
+        private final int weight;
+        private final Meter rejections;
+
+        private Tenant(TokenBucket tokenBucket, int weight, Meter rejections) {
+            this.tokenBucket = tokenBucket;
+            this.weight = weight;
+            this.rejections = rejections;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package uk.gov.ida.verifyserviceprovider.services;
+
+import org.opensaml.security.crypto.KeySupport;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantConfiguration;
+
+import java.security.KeyException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+/**
+ * The service entity IDs this Verify Service Provider acts for, indexed by entity ID, each with the keys
+ * it signs AuthnRequests and decrypts Assertions with.
+ *
+ * Tenants come from serviceEntityIds and from the optional tenants file. A tenant which doesn't have
+ * its own keys uses the top-level ones.
+ */
+public class TenantRegistry {
+
+    private final Map<String, Tenant> tenants;
+    private final KeyPair defaultSigningKeyPair;
+    private final List<KeyPair> defaultDecryptionKeyPairs;
+
+    private TenantRegistry(Map<String, Tenant> tenants, KeyPair defaultSigningKeyPair, List<KeyPair> defaultDecryptionKeyPairs) {
+        this.tenants = tenants;
+        this.defaultSigningKeyPair = defaultSigningKeyPair;
+        this.defaultDecryptionKeyPairs = defaultDecryptionKeyPairs;
+    }
+
+    public static TenantRegistry create(
+        List<String> serviceEntityIds,
+        KeyPair defaultSigningKeyPair,
+        List<KeyPair> defaultDecryptionKeyPairs,
+        List<TenantConfiguration> tenantConfigurations
+    ) throws KeyException {
+        Map<String, Tenant> tenants = new LinkedHashMap<>();
+        for (String entityId : serviceEntityIds) {
+            tenants.put(entityId, new Tenant(entityId, defaultSigningKeyPair, defaultDecryptionKeyPairs));
+        }
+        for (TenantConfiguration tenantConfiguration : tenantConfigurations) {
+            KeyPair signingKeyPair = tenantConfiguration.getSamlSigningKey() == null
+                ? defaultSigningKeyPair
+                : createKeyPair(tenantConfiguration.getSamlSigningKey());
+            List<KeyPair> decryptionKeyPairs = tenantConfiguration.getSamlPrimaryEncryptionKey() == null
+                ? defaultDecryptionKeyPairs
+                : createDecryptionKeyPairs(tenantConfiguration.getSamlPrimaryEncryptionKey(), tenantConfiguration.getSamlSecondaryEncryptionKey());
+            tenants.put(tenantConfiguration.getEntityId(), new Tenant(tenantConfiguration.getEntityId(), signingKeyPair, decryptionKeyPairs));
+        }
+        return new TenantRegistry(Collections.unmodifiableMap(tenants), defaultSigningKeyPair, defaultDecryptionKeyPairs);
+    }
+
+    public static List<KeyPair> createDecryptionKeyPairs(PrivateKey primary, PrivateKey secondary) throws KeyException {
+        if (secondary == null) {
+            return singletonList(createKeyPair(primary));
+        } else {
+            return asList(createKeyPair(primary), createKeyPair(secondary));
+        }
+    }
+
+    public static KeyPair createKeyPair(PrivateKey key) throws KeyException {
+        return new KeyPair(KeySupport.derivePublicKey(key), key);
+    }
+
+    /**
+     * In the order they were configured, with serviceEntityIds first.
+     */
+    public List<String> getEntityIds() {
+        return new ArrayList<>(tenants.keySet());
+    }
+
+    public Optional<Tenant> getTenant(String entityId) {
+        return Optional.ofNullable(tenants.get(entityId));
+    }
+
+    public KeyPair getDefaultSigningKeyPair() {
+        return defaultSigningKeyPair;
+    }
+
+    public List<KeyPair> getDefaultDecryptionKeyPairs() {
+        return defaultDecryptionKeyPairs;
+    }
+
+    public Map<String, KeyPair> getSigningKeyPairs() {
+        Map<String, KeyPair> signingKeyPairs = new LinkedHashMap<>();
+        tenants.values().forEach(tenant -> signingKeyPairs.put(tenant.getEntityId(), tenant.getSigningKeyPair()));
+        return signingKeyPairs;
+    }
+
+    public Map<String, List<KeyPair>> getDecryptionKeyPairs() {
+        Map<String, List<KeyPair>> decryptionKeyPairs = new LinkedHashMap<>();
+        tenants.values().forEach(tenant -> decryptionKeyPairs.put(tenant.getEntityId(), tenant.getDecryptionKeyPairs()));
+        return decryptionKeyPairs;
+    }
+
+    public static class Tenant {
+        private final String entityId;
+        private final KeyPair signingKeyPair;
+        private final List<KeyPair> decryptionKeyPairs;
+
+        private Tenant(String entityId, KeyPair signingKeyPair, List<KeyPair> decryptionKeyPairs) {
+            this.entityId = entityId;
+            this.signingKeyPair = signingKeyPair;
+            this.decryptionKeyPairs = decryptionKeyPairs;
+        }
+
+        public String getEntityId() {
+            return entityId;
+        }
+
+        public KeyPair getSigningKeyPair() {
+            return signingKeyPair;
+        }
+
+        public List<KeyPair> getDecryptionKeyPairs() {
+            return decryptionKeyPairs;
+        }
+    }
+}
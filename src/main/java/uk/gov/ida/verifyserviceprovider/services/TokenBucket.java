@@ -0,0 +1,41 @@
+package uk.gov.ida.verifyserviceprovider.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allows requests at a sustained rate, with bursts of up to a fixed number of requests.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerSecond;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        this.capacity = capacity;
+        this.tokensPerSecond = tokensPerSecond;
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * How long until another token is added to an empty bucket, rounded up to whole seconds.
+     */
+    public long getRefillIntervalSeconds() {
+        return Math.max(1, (long) Math.ceil(1 / tokensPerSecond));
+    }
+}
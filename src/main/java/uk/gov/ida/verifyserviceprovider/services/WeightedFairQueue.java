@@ -0,0 +1,270 @@
+package uk.gov.ida.verifyserviceprovider.services;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded work queue which shares the workers between tenants in proportion to their weights,
+ * however many tasks each tenant has waiting.
+ *
+ * Each task is given a virtual finish time when it's queued: the later of the current virtual time
+ * and the tenant's previous finish time, plus the inverse of the tenant's weight. Tasks are taken in
+ * order of finish time, so a tenant which queues a burst of tasks only delays its own later tasks.
+ *
+ * Tasks which aren't a {@link TenantTask} are treated as belonging to one tenant with a weight of 1.
+ */
+public class WeightedFairQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final PriorityQueue<Entry> entries = new PriorityQueue<>();
+    private final Map<String, Double> lastFinishTimes = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+
+    public WeightedFairQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public static class TenantTask implements Runnable {
+        private final String tenant;
+        private final int weight;
+        private final Runnable task;
+
+        public TenantTask(String tenant, int weight, Runnable task) {
+            this.tenant = tenant;
+            this.weight = weight;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        Objects.requireNonNull(task);
+        lock.lock();
+        try {
+            if (entries.size() >= capacity) {
+                return false;
+            }
+            enqueue(task);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        Objects.requireNonNull(task);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (entries.size() >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(task);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) throws InterruptedException {
+        Objects.requireNonNull(task);
+        lock.lockInterruptibly();
+        try {
+            while (entries.size() >= capacity) {
+                notFull.await();
+            }
+            enqueue(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return entries.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return entries.isEmpty() ? null : entries.peek().task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        lock.lock();
+        try {
+            boolean removed = entries.removeIf(entry -> entry.task == task);
+            if (removed) {
+                notFull.signal();
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && !entries.isEmpty()) {
+                collection.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A snapshot of the queued tasks, in no particular order.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> tasks = new ArrayList<>(entries.size());
+            entries.forEach(entry -> tasks.add(entry.task));
+            return tasks.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Runnable task) {
+        String tenant = null;
+        int weight = 1;
+        if (task instanceof TenantTask) {
+            tenant = ((TenantTask) task).tenant;
+            weight = ((TenantTask) task).weight;
+        }
+
+        double start = Math.max(virtualTime, lastFinishTimes.getOrDefault(tenant, 0.0));
+        double finish = start + 1.0 / weight;
+        lastFinishTimes.put(tenant, finish);
+        entries.add(new Entry(task, finish, sequence++));
+        notEmpty.signal();
+    }
+
+    private Runnable dequeue() {
+        Entry entry = entries.poll();
+        virtualTime = entry.finish;
+        if (entries.isEmpty()) {
+            // Nothing is waiting, so no tenant has any credit or debt to carry forward
+            lastFinishTimes.clear();
+            virtualTime = 0;
+        }
+        notFull.signal();
+        return entry.task;
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final Runnable task;
+        private final double finish;
+        private final long sequence;
+
+        private Entry(Runnable task, double finish, long sequence) {
+            this.task = task;
+            this.finish = finish;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byFinish = Double.compare(finish, other.finish);
+            return byFinish != 0 ? byFinish : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package uk.gov.ida.verifyserviceprovider.services;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.jersey.errors.ErrorMessage;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.ida.verifyserviceprovider.configuration.WorkerPoolConfiguration;
+import uk.gov.ida.verifyserviceprovider.metrics.BucketedTimer;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+
+/**
+ * Runs the CPU heavy part of a request (signing, encryption and signature validation) off the
+ * Jetty request thread, on a fixed number of threads with a bounded queue.
+ *
+ * When the queue is full the request is rejected straight away with a 503 and a Retry-After
+ * header, rather than waiting behind work which will take longer than the client is prepared to wait.
+ *
+ * Waiting requests are taken from a {@link WeightedFairQueue}, so each service entity ID gets a share
+ * of the workers in proportion to its weight. Requests for an entity ID which is over its quota are
+ * rejected with a 429 before they're queued, whether or not async is enabled.
+ *
+ * Without async enabled, the work runs on the request thread as before.
+ */
+public class WorkerPool implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerPool.class);
+    // Response.Status has no constant for 429 in JAX-RS 2.0
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+    private final Timer waitTimer;
+    private final Meter rejections;
+    private final TenantAdmission tenantAdmission;
+    private final MetricRegistry metricRegistry;
+    private final ConcurrentMap<String, Timer> tenantWaitTimers = new ConcurrentHashMap<>();
+
+    private WorkerPool(
+        ThreadPoolExecutor executor,
+        long retryAfterSeconds,
+        Timer waitTimer,
+        Meter rejections,
+        TenantAdmission tenantAdmission,
+        MetricRegistry metricRegistry
+    ) {
+        this.executor = executor;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.waitTimer = waitTimer;
+        this.rejections = rejections;
+        this.tenantAdmission = tenantAdmission;
+        this.metricRegistry = metricRegistry;
+    }
+
+    public static WorkerPool create(WorkerPoolConfiguration configuration, MetricRegistry metricRegistry) {
+        return create(configuration, TenantAdmission.unlimited(), metricRegistry);
+    }
+
+    public static WorkerPool create(WorkerPoolConfiguration configuration, TenantAdmission tenantAdmission, MetricRegistry metricRegistry) {
+        if (!configuration.isAsync()) {
+            return new WorkerPool(null, 0, null, null, tenantAdmission, metricRegistry);
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            configuration.getThreads(),
+            configuration.getThreads(),
+            0, SECONDS,
+            new WeightedFairQueue(configuration.getQueueSize()),
+            new ThreadFactoryBuilder().setNameFormat("worker-pool-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        metricRegistry.register(MetricRegistry.name(WorkerPool.class, "queueDepth"), (Gauge<Integer>) () -> executor.getQueue().size());
+        metricRegistry.register(MetricRegistry.name(WorkerPool.class, "activeThreads"), (Gauge<Integer>) executor::getActiveCount);
+
+        return new WorkerPool(
+            executor,
+            Math.max(1, configuration.getRetryAfter().getStandardSeconds()),
+            metricRegistry.timer(MetricRegistry.name(WorkerPool.class, "waitTime"), BucketedTimer::withSlidingWindow),
+            metricRegistry.meter(MetricRegistry.name(WorkerPool.class, "rejected")),
+            tenantAdmission,
+            metricRegistry
+        );
+    }
+
+    /**
+     * A pool which does the work on the calling thread and never rejects it.
+     */
+    public static WorkerPool requestThread() {
+        return new WorkerPool(null, 0, null, null, TenantAdmission.unlimited(), null);
+    }
+
+    /**
+     * Resumes the response with the result of the work, or with the exception it throws
+     * so that it is handled by the usual exception mappers.
+     */
+    public void execute(AsyncResponse asyncResponse, Supplier<Response> work) {
+        execute(asyncResponse, null, work);
+    }
+
+    /**
+     * Does the work for a service entity ID, subject to its quota and its share of the workers.
+     */
+    public void execute(AsyncResponse asyncResponse, String entityId, Supplier<Response> work) {
+        if (!tenantAdmission.tryAdmit(entityId)) {
+            LOG.warn("Rejected request for entityId: {} as it is over its quota", entityId);
+            asyncResponse.resume(Response
+                .status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, tenantAdmission.getRetryAfterSeconds(entityId))
+                .entity(new ErrorMessage(TOO_MANY_REQUESTS, "Too many requests have been made for this service. Please try again later."))
+                .build());
+            return;
+        }
+
+        if (executor == null) {
+            complete(asyncResponse, work);
+            return;
+        }
+
+        long queuedAt = System.nanoTime();
+        Timer tenantWaitTimer = getTenantWaitTimer(entityId);
+        try {
+            executor.execute(new WeightedFairQueue.TenantTask(entityId, tenantAdmission.getWeight(entityId), () -> {
+                long waited = System.nanoTime() - queuedAt;
+                waitTimer.update(waited, NANOSECONDS);
+                if (tenantWaitTimer != null) {
+                    tenantWaitTimer.update(waited, NANOSECONDS);
+                }
+                complete(asyncResponse, work);
+            }));
+        } catch (RejectedExecutionException e) {
+            rejections.mark();
+            LOG.warn("Rejected request as the worker pool queue is full ({} waiting)", executor.getQueue().size());
+            asyncResponse.resume(Response
+                .status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(new ErrorMessage(SERVICE_UNAVAILABLE.getStatusCode(), "Too many requests are waiting to be processed. Please try again later."))
+                .build());
+        }
+    }
+
+    private Timer getTenantWaitTimer(String entityId) {
+        if (entityId == null) {
+            return null;
+        }
+        return tenantWaitTimers.computeIfAbsent(entityId, id -> metricRegistry.timer(
+            MetricRegistry.name(WorkerPool.class, "tenants", id, "waitTime"),
+            BucketedTimer::withSlidingWindow
+        ));
+    }
+
+    private static void complete(AsyncResponse asyncResponse, Supplier<Response> work) {
+        try {
+            asyncResponse.resume(work.get());
+        } catch (RuntimeException e) {
+            asyncResponse.resume(e);
+        }
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(30, SECONDS);
+        }
+    }
+}
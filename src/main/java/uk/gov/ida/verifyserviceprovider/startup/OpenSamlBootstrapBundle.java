@@ -0,0 +1,43 @@
+package uk.gov.ida.verifyserviceprovider.startup;
+
+import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+import uk.gov.ida.verifyserviceprovider.configuration.VerifyServiceProviderConfiguration;
+import uk.gov.ida.verifyserviceprovider.saml.VerifyServiceProviderSamlBootstrap;
+
+import java.security.KeyStore;
+
+/**
+ * Bootstraps OpenSAML and Santuario on a background thread while the configuration is read, and waits for
+ * it before any bundle added after this one runs. Loading the hub trust store is started as soon as the
+ * configuration has been read, for the metadata bundle to use.
+ *
+ * It must be added before the metadata bundles, which need OpenSAML when they run.
+ */
+public class OpenSamlBootstrapBundle implements ConfiguredBundle<VerifyServiceProviderConfiguration> {
+
+    private final StartupPlan startupPlan;
+    private StartupTask<Void> openSamlBootstrap;
+
+    public OpenSamlBootstrapBundle(StartupPlan startupPlan) {
+        this.startupPlan = startupPlan;
+    }
+
+    @Override
+    public void initialize(Bootstrap<?> bootstrap) {
+        openSamlBootstrap = startupPlan.task("openSamlBootstrap", () -> {
+            VerifyServiceProviderSamlBootstrap.bootstrap();
+            return null;
+        });
+    }
+
+    @Override
+    public void run(VerifyServiceProviderConfiguration configuration, Environment environment) throws Exception {
+        startupPlan.getReport().endPhase("configuration");
+        StartupTask<KeyStore> hubTrustStore = startupPlan.task("hubTrustStore", configuration.getVerifyHubMetadata()::getTrustStore);
+        openSamlBootstrap.get();
+        hubTrustStore.get();
+        startupPlan.getReport().endPhase("awaitOpenSamlBootstrap");
+    }
+}
@@ -0,0 +1,98 @@
+package uk.gov.ida.verifyserviceprovider.startup;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the steps of startup as a graph of tasks, each starting on a background thread as soon as the tasks
+ * it depends on have finished, so that steps which don't depend on each other run at the same time.
+ *
+ * A task is waited for with {@link StartupTask#get()} where its result is needed. A deferred task is one
+ * which startup doesn't wait for, so its failure is only logged. Every task is timed in the {@link StartupReport}.
+ *
+ * The threads are daemons and stop once they've been idle for a few seconds, so the plan doesn't need to be
+ * shut down and deferred tasks can outlive startup.
+ */
+public class StartupPlan {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupPlan.class);
+    private static final long IDLE_SECONDS = 5;
+
+    private final StartupReport report;
+    private final ExecutorService executor;
+
+    public StartupPlan(StartupReport report) {
+        this(report, Runtime.getRuntime().availableProcessors());
+    }
+
+    public StartupPlan(StartupReport report, int threads) {
+        this.report = report;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            IDLE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("startup-%d").setDaemon(true).build()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    public StartupReport getReport() {
+        return report;
+    }
+
+    /**
+     * Runs the work once the dependencies have finished. If one of them fails, the work isn't run and
+     * the task fails in the same way.
+     */
+    public <T> StartupTask<T> task(String name, Callable<T> work, StartupTask<?>... dependencies) {
+        return submit(name, work, false, dependencies);
+    }
+
+    /**
+     * Runs the work once the dependencies have finished, without startup waiting for it.
+     */
+    public <T> StartupTask<T> defer(String name, Callable<T> work, StartupTask<?>... dependencies) {
+        StartupTask<T> task = submit(name, work, true, dependencies);
+        task.getFuture().whenComplete((result, failure) -> {
+            if (failure != null) {
+                LOG.warn("Deferred startup task {} failed", name, failure);
+            }
+        });
+        return task;
+    }
+
+    private <T> StartupTask<T> submit(String name, Callable<T> work, boolean deferred, StartupTask<?>... dependencies) {
+        CompletableFuture<?>[] dependencyFutures = new CompletableFuture<?>[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencyFutures[i] = dependencies[i].getFuture();
+        }
+        CompletableFuture<T> future = CompletableFuture.allOf(dependencyFutures)
+            .thenApplyAsync(ignored -> run(name, work, deferred), executor);
+        return new StartupTask<>(name, future);
+    }
+
+    private <T> T run(String name, Callable<T> work, boolean deferred) {
+        long startMillis = System.currentTimeMillis();
+        try {
+            return work.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            report.record(name, startMillis, System.currentTimeMillis(), deferred);
+        }
+    }
+}
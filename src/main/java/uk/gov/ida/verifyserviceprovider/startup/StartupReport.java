@@ -0,0 +1,119 @@
+package uk.gov.ida.verifyserviceprovider.startup;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records how long each phase of startup took, measured in milliseconds since the JVM started.
+ *
+ * The phases run one after another on the main thread are ended with {@link #endPhase(String)}, each
+ * starting where the last one ended. The tasks of a {@link StartupPlan} run alongside them, and are
+ * recorded with the thread which ran them.
+ */
+public class StartupReport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupReport.class);
+
+    private final long jvmStartMillis;
+    private final List<Phase> phases = new CopyOnWriteArrayList<>();
+    private long lastPhaseEndMillis;
+    private volatile Long serverStartedMillis;
+
+    public StartupReport() {
+        this(ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    public StartupReport(long jvmStartMillis) {
+        this.jvmStartMillis = jvmStartMillis;
+        this.lastPhaseEndMillis = jvmStartMillis;
+    }
+
+    /**
+     * Ends a phase on the main thread, which started when the previous one ended.
+     */
+    public synchronized void endPhase(String name) {
+        long endMillis = System.currentTimeMillis();
+        record(name, lastPhaseEndMillis, endMillis, false);
+        lastPhaseEndMillis = endMillis;
+    }
+
+    public void record(String name, long startMillis, long endMillis, boolean deferred) {
+        Phase phase = new Phase(name, startMillis - jvmStartMillis, endMillis - startMillis, Thread.currentThread().getName(), deferred);
+        phases.add(phase);
+        LOG.info("Startup phase {} took {}ms{}", name, phase.durationMillis, deferred ? " (deferred)" : "");
+    }
+
+    public void serverStarted() {
+        serverStartedMillis = System.currentTimeMillis() - jvmStartMillis;
+        LOG.info("Started {}ms after the JVM started", serverStartedMillis);
+    }
+
+    /**
+     * In the order they started.
+     */
+    @JsonProperty
+    public List<Phase> getPhases() {
+        List<Phase> sorted = new ArrayList<>(phases);
+        sorted.sort(Comparator.comparingLong(Phase::getStartedAtMillis));
+        return sorted;
+    }
+
+    /**
+     * The milliseconds between the JVM starting and the server accepting requests, or null if it hasn't yet.
+     */
+    @JsonProperty
+    public Long getServerStartedMillis() {
+        return serverStartedMillis;
+    }
+
+    public static class Phase {
+        private final String name;
+        private final long startedAtMillis;
+        private final long durationMillis;
+        private final String thread;
+        private final boolean deferred;
+
+        private Phase(String name, long startedAtMillis, long durationMillis, String thread, boolean deferred) {
+            this.name = name;
+            this.startedAtMillis = startedAtMillis;
+            this.durationMillis = durationMillis;
+            this.thread = thread;
+            this.deferred = deferred;
+        }
+
+        @JsonProperty
+        public String getName() {
+            return name;
+        }
+
+        @JsonProperty
+        public long getStartedAtMillis() {
+            return startedAtMillis;
+        }
+
+        @JsonProperty
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        @JsonProperty
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * Whether startup carried on without waiting for it.
+         */
+        @JsonProperty
+        public boolean isDeferred() {
+            return deferred;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package uk.gov.ida.verifyserviceprovider.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Serves the {@link StartupReport} as JSON.
+ */
+public class StartupReportServlet extends HttpServlet {
+
+    private static final String CONTENT_TYPE = "application/json";
+
+    private final StartupReport startupReport;
+    private final ObjectMapper objectMapper;
+
+    public StartupReportServlet(StartupReport startupReport, ObjectMapper objectMapper) {
+        this.startupReport = startupReport;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+        try (Writer writer = response.getWriter()) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(writer, startupReport);
+        }
+    }
+}
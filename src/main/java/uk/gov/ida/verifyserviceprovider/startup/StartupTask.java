@@ -0,0 +1,46 @@
+package uk.gov.ida.verifyserviceprovider.startup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The result of a step of a {@link StartupPlan}, which may still be running.
+ */
+public class StartupTask<T> {
+
+    private final String name;
+    private final CompletableFuture<T> future;
+
+    StartupTask(String name, CompletableFuture<T> future) {
+        this.name = name;
+        this.future = future;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Waits for the step to finish.
+     *
+     * @throws Exception what the step, or a step it depends on, threw
+     */
+    public T get() throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    CompletableFuture<T> getFuture() {
+        return future;
+    }
+}
@@ -0,0 +1,73 @@
+package uk.gov.ida.verifyserviceprovider.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Unmaps memory-mapped files as soon as they're no longer needed, rather than whenever their buffers
+ * happen to be garbage collected, which may be long after the files have been deleted.
+ *
+ * Java has no public API for this, so it uses {@code sun.misc.Unsafe.invokeCleaner} on Java 9 and later,
+ * and the buffer's cleaner on Java 8. A buffer must never be read or written once it has been unmapped,
+ * as that crashes the JVM.
+ */
+public class MappedBuffers {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedBuffers.class);
+    private static final Unmapper UNMAPPER = createUnmapper();
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * @return whether the buffer was unmapped. If it wasn't, it's unmapped once it's garbage collected
+     */
+    public static boolean unmap(MappedByteBuffer buffer) {
+        if (UNMAPPER == null) {
+            return false;
+        }
+        try {
+            UNMAPPER.unmap(buffer);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Failed to unmap a memory-mapped file, so it will be unmapped once it's garbage collected", e);
+            return false;
+        }
+    }
+
+    private interface Unmapper {
+        void unmap(ByteBuffer buffer) throws ReflectiveOperationException;
+    }
+
+    private static Unmapper createUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (NoSuchMethodException e) {
+            return createJava8Unmapper();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Memory-mapped files can't be unmapped on this JVM, so they'll be unmapped once they're garbage collected", e);
+            return null;
+        }
+    }
+
+    private static Unmapper createJava8Unmapper() {
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> clean.invoke(cleaner.invoke(buffer));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Memory-mapped files can't be unmapped on this JVM, so they'll be unmapped once they're garbage collected", e);
+            return null;
+        }
+    }
+}
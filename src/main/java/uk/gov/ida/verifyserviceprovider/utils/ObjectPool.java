@@ -0,0 +1,65 @@
+package uk.gov.ida.verifyserviceprovider.utils;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A pool of objects which are not safe to share between threads, or which are
+ * expensive to create, such as XML parsers and decrypters.
+ *
+ * Borrowing never blocks: if no object is idle a new one is created. At most
+ * {@code maxIdle} objects are kept once they are returned, and the rest are dropped.
+ */
+public class ObjectPool<T> {
+
+    private final Supplier<T> factory;
+    private final int maxIdle;
+    private final Deque<T> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public ObjectPool(Supplier<T> factory, int initialSize, int maxIdle) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+        for (int i = 0; i < Math.min(initialSize, maxIdle); i++) {
+            release(factory.get());
+        }
+    }
+
+    public <R> R apply(Function<T, R> work) {
+        T object = borrow();
+        try {
+            return work.apply(object);
+        } finally {
+            release(object);
+        }
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Objects borrowed here should be given back with {@link #release(Object)} once they are no longer
+     * used. One that is never given back is simply garbage collected.
+     */
+    public T borrow() {
+        // Most recently returned first, as it's the most likely to still be in cache
+        T object = idle.pollFirst();
+        if (object == null) {
+            return factory.get();
+        }
+        idleCount.decrementAndGet();
+        return object;
+    }
+
+    public void release(T object) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offerFirst(object);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package uk.gov.ida.verifyserviceprovider.utils;
+
+import org.slf4j.Logger;
+import uk.gov.ida.verifyserviceprovider.services.TokenBucket;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs warnings at up to a sustained rate, so that a flood of invalid requests can't make writing logs
+ * the bottleneck. Warnings over the rate aren't logged. They're counted, and the count is added to the next
+ * warning which is.
+ */
+public class RateLimitedLogger {
+
+    private static final double DEFAULT_WARNINGS_PER_SECOND = 10;
+    private static final int DEFAULT_BURST = 100;
+
+    private final Logger logger;
+    private final TokenBucket tokenBucket;
+    private final LongAdder suppressed = new LongAdder();
+
+    public RateLimitedLogger(Logger logger, double warningsPerSecond, int burst) {
+        this.logger = logger;
+        this.tokenBucket = new TokenBucket(warningsPerSecond, burst);
+    }
+
+    /**
+     * Logs up to 10 warnings a second, with bursts of up to 100.
+     */
+    public static RateLimitedLogger warningsFor(Logger logger) {
+        return new RateLimitedLogger(logger, DEFAULT_WARNINGS_PER_SECOND, DEFAULT_BURST);
+    }
+
+    public void warn(String format, Object... arguments) {
+        if (!logger.isWarnEnabled()) {
+            return;
+        }
+        if (!tokenBucket.tryAcquire()) {
+            suppressed.increment();
+            return;
+        }
+        long suppressedCount = suppressed.sumThenReset();
+        if (suppressedCount == 0) {
+            logger.warn(format, arguments);
+        } else {
+            // SLF4J only logs a Throwable's stack trace when it's the last argument
+            int countIndex = arguments.length > 0 && arguments[arguments.length - 1] instanceof Throwable ? arguments.length - 1 : arguments.length;
+            Object[] argumentsWithCount = Arrays.copyOf(arguments, arguments.length + 1);
+            argumentsWithCount[countIndex] = suppressedCount;
+            argumentsWithCount[arguments.length] = countIndex == arguments.length ? suppressedCount : arguments[countIndex];
+            logger.warn(format + " ({} similar warnings were not logged)", argumentsWithCount);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package uk.gov.ida.verifyserviceprovider.utils;
+
+import uk.gov.ida.verifyserviceprovider.startup.StartupReport;
+
+import java.util.List;
+
+import static java.lang.System.lineSeparator;
+import static java.util.stream.Collectors.toList;
+
+public class StartupReportTableFormatter {
+
+    public static String format(StartupReport startupReport) {
+        return StringTableFormatter.format(
+            100,
+            "Startup took " + startupReport.getServerStartedMillis() + "ms:",
+            extractPhaseRows(startupReport)
+        );
+    }
+
+    private static List<String> extractPhaseRows(StartupReport startupReport) {
+        return startupReport.getPhases().stream()
+            .map(phase -> phase.getName() + (phase.isDeferred() ? " (deferred)" : "") + ":" + lineSeparator() +
+                "|     started at: " + phase.getStartedAtMillis() + "ms, took: " + phase.getDurationMillis() + "ms on " + phase.getThread())
+            .collect(toList());
+    }
+}
@@ -0,0 +1,98 @@
+package uk.gov.ida.verifyserviceprovider.validators;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.Response;
+import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Checks on a Response which are cheap enough to make before its signature has been validated.
+ *
+ * Nothing in the Response can be trusted yet, so these checks can only reject it. A Response which
+ * passes them must still have a valid signature. See ADR 26 for why they are made in this order.
+ *
+ * Rejections are counted for each check in {@code ResponsePreValidator.rejected.<check>}.
+ */
+public class ResponsePreValidator {
+
+    // An xsd:ID is an NCName. This accepts the ASCII subset, which is all the hub uses.
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_.-]{0,255}");
+
+    private final String expectedIssuer;
+    private final InstantValidator instantValidator;
+    private final Counter idRejections;
+    private final Counter inResponseToRejections;
+    private final Counter issueInstantRejections;
+    private final Counter issuerRejections;
+
+    public ResponsePreValidator(String expectedIssuer, InstantValidator instantValidator, MetricRegistry metricRegistry) {
+        this.expectedIssuer = expectedIssuer;
+        this.instantValidator = instantValidator;
+        this.idRejections = rejections(metricRegistry, "id");
+        this.inResponseToRejections = rejections(metricRegistry, "inResponseTo");
+        this.issueInstantRejections = rejections(metricRegistry, "issueInstant");
+        this.issuerRejections = rejections(metricRegistry, "issuer");
+    }
+
+    private static Counter rejections(MetricRegistry metricRegistry, String check) {
+        return metricRegistry.counter(MetricRegistry.name(ResponsePreValidator.class, "rejected", check));
+    }
+
+    /**
+     * The checks are ordered from cheapest to most expensive, with the ones most likely to fail
+     * for a stale or mismatched Response first.
+     */
+    public void validate(Response response, String expectedInResponseTo) {
+        validateInResponseTo(response, expectedInResponseTo);
+        validateIssueInstant(response);
+        validateId(response);
+        validateIssuer(response);
+    }
+
+    private void validateInResponseTo(Response response, String expectedInResponseTo) {
+        if (!expectedInResponseTo.equals(response.getInResponseTo())) {
+            inResponseToRejections.inc();
+            throw new SamlResponseValidationException(
+                String.format("Expected InResponseTo to be %s, but was %s", expectedInResponseTo, response.getInResponseTo())
+            );
+        }
+    }
+
+    private void validateIssueInstant(Response response) {
+        if (response.getIssueInstant() == null) {
+            issueInstantRejections.inc();
+            throw new SamlResponseValidationException("Response IssueInstant is missing");
+        }
+        try {
+            instantValidator.validate(response.getIssueInstant(), "Response IssueInstant");
+        } catch (SamlResponseValidationException e) {
+            issueInstantRejections.inc();
+            throw e;
+        }
+    }
+
+    private void validateId(Response response) {
+        if (response.getID() == null) {
+            idRejections.inc();
+            throw new SamlResponseValidationException("Response ID is missing");
+        }
+        if (!ID_PATTERN.matcher(response.getID()).matches()) {
+            idRejections.inc();
+            throw new SamlResponseValidationException("Response ID is not a valid SAML ID");
+        }
+    }
+
+    private void validateIssuer(Response response) {
+        String issuer = Optional.ofNullable(response.getIssuer()).map(Issuer::getValue).orElse(null);
+        if (!expectedIssuer.equals(issuer)) {
+            issuerRejections.inc();
+            throw new SamlResponseValidationException(
+                String.format("Expected Response Issuer to be %s, but was %s", expectedIssuer, issuer)
+            );
+        }
+    }
+}
@@ -5,12 +5,13 @@ import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationExcepti
 
 public class ResponseSizeValidator implements SizeValidator {
 
-    private static final int MAX_SAML_RESPONSE_LENGTH = 50000;
+    public static final int MAX_SAML_RESPONSE_LENGTH = 50000;
+    public static final String TOO_LONG_MESSAGE = "SAML Response is too long.";
 
     @Override
     public void validate(String input) {
         if (input.length() > MAX_SAML_RESPONSE_LENGTH) {
-            throw new SamlResponseValidationException("SAML Response is too long.");
+            throw new SamlResponseValidationException(TOO_LONG_MESSAGE);
         }
     }
 }
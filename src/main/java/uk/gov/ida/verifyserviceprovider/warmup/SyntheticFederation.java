@@ -0,0 +1,285 @@
+package uk.gov.ida.verifyserviceprovider.warmup;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import org.joda.time.DateTime;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.common.SAMLRuntimeException;
+import org.opensaml.saml.common.SignableSAMLObject;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.impl.DOMMetadataResolver;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Audience;
+import org.opensaml.saml.saml2.core.AudienceRestriction;
+import org.opensaml.saml.saml2.core.AuthnContext;
+import org.opensaml.saml.saml2.core.AuthnContextClassRef;
+import org.opensaml.saml.saml2.core.AuthnStatement;
+import org.opensaml.saml.saml2.core.Conditions;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.NameID;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.core.Status;
+import org.opensaml.saml.saml2.core.StatusCode;
+import org.opensaml.saml.saml2.core.Subject;
+import org.opensaml.saml.saml2.core.SubjectConfirmation;
+import org.opensaml.saml.saml2.core.SubjectConfirmationData;
+import org.opensaml.saml.saml2.core.impl.AssertionBuilder;
+import org.opensaml.saml.saml2.core.impl.AudienceBuilder;
+import org.opensaml.saml.saml2.core.impl.AudienceRestrictionBuilder;
+import org.opensaml.saml.saml2.core.impl.AuthnContextBuilder;
+import org.opensaml.saml.saml2.core.impl.AuthnContextClassRefBuilder;
+import org.opensaml.saml.saml2.core.impl.AuthnStatementBuilder;
+import org.opensaml.saml.saml2.core.impl.ConditionsBuilder;
+import org.opensaml.saml.saml2.core.impl.IssuerBuilder;
+import org.opensaml.saml.saml2.core.impl.NameIDBuilder;
+import org.opensaml.saml.saml2.core.impl.ResponseBuilder;
+import org.opensaml.saml.saml2.core.impl.StatusBuilder;
+import org.opensaml.saml.saml2.core.impl.StatusCodeBuilder;
+import org.opensaml.saml.saml2.core.impl.SubjectBuilder;
+import org.opensaml.saml.saml2.core.impl.SubjectConfirmationBuilder;
+import org.opensaml.saml.saml2.core.impl.SubjectConfirmationDataBuilder;
+import org.opensaml.saml.saml2.encryption.Encrypter;
+import org.opensaml.saml.saml2.metadata.EntitiesDescriptor;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+import org.opensaml.saml.saml2.metadata.impl.EntitiesDescriptorBuilder;
+import org.opensaml.saml.saml2.metadata.impl.EntityDescriptorBuilder;
+import org.opensaml.saml.saml2.metadata.impl.IDPSSODescriptorBuilder;
+import org.opensaml.saml.saml2.metadata.impl.KeyDescriptorBuilder;
+import org.opensaml.saml.saml2.metadata.impl.SPSSODescriptorBuilder;
+import org.opensaml.security.credential.BasicCredential;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.xmlsec.algorithm.descriptors.DigestSHA256;
+import org.opensaml.xmlsec.algorithm.descriptors.SignatureRSASHA256;
+import org.opensaml.xmlsec.encryption.support.EncryptionException;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.impl.KeyInfoBuilder;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.Signer;
+import uk.gov.ida.saml.core.extensions.IdaAuthnContext;
+import uk.gov.ida.saml.security.EncrypterFactory;
+import uk.gov.ida.saml.security.IdaKeyStore;
+import uk.gov.ida.saml.security.IdaKeyStoreCredentialRetriever;
+import uk.gov.ida.saml.security.SignatureFactory;
+import uk.gov.ida.saml.serializers.XmlObjectToBase64EncodedStringTransformer;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * A hub, Matching Service Adapter and service whose keys are generated when it's created, so that the
+ * SAML pipelines can be exercised without real messages. Nothing which handles real messages trusts its
+ * keys or its metadata.
+ *
+ * Its metadata holds bare public keys in KeyValue elements, as there's nothing to issue certificates for
+ * the generated keys. Responses are made the way the hub makes them: a Success Response signed by the hub
+ * with one Assertion, signed by the Matching Service Adapter and encrypted for the service.
+ *
+ * It isn't thread safe, as the same Encrypter is used for every Assertion.
+ */
+public class SyntheticFederation {
+
+    public static final String HUB_ENTITY_ID = "https://warm-up.verify-service-provider.invalid/hub";
+    public static final String MSA_ENTITY_ID = "https://warm-up.verify-service-provider.invalid/msa";
+    public static final String SERVICE_ENTITY_ID = "https://warm-up.verify-service-provider.invalid/service";
+
+    private static final int KEY_SIZE = 2048;
+
+    private final KeyPair serviceSigningKeyPair;
+    private final KeyPair serviceEncryptionKeyPair;
+    private final MetadataResolver metadataResolver;
+    private final SignatureFactory hubSignatureFactory;
+    private final SignatureFactory msaSignatureFactory;
+    private final Encrypter assertionEncrypter;
+
+    private SyntheticFederation(
+        KeyPair hubSigningKeyPair,
+        KeyPair hubEncryptionKeyPair,
+        KeyPair msaSigningKeyPair,
+        KeyPair serviceSigningKeyPair,
+        KeyPair serviceEncryptionKeyPair
+    ) throws ComponentInitializationException {
+        this.serviceSigningKeyPair = serviceSigningKeyPair;
+        this.serviceEncryptionKeyPair = serviceEncryptionKeyPair;
+        this.metadataResolver = createMetadataResolver(hubSigningKeyPair.getPublic(), hubEncryptionKeyPair.getPublic(), msaSigningKeyPair.getPublic());
+        this.hubSignatureFactory = createSignatureFactory(hubSigningKeyPair);
+        this.msaSignatureFactory = createSignatureFactory(msaSigningKeyPair);
+        this.assertionEncrypter = new EncrypterFactory().createEncrypter(new BasicCredential(serviceEncryptionKeyPair.getPublic()));
+    }
+
+    public static SyntheticFederation create() throws NoSuchAlgorithmException, ComponentInitializationException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(KEY_SIZE);
+        return new SyntheticFederation(
+            keyPairGenerator.generateKeyPair(),
+            keyPairGenerator.generateKeyPair(),
+            keyPairGenerator.generateKeyPair(),
+            keyPairGenerator.generateKeyPair(),
+            keyPairGenerator.generateKeyPair()
+        );
+    }
+
+    /**
+     * Metadata for the hub, with its signing and encryption keys, and for the Matching Service Adapter,
+     * with its signing key.
+     */
+    public MetadataResolver getMetadataResolver() {
+        return metadataResolver;
+    }
+
+    public KeyPair getServiceSigningKeyPair() {
+        return serviceSigningKeyPair;
+    }
+
+    public KeyPair getServiceEncryptionKeyPair() {
+        return serviceEncryptionKeyPair;
+    }
+
+    /**
+     * A base64 encoded Response to the request, matching the user at level of assurance 2.
+     */
+    public String createResponse(String inResponseTo) {
+        DateTime now = DateTime.now();
+
+        Assertion assertion = createAssertion(inResponseTo, now);
+        sign(assertion, msaSignatureFactory);
+
+        Response response = new ResponseBuilder().buildObject();
+        response.setID(createId());
+        response.setInResponseTo(inResponseTo);
+        response.setIssueInstant(now);
+        response.setIssuer(createIssuer(HUB_ENTITY_ID));
+        response.setStatus(createStatus(StatusCode.SUCCESS));
+        try {
+            response.getEncryptedAssertions().add(assertionEncrypter.encrypt(assertion));
+        } catch (EncryptionException e) {
+            throw new SAMLRuntimeException("Unable to encrypt the warm-up Assertion", e);
+        }
+        sign(response, hubSignatureFactory);
+
+        return new XmlObjectToBase64EncodedStringTransformer<>().apply(response);
+    }
+
+    private static Assertion createAssertion(String inResponseTo, DateTime now) {
+        Assertion assertion = new AssertionBuilder().buildObject();
+        assertion.setID(createId());
+        assertion.setIssueInstant(now);
+        assertion.setIssuer(createIssuer(MSA_ENTITY_ID));
+
+        NameID nameId = new NameIDBuilder().buildObject();
+        nameId.setFormat(NameID.PERSISTENT);
+        nameId.setValue(UUID.randomUUID().toString());
+        SubjectConfirmationData subjectConfirmationData = new SubjectConfirmationDataBuilder().buildObject();
+        subjectConfirmationData.setInResponseTo(inResponseTo);
+        subjectConfirmationData.setNotOnOrAfter(now.plusMinutes(5));
+        SubjectConfirmation subjectConfirmation = new SubjectConfirmationBuilder().buildObject();
+        subjectConfirmation.setMethod(SubjectConfirmation.METHOD_BEARER);
+        subjectConfirmation.setSubjectConfirmationData(subjectConfirmationData);
+        Subject subject = new SubjectBuilder().buildObject();
+        subject.setNameID(nameId);
+        subject.getSubjectConfirmations().add(subjectConfirmation);
+        assertion.setSubject(subject);
+
+        Audience audience = new AudienceBuilder().buildObject();
+        audience.setAudienceURI(SERVICE_ENTITY_ID);
+        AudienceRestriction audienceRestriction = new AudienceRestrictionBuilder().buildObject();
+        audienceRestriction.getAudiences().add(audience);
+        Conditions conditions = new ConditionsBuilder().buildObject();
+        conditions.getAudienceRestrictions().add(audienceRestriction);
+        assertion.setConditions(conditions);
+
+        AuthnContextClassRef authnContextClassRef = new AuthnContextClassRefBuilder().buildObject();
+        authnContextClassRef.setAuthnContextClassRef(IdaAuthnContext.LEVEL_2_AUTHN_CTX);
+        AuthnContext authnContext = new AuthnContextBuilder().buildObject();
+        authnContext.setAuthnContextClassRef(authnContextClassRef);
+        AuthnStatement authnStatement = new AuthnStatementBuilder().buildObject();
+        authnStatement.setAuthnInstant(now);
+        authnStatement.setAuthnContext(authnContext);
+        assertion.getAuthnStatements().add(authnStatement);
+
+        return assertion;
+    }
+
+    private static Status createStatus(String value) {
+        StatusCode statusCode = new StatusCodeBuilder().buildObject();
+        statusCode.setValue(value);
+        Status status = new StatusBuilder().buildObject();
+        status.setStatusCode(statusCode);
+        return status;
+    }
+
+    private static Issuer createIssuer(String entityId) {
+        Issuer issuer = new IssuerBuilder().buildObject();
+        issuer.setValue(entityId);
+        return issuer;
+    }
+
+    private static String createId() {
+        return String.format("_%s", UUID.randomUUID());
+    }
+
+    private static void sign(SignableSAMLObject signableObject, SignatureFactory signatureFactory) {
+        signableObject.setSignature(signatureFactory.createSignature());
+        try {
+            XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(signableObject).marshall(signableObject);
+            Signer.signObject(signableObject.getSignature());
+        } catch (SignatureException | MarshallingException e) {
+            throw new SAMLRuntimeException("Unable to sign the warm-up " + signableObject.getElementQName().getLocalPart(), e);
+        }
+    }
+
+    private static SignatureFactory createSignatureFactory(KeyPair signingKeyPair) {
+        IdaKeyStoreCredentialRetriever keyStoreCredentialRetriever = new IdaKeyStoreCredentialRetriever(new IdaKeyStore(signingKeyPair, Collections.emptyList()));
+        return new SignatureFactory(keyStoreCredentialRetriever, new SignatureRSASHA256(), new DigestSHA256());
+    }
+
+    private static MetadataResolver createMetadataResolver(PublicKey hubSigningKey, PublicKey hubEncryptionKey, PublicKey msaSigningKey) throws ComponentInitializationException {
+        RoleDescriptor hubRole = new SPSSODescriptorBuilder().buildObject();
+        hubRole.addSupportedProtocol(SAMLConstants.SAML20P_NS);
+        hubRole.getKeyDescriptors().add(createKeyDescriptor(UsageType.SIGNING, hubSigningKey));
+        hubRole.getKeyDescriptors().add(createKeyDescriptor(UsageType.ENCRYPTION, hubEncryptionKey));
+
+        RoleDescriptor msaRole = new IDPSSODescriptorBuilder().buildObject();
+        msaRole.addSupportedProtocol(SAMLConstants.SAML20P_NS);
+        msaRole.getKeyDescriptors().add(createKeyDescriptor(UsageType.SIGNING, msaSigningKey));
+
+        EntitiesDescriptor entitiesDescriptor = new EntitiesDescriptorBuilder().buildObject();
+        entitiesDescriptor.getEntityDescriptors().add(createEntityDescriptor(HUB_ENTITY_ID, hubRole));
+        entitiesDescriptor.getEntityDescriptors().add(createEntityDescriptor(MSA_ENTITY_ID, msaRole));
+
+        try {
+            DOMMetadataResolver metadataResolver = new DOMMetadataResolver(XMLObjectSupport.marshall(entitiesDescriptor));
+            metadataResolver.setId("warm-up-metadata");
+            metadataResolver.setRequireValidMetadata(true);
+            metadataResolver.setFailFastInitialization(true);
+            metadataResolver.initialize();
+            return metadataResolver;
+        } catch (MarshallingException e) {
+            throw new ComponentInitializationException("Unable to marshall the warm-up metadata", e);
+        }
+    }
+
+    private static EntityDescriptor createEntityDescriptor(String entityId, RoleDescriptor roleDescriptor) {
+        EntityDescriptor entityDescriptor = new EntityDescriptorBuilder().buildObject();
+        entityDescriptor.setEntityID(entityId);
+        entityDescriptor.getRoleDescriptors().add(roleDescriptor);
+        return entityDescriptor;
+    }
+
+    private static KeyDescriptor createKeyDescriptor(UsageType use, PublicKey publicKey) {
+        KeyInfo keyInfo = new KeyInfoBuilder().buildObject();
+        KeyInfoSupport.addPublicKey(keyInfo, publicKey);
+        KeyDescriptor keyDescriptor = new KeyDescriptorBuilder().buildObject();
+        keyDescriptor.setUse(use);
+        keyDescriptor.setKeyInfo(keyInfo);
+        return keyDescriptor;
+    }
+}
@@ -0,0 +1,180 @@
+package uk.gov.ida.verifyserviceprovider.warmup;
+
+import io.dropwizard.lifecycle.Managed;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.ida.saml.serializers.XmlObjectToBase64EncodedStringTransformer;
+import uk.gov.ida.verifyserviceprovider.configuration.WarmUpConfiguration;
+import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
+import uk.gov.ida.verifyserviceprovider.factories.saml.AuthnRequestFactory;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static uk.gov.ida.verifyserviceprovider.warmup.SyntheticFederation.SERVICE_ENTITY_ID;
+
+/**
+ * Generates AuthnRequests and translates Responses to them on a background thread when the Verify Service
+ * Provider starts, so that the SAML, XML security and crypto code has been compiled before real requests
+ * arrive. The messages come from a {@link SyntheticFederation}, and are handled by an AuthnRequestFactory
+ * and ResponseService set up the same way as the real ones but trusting only its keys.
+ *
+ * Requests are run in batches of {@value #BATCH_SIZE}. Warm-up ends once the mean time taken by
+ * {@value #SETTLED_BATCHES} batches in a row is within the tolerance of the batch before, or when the
+ * iteration or time budget runs out. The time taken to make each synthetic Response isn't counted.
+ */
+public class WarmUp implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+    private static final int BATCH_SIZE = 100;
+    private static final int SETTLED_BATCHES = 3;
+
+    public enum State {
+        WARMING_UP,
+        SETTLED,
+        BUDGET_SPENT,
+        FAILED
+    }
+
+    private final WarmUpConfiguration configuration;
+    private final Callable<Pipelines> pipelinesFactory;
+    private final XmlObjectToBase64EncodedStringTransformer<AuthnRequest> authnRequestTransformer = new XmlObjectToBase64EncodedStringTransformer<>();
+    private final AtomicInteger iterations = new AtomicInteger();
+    private volatile State state = State.WARMING_UP;
+    private Thread thread;
+
+    /**
+     * @param pipelinesFactory makes the pipelines on the warm-up thread, so that generating the keys
+     *                         of the {@link SyntheticFederation} doesn't hold up startup
+     */
+    public WarmUp(WarmUpConfiguration configuration, Callable<Pipelines> pipelinesFactory) {
+        this.configuration = configuration;
+        this.pipelinesFactory = pipelinesFactory;
+    }
+
+    @Override
+    public void start() {
+        thread = new Thread(this::run, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Runs warm-up on the calling thread. A failure ends warm-up rather than keeping the Verify Service
+     * Provider out of service, as real requests would only be slower.
+     */
+    public void run() {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(configuration.getMaxDuration().getMillis());
+        double tolerance = configuration.getTolerancePercent() / 100.0;
+        double previousMeanNanos = 0;
+        int settledBatches = 0;
+        LOG.info("Warming up with at most {} synthetic requests", configuration.getMaxIterations());
+
+        try {
+            Pipelines pipelines = pipelinesFactory.call();
+            while (iterations.get() < configuration.getMaxIterations() && System.nanoTime() < deadlineNanos) {
+                if (Thread.currentThread().isInterrupted()) {
+                    LOG.info("Warm-up was interrupted after {} synthetic requests", iterations.get());
+                    state = State.BUDGET_SPENT;
+                    return;
+                }
+
+                long batchNanos = 0;
+                int batchIterations = 0;
+                while (batchIterations < BATCH_SIZE && iterations.get() < configuration.getMaxIterations()) {
+                    batchNanos += runIteration(pipelines);
+                    batchIterations++;
+                    iterations.incrementAndGet();
+                }
+
+                double meanNanos = (double) batchNanos / batchIterations;
+                boolean settled = previousMeanNanos > 0 && Math.abs(meanNanos - previousMeanNanos) <= previousMeanNanos * tolerance;
+                settledBatches = settled ? settledBatches + 1 : 0;
+                previousMeanNanos = meanNanos;
+                LOG.debug("Warm-up batch of {} took {}µs each on average", batchIterations, Math.round(meanNanos / 1000));
+                if (settledBatches >= SETTLED_BATCHES) {
+                    state = State.SETTLED;
+                    LOG.info(
+                        "Warm-up finished after {} synthetic requests in {}ms, at {}µs each",
+                        iterations.get(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                        Math.round(meanNanos / 1000)
+                    );
+                    return;
+                }
+            }
+            state = State.BUDGET_SPENT;
+            LOG.info(
+                "Warm-up finished after {} synthetic requests in {}ms, before the time taken settled",
+                iterations.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+            );
+        } catch (Exception e) {
+            state = State.FAILED;
+            LOG.warn("Warm-up failed after {} synthetic requests", iterations.get(), e);
+        }
+    }
+
+    /**
+     * @return the nanoseconds taken to generate the request and translate the response
+     */
+    private long runIteration(Pipelines pipelines) {
+        long generateStartNanos = System.nanoTime();
+        AuthnRequest authnRequest = pipelines.authnRequestFactory.build(LevelOfAssurance.LEVEL_2, SERVICE_ENTITY_ID);
+        authnRequestTransformer.apply(authnRequest);
+        long generateNanos = System.nanoTime() - generateStartNanos;
+
+        String samlResponse = pipelines.federation.createResponse(authnRequest.getID());
+
+        long translateStartNanos = System.nanoTime();
+        TranslatedResponseBody translatedResponse = pipelines.responseService.convertTranslatedResponseBody(
+            samlResponse,
+            authnRequest.getID(),
+            LevelOfAssurance.LEVEL_2,
+            SERVICE_ENTITY_ID
+        );
+        long translateNanos = System.nanoTime() - translateStartNanos;
+
+        if (translatedResponse.getScenario() != Scenario.SUCCESS_MATCH) {
+            throw new IllegalStateException("Expected the synthetic response to be a match, but it was " + translatedResponse.getScenario());
+        }
+        return generateNanos + translateNanos;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isFinished() {
+        return state != State.WARMING_UP;
+    }
+
+    public int getIterations() {
+        return iterations.get();
+    }
+
+    public static class Pipelines {
+        private final AuthnRequestFactory authnRequestFactory;
+        private final ResponseService responseService;
+        private final SyntheticFederation federation;
+
+        public Pipelines(AuthnRequestFactory authnRequestFactory, ResponseService responseService, SyntheticFederation federation) {
+            this.authnRequestFactory = authnRequestFactory;
+            this.responseService = responseService;
+            this.federation = federation;
+        }
+    }
+}
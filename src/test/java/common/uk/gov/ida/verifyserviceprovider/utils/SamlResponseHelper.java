@@ -1,10 +1,19 @@
 package common.uk.gov.ida.verifyserviceprovider.utils;
 
+import org.joda.time.DateTime;
 import org.opensaml.core.xml.XMLObjectBuilderFactory;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
 import uk.gov.ida.saml.core.extensions.Verified;
 import uk.gov.ida.saml.core.test.OpenSamlXmlObjectFactory;
+import uk.gov.ida.saml.core.test.builders.AddressAttributeBuilder_1_1;
+import uk.gov.ida.saml.core.test.builders.AddressAttributeValueBuilder_1_1;
+import uk.gov.ida.saml.core.test.builders.SimpleStringAttributeBuilder;
+
+import java.util.Arrays;
+
+import static uk.gov.ida.saml.core.test.builders.AttributeStatementBuilder.anAttributeStatement;
 
 public class SamlResponseHelper {
 
@@ -20,4 +29,63 @@ public class SamlResponseHelper {
 
         return attribute;
     }
+
+    public static Attribute createStringAttribute(String name, String value) {
+        return new SimpleStringAttributeBuilder()
+            .withName(name)
+            .withSimpleStringValue(value)
+            .build();
+    }
+
+    public static Attribute createCurrentAddressAttribute() {
+        Attribute currentAddress = new AddressAttributeBuilder_1_1()
+            .addAddress(new AddressAttributeValueBuilder_1_1()
+                .addLines(Arrays.asList("10 Whitechapel High St", "London"))
+                .withPostcode("E1 8DX")
+                .withFrom(DateTime.parse("2017-07-03"))
+                .build())
+            .buildCurrentAddress();
+        currentAddress.setName("currentaddress");
+        return currentAddress;
+    }
+
+    public static Attribute createAddressHistoryAttribute(int numberOfAddresses) {
+        AddressAttributeBuilder_1_1 addressHistoryBuilder = new AddressAttributeBuilder_1_1();
+        DateTime to = DateTime.parse("2017-07-03");
+        for (int i = 0; i < numberOfAddresses; i++) {
+            DateTime from = to.minusYears(1);
+            addressHistoryBuilder.addAddress(new AddressAttributeValueBuilder_1_1()
+                .addLines(Arrays.asList(String.format("%d Old Road", i + 1), "London"))
+                .withPostcode("W1 0AA")
+                .withFrom(from)
+                .withTo(to)
+                .withVerified(true)
+                .build());
+            to = from;
+        }
+        Attribute addressHistory = addressHistoryBuilder.buildPreviousAddress();
+        addressHistory.setName("addresshistory");
+        return addressHistory;
+    }
+
+    /**
+     * An attribute statement containing every attribute the MSA can return for a user account creation,
+     * including an address history with the given number of previous addresses.
+     */
+    public static AttributeStatement createAccountCreationAttributeStatement(int addressHistorySize) {
+        return anAttributeStatement()
+            .addAttribute(createStringAttribute("firstname", "Joe"))
+            .addAttribute(createVerifiedAttribute("firstname_verified", true))
+            .addAttribute(createStringAttribute("middlename", "Bob"))
+            .addAttribute(createVerifiedAttribute("middlename_verified", false))
+            .addAttribute(createStringAttribute("surname", "Bloggs"))
+            .addAttribute(createVerifiedAttribute("surname_verified", true))
+            .addAttribute(createStringAttribute("dateofbirth", "1977-07-21"))
+            .addAttribute(createVerifiedAttribute("dateofbirth_verified", true))
+            .addAttribute(createCurrentAddressAttribute())
+            .addAttribute(createVerifiedAttribute("currentaddress_verified", true))
+            .addAttribute(createAddressHistoryAttribute(addressHistorySize))
+            .addAttribute(createStringAttribute("cycle_3", "123456"))
+            .build();
+    }
 }
@@ -0,0 +1,190 @@
+package unit.uk.gov.ida.verifyserviceprovider.audit;
+
+import com.google.common.hash.Hashing;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLogReader;
+import uk.gov.ida.verifyserviceprovider.audit.AuditRecord;
+import uk.gov.ida.verifyserviceprovider.audit.DumpAuditLogCommand;
+import uk.gov.ida.verifyserviceprovider.audit.MappedFileAuditLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_1;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_2;
+import static uk.gov.ida.verifyserviceprovider.dto.Scenario.SUCCESS_MATCH;
+
+public class MappedFileAuditLogTest {
+
+    private static final DateTime NOW = DateTime.parse("2018-01-01T12:00:00Z");
+    private static final int RECORDS_PER_SEGMENT = 16;
+    private static final byte[] PID_DIGEST_KEY = "a-secret-key-for-the-pid-digests".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(NOW.getMillis());
+        directory = temporaryFolder.getRoot().toPath().resolve("audit");
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void shouldReadBackTheRecordsWritten() throws Exception {
+        MappedFileAuditLog auditLog = createAuditLog(4);
+        auditLog.translation("http://entity-id", "request-id", LEVEL_2, SUCCESS_MATCH, "some-pid", System.nanoTime());
+        auditLog.translation("http://entity-id", "other-request-id", LEVEL_2, null, null, System.nanoTime());
+        auditLog.generatedRequest("http://entity-id", "generated-request-id", LEVEL_1, System.nanoTime());
+        auditLog.stop();
+
+        List<AuditRecord> records = readAll();
+
+        assertThat(records).extracting(AuditRecord::getRequestId).containsExactly("request-id", "other-request-id", "generated-request-id");
+        assertThat(records).extracting(AuditRecord::getEntityId).containsOnly("http://entity-id");
+        assertThat(records).extracting(AuditRecord::getTime).containsOnly(NOW);
+        assertThat(records.get(0).getType()).isEqualTo(AuditRecord.Type.TRANSLATION);
+        assertThat(records.get(0).getScenario()).isEqualTo(SUCCESS_MATCH);
+        assertThat(records.get(0).getLevelOfAssurance()).isEqualTo(LEVEL_2);
+        assertThat(records.get(0).getPidDigest()).isEqualTo(Hashing.hmacSha256(PID_DIGEST_KEY).hashString("some-pid", StandardCharsets.UTF_8).toString());
+        assertThat(records.get(1).isError()).isTrue();
+        assertThat(records.get(1).getPidDigest()).isNull();
+        assertThat(records.get(2).getType()).isEqualTo(AuditRecord.Type.GENERATED_REQUEST);
+        assertThat(records.get(2).getScenario()).isNull();
+        assertThat(records.get(2).isError()).isFalse();
+    }
+
+    @Test
+    public void shouldOnlyGiveAPidTheSameDigestWithTheSameKey() throws Exception {
+        MappedFileAuditLog auditLog = createAuditLog(4);
+        auditLog.translation("http://entity-id", "request-id", LEVEL_2, SUCCESS_MATCH, "some-pid", System.nanoTime());
+        auditLog.translation("http://entity-id", "other-request-id", LEVEL_2, SUCCESS_MATCH, "some-pid", System.nanoTime());
+        auditLog.stop();
+        Path otherDirectory = temporaryFolder.getRoot().toPath().resolve("other-audit");
+        MappedFileAuditLog otherAuditLog = new MappedFileAuditLog(
+            otherDirectory,
+            RECORDS_PER_SEGMENT * AuditRecord.SIZE,
+            4,
+            Duration.standardSeconds(1),
+            "another-secret-key-for-the-pid-digests".getBytes(StandardCharsets.UTF_8)
+        );
+        otherAuditLog.translation("http://entity-id", "request-id", LEVEL_2, SUCCESS_MATCH, "some-pid", System.nanoTime());
+        otherAuditLog.stop();
+
+        List<AuditRecord> records = readAll();
+        List<AuditRecord> otherRecords = new ArrayList<>();
+        AuditLogReader.read(otherDirectory, otherRecords::add);
+
+        assertThat(records.get(1).getPidDigest()).isEqualTo(records.get(0).getPidDigest());
+        assertThat(otherRecords.get(0).getPidDigest()).isNotEqualTo(records.get(0).getPidDigest());
+    }
+
+    @Test
+    public void shouldDropRecordsWrittenAfterItHasStopped() throws Exception {
+        MappedFileAuditLog auditLog = createAuditLog(4);
+        auditLog.start();
+        auditLog.generatedRequest("http://entity-id", "request-id", LEVEL_2, System.nanoTime());
+        auditLog.stop();
+        auditLog.generatedRequest("http://entity-id", "late-request-id", LEVEL_2, System.nanoTime());
+
+        assertThat(readAll()).extracting(AuditRecord::getRequestId).containsExactly("request-id");
+        assertThat(auditLog.getRecordCount()).isEqualTo(1);
+        assertThat(auditLog.getDroppedCount()).isEqualTo(1);
+        assertThat(Files.list(directory).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTruncateLongIds() throws Exception {
+        StringBuilder longEntityId = new StringBuilder("http://");
+        while (longEntityId.length() < 500) {
+            longEntityId.append("entity-id/");
+        }
+        MappedFileAuditLog auditLog = createAuditLog(4);
+        auditLog.generatedRequest(longEntityId.toString(), "request-id", LEVEL_2, System.nanoTime());
+        auditLog.stop();
+
+        assertThat(longEntityId.toString()).startsWith(readAll().get(0).getEntityId());
+        assertThat(readAll().get(0).getRequestId()).isEqualTo("request-id");
+    }
+
+    @Test
+    public void shouldStartANewSegmentWhenOneIsFullAndDeleteTheOldest() throws Exception {
+        MappedFileAuditLog auditLog = createAuditLog(2);
+        auditLog.start();
+        // The header takes the place of one record in each segment
+        for (int i = 0; i < (RECORDS_PER_SEGMENT - 1) * 3; i++) {
+            auditLog.generatedRequest("http://entity-id", "request-" + i, LEVEL_2, System.nanoTime());
+        }
+        auditLog.stop();
+
+        List<AuditRecord> records = readAll();
+
+        assertThat(records).hasSize(RECORDS_PER_SEGMENT - 1);
+        assertThat(records.get(records.size() - 1).getRequestId()).isEqualTo("request-" + ((RECORDS_PER_SEGMENT - 1) * 3 - 1));
+        assertThat(Files.list(directory).count()).isEqualTo(1);
+        assertThat(auditLog.getRecordCount()).isEqualTo((RECORDS_PER_SEGMENT - 1) * 3);
+        assertThat(auditLog.getDroppedCount()).isZero();
+    }
+
+    @Test
+    public void shouldStartANewSegmentOnRestart() throws Exception {
+        MappedFileAuditLog auditLog = createAuditLog(4);
+        auditLog.generatedRequest("http://entity-id", "first-request-id", LEVEL_2, System.nanoTime());
+        auditLog.stop();
+        auditLog = createAuditLog(4);
+        auditLog.generatedRequest("http://entity-id", "second-request-id", LEVEL_2, System.nanoTime());
+        auditLog.stop();
+
+        assertThat(readAll()).extracting(AuditRecord::getRequestId).containsExactly("first-request-id", "second-request-id");
+    }
+
+    @Test
+    public void shouldDumpOnlyTheRecordsMatchingTheFilters() throws Exception {
+        MappedFileAuditLog auditLog = createAuditLog(4);
+        auditLog.translation("http://entity-id", "request-id", LEVEL_2, SUCCESS_MATCH, "some-pid", System.nanoTime());
+        auditLog.translation("http://other-entity-id", "other-request-id", LEVEL_2, SUCCESS_MATCH, "some-pid", System.nanoTime());
+        auditLog.stop();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("directory", directory.toString());
+        arguments.put("entityId", "http://other-entity-id");
+
+        new DumpAuditLogCommand(new PrintStream(out, true, "UTF-8")).run(null, new Namespace(arguments));
+
+        String dumped = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(dumped).startsWith("2018-01-01T12:00:00.000Z\tTRANSLATION\thttp://other-entity-id\tother-request-id\tLEVEL_2\tSUCCESS_MATCH\t");
+        assertThat(dumped).doesNotContain("\trequest-id\t");
+    }
+
+    private MappedFileAuditLog createAuditLog(int maxSegments) throws Exception {
+        return new MappedFileAuditLog(directory, RECORDS_PER_SEGMENT * AuditRecord.SIZE, maxSegments, Duration.standardSeconds(1), PID_DIGEST_KEY);
+    }
+
+    private List<AuditRecord> readAll() throws Exception {
+        List<AuditRecord> records = new ArrayList<>();
+        AuditLogReader.read(directory, records::add);
+        return records;
+    }
+}
@@ -0,0 +1,56 @@
+package unit.uk.gov.ida.verifyserviceprovider.configuration;
+
+import io.dropwizard.configuration.ConfigurationValidationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantsConfiguration;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PRIVATE_SIGNING_KEY;
+
+public class TenantsConfigurationTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldLoadTenantsAndTheirKeys() throws Exception {
+        TenantsConfiguration tenantsConfiguration = TenantsConfiguration.load(tenantsFile(
+            "tenants:\n" +
+            "  - entityId: http://tenant-one\n" +
+            "    samlSigningKey: " + TEST_RP_PRIVATE_SIGNING_KEY + "\n" +
+            "  - entityId: http://tenant-two\n"
+        ));
+
+        assertThat(tenantsConfiguration.getTenants()).extracting(TenantConfiguration::getEntityId)
+            .containsExactly("http://tenant-one", "http://tenant-two");
+        assertThat(tenantsConfiguration.getTenants().get(0).getSamlSigningKey()).isNotNull();
+        assertThat(tenantsConfiguration.getTenants().get(1).getSamlSigningKey()).isNull();
+    }
+
+    @Test
+    public void shouldNotAllowAnEntityIdToBeListedTwice() throws Exception {
+        File tenantsFile = tenantsFile(
+            "tenants:\n" +
+            "  - entityId: http://tenant-one\n" +
+            "  - entityId: http://tenant-one\n"
+        );
+
+        assertThatThrownBy(() -> TenantsConfiguration.load(tenantsFile))
+            .isInstanceOf(ConfigurationValidationException.class)
+            .hasMessageContaining("each entityId may only be listed once");
+    }
+
+    private File tenantsFile(String contents) throws Exception {
+        File tenantsFile = temporaryFolder.newFile("tenants.yml");
+        Files.write(tenantsFile.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return tenantsFile;
+    }
+}
@@ -0,0 +1,119 @@
+package unit.uk.gov.ida.verifyserviceprovider.factories;
+
+import com.codahale.metrics.MetricRegistry;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.saml.metadata.resolver.RefreshableMetadataResolver;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.impl.AttributeBuilder;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.security.credential.BasicCredential;
+import uk.gov.ida.common.shared.security.PublicKeyFactory;
+import uk.gov.ida.common.shared.security.X509CertificateFactory;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.saml.security.EncryptionCredentialResolver;
+import uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.HUB_TEST_PUBLIC_ENCRYPTION_CERT;
+
+public class EncrypterFactoryTest {
+
+    private static final String HUB_ENTITY_ID = "http://hub-entity-id";
+
+    private final EncryptionCredentialResolver encryptionCredentialResolver = mock(EncryptionCredentialResolver.class);
+    private final RefreshableMetadataResolver hubMetadataResolver = mock(RefreshableMetadataResolver.class);
+    private final EntityDescriptor hubEntityDescriptor = mock(EntityDescriptor.class);
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private EncrypterFactory encrypterFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        IdaSamlBootstrap.bootstrap();
+        BasicCredential credential = new BasicCredential(new PublicKeyFactory(new X509CertificateFactory()).createPublicKey(HUB_TEST_PUBLIC_ENCRYPTION_CERT));
+        when(encryptionCredentialResolver.getEncryptingCredential(HUB_ENTITY_ID)).thenReturn(credential);
+        when(hubMetadataResolver.getLastUpdate()).thenReturn(DateTime.parse("2018-01-01T12:00:00Z"));
+        when(hubMetadataResolver.resolveSingle(any())).thenReturn(hubEntityDescriptor);
+        encrypterFactory = new EncrypterFactory(encryptionCredentialResolver, HUB_ENTITY_ID, hubMetadataResolver, metricRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void shouldResolveTheCredentialOnceUntilMetadataIsUpdated() throws Exception {
+        encrypterFactory.encrypt(anAttribute());
+        encrypterFactory.encrypt(anAttribute());
+        encrypterFactory.createEncrypter();
+
+        verify(encryptionCredentialResolver, times(1)).getEncryptingCredential(HUB_ENTITY_ID);
+        assertThat(metricRegistry.counter("uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory.cacheHits").getCount()).isEqualTo(2);
+        assertThat(metricRegistry.counter("uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory.cacheInvalidations").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldResolveTheCredentialAgainWhenMetadataIsUpdated() throws Exception {
+        encrypterFactory.encrypt(anAttribute());
+
+        when(hubMetadataResolver.getLastUpdate()).thenReturn(DateTime.parse("2018-01-01T13:00:00Z"));
+        encrypterFactory.encrypt(anAttribute());
+
+        verify(encryptionCredentialResolver, times(2)).getEncryptingCredential(HUB_ENTITY_ID);
+        assertThat(metricRegistry.counter("uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory.cacheInvalidations").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldResolveTheCredentialAgainOnceTheHubMetadataHasExpired() throws Exception {
+        DateTime now = DateTime.parse("2018-01-01T12:30:00Z");
+        DateTimeUtils.setCurrentMillisFixed(now.getMillis());
+        when(hubEntityDescriptor.getValidUntil()).thenReturn(now.plusHours(1));
+        encrypterFactory.encrypt(anAttribute());
+        encrypterFactory.encrypt(anAttribute());
+
+        DateTimeUtils.setCurrentMillisFixed(now.plusHours(2).getMillis());
+        encrypterFactory.encrypt(anAttribute());
+
+        verify(encryptionCredentialResolver, times(2)).getEncryptingCredential(HUB_ENTITY_ID);
+    }
+
+    @Test
+    public void shouldNotCacheTheCredentialWhenTheMetadataCannotSayWhenItWasUpdated() throws Exception {
+        when(hubMetadataResolver.getLastUpdate()).thenReturn(null);
+
+        encrypterFactory.encrypt(anAttribute());
+        encrypterFactory.encrypt(anAttribute());
+
+        verify(encryptionCredentialResolver, times(2)).getEncryptingCredential(HUB_ENTITY_ID);
+        verify(hubMetadataResolver, never()).resolveSingle(any());
+        assertThat(metricRegistry.counter("uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory.cacheHits").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotCacheTheCredentialWhenTheHubMetadataCannotBeRead() throws Exception {
+        when(hubMetadataResolver.resolveSingle(any())).thenThrow(new ResolverException());
+
+        encrypterFactory.encrypt(anAttribute());
+        encrypterFactory.createEncrypter();
+
+        verify(encryptionCredentialResolver, times(2)).getEncryptingCredential(HUB_ENTITY_ID);
+        assertThat(metricRegistry.counter("uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory.cacheHits").getCount()).isEqualTo(0);
+    }
+
+    private static Attribute anAttribute() {
+        Attribute attribute = new AttributeBuilder().buildObject();
+        attribute.setName("Versions");
+        return attribute;
+    }
+}
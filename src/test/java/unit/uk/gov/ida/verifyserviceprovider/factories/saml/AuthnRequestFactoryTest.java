@@ -1,6 +1,7 @@
 package unit.uk.gov.ida.verifyserviceprovider.factories.saml;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.apache.commons.codec.binary.Base64;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +13,7 @@ import org.opensaml.saml.saml2.encryption.Decrypter;
 import org.opensaml.saml.saml2.encryption.Encrypter;
 import org.opensaml.security.credential.BasicCredential;
 import org.opensaml.security.crypto.KeySupport;
+import org.opensaml.xmlsec.encryption.support.EncryptionException;
 import uk.gov.ida.common.shared.security.PrivateKeyFactory;
 import uk.gov.ida.common.shared.security.PrivateKeyStore;
 import uk.gov.ida.common.shared.security.PublicKeyFactory;
@@ -35,6 +37,7 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
@@ -54,14 +57,15 @@ public class AuthnRequestFactoryTest {
     private static AuthnRequestFactory factory;
 
     @Before
-    public void setUp() throws KeyException {
+    public void setUp() throws KeyException, EncryptionException {
         IdaSamlBootstrap.bootstrap();
-        reset(manifestReader);
+        reset(manifestReader, encrypterFactory);
 
         final BasicCredential basicCredential = createBasicCredential();
         encrypter = new uk.gov.ida.saml.security.EncrypterFactory().createEncrypter(basicCredential);
         decrypter = new DecrypterFactory().createDecrypter(ImmutableList.of(basicCredential));
-        when(encrypterFactory.createEncrypter()).thenReturn(encrypter);
+        when(encrypterFactory.getEncryptingCredential()).thenReturn(basicCredential);
+        when(encrypterFactory.encrypt(any())).thenAnswer(invocation -> encrypter.encrypt(invocation.<Attribute>getArgument(0)));
         PrivateKeyStore privateKeyStore = new PrivateKeyStoreFactory().create(TestEntityIds.TEST_RP);
         KeyPair keyPair = new KeyPair(KeySupport.derivePublicKey(privateKeyStore.getSigningPrivateKey()), privateKeyStore.getSigningPrivateKey());
         factory = new AuthnRequestFactory(
@@ -130,6 +134,53 @@ public class AuthnRequestFactoryTest {
         verify(manifestReader, times(1)).getAttributeValueFor(VerifyServiceProviderApplication.class, "Version");
     }
 
+    @Test
+    public void shouldEncryptVersionsExtensionOnceForTheSameHubCredential() throws Exception {
+        AuthnRequest firstRequest = factory.build(LevelOfAssurance.LEVEL_2, SERVICE_ENTITY_ID);
+        AuthnRequest secondRequest = factory.build(LevelOfAssurance.LEVEL_2, SERVICE_ENTITY_ID);
+
+        verify(encrypterFactory, times(1)).encrypt(any());
+        verify(manifestReader, times(1)).getAttributeValueFor(VerifyServiceProviderApplication.class, "Version");
+        assertThat(firstRequest.getID()).isNotEqualTo(secondRequest.getID());
+        assertThat(secondRequest.getExtensions().getUnknownXMLObjects().get(0))
+            .isNotSameAs(firstRequest.getExtensions().getUnknownXMLObjects().get(0));
+        assertThat(decrypter.decrypt((EncryptedAttribute) secondRequest.getExtensions().getUnknownXMLObjects().get(0)).getName())
+            .isEqualTo("Versions");
+    }
+
+    @Test
+    public void shouldEncryptVersionsExtensionAgainWhenHubCredentialChanges() throws Exception {
+        factory.build(LevelOfAssurance.LEVEL_2, SERVICE_ENTITY_ID);
+
+        PrivateKeyStore privateKeyStore = new PrivateKeyStoreFactory().create(TestEntityIds.TEST_RP);
+        PublicKey rotatedKey = KeySupport.derivePublicKey(privateKeyStore.getEncryptionPrivateKeys().get(0));
+        when(encrypterFactory.getEncryptingCredential()).thenReturn(new BasicCredential(rotatedKey));
+        factory.build(LevelOfAssurance.LEVEL_2, SERVICE_ENTITY_ID);
+
+        verify(encrypterFactory, times(2)).encrypt(any());
+    }
+
+    @Test
+    public void shouldSignWithTheTenantsOwnKeyWhenItHasOne() throws Exception {
+        PrivateKeyStore privateKeyStore = new PrivateKeyStoreFactory().create(TestEntityIds.TEST_RP);
+        KeyPair defaultKeyPair = new KeyPair(KeySupport.derivePublicKey(privateKeyStore.getSigningPrivateKey()), privateKeyStore.getSigningPrivateKey());
+        PrivateKey tenantKey = privateKeyStore.getEncryptionPrivateKeys().get(0);
+        KeyPair tenantKeyPair = new KeyPair(KeySupport.derivePublicKey(tenantKey), tenantKey);
+        AuthnRequestFactory tenantFactory = new AuthnRequestFactory(
+            DESTINATION,
+            defaultKeyPair,
+            ImmutableMap.of("http://tenant-entity-id", tenantKeyPair),
+            manifestReader,
+            encrypterFactory
+        );
+
+        AuthnRequest tenantRequest = tenantFactory.build(LevelOfAssurance.LEVEL_2, "http://tenant-entity-id");
+        AuthnRequest otherRequest = tenantFactory.build(LevelOfAssurance.LEVEL_2, SERVICE_ENTITY_ID);
+
+        assertThat(tenantRequest.getSignature().getSigningCredential().getPublicKey()).isEqualTo(tenantKeyPair.getPublic());
+        assertThat(otherRequest.getSignature().getSigningCredential().getPublicKey()).isEqualTo(defaultKeyPair.getPublic());
+    }
+
     private BasicCredential createBasicCredential() {
         final PublicKey publicKey = new PublicKeyFactory(new X509CertificateFactory()).createPublicKey(HUB_TEST_PUBLIC_ENCRYPTION_CERT);
         PrivateKey privateKey = new PrivateKeyFactory().createPrivateKey(Base64.decodeBase64(HUB_TEST_PRIVATE_ENCRYPTION_KEY));
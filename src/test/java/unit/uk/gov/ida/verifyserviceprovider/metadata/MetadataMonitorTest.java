@@ -0,0 +1,103 @@
+package unit.uk.gov.ida.verifyserviceprovider.metadata;
+
+import com.codahale.metrics.MetricRegistry;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.impl.DOMMetadataResolver;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.saml.metadata.test.factories.metadata.MetadataFactory;
+import uk.gov.ida.verifyserviceprovider.healthcheck.MetadataHealthCheck;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataMonitor;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.ida.saml.core.test.TestEntityIds.HUB_ENTITY_ID;
+
+public class MetadataMonitorTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Before
+    public void setUp() {
+        IdaSamlBootstrap.bootstrap();
+    }
+
+    @Test
+    public void shouldBeUnhealthyUntilItHasBeenChecked() throws Exception {
+        MetadataMonitor monitor = new MetadataMonitor("hubMetadata", mock(MetadataResolver.class), HUB_ENTITY_ID, metricRegistry);
+
+        assertThat(monitor.getStatus().isHealthy()).isFalse();
+        assertThat(new MetadataHealthCheck(monitor).execute().isHealthy()).isFalse();
+    }
+
+    @Test
+    public void shouldCountTheCertificatesInTheMetadata() throws Exception {
+        MetadataMonitor monitor = new MetadataMonitor("hubMetadata", defaultMetadataResolver(), HUB_ENTITY_ID, metricRegistry);
+
+        monitor.check();
+
+        MetadataMonitor.Status status = monitor.getStatus();
+        assertThat(status.isHealthy()).isTrue();
+        assertThat(status.getSigningCertificateCount()).isPositive();
+        assertThat(status.getEarliestSigningCertificateExpiry()).isNotNull();
+        assertThat(status.getEncryptionCertificateCount()).isPositive();
+        assertThat(status.getEarliestEncryptionCertificateExpiry()).isNotNull();
+        assertThat(gauge("signingCertificates")).isEqualTo(status.getSigningCertificateCount());
+        assertThat(gauge("encryptionCertificates")).isEqualTo(status.getEncryptionCertificateCount());
+        assertThat(gauge("secondsUntilSigningCertificateExpiry")).isNotNull();
+    }
+
+    @Test
+    public void shouldNotResolveTheMetadataForEachHealthCheck() throws Exception {
+        MetadataResolver metadataResolver = mock(MetadataResolver.class);
+        when(metadataResolver.resolveSingle(any())).thenReturn(mock(EntityDescriptor.class));
+        MetadataMonitor monitor = new MetadataMonitor("hubMetadata", metadataResolver, HUB_ENTITY_ID, metricRegistry);
+        MetadataHealthCheck healthCheck = new MetadataHealthCheck(monitor);
+
+        monitor.check();
+        for (int i = 0; i < 10; i++) {
+            assertThat(healthCheck.execute().isHealthy()).isTrue();
+        }
+
+        verify(metadataResolver, times(1)).resolveSingle(any());
+    }
+
+    @Test
+    public void shouldBeUnhealthyWhenTheMetadataCannotBeResolved() throws Exception {
+        MetadataResolver metadataResolver = mock(MetadataResolver.class);
+        when(metadataResolver.resolveSingle(any())).thenThrow(new ResolverException("metadata has expired"));
+        MetadataMonitor monitor = new MetadataMonitor("hubMetadata", metadataResolver, HUB_ENTITY_ID, metricRegistry);
+
+        monitor.check();
+
+        assertThat(monitor.getStatus().isHealthy()).isFalse();
+        assertThat(gauge("signingCertificates")).isEqualTo(0);
+        assertThat(new MetadataHealthCheck(monitor).execute().getMessage())
+            .isEqualTo("Could not load metadata for entity " + HUB_ENTITY_ID + ". metadata has expired. See the logs for more details.");
+    }
+
+    private Object gauge(String name) {
+        return metricRegistry.getGauges().get(MetricRegistry.name(MetadataMonitor.class, "hubMetadata", name)).getValue();
+    }
+
+    private static MetadataResolver defaultMetadataResolver() throws Exception {
+        byte[] metadata = new MetadataFactory().defaultMetadata().getBytes(StandardCharsets.UTF_8);
+        DOMMetadataResolver metadataResolver = new DOMMetadataResolver(
+            XMLObjectProviderRegistrySupport.getParserPool().parse(new ByteArrayInputStream(metadata)).getDocumentElement()
+        );
+        metadataResolver.setId("hub-metadata");
+        metadataResolver.initialize();
+        return metadataResolver;
+    }
+}
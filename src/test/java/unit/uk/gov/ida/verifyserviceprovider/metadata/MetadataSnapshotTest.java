@@ -0,0 +1,94 @@
+package unit.uk.gov.ida.verifyserviceprovider.metadata;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import uk.gov.ida.common.shared.security.X509CertificateFactory;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.saml.metadata.test.factories.metadata.MetadataFactory;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataSnapshot;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataSnapshot.InvalidMetadataException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.HUB_TEST_PUBLIC_SIGNING_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.METADATA_SIGNING_A_PUBLIC_CERT;
+import static uk.gov.ida.saml.core.test.TestEntityIds.HUB_ENTITY_ID;
+
+public class MetadataSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private byte[] metadata;
+
+    @Before
+    public void setUp() {
+        IdaSamlBootstrap.bootstrap();
+        directory = temporaryFolder.getRoot().toPath().resolve("snapshots");
+        metadata = new MetadataFactory().defaultMetadata().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void shouldLoadTheMetadataItSaved() throws Exception {
+        MetadataSnapshot snapshot = MetadataSnapshot.create(directory, "hub-metadata", HUB_ENTITY_ID, trustStoreWith(METADATA_SIGNING_A_PUBLIC_CERT));
+
+        snapshot.save(metadata);
+        Optional<MetadataResolver> loaded = snapshot.load();
+
+        assertThat(loaded).isPresent();
+        assertThat(loaded.get().resolveSingle(new CriteriaSet(new EntityIdCriterion(HUB_ENTITY_ID)))).isNotNull();
+        assertThat(new String(Files.readAllBytes(directory.resolve("hub-metadata.properties")), StandardCharsets.ISO_8859_1))
+            .contains("signatureVerified=true");
+    }
+
+    @Test
+    public void shouldNotLoadASnapshotWhenThereIsNone() throws Exception {
+        MetadataSnapshot snapshot = MetadataSnapshot.create(directory, "hub-metadata", HUB_ENTITY_ID, trustStoreWith(METADATA_SIGNING_A_PUBLIC_CERT));
+
+        assertThat(snapshot.load()).isEmpty();
+    }
+
+    @Test
+    public void shouldNotSaveMetadataSignedByAnUntrustedKey() throws Exception {
+        MetadataSnapshot snapshot = MetadataSnapshot.create(directory, "hub-metadata", HUB_ENTITY_ID, trustStoreWith(HUB_TEST_PUBLIC_SIGNING_CERT));
+
+        assertThatThrownBy(() -> snapshot.save(metadata)).isInstanceOf(InvalidMetadataException.class);
+        assertThat(Files.exists(directory.resolve("hub-metadata.xml"))).isFalse();
+    }
+
+    @Test
+    public void shouldNotSaveMetadataWhichDoesNotDescribeTheExpectedEntity() throws Exception {
+        MetadataSnapshot snapshot = MetadataSnapshot.create(directory, "hub-metadata", "http://some-other-entity-id", trustStoreWith(METADATA_SIGNING_A_PUBLIC_CERT));
+
+        assertThatThrownBy(() -> snapshot.save(metadata)).isInstanceOf(InvalidMetadataException.class);
+    }
+
+    @Test
+    public void shouldCheckTheSignatureAgainWhenLoading() throws Exception {
+        MetadataSnapshot snapshot = MetadataSnapshot.create(directory, "hub-metadata", HUB_ENTITY_ID, trustStoreWith(METADATA_SIGNING_A_PUBLIC_CERT));
+        snapshot.save(metadata);
+
+        MetadataSnapshot snapshotWithOtherTrustStore = MetadataSnapshot.create(directory, "hub-metadata", HUB_ENTITY_ID, trustStoreWith(HUB_TEST_PUBLIC_SIGNING_CERT));
+
+        assertThat(snapshotWithOtherTrustStore.load()).isEmpty();
+    }
+
+    private static KeyStore trustStoreWith(String certificate) throws Exception {
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("metadata-signing", new X509CertificateFactory().createCertificate(certificate));
+        return trustStore;
+    }
+}
@@ -0,0 +1,81 @@
+package unit.uk.gov.ida.verifyserviceprovider.metadata;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.RefreshableMetadataResolver;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import uk.gov.ida.verifyserviceprovider.metadata.SnapshotBackedMetadataResolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SnapshotBackedMetadataResolverTest {
+
+    private static final String ENTITY_ID = "http://hub-entity-id";
+    private static final CriteriaSet CRITERIA = new CriteriaSet(new EntityIdCriterion(ENTITY_ID));
+
+    private RefreshableMetadataResolver liveMetadataResolver;
+    private MetadataResolver snapshotMetadataResolver;
+    private EntityDescriptor liveEntityDescriptor;
+    private EntityDescriptor snapshotEntityDescriptor;
+
+    @Before
+    public void setUp() throws Exception {
+        liveMetadataResolver = mock(RefreshableMetadataResolver.class);
+        snapshotMetadataResolver = mock(MetadataResolver.class);
+        liveEntityDescriptor = mock(EntityDescriptor.class);
+        snapshotEntityDescriptor = mock(EntityDescriptor.class);
+        when(snapshotMetadataResolver.resolveSingle(any())).thenReturn(snapshotEntityDescriptor);
+    }
+
+    @Test
+    public void shouldResolveFromTheSnapshotUntilTheLiveMetadataHasLoaded() throws Exception {
+        SnapshotBackedMetadataResolver metadataResolver = new SnapshotBackedMetadataResolver(liveMetadataResolver, snapshotMetadataResolver, ENTITY_ID);
+
+        assertThat(metadataResolver.resolveSingle(CRITERIA)).isSameAs(snapshotEntityDescriptor);
+        assertThat(metadataResolver.isLiveMetadataLoaded()).isFalse();
+
+        when(liveMetadataResolver.resolveSingle(any())).thenReturn(liveEntityDescriptor);
+
+        assertThat(metadataResolver.resolveSingle(CRITERIA)).isSameAs(liveEntityDescriptor);
+        assertThat(metadataResolver.isLiveMetadataLoaded()).isTrue();
+    }
+
+    @Test
+    public void shouldKeepResolvingFromTheLiveMetadataOnceItHasLoaded() throws Exception {
+        when(liveMetadataResolver.resolveSingle(any())).thenReturn(liveEntityDescriptor);
+        SnapshotBackedMetadataResolver metadataResolver = new SnapshotBackedMetadataResolver(liveMetadataResolver, snapshotMetadataResolver, ENTITY_ID);
+        metadataResolver.resolveSingle(CRITERIA);
+
+        when(liveMetadataResolver.resolveSingle(any())).thenReturn(null);
+
+        assertThat(metadataResolver.resolveSingle(CRITERIA)).isNull();
+    }
+
+    @Test
+    public void shouldResolveFromTheLiveMetadataWhenThereIsNoSnapshot() throws Exception {
+        SnapshotBackedMetadataResolver metadataResolver = new SnapshotBackedMetadataResolver(liveMetadataResolver, null, ENTITY_ID);
+
+        assertThat(metadataResolver.resolveSingle(CRITERIA)).isNull();
+        assertThat(metadataResolver.isLiveMetadataLoaded()).isTrue();
+    }
+
+    @Test
+    public void shouldReportADifferentLastUpdateOnceTheLiveMetadataHasLoaded() throws Exception {
+        DateTime liveLastUpdate = DateTime.parse("2018-01-01T12:00:00Z");
+        when(liveMetadataResolver.getLastUpdate()).thenReturn(liveLastUpdate);
+        SnapshotBackedMetadataResolver metadataResolver = new SnapshotBackedMetadataResolver(liveMetadataResolver, snapshotMetadataResolver, ENTITY_ID);
+
+        assertThat(metadataResolver.getLastUpdate()).isEqualTo(SnapshotBackedMetadataResolver.SNAPSHOT_LAST_UPDATE);
+
+        when(liveMetadataResolver.resolveSingle(any())).thenReturn(liveEntityDescriptor);
+
+        assertThat(metadataResolver.getLastUpdate()).isEqualTo(liveLastUpdate);
+    }
+}
@@ -0,0 +1,130 @@
+package unit.uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.metadata.MetadataMonitor;
+import uk.gov.ida.verifyserviceprovider.metrics.BucketedTimer;
+import uk.gov.ida.verifyserviceprovider.metrics.PrometheusExposition;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_2;
+import static uk.gov.ida.verifyserviceprovider.dto.Scenario.SUCCESS_MATCH;
+
+public class PrometheusExpositionTest {
+
+    private MetricRegistry metricRegistry;
+    private PrometheusExposition exposition;
+
+    @Before
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        exposition = new PrometheusExposition(metricRegistry);
+    }
+
+    @Test
+    public void shouldWriteABucketedTimerAsAHistogramInSeconds() throws Exception {
+        Timer timer = metricRegistry.timer(MetricRegistry.name(ResponseService.class, "decrypt"), BucketedTimer::withSlidingWindow);
+        timer.update(3, MILLISECONDS);
+        timer.update(2, SECONDS);
+
+        String exposed = scrape();
+
+        assertThat(exposed).contains("# TYPE vsp_response_stage_seconds histogram\n");
+        assertThat(exposed).contains("vsp_response_stage_seconds_bucket{stage=\"decrypt\",le=\"0.001\"} 0\n");
+        assertThat(exposed).contains("vsp_response_stage_seconds_bucket{stage=\"decrypt\",le=\"0.005\"} 1\n");
+        assertThat(exposed).contains("vsp_response_stage_seconds_bucket{stage=\"decrypt\",le=\"1.0\"} 1\n");
+        assertThat(exposed).contains("vsp_response_stage_seconds_bucket{stage=\"decrypt\",le=\"2.5\"} 2\n");
+        assertThat(exposed).contains("vsp_response_stage_seconds_bucket{stage=\"decrypt\",le=\"+Inf\"} 2\n");
+        assertThat(exposed).contains("vsp_response_stage_seconds_sum{stage=\"decrypt\"} 2.003\n");
+        assertThat(exposed).contains("vsp_response_stage_seconds_count{stage=\"decrypt\"} 2\n");
+    }
+
+    @Test
+    public void shouldWriteOtherTimersAndHistogramsAsSummariesWithAnEstimatedSum() throws Exception {
+        Timer timer = metricRegistry.register("some.timer", new Timer(new UniformReservoir()));
+        timer.update(1, SECONDS);
+        timer.update(3, SECONDS);
+        Histogram histogram = metricRegistry.register("some.histogram", new Histogram(new UniformReservoir()));
+        histogram.update(10);
+        histogram.update(20);
+
+        String exposed = scrape();
+
+        assertThat(exposed).contains("# TYPE some_timer_seconds summary\n");
+        assertThat(exposed).contains("some_timer_seconds{quantile=\"0.5\"} ");
+        assertThat(exposed).contains("some_timer_seconds_sum 4.0\n");
+        assertThat(exposed).contains("some_timer_seconds_count 2\n");
+        assertThat(exposed).contains("# TYPE some_histogram summary\n");
+        assertThat(exposed).contains("some_histogram_sum 30.0\n");
+        assertThat(exposed).contains("some_histogram_count 2\n");
+    }
+
+    @Test
+    public void shouldSplitTenantMetricNamesIntoLabels() throws Exception {
+        TenantRequestMetrics.create(singletonList("http://entity-id"), metricRegistry)
+            .translation("http://entity-id", LEVEL_2, SUCCESS_MATCH, System.nanoTime());
+
+        String exposed = scrape();
+
+        assertThat(exposed).contains("vsp_translations{entity_id=\"http://entity-id\",level_of_assurance=\"LEVEL_2\",scenario=\"SUCCESS_MATCH\"} 1\n");
+        assertThat(exposed).contains("vsp_translation_seconds_count{entity_id=\"http://entity-id\",scenario=\"SUCCESS_MATCH\"} 1\n");
+        assertThat(exposed).contains("vsp_translations{entity_id=\"other\",level_of_assurance=\"LEVEL_2\",scenario=\"SUCCESS_MATCH\"} 0\n");
+    }
+
+    @Test
+    public void shouldLabelMetadataGaugesWithTheMetadataTheyAreFor() throws Exception {
+        metricRegistry.register(MetricRegistry.name(MetadataMonitor.class, "hubMetadata", "signingCertificates"), (Gauge<Integer>) () -> 2);
+        metricRegistry.register(MetricRegistry.name(MetadataMonitor.class, "msaMetadata", "secondsUntilValidUntil"), (Gauge<Long>) () -> 3600L);
+
+        String exposed = scrape();
+
+        assertThat(exposed).contains("vsp_metadata_signing_certificates{metadata=\"hubMetadata\"} 2.0\n");
+        assertThat(exposed).contains("vsp_metadata_seconds_until_valid_until{metadata=\"msaMetadata\"} 3600.0\n");
+    }
+
+    @Test
+    public void shouldFlattenOtherNamesAndWriteMetersAsCounters() throws Exception {
+        metricRegistry.meter("jetty.requests-rejected").mark(3);
+        metricRegistry.register("replay.size", (Gauge<Integer>) () -> 7);
+        metricRegistry.register("pool.ready", (Gauge<String>) () -> "not a number");
+
+        String exposed = scrape();
+
+        assertThat(exposed).contains("# TYPE jetty_requests_rejected_total counter\njetty_requests_rejected_total 3\n");
+        assertThat(exposed).contains("# TYPE replay_size gauge\nreplay_size 7.0\n");
+        assertThat(exposed).doesNotContain("\npool_ready");
+    }
+
+    @Test
+    public void shouldIncludeMetricsRegisteredAfterTheFirstScrape() throws Exception {
+        metricRegistry.counter("first").inc();
+        assertThat(scrape()).contains("first 1\n").doesNotContain("second");
+
+        metricRegistry.counter("second").inc(2);
+
+        assertThat(scrape()).contains("first 1\n").contains("second 2\n");
+    }
+
+    @Test
+    public void shouldEscapeLabelValues() throws Exception {
+        metricRegistry.meter(MetricRegistry.name("uk.gov.ida.verifyserviceprovider.services.TenantAdmission", "say \"hi\"", "rejected")).mark();
+
+        assertThat(scrape()).contains("vsp_tenant_admission_rejections_total{entity_id=\"say \\\"hi\\\"\"} 1\n");
+    }
+
+    private String scrape() throws Exception {
+        StringBuilder out = new StringBuilder();
+        exposition.write(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package unit.uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.metrics.StageTimer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class StageTimerTest {
+
+    private MetricRegistry metricRegistry;
+    private StageTimer stageTimer;
+
+    @Before
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        stageTimer = new StageTimer(metricRegistry, "some-stage");
+    }
+
+    @Test
+    public void shouldTimeStageAndReturnItsResult() {
+        String result = stageTimer.time(() -> "some-result");
+
+        assertThat(result).isEqualTo("some-result");
+        assertThat(metricRegistry.timer("some-stage").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getCounters()).isEmpty();
+    }
+
+    @Test
+    public void shouldCountFailuresByExceptionType() {
+        SamlResponseValidationException exception = new SamlResponseValidationException("some-message");
+
+        Throwable thrown = catchThrowable(() -> stageTimer.time(() -> { throw exception; }));
+        catchThrowable(() -> stageTimer.time(() -> { throw exception; }));
+        catchThrowable(() -> stageTimer.time(() -> { throw new IllegalStateException(); }));
+
+        assertThat(thrown).isSameAs(exception);
+        assertThat(metricRegistry.timer("some-stage").getCount()).isEqualTo(3);
+        assertThat(metricRegistry.counter("some-stage.failures.SamlResponseValidationException").getCount()).isEqualTo(2);
+        assertThat(metricRegistry.counter("some-stage.failures.IllegalStateException").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTimeStagesWithoutAResult() {
+        StringBuilder stage = new StringBuilder();
+
+        stageTimer.time(() -> { stage.append("run"); });
+
+        assertThat(stage.toString()).isEqualTo("run");
+        assertThat(metricRegistry.timer("some-stage").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTimeStagesStartedAndStoppedByTheCaller() {
+        long start = stageTimer.start();
+        stageTimer.stop(start);
+
+        IllegalStateException exception = new IllegalStateException();
+        RuntimeException failure = stageTimer.failed(stageTimer.start(), exception);
+
+        assertThat(failure).isSameAs(exception);
+        assertThat(metricRegistry.timer("some-stage").getCount()).isEqualTo(2);
+        assertThat(metricRegistry.counter("some-stage.failures.IllegalStateException").getCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,69 @@
+package unit.uk.gov.ida.verifyserviceprovider.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_1;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_2;
+import static uk.gov.ida.verifyserviceprovider.dto.Scenario.NO_MATCH;
+import static uk.gov.ida.verifyserviceprovider.dto.Scenario.SUCCESS_MATCH;
+
+public class TenantRequestMetricsTest {
+
+    private static final String ENTITY_ID = "http://entity-id";
+    private static final String OTHER_ENTITY_ID = "http://other-entity-id";
+
+    private MetricRegistry metricRegistry;
+    private TenantRequestMetrics tenantRequestMetrics;
+
+    @Before
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        tenantRequestMetrics = TenantRequestMetrics.create(asList(ENTITY_ID, OTHER_ENTITY_ID), metricRegistry);
+    }
+
+    @Test
+    public void shouldCreateEveryMetricUpFront() {
+        assertThat(metricRegistry.getCounters()).containsKey(metricName(OTHER_ENTITY_ID, "translations.LEVEL_1.ACCOUNT_CREATION"));
+        assertThat(metricRegistry.getCounters()).containsKey(metricName(OTHER_ENTITY_ID, "translations.LEVEL_2.ERROR"));
+        assertThat(metricRegistry.getTimers()).containsKey(metricName(ENTITY_ID, "generatedRequests"));
+    }
+
+    @Test
+    public void shouldCountAndTimeTranslationsByScenarioAndLevelOfAssurance() {
+        tenantRequestMetrics.translation(ENTITY_ID, LEVEL_2, SUCCESS_MATCH, System.nanoTime());
+        tenantRequestMetrics.translation(ENTITY_ID, LEVEL_2, SUCCESS_MATCH, System.nanoTime());
+        tenantRequestMetrics.translation(ENTITY_ID, LEVEL_1, NO_MATCH, System.nanoTime());
+        tenantRequestMetrics.translation(ENTITY_ID, LEVEL_2, null, System.nanoTime());
+
+        assertThat(metricRegistry.counter(metricName(ENTITY_ID, "translations.LEVEL_2.SUCCESS_MATCH")).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.counter(metricName(ENTITY_ID, "translations.LEVEL_1.NO_MATCH")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(metricName(ENTITY_ID, "translations.LEVEL_2.ERROR")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer(metricName(ENTITY_ID, "translations.SUCCESS_MATCH")).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.counter(metricName(OTHER_ENTITY_ID, "translations.LEVEL_2.SUCCESS_MATCH")).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldCountGeneratedRequestsByLevelOfAssurance() {
+        tenantRequestMetrics.generatedRequest(OTHER_ENTITY_ID, LEVEL_1, System.nanoTime());
+
+        assertThat(metricRegistry.counter(metricName(OTHER_ENTITY_ID, "generatedRequests.LEVEL_1")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer(metricName(OTHER_ENTITY_ID, "generatedRequests")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRecordEntityIdsWhichWereNotConfiguredAsOther() {
+        tenantRequestMetrics.generatedRequest("http://unknown-entity-id", LEVEL_2, System.nanoTime());
+
+        assertThat(metricRegistry.counter(metricName("other", "generatedRequests.LEVEL_2")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getNames().stream().filter(name -> name.contains("unknown-entity-id"))).isEmpty();
+    }
+
+    private static String metricName(String entityId, String name) {
+        return MetricRegistry.name(TenantRequestMetrics.class, entityId, name);
+    }
+}
@@ -0,0 +1,68 @@
+package unit.uk.gov.ida.verifyserviceprovider.replay;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.configuration.ReplayCacheConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.ReplayCacheConfiguration.Type;
+import uk.gov.ida.verifyserviceprovider.replay.InMemoryReplayCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryReplayCacheTest {
+
+    private static final DateTime NOW = DateTime.parse("2018-01-01T12:00:00Z");
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(NOW.getMillis());
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void shouldRejectAnIdWhichHasNotExpired() {
+        InMemoryReplayCache replayCache = new InMemoryReplayCache(100);
+
+        assertThat(replayCache.putIfAbsent("some-id", NOW.plusMinutes(5))).isTrue();
+        assertThat(replayCache.putIfAbsent("some-id", NOW.plusMinutes(5))).isFalse();
+        assertThat(replayCache.putIfAbsent("some-other-id", NOW.plusMinutes(5))).isTrue();
+    }
+
+    @Test
+    public void shouldAcceptAnIdAgainOnceItHasExpired() {
+        InMemoryReplayCache replayCache = new InMemoryReplayCache(100);
+        replayCache.putIfAbsent("some-id", NOW.plusMinutes(5));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(5).getMillis());
+
+        assertThat(replayCache.putIfAbsent("some-id", NOW.plusMinutes(10))).isTrue();
+        assertThat(replayCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldEvictTheOldestIdsWhenFull() {
+        InMemoryReplayCache replayCache = new InMemoryReplayCache(64);
+
+        for (int i = 0; i < 1000; i++) {
+            replayCache.putIfAbsent("id-" + i, NOW.plusMinutes(5));
+        }
+
+        assertThat(replayCache.size()).isLessThanOrEqualTo(64);
+        assertThat(replayCache.getEvictionCount()).isEqualTo(1000 - replayCache.size());
+        assertThat(replayCache.putIfAbsent("id-999", NOW.plusMinutes(5))).isFalse();
+    }
+
+    @Test
+    public void shouldLimitTheMaxEntriesOnlyWhenHeldOnTheHeap() {
+        assertThat(new ReplayCacheConfiguration(Type.IN_MEMORY, 2000000, null).isMaxEntriesWithinHeapLimit()).isTrue();
+        assertThat(new ReplayCacheConfiguration(Type.IN_MEMORY, 2000001, null).isMaxEntriesWithinHeapLimit()).isFalse();
+        assertThat(new ReplayCacheConfiguration(null, 2000001, null).isMaxEntriesWithinHeapLimit()).isFalse();
+        assertThat(new ReplayCacheConfiguration(Type.MAPPED_FILE, 80000000, "replay-cache").isMaxEntriesWithinHeapLimit()).isTrue();
+    }
+}
@@ -0,0 +1,84 @@
+package unit.uk.gov.ida.verifyserviceprovider.replay;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.ida.verifyserviceprovider.replay.MappedFileReplayCache;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedFileReplayCacheTest {
+
+    private static final DateTime NOW = DateTime.parse("2018-01-01T12:00:00Z");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        DateTimeUtils.setCurrentMillisFixed(NOW.getMillis());
+        file = temporaryFolder.getRoot().toPath().resolve("replay-cache");
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void shouldRejectAnIdWhichHasNotExpired() throws Exception {
+        MappedFileReplayCache replayCache = new MappedFileReplayCache(file, 1000);
+
+        assertThat(replayCache.putIfAbsent("some-id", NOW.plusMinutes(5))).isTrue();
+        assertThat(replayCache.putIfAbsent("some-id", NOW.plusMinutes(5))).isFalse();
+        assertThat(replayCache.putIfAbsent("some-other-id", NOW.plusMinutes(5))).isTrue();
+    }
+
+    @Test
+    public void shouldAcceptAnIdAgainOnceItHasExpired() throws Exception {
+        MappedFileReplayCache replayCache = new MappedFileReplayCache(file, 1000);
+        replayCache.putIfAbsent("some-id", NOW.plusMinutes(5));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(5).getMillis());
+
+        assertThat(replayCache.putIfAbsent("some-id", NOW.plusMinutes(10))).isTrue();
+    }
+
+    @Test
+    public void shouldRememberIdsAfterTheFileIsReopened() throws Exception {
+        new MappedFileReplayCache(file, 1000).putIfAbsent("some-id", NOW.plusMinutes(5));
+
+        MappedFileReplayCache reopened = new MappedFileReplayCache(file, 1000);
+
+        assertThat(reopened.putIfAbsent("some-id", NOW.plusMinutes(5))).isFalse();
+    }
+
+    @Test
+    public void shouldStartAgainWhenTheFileIsADifferentSize() throws Exception {
+        new MappedFileReplayCache(file, 1000).putIfAbsent("some-id", NOW.plusMinutes(5));
+
+        MappedFileReplayCache resized = new MappedFileReplayCache(file, 5000);
+
+        assertThat(resized.putIfAbsent("some-id", NOW.plusMinutes(5))).isTrue();
+    }
+
+    @Test
+    public void shouldEvictIdsWhenFull() throws Exception {
+        MappedFileReplayCache replayCache = new MappedFileReplayCache(file, 1000);
+
+        int ids = replayCache.getCapacity() * 2;
+        for (int i = 0; i < ids; i++) {
+            assertThat(replayCache.putIfAbsent("id-" + i, NOW.plusMinutes(5))).isTrue();
+        }
+
+        assertThat(replayCache.getEvictionCount()).isGreaterThanOrEqualTo(ids - replayCache.getCapacity());
+    }
+}
@@ -11,6 +11,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.opensaml.saml.saml2.core.AuthnRequest;
 import org.opensaml.saml.saml2.core.impl.AuthnRequestBuilder;
 import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLog;
 import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
 import uk.gov.ida.verifyserviceprovider.dto.RequestGenerationBody;
 import uk.gov.ida.verifyserviceprovider.dto.RequestResponseBody;
@@ -18,8 +19,11 @@ import uk.gov.ida.verifyserviceprovider.exceptions.InvalidEntityIdExceptionMappe
 import uk.gov.ida.verifyserviceprovider.exceptions.JerseyViolationExceptionMapper;
 import uk.gov.ida.verifyserviceprovider.exceptions.JsonProcessingExceptionMapper;
 import uk.gov.ida.verifyserviceprovider.factories.saml.AuthnRequestFactory;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
 import uk.gov.ida.verifyserviceprovider.resources.GenerateAuthnRequestResource;
 import uk.gov.ida.verifyserviceprovider.services.EntityIdService;
+import uk.gov.ida.verifyserviceprovider.services.PregeneratedAuthnRequests;
+import uk.gov.ida.verifyserviceprovider.services.WorkerPool;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
@@ -51,7 +55,15 @@ public class GenerateAuthnRequestResourceTest {
         .addProvider(JerseyViolationExceptionMapper.class)
         .addProvider(JsonProcessingExceptionMapper.class)
         .addProvider(InvalidEntityIdExceptionMapper.class)
-        .addResource(new GenerateAuthnRequestResource(authnRequestFactory, HUB_SSO_LOCATION, entityIdService))
+        .addResource(new GenerateAuthnRequestResource(
+            authnRequestFactory,
+            HUB_SSO_LOCATION,
+            entityIdService,
+            WorkerPool.requestThread(),
+            PregeneratedAuthnRequests.disabled(),
+            TenantRequestMetrics.none(),
+            AuditLog.disabled()
+        ))
         .build();
 
     @Before
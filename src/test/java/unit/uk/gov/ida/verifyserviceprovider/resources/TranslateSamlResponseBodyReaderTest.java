@@ -0,0 +1,151 @@
+package unit.uk.gov.ida.verifyserviceprovider.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.json.JSONObject;
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.dto.SamlResponseContent;
+import uk.gov.ida.verifyserviceprovider.dto.TranslateSamlResponseBody;
+import uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponseBodyReader;
+import uk.gov.ida.verifyserviceprovider.saml.DecodedSamlResponseBuffer;
+import uk.gov.ida.verifyserviceprovider.validators.ResponseSizeValidator;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_2;
+
+public class TranslateSamlResponseBodyReaderTest {
+
+    private static final String SAML_RESPONSE = "<saml2p:Response>some response</saml2p:Response>";
+
+    private final TranslateSamlResponseBodyReader reader = new TranslateSamlResponseBodyReader(Jackson.newObjectMapper(), 1, 1);
+
+    @Test
+    public void shouldDecodeTheSamlResponseIntoABuffer() throws Exception {
+        TranslateSamlResponseBody body = read(aRequest(base64(SAML_RESPONSE.getBytes(StandardCharsets.UTF_8))));
+
+        DecodedSamlResponseBuffer decoded = body.getSamlResponse().getDecoded().get();
+        assertThat(decoded.isTooLong()).isFalse();
+        assertThat(contentsOf(decoded)).isEqualTo(SAML_RESPONSE);
+    }
+
+    @Test
+    public void shouldReadTheOtherFields() throws Exception {
+        TranslateSamlResponseBody body = read(aRequest(base64(SAML_RESPONSE.getBytes(StandardCharsets.UTF_8))));
+
+        assertThat(body.getRequestId()).isEqualTo("some-request-id");
+        assertThat(body.getLevelOfAssurance()).isEqualTo(LEVEL_2);
+        assertThat(body.getEntityId()).isEqualTo("http://some-entity-id");
+    }
+
+    @Test
+    public void shouldDecodeASamlResponseWithoutPadding() throws Exception {
+        String unpadded = base64(SAML_RESPONSE.getBytes(StandardCharsets.UTF_8)).replace("=", "");
+
+        TranslateSamlResponseBody body = read(aRequest(unpadded));
+
+        assertThat(contentsOf(body.getSamlResponse().getDecoded().get())).isEqualTo(SAML_RESPONSE);
+    }
+
+    @Test
+    public void shouldSkipCharactersOutsideTheBase64Alphabet() throws Exception {
+        String base64 = base64(SAML_RESPONSE.getBytes(StandardCharsets.UTF_8));
+        String withStrayCharacters = base64.substring(0, 10) + "\r\n" + base64.substring(10, 20) + " *" + base64.substring(20) + "\n";
+
+        TranslateSamlResponseBody body = read(aRequest(withStrayCharacters));
+
+        assertThat(contentsOf(body.getSamlResponse().getDecoded().get())).isEqualTo(SAML_RESPONSE);
+    }
+
+    @Test
+    public void shouldMarkASamlResponseWhichIsNotBase64AndReadTheOtherFields() throws Exception {
+        TranslateSamlResponseBody body = read(aRequest("not base64!"));
+
+        assertThat(body.getSamlResponse()).isEqualTo(SamlResponseContent.notBase64());
+        assertThat(body.getRequestId()).isEqualTo("some-request-id");
+    }
+
+    @Test
+    public void shouldKeepAnEmptySamlResponseAsAString() throws Exception {
+        TranslateSamlResponseBody body = read(aRequest(""));
+
+        assertThat(body.getSamlResponse()).isEqualTo(SamlResponseContent.fromBase64(""));
+    }
+
+    @Test
+    public void shouldNotReadADecodedSamlResponseOnceItHasBeenReleased() throws Exception {
+        SamlResponseContent samlResponse = read(aRequest(base64(SAML_RESPONSE.getBytes(StandardCharsets.UTF_8)))).getSamlResponse();
+
+        samlResponse.release();
+
+        assertThatThrownBy(samlResponse::getDecoded).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(samlResponse::getBase64Encoded).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldGiveTheBufferBackWhenTheRestOfTheBodyCannotBeRead() throws Exception {
+        String samlResponse = base64(SAML_RESPONSE.getBytes(StandardCharsets.UTF_8));
+        SamlResponseContent first = read(aRequest(samlResponse)).getSamlResponse();
+        DecodedSamlResponseBuffer buffer = first.getDecoded().get();
+        first.release();
+
+        String invalidLevelOfAssurance = new JSONObject(aRequest(samlResponse)).put("levelOfAssurance", "LEVEL_9").toString();
+        assertThatThrownBy(() -> read(invalidLevelOfAssurance)).isInstanceOf(IOException.class);
+
+        assertThat(read(aRequest(samlResponse)).getSamlResponse().getDecoded().get()).isSameAs(buffer);
+    }
+
+    @Test
+    public void shouldFlagASamlResponseWhichIsTooLong() throws Exception {
+        byte[] tooLong = new byte[ResponseSizeValidator.MAX_SAML_RESPONSE_LENGTH + 1];
+
+        TranslateSamlResponseBody body = read(aRequest(base64(tooLong)));
+
+        assertThat(body.getSamlResponse().getDecoded().get().isTooLong()).isTrue();
+    }
+
+    @Test
+    public void shouldLeaveAMissingSamlResponseAsNull() throws Exception {
+        TranslateSamlResponseBody body = read(new JSONObject().put("requestId", "some-request-id").toString());
+
+        assertThat(body.getSamlResponse()).isNull();
+        assertThat(body.getRequestId()).isEqualTo("some-request-id");
+    }
+
+    private TranslateSamlResponseBody read(String json) throws IOException {
+        return reader.readFrom(
+            TranslateSamlResponseBody.class,
+            TranslateSamlResponseBody.class,
+            null,
+            MediaType.APPLICATION_JSON_TYPE,
+            null,
+            new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))
+        );
+    }
+
+    private static String aRequest(String samlResponse) {
+        return new JSONObject()
+            .put("samlResponse", samlResponse)
+            .put("requestId", "some-request-id")
+            .put("levelOfAssurance", LEVEL_2.name())
+            .put("entityId", "http://some-entity-id")
+            .toString();
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static String contentsOf(DecodedSamlResponseBuffer decoded) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        decoded.writeTo(outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
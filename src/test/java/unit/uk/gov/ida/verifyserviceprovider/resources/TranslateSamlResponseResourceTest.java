@@ -1,5 +1,6 @@
 package unit.uk.gov.ida.verifyserviceprovider.resources;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableSet;
 import io.dropwizard.jersey.errors.ErrorMessage;
 import io.dropwizard.testing.junit.ResourceTestRule;
@@ -13,6 +14,8 @@ import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.slf4j.event.Level;
 import uk.gov.ida.saml.core.validation.SamlTransformationErrorException;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLog;
+import uk.gov.ida.verifyserviceprovider.dto.SamlResponseContent;
 import uk.gov.ida.verifyserviceprovider.dto.Scenario;
 import uk.gov.ida.verifyserviceprovider.dto.TranslateSamlResponseBody;
 import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
@@ -20,12 +23,15 @@ import uk.gov.ida.verifyserviceprovider.exceptions.InvalidEntityIdExceptionMappe
 import uk.gov.ida.verifyserviceprovider.exceptions.JerseyViolationExceptionMapper;
 import uk.gov.ida.verifyserviceprovider.exceptions.JsonProcessingExceptionMapper;
 import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
 import uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponseResource;
 import uk.gov.ida.verifyserviceprovider.services.EntityIdService;
 import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+import uk.gov.ida.verifyserviceprovider.services.WorkerPool;
 
 import javax.ws.rs.core.Response;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -39,6 +45,7 @@ import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_1;
 import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_2;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -47,13 +54,20 @@ public class TranslateSamlResponseResourceTest {
     private static ResponseService responseService = mock(ResponseService.class);
     private static EntityIdService entityIdService = mock(EntityIdService.class);
     private static final String defaultEntityId = "http://default-entity-id";
+    private static final MetricRegistry metricRegistry = new MetricRegistry();
 
     @ClassRule
     public static final ResourceTestRule resources = ResourceTestRule.builder()
         .addProvider(JerseyViolationExceptionMapper.class)
         .addProvider(JsonProcessingExceptionMapper.class)
         .addProvider(InvalidEntityIdExceptionMapper.class)
-        .addResource(new TranslateSamlResponseResource(responseService, entityIdService))
+        .addResource(new TranslateSamlResponseResource(
+            responseService,
+            entityIdService,
+            WorkerPool.requestThread(),
+            TenantRequestMetrics.create(Collections.singletonList(defaultEntityId), metricRegistry),
+            AuditLog.disabled()
+        ))
         .build();
 
     @Before
@@ -72,7 +86,7 @@ public class TranslateSamlResponseResourceTest {
             .put("requestId", "some-request-id")
             .put("levelOfAssurance", LEVEL_2.name());
 
-        when(responseService.convertTranslatedResponseBody(any(), eq("some-request-id"), eq(LEVEL_2), eq(defaultEntityId)))
+        when(responseService.convertTranslatedResponseBody(any(SamlResponseContent.class), eq("some-request-id"), eq(LEVEL_2), eq(defaultEntityId)))
             .thenReturn(new TranslatedResponseBody(Scenario.SUCCESS_MATCH, "some-request-id", LEVEL_2, null));
 
         Response response = resources.client()
@@ -81,18 +95,38 @@ public class TranslateSamlResponseResourceTest {
             .post(json(translateResponseRequest.toString()));
 
         verify(responseService, times(1)).convertTranslatedResponseBody(
-            translateResponseRequest.getString("samlResponse"), "some-request-id", LEVEL_2, defaultEntityId
+            SamlResponseContent.fromBase64(translateResponseRequest.getString("samlResponse")), "some-request-id", LEVEL_2, defaultEntityId
         );
         assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
     }
 
+    @Test
+    public void shouldRecordTheTranslationAtTheLevelOfAssuranceTheUserAchieved() throws Exception {
+        JSONObject translateResponseRequest = new JSONObject().put("samlResponse", "some-saml-response")
+            .put("requestId", "some-request-id")
+            .put("levelOfAssurance", LEVEL_1.name());
+
+        when(responseService.convertTranslatedResponseBody(any(SamlResponseContent.class), eq("some-request-id"), eq(LEVEL_1), eq(defaultEntityId)))
+            .thenReturn(new TranslatedResponseBody(Scenario.SUCCESS_MATCH, "some-request-id", LEVEL_2, null));
+        String metricName = MetricRegistry.name(TenantRequestMetrics.class, defaultEntityId, "translations", LEVEL_2.name(), Scenario.SUCCESS_MATCH.name());
+        long translationsBefore = metricRegistry.counter(metricName).getCount();
+
+        Response response = resources.client()
+            .target("/translate-response")
+            .request()
+            .post(json(translateResponseRequest.toString()));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(metricRegistry.counter(metricName).getCount()).isEqualTo(translationsBefore + 1);
+    }
+
     @Test
     public void shouldReturn400WhenSamlValidationExceptionThrown() throws Exception {
         JSONObject translateResponseRequest = new JSONObject().put("samlResponse", "some-saml-response")
                 .put("requestId", "some-request-id")
                 .put("levelOfAssurance", LEVEL_2.name());
 
-        when(responseService.convertTranslatedResponseBody(any(), eq("some-request-id"), eq(LEVEL_2), eq(defaultEntityId)))
+        when(responseService.convertTranslatedResponseBody(any(SamlResponseContent.class), eq("some-request-id"), eq(LEVEL_2), eq(defaultEntityId)))
                 .thenThrow(new SamlResponseValidationException("Some error."));
 
         Response response = resources.client()
@@ -113,7 +147,7 @@ public class TranslateSamlResponseResourceTest {
                 .put("requestId", "some-request-id")
                 .put("levelOfAssurance", LEVEL_2.name());
 
-        when(responseService.convertTranslatedResponseBody(any(), eq("some-request-id"), eq(LEVEL_2), eq(defaultEntityId)))
+        when(responseService.convertTranslatedResponseBody(any(SamlResponseContent.class), eq("some-request-id"), eq(LEVEL_2), eq(defaultEntityId)))
                 .thenThrow(new SamlTransformationErrorException("Some error.", Level.ERROR));
 
         Response response = resources.client()
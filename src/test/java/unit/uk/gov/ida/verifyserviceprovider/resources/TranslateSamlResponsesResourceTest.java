@@ -0,0 +1,225 @@
+package unit.uk.gov.ida.verifyserviceprovider.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import org.apache.http.HttpStatus;
+import org.joda.time.Duration;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.event.Level;
+import uk.gov.ida.saml.core.validation.SamlTransformationErrorException;
+import uk.gov.ida.verifyserviceprovider.audit.AuditLog;
+import uk.gov.ida.verifyserviceprovider.dto.SamlResponseContent;
+import uk.gov.ida.verifyserviceprovider.dto.Scenario;
+import uk.gov.ida.verifyserviceprovider.dto.TranslateSamlResponseBody;
+import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
+import uk.gov.ida.verifyserviceprovider.exceptions.InvalidEntityIdExceptionMapper;
+import uk.gov.ida.verifyserviceprovider.exceptions.JerseyViolationExceptionMapper;
+import uk.gov.ida.verifyserviceprovider.exceptions.JsonProcessingExceptionMapper;
+import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.metrics.TenantRequestMetrics;
+import uk.gov.ida.verifyserviceprovider.resources.TranslateSamlResponsesResource;
+import uk.gov.ida.verifyserviceprovider.services.EntityIdService;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+import uk.gov.ida.verifyserviceprovider.services.TenantAdmission;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static javax.ws.rs.client.Entity.json;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance.LEVEL_2;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TranslateSamlResponsesResourceTest {
+
+    private static ResponseService responseService = mock(ResponseService.class);
+    private static EntityIdService entityIdService = mock(EntityIdService.class);
+    private static final String defaultEntityId = "http://default-entity-id";
+    private static final MetricRegistry metricRegistry = new MetricRegistry();
+    private static final ExecutorService fullExecutorService = mock(ExecutorService.class);
+
+    @ClassRule
+    public static final ResourceTestRule resources = ResourceTestRule.builder()
+        .addProvider(JerseyViolationExceptionMapper.class)
+        .addProvider(JsonProcessingExceptionMapper.class)
+        .addProvider(InvalidEntityIdExceptionMapper.class)
+        .addResource(new TranslateSamlResponsesResource(
+            responseService,
+            entityIdService,
+            Executors.newFixedThreadPool(2),
+            Duration.standardSeconds(1),
+            Validators.newValidator(),
+            TenantAdmission.unlimited(),
+            TenantRequestMetrics.create(Collections.singletonList(defaultEntityId), metricRegistry),
+            AuditLog.disabled()
+        ))
+        .build();
+
+    @ClassRule
+    public static final ResourceTestRule fullResources = ResourceTestRule.builder()
+        .addResource(new TranslateSamlResponsesResource(
+            responseService,
+            entityIdService,
+            fullExecutorService,
+            Duration.standardSeconds(3),
+            Validators.newValidator(),
+            TenantAdmission.unlimited(),
+            TenantRequestMetrics.none(),
+            AuditLog.disabled()
+        ))
+        .build();
+
+    @Before
+    public void mockEntityIdService() {
+        when(entityIdService.getEntityId(any(TranslateSamlResponseBody.class))).thenReturn(defaultEntityId);
+    }
+
+    @After
+    public void setup() {
+        reset(responseService);
+    }
+
+    @Test
+    public void shouldTranslateEachResponseInOrder() throws Exception {
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-1")), eq("request-1"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenReturn(new TranslatedResponseBody(Scenario.SUCCESS_MATCH, "pid-1", LEVEL_2, null));
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-2")), eq("request-2"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenReturn(new TranslatedResponseBody(Scenario.NO_MATCH, null, null, null));
+
+        JSONArray results = postBatch(new JSONArray()
+            .put(aTranslateResponseRequest("saml-1", "request-1"))
+            .put(aTranslateResponseRequest("saml-2", "request-2")));
+
+        assertThat(results.length()).isEqualTo(2);
+        assertThat(results.getJSONObject(0).getString("scenario")).isEqualTo(Scenario.SUCCESS_MATCH.name());
+        assertThat(results.getJSONObject(0).getString("pid")).isEqualTo("pid-1");
+        assertThat(results.getJSONObject(1).getString("scenario")).isEqualTo(Scenario.NO_MATCH.name());
+    }
+
+    @Test
+    public void shouldReturnAnErrorForAFailedItemWithoutFailingTheOthers() throws Exception {
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-1")), eq("request-1"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenThrow(new SamlResponseValidationException("Some error."));
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-2")), eq("request-2"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenReturn(new TranslatedResponseBody(Scenario.SUCCESS_MATCH, "pid-2", LEVEL_2, null));
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-3")), eq("request-3"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenThrow(new SamlTransformationErrorException("Some other error.", Level.ERROR));
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-4")), eq("request-4"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenThrow(new IllegalStateException("Something unexpected."));
+
+        JSONArray results = postBatch(new JSONArray()
+            .put(aTranslateResponseRequest("saml-1", "request-1"))
+            .put(aTranslateResponseRequest("saml-2", "request-2"))
+            .put(aTranslateResponseRequest("saml-3", "request-3"))
+            .put(aTranslateResponseRequest("saml-4", "request-4")));
+
+        assertThat(results.getJSONObject(0).getInt("code")).isEqualTo(BAD_REQUEST.getStatusCode());
+        assertThat(results.getJSONObject(0).getString("message")).isEqualTo("Some error.");
+        assertThat(results.getJSONObject(1).getString("scenario")).isEqualTo(Scenario.SUCCESS_MATCH.name());
+        assertThat(results.getJSONObject(2).getInt("code")).isEqualTo(BAD_REQUEST.getStatusCode());
+        assertThat(results.getJSONObject(2).getString("message")).isEqualTo("Some other error.");
+        assertThat(results.getJSONObject(3).getInt("code")).isEqualTo(INTERNAL_SERVER_ERROR.getStatusCode());
+    }
+
+    @Test
+    public void shouldRecordTheTenantMetricsForEachItem() throws Exception {
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-1")), eq("request-1"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenReturn(new TranslatedResponseBody(Scenario.SUCCESS_MATCH, "pid-1", LEVEL_2, null));
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-2")), eq("request-2"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenThrow(new SamlResponseValidationException("Some error."));
+        String successMetricName = MetricRegistry.name(TenantRequestMetrics.class, defaultEntityId, "translations", LEVEL_2.name(), Scenario.SUCCESS_MATCH.name());
+        String errorMetricName = MetricRegistry.name(TenantRequestMetrics.class, defaultEntityId, "translations", LEVEL_2.name(), "ERROR");
+        long successesBefore = metricRegistry.counter(successMetricName).getCount();
+        long errorsBefore = metricRegistry.counter(errorMetricName).getCount();
+
+        postBatch(new JSONArray()
+            .put(aTranslateResponseRequest("saml-1", "request-1"))
+            .put(aTranslateResponseRequest("saml-2", "request-2")));
+
+        assertThat(metricRegistry.counter(successMetricName).getCount()).isEqualTo(successesBefore + 1);
+        assertThat(metricRegistry.counter(errorMetricName).getCount()).isEqualTo(errorsBefore + 1);
+    }
+
+    @Test
+    public void shouldRejectTheBatchWhenTheQueueIsFull() throws Exception {
+        doThrow(new RejectedExecutionException()).when(fullExecutorService).execute(any(Runnable.class));
+
+        Response response = fullResources.client()
+            .target("/translate-responses")
+            .request()
+            .post(json(new JSONArray().put(aTranslateResponseRequest("saml-1", "request-1")).toString()));
+
+        assertThat(response.getStatus()).isEqualTo(SERVICE_UNAVAILABLE.getStatusCode());
+        assertThat(response.getHeaderString(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+        verify(responseService, never()).convertTranslatedResponseBody(any(), any(), any(), any());
+    }
+
+    @Test
+    public void shouldReturnAnErrorForAnInvalidItem() throws Exception {
+        when(responseService.convertTranslatedResponseBody(eq(SamlResponseContent.fromBase64("saml-2")), eq("request-2"), eq(LEVEL_2), eq(defaultEntityId)))
+            .thenReturn(new TranslatedResponseBody(Scenario.SUCCESS_MATCH, "pid-2", LEVEL_2, null));
+
+        JSONArray results = postBatch(new JSONArray()
+            .put(new JSONObject().put("samlResponse", "saml-1"))
+            .put(aTranslateResponseRequest("saml-2", "request-2")));
+
+        assertThat(results.getJSONObject(0).getInt("code")).isEqualTo(HttpStatus.SC_UNPROCESSABLE_ENTITY);
+        assertThat(results.getJSONObject(0).getString("message")).isEqualTo("levelOfAssurance may not be null, requestId may not be null");
+        assertThat(results.getJSONObject(1).getString("scenario")).isEqualTo(Scenario.SUCCESS_MATCH.name());
+    }
+
+    @Test
+    public void shouldReturn422WhenTheBatchIsTooLarge() throws Exception {
+        JSONArray batch = new JSONArray();
+        for (int i = 0; i <= TranslateSamlResponsesResource.MAX_BATCH_SIZE; i++) {
+            batch.put(aTranslateResponseRequest("saml", "request"));
+        }
+
+        Response response = resources.client()
+            .target("/translate-responses")
+            .request()
+            .post(json(batch.toString()));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.SC_UNPROCESSABLE_ENTITY);
+    }
+
+    private JSONArray postBatch(JSONArray batch) {
+        Response response = resources.client()
+            .target("/translate-responses")
+            .request()
+            .post(json(batch.toString()));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        return new JSONArray(response.readEntity(String.class));
+    }
+
+    private JSONObject aTranslateResponseRequest(String samlResponse, String requestId) {
+        return new JSONObject()
+            .put("samlResponse", samlResponse)
+            .put("requestId", requestId)
+            .put("levelOfAssurance", LEVEL_2.name());
+    }
+}
@@ -0,0 +1,91 @@
+package unit.uk.gov.ida.verifyserviceprovider.saml;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.security.credential.BasicCredential;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.crypto.KeySupport;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCriterion;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.impl.KeyInfoBuilder;
+import uk.gov.ida.common.shared.security.PrivateKeyFactory;
+import uk.gov.ida.common.shared.security.X509CertificateFactory;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.verifyserviceprovider.saml.DigestIndexedCredentialResolver;
+
+import java.security.PrivateKey;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.HUB_TEST_PRIVATE_ENCRYPTION_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.HUB_TEST_PUBLIC_ENCRYPTION_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PRIVATE_ENCRYPTION_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PUBLIC_ENCRYPTION_CERT;
+
+public class DigestIndexedCredentialResolverTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private Credential primaryCredential;
+    private Credential secondaryCredential;
+    private DigestIndexedCredentialResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        IdaSamlBootstrap.bootstrap();
+        primaryCredential = createCredential(TEST_RP_PRIVATE_ENCRYPTION_KEY);
+        secondaryCredential = createCredential(HUB_TEST_PRIVATE_ENCRYPTION_KEY);
+        resolver = new DigestIndexedCredentialResolver(asList(primaryCredential, secondaryCredential), metricRegistry);
+    }
+
+    @Test
+    public void shouldSelectTheCredentialForTheCertificateInTheKeyInfo() throws Exception {
+        Iterable<Credential> resolved = resolver.resolve(criteriaWithCertificate(HUB_TEST_PUBLIC_ENCRYPTION_CERT));
+
+        assertThat(resolved).containsExactly(secondaryCredential);
+        assertThat(selectedMeters()).hasSize(2);
+        assertThat(selectedMeters().values()).extracting(Meter::getCount).containsExactlyInAnyOrder(0L, 1L);
+    }
+
+    @Test
+    public void shouldTryEveryCredentialWhenThereIsNoKeyInfo() {
+        Iterable<Credential> resolved = resolver.resolve(new CriteriaSet(new KeyInfoCriterion(null)));
+
+        assertThat(resolved).containsExactly(primaryCredential, secondaryCredential);
+        assertThat(metricRegistry.meter(metricName("noHint")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTryEveryCredentialWhenTheKeyInfoDoesNotMatchAny() throws Exception {
+        resolver = new DigestIndexedCredentialResolver(asList(secondaryCredential), metricRegistry);
+
+        Iterable<Credential> resolved = resolver.resolve(criteriaWithCertificate(TEST_RP_PUBLIC_ENCRYPTION_CERT));
+
+        assertThat(resolved).containsExactly(secondaryCredential);
+        assertThat(metricRegistry.meter(metricName("unmatchedHint")).getCount()).isEqualTo(1);
+    }
+
+    private CriteriaSet criteriaWithCertificate(String certificate) throws Exception {
+        KeyInfo keyInfo = new KeyInfoBuilder().buildObject();
+        KeyInfoSupport.addCertificate(keyInfo, new X509CertificateFactory().createCertificate(certificate));
+        return new CriteriaSet(new KeyInfoCriterion(keyInfo));
+    }
+
+    private Map<String, Meter> selectedMeters() {
+        return metricRegistry.getMeters((name, metric) -> name.startsWith(metricName("selected")));
+    }
+
+    private static Credential createCredential(String key) throws Exception {
+        PrivateKey privateKey = new PrivateKeyFactory().createPrivateKey(Base64.decodeBase64(key));
+        return new BasicCredential(KeySupport.derivePublicKey(privateKey), privateKey);
+    }
+
+    private static String metricName(String name) {
+        return MetricRegistry.name(DigestIndexedCredentialResolver.class, name);
+    }
+}
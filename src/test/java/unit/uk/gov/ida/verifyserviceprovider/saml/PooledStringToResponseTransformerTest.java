@@ -0,0 +1,102 @@
+package unit.uk.gov.ida.verifyserviceprovider.saml;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.saml2.core.Response;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.saml.core.validation.SamlTransformationErrorException;
+import uk.gov.ida.saml.deserializers.validators.Base64StringDecoder;
+import uk.gov.ida.saml.deserializers.validators.NotNullSamlStringValidator;
+import uk.gov.ida.saml.serializers.XmlObjectToBase64EncodedStringTransformer;
+import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.saml.PooledStringToResponseTransformer;
+import uk.gov.ida.verifyserviceprovider.saml.SamlResponseParser;
+import uk.gov.ida.verifyserviceprovider.utils.ObjectPool;
+import uk.gov.ida.verifyserviceprovider.validators.ResponseSizeValidator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.ida.saml.core.test.builders.ResponseBuilder.aResponse;
+
+public class PooledStringToResponseTransformerTest {
+
+    private static final int THREADS = 32;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private final XmlObjectToBase64EncodedStringTransformer<XMLObject> toBase64Transformer = new XmlObjectToBase64EncodedStringTransformer<>();
+    private PooledStringToResponseTransformer transformer;
+
+    @Before
+    public void setUp() {
+        IdaSamlBootstrap.bootstrap();
+        transformer = new PooledStringToResponseTransformer(
+            new NotNullSamlStringValidator(),
+            new Base64StringDecoder(),
+            new ResponseSizeValidator(),
+            new ObjectPool<>(SamlResponseParser::new, 2, 4)
+        );
+    }
+
+    @Test
+    public void shouldTransformResponsesConcurrently() throws Exception {
+        List<String> samlResponses = new ArrayList<>();
+        for (int i = 0; i < THREADS * 4; i++) {
+            samlResponses.add(toBase64Transformer.apply(aResponse().withId(String.format("response-%d", i)).build()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Response>> responses = new ArrayList<>();
+        for (String samlResponse : samlResponses) {
+            responses.add(executor.submit(() -> transformer.apply(samlResponse)));
+        }
+
+        for (int i = 0; i < responses.size(); i++) {
+            assertThat(responses.get(i).get().getID()).isEqualTo(String.format("response-%d", i));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldNotAllowNullSamlResponse() {
+        expectedException.expect(SamlTransformationErrorException.class);
+        expectedException.expectMessage("SAML Validation Specification: Missing SAML message.");
+        transformer.apply(null);
+    }
+
+    @Test
+    public void shouldNotAllowTooLongSamlMessages() {
+        String longString = String.join("", Collections.nCopies(50001, "a"));
+        expectedException.expect(SamlResponseValidationException.class);
+        expectedException.expectMessage("SAML Response is too long.");
+        transformer.apply(Base64.getEncoder().encodeToString(longString.getBytes()));
+    }
+
+    @Test
+    public void shouldNotAllowDoctypeDeclarations() {
+        String xml = "<?xml version=\"1.0\"?><!DOCTYPE foo [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>" +
+            "<saml2p:Response xmlns:saml2p=\"urn:oasis:names:tc:SAML:2.0:protocol\">&xxe;</saml2p:Response>";
+        expectedException.expect(SamlTransformationErrorException.class);
+        transformer.apply(Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void shouldNotAllowElementsOtherThanResponse() {
+        String xml = "<saml2p:AuthnRequest xmlns:saml2p=\"urn:oasis:names:tc:SAML:2.0:protocol\"/>";
+        expectedException.expect(SamlTransformationErrorException.class);
+        expectedException.expectMessage("Expected a SAML Response, but was AuthnRequest");
+        transformer.apply(Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,192 @@
+package unit.uk.gov.ida.verifyserviceprovider.saml;
+
+import com.google.common.collect.ImmutableList;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.criterion.EntityRoleCriterion;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.RefreshableMetadataResolver;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.CredentialResolver;
+import org.opensaml.xmlsec.config.DefaultSecurityConfigurationBootstrap;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.saml.core.test.TestCredentialFactory;
+import uk.gov.ida.saml.core.test.TestEntityIds;
+import uk.gov.ida.saml.core.validation.SamlTransformationErrorException;
+import uk.gov.ida.saml.security.MetadataBackedSignatureValidator;
+import uk.gov.ida.saml.security.SamlMessageSignatureValidator;
+import uk.gov.ida.saml.security.validators.signature.SamlResponseSignatureValidator;
+import uk.gov.ida.verifyserviceprovider.metadata.SnapshotBackedMetadataResolver;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshotResolver;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshotTrustEngine;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_MS_PRIVATE_SIGNING_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_MS_PUBLIC_SIGNING_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PRIVATE_SIGNING_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PUBLIC_SIGNING_CERT;
+import static uk.gov.ida.saml.core.test.builders.IssuerBuilder.anIssuer;
+import static uk.gov.ida.saml.core.test.builders.ResponseBuilder.aResponse;
+import static uk.gov.ida.saml.core.test.builders.metadata.EntityDescriptorBuilder.anEntityDescriptor;
+import static uk.gov.ida.saml.core.test.builders.metadata.KeyDescriptorBuilder.aKeyDescriptor;
+import static uk.gov.ida.saml.core.test.builders.metadata.SPSSODescriptorBuilder.anSpServiceDescriptor;
+
+public class SigningCredentialSnapshotTrustEngineTest {
+
+    private static final String HUB_ENTITY_ID = TestEntityIds.HUB_ENTITY_ID;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private RefreshableMetadataResolver metadataResolver;
+    private CredentialResolver fallbackCredentialResolver;
+    private SigningCredentialSnapshotResolver credentialResolver;
+    private SamlResponseSignatureValidator responseSignatureValidator;
+    private Credential hubSigningCredential;
+    private Credential otherSigningCredential;
+
+    @Before
+    public void setUp() throws Exception {
+        IdaSamlBootstrap.bootstrap();
+        hubSigningCredential = new TestCredentialFactory(TEST_RP_PUBLIC_SIGNING_CERT, TEST_RP_PRIVATE_SIGNING_KEY).getSigningCredential();
+        otherSigningCredential = new TestCredentialFactory(TEST_RP_MS_PUBLIC_SIGNING_CERT, TEST_RP_MS_PRIVATE_SIGNING_KEY).getSigningCredential();
+
+        metadataResolver = mock(RefreshableMetadataResolver.class);
+        fallbackCredentialResolver = mock(CredentialResolver.class);
+        credentialResolver = new SigningCredentialSnapshotResolver(
+            metadataResolver,
+            singletonList(HUB_ENTITY_ID),
+            DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver(),
+            fallbackCredentialResolver
+        );
+        responseSignatureValidator = new SamlResponseSignatureValidator(new SamlMessageSignatureValidator(
+            MetadataBackedSignatureValidator.withoutCertificateChainValidation(new SigningCredentialSnapshotTrustEngine(credentialResolver))
+        ));
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void shouldValidateSignaturesWithoutResolvingMetadataEachTime() throws Exception {
+        when(metadataResolver.getLastUpdate()).thenReturn(DateTime.parse("2018-01-01T12:00:00Z"));
+        when(metadataResolver.resolveSingle(any())).thenReturn(aHubEntityDescriptor(TEST_RP_PUBLIC_SIGNING_CERT));
+
+        responseSignatureValidator.validate(aResponseSignedWith(hubSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+        responseSignatureValidator.validate(aResponseSignedWith(hubSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+
+        verify(metadataResolver, times(1)).resolveSingle(any());
+        verifyZeroInteractions(fallbackCredentialResolver);
+    }
+
+    @Test
+    public void shouldRejectASignatureFromAKeyWhichIsNotInTheMetadata() throws Exception {
+        when(metadataResolver.getLastUpdate()).thenReturn(DateTime.parse("2018-01-01T12:00:00Z"));
+        when(metadataResolver.resolveSingle(any())).thenReturn(aHubEntityDescriptor(TEST_RP_PUBLIC_SIGNING_CERT));
+
+        expectedException.expect(SamlTransformationErrorException.class);
+
+        responseSignatureValidator.validate(aResponseSignedWith(otherSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+    }
+
+    @Test
+    public void shouldRebuildTheSnapshotWhenTheMetadataIsUpdated() throws Exception {
+        when(metadataResolver.getLastUpdate()).thenReturn(DateTime.parse("2018-01-01T12:00:00Z"));
+        when(metadataResolver.resolveSingle(any())).thenReturn(aHubEntityDescriptor(TEST_RP_PUBLIC_SIGNING_CERT));
+        responseSignatureValidator.validate(aResponseSignedWith(hubSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+
+        when(metadataResolver.getLastUpdate()).thenReturn(DateTime.parse("2018-01-01T13:00:00Z"));
+        when(metadataResolver.resolveSingle(any())).thenReturn(aHubEntityDescriptor(TEST_RP_MS_PUBLIC_SIGNING_CERT));
+        responseSignatureValidator.validate(aResponseSignedWith(otherSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+
+        verify(metadataResolver, times(2)).resolveSingle(any());
+    }
+
+    @Test
+    public void shouldRejectSignaturesOnceTheMetadataHasExpiredWithoutBeingRefreshed() throws Exception {
+        DateTime now = DateTime.parse("2018-01-01T12:00:00Z");
+        DateTimeUtils.setCurrentMillisFixed(now.getMillis());
+        EntityDescriptor entityDescriptor = aHubEntityDescriptor(TEST_RP_PUBLIC_SIGNING_CERT);
+        entityDescriptor.setValidUntil(now.plusHours(1));
+        when(metadataResolver.getLastUpdate()).thenReturn(now);
+        when(metadataResolver.resolveSingle(any())).thenReturn(entityDescriptor);
+        responseSignatureValidator.validate(aResponseSignedWith(hubSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+
+        DateTimeUtils.setCurrentMillisFixed(now.plusHours(2).getMillis());
+
+        expectedException.expect(SamlTransformationErrorException.class);
+
+        responseSignatureValidator.validate(aResponseSignedWith(hubSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+    }
+
+    @Test
+    public void shouldUseTheKeysInTheLiveMetadataOnceItReplacesTheSnapshot() throws Exception {
+        MetadataResolver snapshotMetadataResolver = mock(MetadataResolver.class);
+        when(snapshotMetadataResolver.resolveSingle(any())).thenReturn(aHubEntityDescriptor(TEST_RP_PUBLIC_SIGNING_CERT));
+        when(metadataResolver.getLastUpdate()).thenReturn(DateTime.parse("2018-01-01T12:00:00Z"));
+        SamlResponseSignatureValidator snapshotBackedSignatureValidator = new SamlResponseSignatureValidator(new SamlMessageSignatureValidator(
+            MetadataBackedSignatureValidator.withoutCertificateChainValidation(new SigningCredentialSnapshotTrustEngine(new SigningCredentialSnapshotResolver(
+                new SnapshotBackedMetadataResolver(metadataResolver, snapshotMetadataResolver, HUB_ENTITY_ID),
+                singletonList(HUB_ENTITY_ID),
+                DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver(),
+                fallbackCredentialResolver
+            )))
+        ));
+        snapshotBackedSignatureValidator.validate(aResponseSignedWith(hubSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+
+        when(metadataResolver.resolveSingle(any())).thenReturn(aHubEntityDescriptor(TEST_RP_MS_PUBLIC_SIGNING_CERT));
+        snapshotBackedSignatureValidator.validate(aResponseSignedWith(otherSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+
+        expectedException.expect(SamlTransformationErrorException.class);
+
+        snapshotBackedSignatureValidator.validate(aResponseSignedWith(hubSigningCredential), SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+    }
+
+    @Test
+    public void shouldUseTheFallbackResolverForOtherEntities() throws Exception {
+        CriteriaSet criteria = new CriteriaSet(new EntityIdCriterion("http://some-other-entity"), new EntityRoleCriterion(SPSSODescriptor.DEFAULT_ELEMENT_NAME));
+        when(fallbackCredentialResolver.resolve(criteria)).thenReturn(ImmutableList.of(otherSigningCredential));
+
+        assertThat(credentialResolver.resolve(criteria)).containsExactly(otherSigningCredential);
+        verifyZeroInteractions(metadataResolver);
+    }
+
+    private static EntityDescriptor aHubEntityDescriptor(String signingCertificate) throws Exception {
+        return anEntityDescriptor()
+            .withEntityId(HUB_ENTITY_ID)
+            .addSpServiceDescriptor(anSpServiceDescriptor()
+                .withoutDefaultSigningKey()
+                .addKeyDescriptor(aKeyDescriptor().withX509ForSigning(signingCertificate).build())
+                .build())
+            .build();
+    }
+
+    private static Response aResponseSignedWith(Credential signingCredential) throws Exception {
+        Issuer issuer = anIssuer().build();
+        issuer.setValue(HUB_ENTITY_ID);
+        return aResponse()
+            .withIssuer(issuer)
+            .withSigningCredential(signingCredential)
+            .build();
+    }
+}
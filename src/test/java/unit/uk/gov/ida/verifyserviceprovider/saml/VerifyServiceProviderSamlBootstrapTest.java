@@ -0,0 +1,142 @@
+package unit.uk.gov.ida.verifyserviceprovider.saml;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import uk.gov.ida.saml.core.extensions.versioning.Version;
+import uk.gov.ida.saml.core.extensions.versioning.VersionImpl;
+import uk.gov.ida.saml.core.extensions.versioning.application.ApplicationVersion;
+import uk.gov.ida.saml.core.extensions.versioning.application.ApplicationVersionImpl;
+import uk.gov.ida.saml.core.test.builders.AddressAttributeBuilder_1_1;
+import uk.gov.ida.saml.core.test.builders.AddressAttributeValueBuilder_1_1;
+import uk.gov.ida.saml.core.test.builders.SimpleStringAttributeBuilder;
+import uk.gov.ida.verifyserviceprovider.dto.Attributes;
+import uk.gov.ida.verifyserviceprovider.saml.VerifyServiceProviderSamlBootstrap;
+import uk.gov.ida.verifyserviceprovider.services.AttributeTranslationService;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static common.uk.gov.ida.verifyserviceprovider.utils.SamlResponseHelper.createVerifiedAttribute;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.ida.saml.core.test.builders.AttributeStatementBuilder.anAttributeStatement;
+
+/**
+ * Each check runs in a class loader of its own, so that OpenSAML's configuration is set up by
+ * {@link VerifyServiceProviderSamlBootstrap} alone, whichever tests have bootstrapped it before.
+ */
+public class VerifyServiceProviderSamlBootstrapTest {
+
+    @Test
+    public void shouldResolveEveryObjectTheVerifyServiceProviderUses() throws Exception {
+        runInOwnClassLoader(ResolvesRequiredObjects.class);
+    }
+
+    @Test
+    public void shouldNotLoadProvidersTheVerifyServiceProviderDoesNotUse() throws Exception {
+        runInOwnClassLoader(LeavesOutUnusedProviders.class);
+    }
+
+    @Test
+    public void shouldRoundTripTheIdaAttributeValues() throws Exception {
+        runInOwnClassLoader(RoundTripsIdaAttributeValues.class);
+    }
+
+    @Test
+    public void shouldRoundTripTheVersionsExtension() throws Exception {
+        runInOwnClassLoader(RoundTripsVersionsExtension.class);
+    }
+
+    public static class ResolvesRequiredObjects implements Runnable {
+        @Override
+        public void run() {
+            VerifyServiceProviderSamlBootstrap.bootstrap();
+
+            assertThat(VerifyServiceProviderSamlBootstrap.unresolved()).isEmpty();
+            assertThat(XMLObjectProviderRegistrySupport.getParserPool()).isNotNull();
+        }
+    }
+
+    public static class LeavesOutUnusedProviders implements Runnable {
+        @Override
+        public void run() {
+            VerifyServiceProviderSamlBootstrap.bootstrap();
+
+            assertThat(XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(org.opensaml.saml.saml1.core.Assertion.DEFAULT_ELEMENT_NAME)).isNull();
+            assertThat(XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(org.opensaml.saml.ext.saml2mdui.UIInfo.DEFAULT_ELEMENT_NAME)).isNull();
+        }
+    }
+
+    public static class RoundTripsIdaAttributeValues implements Runnable {
+        @Override
+        public void run() {
+            VerifyServiceProviderSamlBootstrap.bootstrap();
+
+            Attribute addressAttribute = new AddressAttributeBuilder_1_1()
+                .addAddress(new AddressAttributeValueBuilder_1_1()
+                    .addLines(Arrays.asList("10 Whitechapel High St", "London"))
+                    .withPostcode("E1 8DX")
+                    .withFrom(DateTime.parse("2017-07-03"))
+                    .build())
+                .buildCurrentAddress();
+            addressAttribute.setName("currentaddress");
+            AttributeStatement attributeStatement = anAttributeStatement()
+                .addAttribute(new SimpleStringAttributeBuilder().withName("firstname").withSimpleStringValue("Joe").build())
+                .addAttribute(createVerifiedAttribute("firstname_verified", true))
+                .addAttribute(new SimpleStringAttributeBuilder().withName("dateofbirth").withSimpleStringValue("1977-07-21").build())
+                .addAttribute(createVerifiedAttribute("dateofbirth_verified", false))
+                .addAttribute(addressAttribute)
+                .addAttribute(createVerifiedAttribute("currentaddress_verified", true))
+                .build();
+
+            Attributes attributes = AttributeTranslationService.translateAttributes(cloneXMLObject(attributeStatement));
+
+            assertThat(attributes.getFirstName().getValue()).isEqualTo("Joe");
+            assertThat(attributes.getFirstName().isVerified()).isTrue();
+            assertThat(attributes.getDateOfBirth().getValue()).isEqualTo(LocalDate.of(1977, 7, 21));
+            assertThat(attributes.getDateOfBirth().isVerified()).isFalse();
+            assertThat(attributes.getAddress().getValue().getPostCode()).isEqualTo("E1 8DX");
+            assertThat(attributes.getAddress().getValue().getLines()).containsExactly("10 Whitechapel High St", "London");
+        }
+    }
+
+    public static class RoundTripsVersionsExtension implements Runnable {
+        @Override
+        public void run() {
+            VerifyServiceProviderSamlBootstrap.bootstrap();
+
+            ApplicationVersion applicationVersion = new ApplicationVersionImpl();
+            applicationVersion.setValue("1.0.0");
+            VersionImpl version = new VersionImpl();
+            version.setApplicationVersion(applicationVersion);
+
+            assertThat(cloneXMLObject(version)).isInstanceOf(Version.class);
+        }
+    }
+
+    private static <T extends XMLObject> T cloneXMLObject(T xmlObject) {
+        try {
+            return XMLObjectSupport.cloneXMLObject(xmlObject);
+        } catch (Exception e) {
+            throw new AssertionError("Unable to marshall and unmarshall " + xmlObject.getElementQName(), e);
+        }
+    }
+
+    private static void runInOwnClassLoader(Class<? extends Runnable> check) throws Exception {
+        URL[] classpath = ((URLClassLoader) VerifyServiceProviderSamlBootstrapTest.class.getClassLoader()).getURLs();
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(classpath, ClassLoader.getSystemClassLoader().getParent())) {
+            thread.setContextClassLoader(classLoader);
+            ((Runnable) classLoader.loadClass(check.getName()).newInstance()).run();
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package unit.uk.gov.ida.verifyserviceprovider.services;
+
+import com.codahale.metrics.MetricRegistry;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.impl.AuthnRequestBuilder;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.verifyserviceprovider.configuration.PregeneratedRequestsConfiguration;
+import uk.gov.ida.verifyserviceprovider.dto.RequestResponseBody;
+import uk.gov.ida.verifyserviceprovider.factories.saml.AuthnRequestFactory;
+import uk.gov.ida.verifyserviceprovider.services.PregeneratedAuthnRequests;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PregeneratedAuthnRequestsTest {
+
+    private static final URI SSO_LOCATION = URI.create("http://example.com/SAML2/SSO");
+    private static final String ENTITY_ID = "http://entity-id";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AuthnRequestFactory authnRequestFactory = mock(AuthnRequestFactory.class);
+    private PregeneratedAuthnRequests pregeneratedAuthnRequests;
+
+    @Before
+    public void setUp() {
+        IdaSamlBootstrap.bootstrap();
+        when(authnRequestFactory.build(any(), any())).thenAnswer(invocation -> anAuthnRequest(DateTime.now()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pregeneratedAuthnRequests != null) {
+            pregeneratedAuthnRequests.stop();
+        }
+    }
+
+    @Test
+    public void shouldNeverHaveARequestReadyWhenDisabled() {
+        pregeneratedAuthnRequests = create(new PregeneratedRequestsConfiguration(false, 2, null, null));
+
+        pregeneratedAuthnRequests.refill();
+
+        assertThat(pregeneratedAuthnRequests.take(ENTITY_ID)).isEmpty();
+        verify(authnRequestFactory, never()).build(any(), any());
+    }
+
+    @Test
+    public void shouldFillOneQueueForEachEntityId() {
+        pregeneratedAuthnRequests = create(new PregeneratedRequestsConfiguration(true, 2, null, null));
+
+        pregeneratedAuthnRequests.refill();
+
+        verify(authnRequestFactory, times(2)).build(any(), eq(ENTITY_ID));
+        assertThat(metricRegistry.getGauges().get(metricName("ready")).getValue()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldTakeReadyRequestsUntilTheQueueIsEmpty() {
+        pregeneratedAuthnRequests = create(new PregeneratedRequestsConfiguration(true, 2, null, null));
+        pregeneratedAuthnRequests.refill();
+
+        Optional<RequestResponseBody> first = pregeneratedAuthnRequests.take(ENTITY_ID);
+        Optional<RequestResponseBody> second = pregeneratedAuthnRequests.take(ENTITY_ID);
+        Optional<RequestResponseBody> third = pregeneratedAuthnRequests.take(ENTITY_ID);
+
+        assertThat(first).isPresent();
+        assertThat(first.get().getSamlRequest()).isNotEmpty();
+        assertThat(first.get().getSsoLocation()).isEqualTo(SSO_LOCATION);
+        assertThat(second).isPresent();
+        assertThat(second.get().getRequestId()).isNotEqualTo(first.get().getRequestId());
+        assertThat(third).isEmpty();
+        assertThat(metricRegistry.meter(metricName("hits")).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.meter(metricName("misses")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotTakeRequestsForAnUnknownEntityId() {
+        pregeneratedAuthnRequests = create(new PregeneratedRequestsConfiguration(true, 2, null, null));
+        pregeneratedAuthnRequests.refill();
+
+        assertThat(pregeneratedAuthnRequests.take("http://some-other-entity-id")).isEmpty();
+    }
+
+    @Test
+    public void shouldDiscardRequestsOlderThanTheMaxAge() {
+        when(authnRequestFactory.build(any(), eq(ENTITY_ID))).thenAnswer(invocation -> anAuthnRequest(DateTime.now().minusMinutes(2)));
+        pregeneratedAuthnRequests = create(new PregeneratedRequestsConfiguration(true, 2, Duration.standardMinutes(1), null));
+        pregeneratedAuthnRequests.refill();
+
+        assertThat(pregeneratedAuthnRequests.take(ENTITY_ID)).isEmpty();
+        assertThat(metricRegistry.meter(metricName("staleDiscards")).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRefillInTheBackgroundOnceStarted() {
+        pregeneratedAuthnRequests = create(new PregeneratedRequestsConfiguration(true, 2, null, null));
+
+        pregeneratedAuthnRequests.start();
+
+        verify(authnRequestFactory, timeout(5000).times(2)).build(any(), eq(ENTITY_ID));
+    }
+
+    @Test
+    public void shouldValidateTheMaxAgeIsWithinTheHubTolerance() {
+        assertThat(new PregeneratedRequestsConfiguration(true, null, Duration.standardMinutes(4), null).isMaxAgeWithinHubTolerance()).isTrue();
+        assertThat(new PregeneratedRequestsConfiguration(true, null, Duration.standardMinutes(5), null).isMaxAgeWithinHubTolerance()).isFalse();
+        assertThat(new PregeneratedRequestsConfiguration(true, null, Duration.millis(10), null).isMaxAgeWithinHubTolerance()).isFalse();
+    }
+
+    private PregeneratedAuthnRequests create(PregeneratedRequestsConfiguration configuration) {
+        return PregeneratedAuthnRequests.create(configuration, authnRequestFactory, SSO_LOCATION, singletonList(ENTITY_ID), metricRegistry);
+    }
+
+    private static AuthnRequest anAuthnRequest(DateTime issueInstant) {
+        AuthnRequest authnRequest = new AuthnRequestBuilder().buildObject();
+        authnRequest.setID("_" + UUID.randomUUID());
+        authnRequest.setIssueInstant(issueInstant);
+        return authnRequest;
+    }
+
+    private static String metricName(String name) {
+        return MetricRegistry.name(PregeneratedAuthnRequests.class, name);
+    }
+}
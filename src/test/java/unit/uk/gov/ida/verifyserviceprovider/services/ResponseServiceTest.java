@@ -1,7 +1,7 @@
 package unit.uk.gov.ida.verifyserviceprovider.services;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
-import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
 import org.junit.Before;
@@ -11,6 +11,7 @@ import org.junit.rules.ExpectedException;
 import org.opensaml.core.xml.XMLObject;
 import org.opensaml.core.xml.io.MarshallingException;
 import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.saml2.core.Issuer;
 import org.opensaml.saml.saml2.core.Response;
 import org.opensaml.saml.saml2.core.Status;
 import org.opensaml.saml.saml2.core.StatusCode;
@@ -32,10 +33,13 @@ import uk.gov.ida.saml.core.validation.SamlTransformationErrorException;
 import uk.gov.ida.saml.metadata.factories.MetadataSignatureTrustEngineFactory;
 import uk.gov.ida.saml.security.SamlAssertionsSignatureValidator;
 import uk.gov.ida.saml.serializers.XmlObjectToBase64EncodedStringTransformer;
+import uk.gov.ida.verifyserviceprovider.configuration.SamlPoolConfiguration;
 import uk.gov.ida.verifyserviceprovider.dto.LevelOfAssurance;
 import uk.gov.ida.verifyserviceprovider.dto.TranslatedResponseBody;
 import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
 import uk.gov.ida.verifyserviceprovider.factories.saml.ResponseFactory;
+import uk.gov.ida.verifyserviceprovider.metrics.TranslateResponseMetrics;
+import uk.gov.ida.verifyserviceprovider.replay.InMemoryReplayCache;
 import uk.gov.ida.verifyserviceprovider.services.AssertionTranslator;
 import uk.gov.ida.verifyserviceprovider.services.ResponseService;
 import uk.gov.ida.verifyserviceprovider.utils.DateTimeComparator;
@@ -46,7 +50,6 @@ import uk.gov.ida.verifyserviceprovider.validators.InstantValidator;
 import uk.gov.ida.verifyserviceprovider.validators.SubjectValidator;
 import uk.gov.ida.verifyserviceprovider.validators.TimeRestrictionValidator;
 
-import java.security.KeyException;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.util.List;
@@ -54,8 +57,11 @@ import java.util.List;
 import static common.uk.gov.ida.verifyserviceprovider.utils.SamlResponseHelper.createVerifiedAttribute;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_PUBLIC_CERT;
 import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PRIVATE_ENCRYPTION_KEY;
@@ -69,6 +75,7 @@ import static uk.gov.ida.saml.core.test.builders.AuthnContextBuilder.anAuthnCont
 import static uk.gov.ida.saml.core.test.builders.AuthnContextClassRefBuilder.anAuthnContextClassRef;
 import static uk.gov.ida.saml.core.test.builders.AuthnStatementBuilder.anAuthnStatement;
 import static uk.gov.ida.saml.core.test.builders.ConditionsBuilder.aConditions;
+import static uk.gov.ida.saml.core.test.builders.IssuerBuilder.anIssuer;
 import static uk.gov.ida.saml.core.test.builders.NameIdBuilder.aNameId;
 import static uk.gov.ida.saml.core.test.builders.ResponseBuilder.aResponse;
 import static uk.gov.ida.saml.core.test.builders.StatusBuilder.aStatus;
@@ -98,9 +105,12 @@ public class ResponseServiceTest {
     public ExpectedException expectedException = ExpectedException.none();
     private TestCredentialFactory encryptionCredentialFactory;
     private Credential testRpSigningCredential;
+    private MetricRegistry metricRegistry;
+    private String hubEntityId;
 
     @Before
-    public void setUp() throws ComponentInitializationException, KeyException {
+    public void setUp() throws Exception {
+        IdaSamlBootstrap.bootstrap();
         // Note: the private key and the encrypting credential need to be from the same keypair
         PrivateKey privateKey = new PrivateKeyStoreFactory().create(TestEntityIds.TEST_RP).getEncryptionPrivateKeys().get(0);
         KeyPair keyPair = new KeyPair(KeySupport.derivePublicKey(privateKey), privateKey);
@@ -110,7 +120,9 @@ public class ResponseServiceTest {
 
         hubMetadataResolver = mock(MetadataResolver.class);
 
-        ResponseFactory responseFactory = new ResponseFactory(keyPairs);
+        metricRegistry = new MetricRegistry();
+        hubEntityId = aResponse().withoutSigning().build().getIssuer().getValue();
+        ResponseFactory responseFactory = new ResponseFactory(keyPairs, metricRegistry, new SamlPoolConfiguration(null, null));
         DateTimeComparator dateTimeComparator = new DateTimeComparator(Duration.standardSeconds(5));
         TimeRestrictionValidator timeRestrictionValidator = new TimeRestrictionValidator(dateTimeComparator);
 
@@ -119,14 +131,16 @@ public class ResponseServiceTest {
         SubjectValidator subjectValidator = new SubjectValidator(timeRestrictionValidator);
         ConditionsValidator conditionsValidator = new ConditionsValidator(timeRestrictionValidator, new AudienceRestrictionValidator());
         AssertionValidator assertionValidator = new AssertionValidator(instantValidator, subjectValidator, conditionsValidator);
-        AssertionTranslator assertionTranslator = new AssertionTranslator(samlAssertionsSignatureValidator, assertionValidator);
+        AssertionTranslator assertionTranslator = new AssertionTranslator(samlAssertionsSignatureValidator, assertionValidator, new TranslateResponseMetrics(new MetricRegistry()));
 
         ExplicitKeySignatureTrustEngine signatureTrustEngine = new MetadataSignatureTrustEngineFactory().createSignatureTrustEngine(hubMetadataResolver);
 
         responseService = responseFactory.createResponseService(
             signatureTrustEngine,
+            hubEntityId,
             assertionTranslator,
-            dateTimeComparator
+            dateTimeComparator,
+            new InMemoryReplayCache(100)
         );
     }
 
@@ -160,6 +174,25 @@ public class ResponseServiceTest {
         ));
     }
 
+    @Test
+    public void shouldFailValidationWhenResponseIsReplayed() throws Exception {
+        EntityDescriptor entityDescriptor = createEntityDescriptorWithSigningCertificate(TEST_RP_PUBLIC_SIGNING_CERT);
+        when(hubMetadataResolver.resolve(any())).thenReturn(ImmutableList.of(entityDescriptor));
+
+        Status successStatus = aStatus().
+            withStatusCode(aStatusCode().withValue(StatusCode.SUCCESS).build())
+            .build();
+        Response response = signResponse(createNoAttributeResponseBuilder(successStatus), testRpSigningCredential);
+        String samlResponse = responseToBase64StringTransformer.apply(response);
+
+        responseService.convertTranslatedResponseBody(samlResponse, response.getInResponseTo(), LevelOfAssurance.LEVEL_2, VERIFY_SERVICE_PROVIDER_ENTITY_ID);
+
+        expectedException.expect(SamlResponseValidationException.class);
+        expectedException.expectMessage(String.format("Response %s has already been received", response.getID()));
+
+        responseService.convertTranslatedResponseBody(samlResponse, response.getInResponseTo(), LevelOfAssurance.LEVEL_2, VERIFY_SERVICE_PROVIDER_ENTITY_ID);
+    }
+
     @Test
     public void shouldHandleAccountCreationSaml() throws Exception {
         EntityDescriptor entityDescriptor = createEntityDescriptorWithSigningCertificate(TEST_RP_PUBLIC_SIGNING_CERT);
@@ -427,6 +460,65 @@ public class ResponseServiceTest {
         );
     }
 
+    @Test
+    public void shouldRejectAStaleResponseBeforeValidatingItsSignature() throws Exception {
+        ResponseBuilder responseBuilder = aResponse().withIssueInstant(DateTime.now().minusMinutes(10));
+        Response response = signResponse(responseBuilder, testRpSigningCredential);
+
+        try {
+            responseService.convertTranslatedResponseBody(
+                responseToBase64StringTransformer.apply(response),
+                response.getInResponseTo(),
+                LevelOfAssurance.LEVEL_2,
+                VERIFY_SERVICE_PROVIDER_ENTITY_ID
+            );
+            fail("Expected a stale Response to be rejected");
+        } catch (SamlResponseValidationException e) {
+            assertThat(e.getMessage()).startsWith("Response IssueInstant is too far in the past ");
+        }
+
+        verify(hubMetadataResolver, never()).resolve(any());
+        assertThat(metricRegistry.counter("uk.gov.ida.verifyserviceprovider.validators.ResponsePreValidator.rejected.issueInstant").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRejectAResponseFromAnUnexpectedIssuerBeforeValidatingItsSignature() throws Exception {
+        expectedException.expect(SamlResponseValidationException.class);
+        expectedException.expectMessage(String.format("Expected Response Issuer to be %s, but was some-other-issuer", hubEntityId));
+
+        Status successStatus = aStatus().
+            withStatusCode(aStatusCode().withValue(StatusCode.SUCCESS).build())
+            .build();
+        Issuer issuer = anIssuer().build();
+        issuer.setValue("some-other-issuer");
+        Response response = signResponse(createNoAttributeResponseBuilder(successStatus).withIssuer(issuer), testRpSigningCredential);
+
+        responseService.convertTranslatedResponseBody(
+            responseToBase64StringTransformer.apply(response),
+            response.getInResponseTo(),
+            LevelOfAssurance.LEVEL_2,
+            VERIFY_SERVICE_PROVIDER_ENTITY_ID
+        );
+    }
+
+    @Test
+    public void shouldRejectAResponseWithAnInvalidId() throws Exception {
+        expectedException.expect(SamlResponseValidationException.class);
+        expectedException.expectMessage("Response ID is not a valid SAML ID");
+
+        Status successStatus = aStatus().
+            withStatusCode(aStatusCode().withValue(StatusCode.SUCCESS).build())
+            .build();
+        Response response = signResponse(createNoAttributeResponseBuilder(successStatus).withId("1 not an id"), testRpSigningCredential);
+
+        responseService.convertTranslatedResponseBody(
+            responseToBase64StringTransformer.apply(response),
+            response.getInResponseTo(),
+            LevelOfAssurance.LEVEL_2,
+            VERIFY_SERVICE_PROVIDER_ENTITY_ID
+        );
+    }
+
     private EntityDescriptor createEntityDescriptorWithSigningCertificate(String signingCert) throws MarshallingException, SignatureException {
         return anEntityDescriptor()
             .addSpServiceDescriptor(anSpServiceDescriptor()
@@ -0,0 +1,63 @@
+package unit.uk.gov.ida.verifyserviceprovider.services;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantLimitConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantLimitsConfiguration;
+import uk.gov.ida.verifyserviceprovider.services.TenantAdmission;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TenantAdmissionTest {
+
+    private static final String LIMITED_ENTITY_ID = "http://limited-entity-id";
+    private static final String DEFAULT_ENTITY_ID = "http://default-entity-id";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final TenantAdmission tenantAdmission = TenantAdmission.create(
+        new TenantLimitsConfiguration(
+            new TenantLimitConfiguration(null, null, 3),
+            ImmutableMap.of(LIMITED_ENTITY_ID, new TenantLimitConfiguration(0.1, 2, null))
+        ),
+        asList(LIMITED_ENTITY_ID, DEFAULT_ENTITY_ID),
+        metricRegistry
+    );
+
+    @Test
+    public void shouldRejectRequestsOnceTheBurstIsUsedUp() {
+        assertThat(tenantAdmission.tryAdmit(LIMITED_ENTITY_ID)).isTrue();
+        assertThat(tenantAdmission.tryAdmit(LIMITED_ENTITY_ID)).isTrue();
+        assertThat(tenantAdmission.tryAdmit(LIMITED_ENTITY_ID)).isFalse();
+
+        assertThat(metricRegistry.meter(MetricRegistry.name(TenantAdmission.class, LIMITED_ENTITY_ID, "rejected")).getCount()).isEqualTo(1);
+        assertThat(tenantAdmission.getRetryAfterSeconds(LIMITED_ENTITY_ID)).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldNotLimitOneTenantBecauseAnotherIsOverQuota() {
+        for (int i = 0; i < 3; i++) {
+            tenantAdmission.tryAdmit(LIMITED_ENTITY_ID);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(tenantAdmission.tryAdmit(DEFAULT_ENTITY_ID)).isTrue();
+        }
+    }
+
+    @Test
+    public void shouldUseTheDefaultWeightForEntityIdsWithoutTheirOwnLimit() {
+        assertThat(tenantAdmission.getWeight(LIMITED_ENTITY_ID)).isEqualTo(1);
+        assertThat(tenantAdmission.getWeight(DEFAULT_ENTITY_ID)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldAdmitEverythingWhenUnlimited() {
+        TenantAdmission unlimited = TenantAdmission.unlimited();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(unlimited.tryAdmit(LIMITED_ENTITY_ID)).isTrue();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package unit.uk.gov.ida.verifyserviceprovider.services;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+import uk.gov.ida.common.shared.security.PrivateKeyFactory;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantConfiguration;
+import uk.gov.ida.verifyserviceprovider.services.TenantRegistry;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.HUB_TEST_PRIVATE_ENCRYPTION_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PRIVATE_ENCRYPTION_KEY;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PRIVATE_SIGNING_KEY;
+
+public class TenantRegistryTest {
+
+    private static final String ENTITY_ID = "http://entity-id";
+    private static final String TENANT_ENTITY_ID = "http://tenant-entity-id";
+
+    private final PrivateKey signingKey = createPrivateKey(TEST_RP_PRIVATE_SIGNING_KEY);
+    private final PrivateKey encryptionKey = createPrivateKey(TEST_RP_PRIVATE_ENCRYPTION_KEY);
+    private final PrivateKey tenantKey = createPrivateKey(HUB_TEST_PRIVATE_ENCRYPTION_KEY);
+
+    @Test
+    public void shouldListServiceEntityIdsBeforeThoseInTheTenantsFile() throws Exception {
+        TenantRegistry tenantRegistry = create(asList(
+            new TenantConfiguration(TENANT_ENTITY_ID, null, null, null),
+            new TenantConfiguration(ENTITY_ID, null, null, null)
+        ));
+
+        assertThat(tenantRegistry.getEntityIds()).containsExactly(ENTITY_ID, TENANT_ENTITY_ID);
+        assertThat(tenantRegistry.getTenant(TENANT_ENTITY_ID)).isPresent();
+        assertThat(tenantRegistry.getTenant("http://some-other-entity-id")).isEmpty();
+    }
+
+    @Test
+    public void shouldUseTheTopLevelKeysForTenantsWithoutTheirOwn() throws Exception {
+        TenantRegistry tenantRegistry = create(emptyList());
+
+        TenantRegistry.Tenant tenant = tenantRegistry.getTenant(ENTITY_ID).get();
+
+        assertThat(tenant.getSigningKeyPair().getPrivate()).isEqualTo(signingKey);
+        assertThat(privateKeys(tenant.getDecryptionKeyPairs())).containsExactly(encryptionKey);
+    }
+
+    @Test
+    public void shouldUseATenantsOwnKeys() throws Exception {
+        TenantRegistry tenantRegistry = create(singletonList(
+            new TenantConfiguration(TENANT_ENTITY_ID, tenantKey, tenantKey, encryptionKey)
+        ));
+
+        TenantRegistry.Tenant tenant = tenantRegistry.getTenant(TENANT_ENTITY_ID).get();
+
+        assertThat(tenant.getSigningKeyPair().getPrivate()).isEqualTo(tenantKey);
+        assertThat(privateKeys(tenant.getDecryptionKeyPairs())).containsExactly(tenantKey, encryptionKey);
+        assertThat(tenantRegistry.getSigningKeyPairs().get(ENTITY_ID).getPrivate()).isEqualTo(signingKey);
+    }
+
+    private TenantRegistry create(List<TenantConfiguration> tenantConfigurations) throws Exception {
+        return TenantRegistry.create(
+            singletonList(ENTITY_ID),
+            TenantRegistry.createKeyPair(signingKey),
+            TenantRegistry.createDecryptionKeyPairs(encryptionKey, null),
+            tenantConfigurations
+        );
+    }
+
+    private static Object[] privateKeys(List<KeyPair> keyPairs) {
+        return keyPairs.stream().map(KeyPair::getPrivate).toArray();
+    }
+
+    private static PrivateKey createPrivateKey(String key) {
+        return new PrivateKeyFactory().createPrivateKey(Base64.decodeBase64(key));
+    }
+}
@@ -0,0 +1,87 @@
+package unit.uk.gov.ida.verifyserviceprovider.services;
+
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.services.WeightedFairQueue;
+import uk.gov.ida.verifyserviceprovider.services.WeightedFairQueue.TenantTask;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeightedFairQueueTest {
+
+    private final List<String> completed = new ArrayList<>();
+
+    @Test
+    public void shouldAlternateBetweenTenantsWithTheSameWeight() {
+        WeightedFairQueue queue = new WeightedFairQueue(10);
+        queueTasks(queue, "a", 1, 4);
+        queueTasks(queue, "b", 1, 2);
+
+        runAll(queue);
+
+        assertThat(completed).containsExactly("a0", "b0", "a1", "b1", "a2", "a3");
+    }
+
+    @Test
+    public void shouldShareInProportionToWeight() {
+        WeightedFairQueue queue = new WeightedFairQueue(10);
+        queueTasks(queue, "a", 2, 4);
+        queueTasks(queue, "b", 1, 2);
+
+        runAll(queue);
+
+        assertThat(completed).containsExactly("a0", "a1", "b0", "a2", "a3", "b1");
+    }
+
+    @Test
+    public void shouldNotLetATenantSaveUpCreditWhileTheQueueIsEmpty() {
+        WeightedFairQueue queue = new WeightedFairQueue(10);
+        queueTasks(queue, "a", 1, 3);
+        runAll(queue);
+        completed.clear();
+
+        queueTasks(queue, "b", 1, 3);
+        queueTasks(queue, "a", 1, 1);
+        runAll(queue);
+
+        assertThat(completed).containsExactly("b0", "a0", "b1", "b2");
+    }
+
+    @Test
+    public void shouldRejectTasksOnceFull() {
+        WeightedFairQueue queue = new WeightedFairQueue(2);
+
+        assertThat(queue.offer(new TenantTask("a", 1, () -> {}))).isTrue();
+        assertThat(queue.offer(new TenantTask("b", 1, () -> {}))).isTrue();
+        assertThat(queue.offer(new TenantTask("c", 1, () -> {}))).isFalse();
+        assertThat(queue.remainingCapacity()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldTreatPlainTasksAsOneTenant() {
+        WeightedFairQueue queue = new WeightedFairQueue(10);
+        queue.offer(() -> completed.add("plain0"));
+        queue.offer(() -> completed.add("plain1"));
+        queueTasks(queue, "a", 1, 1);
+
+        runAll(queue);
+
+        assertThat(completed).containsExactly("plain0", "a0", "plain1");
+    }
+
+    private void queueTasks(WeightedFairQueue queue, String tenant, int weight, int count) {
+        for (int i = 0; i < count; i++) {
+            String name = tenant + i;
+            queue.offer(new TenantTask(tenant, weight, () -> completed.add(name)));
+        }
+    }
+
+    private static void runAll(WeightedFairQueue queue) {
+        Runnable task;
+        while ((task = queue.poll()) != null) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package unit.uk.gov.ida.verifyserviceprovider.services;
+
+import com.codahale.metrics.MetricRegistry;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantLimitConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.TenantLimitsConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.WorkerPoolConfiguration;
+import uk.gov.ida.verifyserviceprovider.exceptions.SamlResponseValidationException;
+import uk.gov.ida.verifyserviceprovider.services.TenantAdmission;
+import uk.gov.ida.verifyserviceprovider.services.WorkerPool;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class WorkerPoolTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private WorkerPool workerPool;
+
+    @After
+    public void tearDown() throws Exception {
+        workerPool.stop();
+    }
+
+    @Test
+    public void shouldDoWorkOnTheRequestThreadWhenNotAsync() {
+        workerPool = WorkerPool.create(new WorkerPoolConfiguration(false, null, null, null), metricRegistry);
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        Thread requestThread = Thread.currentThread();
+        Response response = Response.ok().build();
+
+        workerPool.execute(asyncResponse, () -> {
+            assertThat(Thread.currentThread()).isSameAs(requestThread);
+            return response;
+        });
+
+        verify(asyncResponse).resume(response);
+    }
+
+    @Test
+    public void shouldResumeWithTheResultOfTheWork() {
+        workerPool = WorkerPool.create(new WorkerPoolConfiguration(true, 1, 1, null), metricRegistry);
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        Response response = Response.ok().build();
+
+        workerPool.execute(asyncResponse, () -> response);
+
+        verify(asyncResponse, timeout(1000)).resume(response);
+    }
+
+    @Test
+    public void shouldResumeWithTheExceptionThrownByTheWork() {
+        workerPool = WorkerPool.create(new WorkerPoolConfiguration(true, 1, 1, null), metricRegistry);
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        SamlResponseValidationException exception = new SamlResponseValidationException("Some error.");
+
+        workerPool.execute(asyncResponse, () -> { throw exception; });
+
+        verify(asyncResponse, timeout(1000)).resume(exception);
+    }
+
+    @Test
+    public void shouldReturn503WithRetryAfterWhenTheQueueIsFull() throws Exception {
+        workerPool = WorkerPool.create(new WorkerPoolConfiguration(true, 1, 1, Duration.standardSeconds(5)), metricRegistry);
+        CountDownLatch workerStarted = new CountDownLatch(1);
+        CountDownLatch releaseWorker = new CountDownLatch(1);
+
+        workerPool.execute(mock(AsyncResponse.class), () -> {
+            workerStarted.countDown();
+            try {
+                releaseWorker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return Response.ok().build();
+        });
+        workerStarted.await();
+        workerPool.execute(mock(AsyncResponse.class), () -> Response.ok().build());
+
+        AsyncResponse rejectedResponse = mock(AsyncResponse.class);
+        workerPool.execute(rejectedResponse, () -> Response.ok().build());
+        releaseWorker.countDown();
+
+        ArgumentCaptor<Response> responseCaptor = ArgumentCaptor.forClass(Response.class);
+        verify(rejectedResponse).resume(responseCaptor.capture());
+        assertThat(responseCaptor.getValue().getStatus()).isEqualTo(Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+        assertThat(responseCaptor.getValue().getHeaderString(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+        assertThat(metricRegistry.meter("uk.gov.ida.verifyserviceprovider.services.WorkerPool.rejected").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturn429WhenTheEntityIdIsOverItsQuota() {
+        TenantAdmission tenantAdmission = TenantAdmission.create(
+            new TenantLimitsConfiguration(new TenantLimitConfiguration(0.5, 1, null), null),
+            singletonList("http://entity-id"),
+            metricRegistry
+        );
+        workerPool = WorkerPool.create(new WorkerPoolConfiguration(false, null, null, null), tenantAdmission, metricRegistry);
+        Response response = Response.ok().build();
+
+        AsyncResponse admittedResponse = mock(AsyncResponse.class);
+        workerPool.execute(admittedResponse, "http://entity-id", () -> response);
+        AsyncResponse rejectedResponse = mock(AsyncResponse.class);
+        workerPool.execute(rejectedResponse, "http://entity-id", () -> response);
+
+        verify(admittedResponse).resume(response);
+        ArgumentCaptor<Response> responseCaptor = ArgumentCaptor.forClass(Response.class);
+        verify(rejectedResponse).resume(responseCaptor.capture());
+        assertThat(responseCaptor.getValue().getStatus()).isEqualTo(429);
+        assertThat(responseCaptor.getValue().getHeaderString(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+    }
+}
@@ -0,0 +1,89 @@
+package unit.uk.gov.ida.verifyserviceprovider.startup;
+
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.startup.StartupPlan;
+import uk.gov.ida.verifyserviceprovider.startup.StartupReport;
+import uk.gov.ida.verifyserviceprovider.startup.StartupTask;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class StartupPlanTest {
+
+    private final StartupReport report = new StartupReport(System.currentTimeMillis());
+    private final StartupPlan plan = new StartupPlan(report, 2);
+
+    @Test
+    public void shouldRunATaskAfterTheTasksItDependsOn() throws Exception {
+        StartupTask<String> first = plan.task("first", () -> {
+            Thread.sleep(50);
+            return "first";
+        });
+        StartupTask<String> second = plan.task("second", () -> first.get() + " then second", first);
+
+        assertThat(second.get()).isEqualTo("first then second");
+    }
+
+    @Test
+    public void shouldRunIndependentTasksAtTheSameTime() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        StartupTask<Boolean> one = plan.task("one", () -> {
+            bothStarted.countDown();
+            return bothStarted.await(5, TimeUnit.SECONDS);
+        });
+        StartupTask<Boolean> other = plan.task("other", () -> {
+            bothStarted.countDown();
+            return bothStarted.await(5, TimeUnit.SECONDS);
+        });
+
+        assertThat(one.get()).isTrue();
+        assertThat(other.get()).isTrue();
+    }
+
+    @Test
+    public void shouldFailATaskAndTheTasksWhichDependOnIt() {
+        AtomicBoolean dependentRan = new AtomicBoolean();
+        StartupTask<String> failing = plan.task("failing", () -> {
+            throw new IOException("couldn't read it");
+        });
+        StartupTask<String> dependent = plan.task("dependent", () -> {
+            dependentRan.set(true);
+            return "dependent";
+        }, failing);
+
+        assertThat(catchThrowable(failing::get)).isInstanceOf(IOException.class).hasMessage("couldn't read it");
+        assertThat(catchThrowable(dependent::get)).isInstanceOf(IOException.class);
+        assertThat(dependentRan.get()).isFalse();
+    }
+
+    @Test
+    public void shouldRecordEachTaskInTheReport() throws Exception {
+        plan.task("waited", () -> "waited").get();
+        plan.defer("deferred", () -> "deferred").get();
+
+        assertThat(report.getPhases()).extracting(StartupReport.Phase::getName).containsExactlyInAnyOrder("waited", "deferred");
+        assertThat(report.getPhases()).extracting(StartupReport.Phase::isDeferred).containsExactlyInAnyOrder(false, true);
+        assertThat(report.getPhases()).extracting(StartupReport.Phase::getThread).allMatch(thread -> thread.startsWith("startup-"));
+    }
+
+    @Test
+    public void shouldStartEachPhaseWhereThePreviousOneEnded() throws Exception {
+        report.endPhase("initialize");
+        Thread.sleep(20);
+        report.endPhase("run");
+        report.serverStarted();
+
+        StartupReport.Phase initialize = report.getPhases().get(0);
+        StartupReport.Phase run = report.getPhases().get(1);
+        assertThat(initialize.getName()).isEqualTo("initialize");
+        assertThat(run.getName()).isEqualTo("run");
+        assertThat(run.getStartedAtMillis()).isEqualTo(initialize.getStartedAtMillis() + initialize.getDurationMillis());
+        assertThat(run.getDurationMillis()).isGreaterThanOrEqualTo(20);
+        assertThat(report.getServerStartedMillis()).isGreaterThanOrEqualTo(run.getStartedAtMillis() + run.getDurationMillis());
+    }
+}
@@ -0,0 +1,123 @@
+package unit.uk.gov.ida.verifyserviceprovider.utils;
+
+import org.junit.Test;
+import uk.gov.ida.verifyserviceprovider.utils.ObjectPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ObjectPoolTest {
+
+    private static final int THREADS = 32;
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    @Test
+    public void shouldCreateTheInitialObjectsUpFront() {
+        ObjectPool<PooledObject> pool = new ObjectPool<>(this::createObject, 4, 8);
+
+        assertThat(created.get()).isEqualTo(4);
+        assertThat(pool.getIdleCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldReuseReturnedObjects() {
+        ObjectPool<PooledObject> pool = new ObjectPool<>(this::createObject, 1, 1);
+
+        PooledObject first = pool.apply(object -> object);
+        PooledObject second = pool.apply(object -> object);
+
+        assertThat(second).isSameAs(first);
+        assertThat(created.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnObjectsToThePoolWhenTheWorkFails() {
+        ObjectPool<PooledObject> pool = new ObjectPool<>(this::createObject, 1, 1);
+
+        try {
+            pool.apply(object -> { throw new IllegalStateException(); });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNeverShareAnObjectBetweenThreadsAndShouldBoundTheIdleObjects() throws Exception {
+        ObjectPool<PooledObject> pool = new ObjectPool<>(this::createObject, 2, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS * 100; i++) {
+            int input = i;
+            results.add(executor.submit(() -> pool.apply(object -> object.doubleIt(input))));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get()).isEqualTo(i * 2);
+        }
+        executor.shutdown();
+
+        assertThat(created.get()).isLessThanOrEqualTo(THREADS + 2);
+        assertThat(pool.getIdleCount()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    public void shouldLetEveryThreadWorkAtTheSameTime() throws Exception {
+        // If borrowing serialised the threads, they would never all reach the barrier at once
+        ObjectPool<PooledObject> pool = new ObjectPool<>(this::createObject, 0, THREADS);
+        CyclicBarrier allThreadsWorking = new CyclicBarrier(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> pool.apply(object -> {
+                try {
+                    allThreadsWorking.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return 1;
+            })));
+        }
+
+        for (Future<Integer> result : results) {
+            assertThat(result.get()).isEqualTo(1);
+        }
+        executor.shutdown();
+
+        assertThat(created.get()).isEqualTo(THREADS);
+        assertThat(pool.getIdleCount()).isEqualTo(THREADS);
+    }
+
+    private PooledObject createObject() {
+        created.incrementAndGet();
+        return new PooledObject();
+    }
+
+    private static class PooledObject {
+        private final AtomicBoolean inUse = new AtomicBoolean();
+
+        int doubleIt(int input) {
+            if (!inUse.compareAndSet(false, true)) {
+                throw new IllegalStateException("Object is being used by another thread");
+            }
+            try {
+                return input * 2;
+            } finally {
+                inUse.set(false);
+            }
+        }
+    }
+}
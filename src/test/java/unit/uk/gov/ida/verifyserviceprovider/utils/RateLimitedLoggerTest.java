@@ -0,0 +1,73 @@
+package unit.uk.gov.ida.verifyserviceprovider.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import uk.gov.ida.verifyserviceprovider.utils.RateLimitedLogger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RateLimitedLoggerTest {
+
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = mock(Logger.class);
+        when(logger.isWarnEnabled()).thenReturn(true);
+    }
+
+    @Test
+    public void shouldLogWarningsUpToTheBurst() {
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 0.001, 2);
+
+        rateLimitedLogger.warn("Error for entityId: {}", "one");
+        rateLimitedLogger.warn("Error for entityId: {}", "two");
+        rateLimitedLogger.warn("Error for entityId: {}", "three");
+
+        verify(logger).warn("Error for entityId: {}", new Object[]{"one"});
+        verify(logger).warn("Error for entityId: {}", new Object[]{"two"});
+        verify(logger, never()).warn("Error for entityId: {}", new Object[]{"three"});
+    }
+
+    @Test
+    public void shouldAddTheNumberOfWarningsNotLoggedToTheNextOneThatIs() throws Exception {
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 20, 1);
+
+        rateLimitedLogger.warn("Error for entityId: {}", "one");
+        rateLimitedLogger.warn("Error for entityId: {}", "two");
+        rateLimitedLogger.warn("Error for entityId: {}", "three");
+        Thread.sleep(100);
+        rateLimitedLogger.warn("Error for entityId: {}", "four");
+
+        verify(logger).warn("Error for entityId: {} ({} similar warnings were not logged)", new Object[]{"four", 2L});
+    }
+
+    @Test
+    public void shouldKeepAThrowableAsTheLastArgument() throws Exception {
+        RuntimeException exception = new RuntimeException();
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 20, 1);
+
+        rateLimitedLogger.warn("Error", exception);
+        rateLimitedLogger.warn("Error", exception);
+        Thread.sleep(100);
+        rateLimitedLogger.warn("Error", exception);
+
+        verify(logger, times(2)).warn("Error", new Object[]{exception});
+        verify(logger).warn("Error ({} similar warnings were not logged)", new Object[]{1L, exception});
+    }
+
+    @Test
+    public void shouldNotCountWarningsWhenTheyAreDisabled() {
+        when(logger.isWarnEnabled()).thenReturn(false);
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 0.001, 1);
+
+        rateLimitedLogger.warn("Error for entityId: {}", "one");
+
+        verify(logger, never()).warn("Error for entityId: {}", new Object[]{"one"});
+    }
+}
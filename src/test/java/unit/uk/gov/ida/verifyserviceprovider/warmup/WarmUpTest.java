@@ -0,0 +1,156 @@
+package unit.uk.gov.ida.verifyserviceprovider.warmup;
+
+import com.codahale.metrics.MetricRegistry;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.impl.PredicateRoleDescriptorResolver;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.opensaml.saml.security.impl.MetadataCredentialResolver;
+import org.opensaml.xmlsec.config.DefaultSecurityConfigurationBootstrap;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import uk.gov.ida.saml.core.IdaSamlBootstrap;
+import uk.gov.ida.saml.security.MetadataBackedEncryptionCredentialResolver;
+import uk.gov.ida.shared.utils.manifest.ManifestReader;
+import uk.gov.ida.verifyserviceprovider.configuration.SamlPoolConfiguration;
+import uk.gov.ida.verifyserviceprovider.configuration.WarmUpConfiguration;
+import uk.gov.ida.verifyserviceprovider.factories.EncrypterFactory;
+import uk.gov.ida.verifyserviceprovider.factories.saml.AuthnRequestFactory;
+import uk.gov.ida.verifyserviceprovider.factories.saml.ResponseFactory;
+import uk.gov.ida.verifyserviceprovider.healthcheck.WarmUpHealthCheck;
+import uk.gov.ida.verifyserviceprovider.replay.InMemoryReplayCache;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshotResolver;
+import uk.gov.ida.verifyserviceprovider.saml.SigningCredentialSnapshotTrustEngine;
+import uk.gov.ida.verifyserviceprovider.services.ResponseService;
+import uk.gov.ida.verifyserviceprovider.utils.DateTimeComparator;
+import uk.gov.ida.verifyserviceprovider.warmup.SyntheticFederation;
+import uk.gov.ida.verifyserviceprovider.warmup.WarmUp;
+
+import java.net.URI;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WarmUpTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final DateTimeComparator dateTimeComparator = new DateTimeComparator(Duration.standardSeconds(5));
+    private SyntheticFederation federation;
+
+    @Before
+    public void setUp() throws Exception {
+        IdaSamlBootstrap.bootstrap();
+        federation = SyntheticFederation.create();
+    }
+
+    @Test
+    public void shouldTranslateSyntheticResponsesUntilTheIterationBudgetIsSpent() throws Exception {
+        WarmUp warmUp = createWarmUp(new WarmUpConfiguration(true, 20, null, null), federation);
+        WarmUpHealthCheck healthCheck = new WarmUpHealthCheck(warmUp);
+
+        assertThat(healthCheck.execute().isHealthy()).isFalse();
+
+        warmUp.run();
+
+        assertThat(warmUp.getState()).isEqualTo(WarmUp.State.BUDGET_SPENT);
+        assertThat(warmUp.getIterations()).isEqualTo(20);
+        assertThat(healthCheck.execute().isHealthy()).isTrue();
+    }
+
+    @Test
+    public void shouldStopOnceTheTimeTakenHasSettled() throws Exception {
+        WarmUp warmUp = createWarmUp(new WarmUpConfiguration(true, 2_000, null, 100), federation);
+
+        warmUp.run();
+
+        assertThat(warmUp.getState()).isEqualTo(WarmUp.State.SETTLED);
+        assertThat(warmUp.getIterations()).isLessThan(2_000);
+    }
+
+    @Test
+    public void shouldFinishWhenTheSyntheticResponsesAreNotTrusted() throws Exception {
+        WarmUp warmUp = createWarmUp(new WarmUpConfiguration(true, 20, null, null), SyntheticFederation.create());
+        WarmUpHealthCheck healthCheck = new WarmUpHealthCheck(warmUp);
+
+        warmUp.run();
+
+        assertThat(warmUp.getState()).isEqualTo(WarmUp.State.FAILED);
+        assertThat(healthCheck.execute().isHealthy()).isTrue();
+    }
+
+    @Test
+    public void shouldFinishWhenThePipelinesCannotBeMade() throws Exception {
+        WarmUp warmUp = new WarmUp(new WarmUpConfiguration(true, 20, null, null), () -> {
+            throw new IllegalStateException("no keys");
+        });
+
+        warmUp.run();
+
+        assertThat(warmUp.getState()).isEqualTo(WarmUp.State.FAILED);
+        assertThat(warmUp.getIterations()).isZero();
+    }
+
+    /**
+     * @param trustedFederation the federation whose keys the pipelines trust
+     */
+    private WarmUp createWarmUp(WarmUpConfiguration configuration, SyntheticFederation trustedFederation) throws Exception {
+        MetadataResolver metadataResolver = trustedFederation.getMetadataResolver();
+        MetadataCredentialResolver metadataCredentialResolver = createMetadataCredentialResolver(metadataResolver);
+
+        ResponseFactory responseFactory = new ResponseFactory(
+            singletonList(trustedFederation.getServiceEncryptionKeyPair()),
+            metricRegistry,
+            new SamlPoolConfiguration(null, null)
+        );
+        ResponseService responseService = responseFactory.createResponseService(
+            createTrustEngine(metadataResolver, metadataCredentialResolver, SyntheticFederation.HUB_ENTITY_ID),
+            SyntheticFederation.HUB_ENTITY_ID,
+            responseFactory.createAssertionTranslator(
+                createTrustEngine(metadataResolver, metadataCredentialResolver, SyntheticFederation.MSA_ENTITY_ID),
+                dateTimeComparator
+            ),
+            dateTimeComparator,
+            new InMemoryReplayCache(1_000)
+        );
+
+        AuthnRequestFactory authnRequestFactory = new AuthnRequestFactory(
+            URI.create("http://hub-sso-location"),
+            trustedFederation.getServiceSigningKeyPair(),
+            new ManifestReader(),
+            new EncrypterFactory(
+                new MetadataBackedEncryptionCredentialResolver(metadataCredentialResolver, SPSSODescriptor.DEFAULT_ELEMENT_NAME),
+                SyntheticFederation.HUB_ENTITY_ID,
+                metadataResolver,
+                metricRegistry
+            )
+        );
+
+        return new WarmUp(configuration, () -> new WarmUp.Pipelines(authnRequestFactory, responseService, federation));
+    }
+
+    private static ExplicitKeySignatureTrustEngine createTrustEngine(
+        MetadataResolver metadataResolver,
+        MetadataCredentialResolver metadataCredentialResolver,
+        String entityId
+    ) {
+        return new SigningCredentialSnapshotTrustEngine(new SigningCredentialSnapshotResolver(
+            metadataResolver,
+            singletonList(entityId),
+            DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver(),
+            metadataCredentialResolver
+        ));
+    }
+
+    private static MetadataCredentialResolver createMetadataCredentialResolver(MetadataResolver metadataResolver) throws Exception {
+        PredicateRoleDescriptorResolver roleDescriptorResolver = new PredicateRoleDescriptorResolver(metadataResolver);
+        roleDescriptorResolver.setRequireValidMetadata(true);
+        roleDescriptorResolver.initialize();
+
+        MetadataCredentialResolver metadataCredentialResolver = new MetadataCredentialResolver();
+        metadataCredentialResolver.setRoleDescriptorResolver(roleDescriptorResolver);
+        metadataCredentialResolver.setKeyInfoCredentialResolver(DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver());
+        metadataCredentialResolver.initialize();
+        return metadataCredentialResolver;
+    }
+}